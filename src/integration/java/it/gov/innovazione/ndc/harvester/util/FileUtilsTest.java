@@ -78,6 +78,27 @@ class FileUtilsTest {
         assertThat(clonedRepo.exists()).isFalse();
     }
 
+    @Test
+    void shouldScanDirectoryTreeLeavingOutSkippedDirectories() throws IOException {
+        File group = new File(rootFolder.toFile(), "group");
+        File asset = new File(group, "asset");
+        File skipped = new File(group, "Deprecated-asset");
+        assertThat(asset.mkdirs()).isTrue();
+        assertThat(skipped.mkdirs()).isTrue();
+        File readme = createTextFile(group.toPath(), "README.md", List.of("# Assets"));
+        File ttl = createTextFile(asset.toPath(), "asset.ttl", List.of("# Turtle"));
+        createTextFile(skipped.toPath(), "old.ttl", List.of("# Turtle"));
+
+        DirectoryNode tree = fileUtils.scanDirectoryTree(rootFolder, name -> name.contains("deprecated"));
+
+        assertThat(tree.getFiles()).isEmpty();
+        assertThat(tree.getDirectories()).hasSize(1);
+        DirectoryNode groupNode = tree.getDirectories().get(0);
+        assertThat(groupNode.getPath()).isEqualTo(group.toPath());
+        assertThat(groupNode.getFiles()).containsExactly(readme.toPath());
+        assertThat(groupNode.getDirectories()).containsExactly(DirectoryNode.of(asset.toPath(), List.of(), List.of(ttl.toPath())));
+    }
+
     private File createTextFile(Path parent, String fileName, List<String> content) throws IOException {
         File textFile = new File(parent.toFile(), fileName);
         Files.write(textFile.toPath(), content);
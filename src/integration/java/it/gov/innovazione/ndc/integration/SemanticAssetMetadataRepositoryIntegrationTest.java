@@ -1,7 +1,9 @@
 package it.gov.innovazione.ndc.integration;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import it.gov.innovazione.ndc.harvester.SemanticAssetType;
 import it.gov.innovazione.ndc.harvester.model.index.SemanticAssetMetadata;
+import it.gov.innovazione.ndc.repository.ElasticsearchBulkLimiter;
 import it.gov.innovazione.ndc.repository.SemanticAssetMetadataRepository;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.jetbrains.annotations.NotNull;
@@ -30,7 +32,7 @@ public class SemanticAssetMetadataRepositoryIntegrationTest {
     public static void beforeAll() {
         elastic.start();
         elasticsearchOperations = buildElasticsearchOps();
-        repository = new SemanticAssetMetadataRepository(elasticsearchOperations);
+        repository = new SemanticAssetMetadataRepository(elasticsearchOperations, new ElasticsearchBulkLimiter(1, new SimpleMeterRegistry()));
     }
 
     @NotNull
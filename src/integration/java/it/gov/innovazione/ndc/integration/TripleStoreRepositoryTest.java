@@ -2,6 +2,7 @@ package it.gov.innovazione.ndc.integration;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import it.gov.innovazione.ndc.repository.TripleStoreProperties;
 import it.gov.innovazione.ndc.repository.TripleStoreRepository;
 import it.gov.innovazione.ndc.repository.VirtuosoClient;
@@ -49,7 +50,7 @@ public class TripleStoreRepositoryTest {
                 .password("")
                 .build();
 
-        repository = new TripleStoreRepository(new VirtuosoClient(properties));
+        repository = new TripleStoreRepository(new VirtuosoClient(properties, new SimpleMeterRegistry()), properties);
     }
 
     @BeforeEach
@@ -145,22 +146,18 @@ public class TripleStoreRepositoryTest {
         UpdateExecutionFactory.createRemote(updateRequest, sparqlUrl).execute();
 
         //when
-        QueryExecution queryExecution = repository.select(findTitle);
-        ResultSet resultSet = queryExecution.execSelect();
+        ResultSet resultSet = repository.select(findTitle);
         assertThat(resultSet.hasNext()).isTrue();
         assertThat(resultSet.next().get("b").asResource().getURI()).isEqualTo(
             "http://example/egbook");
         assertThat(resultSet.hasNext()).isFalse();
-        queryExecution.close();
 
         // when
         repository.clearExistingNamedGraph("http://agid");
-        QueryExecution queryExecution1 = repository.select(findTitle);
-        resultSet = queryExecution1.execSelect();
+        resultSet = repository.select(findTitle);
 
         // then
         assertThat(resultSet.hasNext()).isFalse();
-        queryExecution1.close();
     }
 
     private void deleteAllTriplesFromGraph(String graphName, String sparqlUrl,
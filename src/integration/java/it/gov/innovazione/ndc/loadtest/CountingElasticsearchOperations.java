@@ -0,0 +1,73 @@
+package it.gov.innovazione.ndc.loadtest;
+
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.SearchHitsImpl;
+import org.springframework.data.elasticsearch.core.TotalHitsRelation;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.convert.MappingElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.mapping.SimpleElasticsearchMappingContext;
+import org.springframework.data.elasticsearch.core.query.ByQueryResponse;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+
+/**
+ * Elasticsearch stand-in for load tests, which accepts every request without doing anything and counts them, along
+ * with the documents sent with bulk requests.
+ */
+public class CountingElasticsearchOperations implements Answer<Object> {
+    private final Map<String, LongAdder> calls = new ConcurrentHashMap<>();
+    private final LongAdder bulkDocuments = new LongAdder();
+    private final ElasticsearchConverter converter = new MappingElasticsearchConverter(new SimpleElasticsearchMappingContext());
+    private final IndexOperations indexOperations = Mockito.mock(IndexOperations.class, this);
+    private final ElasticsearchOperations operations = Mockito.mock(ElasticsearchOperations.class, this);
+
+    public ElasticsearchOperations getOperations() {
+        return operations;
+    }
+
+    @Override
+    public Object answer(InvocationOnMock invocation) throws Throwable {
+        String method = invocation.getMethod().getDeclaringClass().getSimpleName() + "." + invocation.getMethod().getName();
+        calls.computeIfAbsent(method, m -> new LongAdder()).increment();
+
+        Class<?> returnType = invocation.getMethod().getReturnType();
+        if ("bulkIndex".equals(invocation.getMethod().getName())) {
+            bulkDocuments.add(((Collection<?>) invocation.getArgument(0)).size());
+        }
+        if (IndexOperations.class.equals(returnType)) {
+            return indexOperations;
+        }
+        if (ElasticsearchConverter.class.equals(returnType)) {
+            return converter;
+        }
+        if (ByQueryResponse.class.equals(returnType)) {
+            return ByQueryResponse.builder().withDeleted(0).build();
+        }
+        if (SearchHits.class.equals(returnType)) {
+            return new SearchHitsImpl<>(0, TotalHitsRelation.EQUAL_TO, 0, null, List.of(), null, null);
+        }
+        return RETURNS_DEFAULTS.answer(invocation);
+    }
+
+    public Map<String, Long> getCalls() {
+        Map<String, Long> counts = new TreeMap<>();
+        calls.forEach((method, count) -> counts.put(method, count.sum()));
+        return counts;
+    }
+
+    public long getBulkDocuments() {
+        return bulkDocuments.sum();
+    }
+}
@@ -0,0 +1,130 @@
+package it.gov.innovazione.ndc.loadtest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import it.gov.innovazione.ndc.config.HarvestExecutionContext;
+import it.gov.innovazione.ndc.config.HarvestExecutionContextUtils;
+import it.gov.innovazione.ndc.harvester.HarvesterService;
+import it.gov.innovazione.ndc.harvester.service.HarvestTimeoutProperties;
+import it.gov.innovazione.ndc.harvester.service.RunningHarvest;
+import it.gov.innovazione.ndc.model.harvester.Repository;
+import it.gov.innovazione.ndc.repository.TripleStoreProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.jena.system.Txn;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Harvests a synthetic agency repository end to end, with an in-memory triple store and an Elasticsearch stand-in,
+ * and reports where the time and the memory go. The size of the repository is set with the {@code loadtest.*}
+ * system properties, see {@link SyntheticAgencyRepository#fromSystemProperties()}; run it with
+ * {@code ./gradlew harvestLoadTest -Dloadtest.ontologies=100 -Dloadtest.csvRows=10000}.
+ */
+@Slf4j
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+    "virtuoso.sparql=http://localhost/sparql",
+    "virtuoso.sparql-graph-store=http://localhost/sparql-graph-crud/"
+})
+class HarvestLoadTest {
+    @TempDir
+    Path workDir;
+
+    @Autowired
+    HarvesterService harvesterService;
+
+    @Autowired
+    InMemoryVirtuosoClient tripleStore;
+
+    @Autowired
+    CountingElasticsearchOperations elasticsearch;
+
+    @TestConfiguration
+    static class LocalBackends {
+        @Bean
+        CountingElasticsearchOperations countingElasticsearchOperations() {
+            return new CountingElasticsearchOperations();
+        }
+
+        // named as the template of Spring Boot, which the Elasticsearch repositories refer to
+        @Bean(name = "elasticsearchTemplate")
+        @Primary
+        ElasticsearchOperations elasticsearchOperations(CountingElasticsearchOperations countingElasticsearchOperations) {
+            return countingElasticsearchOperations.getOperations();
+        }
+
+        @Bean
+        @Primary
+        InMemoryVirtuosoClient inMemoryVirtuosoClient(TripleStoreProperties properties, MeterRegistry meterRegistry) {
+            return new InMemoryVirtuosoClient(properties, meterRegistry);
+        }
+    }
+
+    @AfterEach
+    void clearContext() {
+        HarvestExecutionContextUtils.setContext(null);
+    }
+
+    @Test
+    void shouldHarvestSyntheticRepository() throws Exception {
+        SyntheticAgencyRepository synthetic = SyntheticAgencyRepository.fromSystemProperties();
+        Path repoDir = synthetic.createIn(workDir.resolve("agency-repo"));
+        Repository repository = Repository.builder()
+                .id("load-test")
+                .url(repoDir.toUri().toString())
+                .name("load-test")
+                .build();
+        RunningHarvest run = new RunningHarvest(UUID.randomUUID().toString(), UUID.randomUUID().toString(), repository,
+                null, "load-test", Thread.currentThread(), HarvestTimeoutProperties.builder().build());
+        HarvestExecutionContextUtils.setContext(HarvestExecutionContext.builder()
+                .repository(repository)
+                .runId(run.getRunId())
+                .correlationId(run.getCorrelationId())
+                .currentUserId("load-test")
+                .runningHarvest(run)
+                .build());
+
+        Duration wallTime;
+        MemorySampler.Usage memory;
+        try (MemorySampler sampler = MemorySampler.start()) {
+            long start = System.nanoTime();
+            harvesterService.harvest(repository);
+            wallTime = Duration.ofNanos(System.nanoTime() - start);
+            memory = sampler.stop();
+        }
+
+        long triples = Txn.calculateRead(tripleStore.getDataset(), () -> tripleStore.getDataset().asDatasetGraph().stream().count());
+        log.info("Harvest load test of {}\n"
+                        + "  wall time:          {}\n"
+                        + "  phases:             {}\n"
+                        + "  steps:              {}\n"
+                        + "  triple store:       {} in {} request(s), {} triple(s) stored\n"
+                        + "  elasticsearch:      {} document(s) in bulk, calls {}\n"
+                        + "  allocated:          {} MB\n"
+                        + "  peak heap:          {} MB\n"
+                        + "  gc:                 {} collection(s) in {} ms",
+                synthetic, wallTime, run.getPhaseTimes(), run.getStepReports(),
+                tripleStore.getTimeSpent(), tripleStore.getRequests(), triples,
+                elasticsearch.getBulkDocuments(), elasticsearch.getCalls(),
+                memory.getAllocatedBytes() >> 20,
+                memory.getPeakHeapBytes() >> 20,
+                memory.getGcCount(), memory.getGcMillis());
+
+        assertThat(triples).isPositive();
+        assertThat(run.getPhaseTimes().get(RunningHarvest.Phase.PARSE)).isPositive();
+    }
+
+}
@@ -0,0 +1,82 @@
+package it.gov.innovazione.ndc.loadtest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import it.gov.innovazione.ndc.repository.TripleStoreProperties;
+import it.gov.innovazione.ndc.repository.VirtuosoClient;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdfconnection.RDFConnection;
+import org.apache.jena.rdfconnection.RDFConnectionWrapper;
+import org.apache.jena.system.Txn;
+import org.apache.jena.update.UpdateAction;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Triple store client backed by a transactional in-memory dataset, standing in for Virtuoso in load tests. Virtuoso
+ * pragmas are dropped from the updates, which are otherwise standard SPARQL.
+ */
+public class InMemoryVirtuosoClient extends VirtuosoClient {
+    private static final Pattern VIRTUOSO_PRAGMA = Pattern.compile("(?m)^DEFINE .*$");
+
+    private final Dataset dataset = DatasetFactory.createTxnMem();
+    private final LongAdder nanos = new LongAdder();
+    private final AtomicLong requests = new AtomicLong();
+
+    public InMemoryVirtuosoClient(TripleStoreProperties properties, MeterRegistry meterRegistry) {
+        super(properties, meterRegistry);
+    }
+
+    @Override
+    public RDFConnection getConnection() {
+        requests.incrementAndGet();
+        return new TimedConnection(RDFConnection.connect(dataset));
+    }
+
+    @Override
+    public void update(String updateString) {
+        requests.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            String update = VIRTUOSO_PRAGMA.matcher(updateString).replaceAll("");
+            Txn.executeWrite(dataset, () -> UpdateAction.parseExecute(update, dataset));
+        } finally {
+            nanos.add(System.nanoTime() - start);
+        }
+    }
+
+    public Dataset getDataset() {
+        return dataset;
+    }
+
+    /**
+     * Time spent in the triple store, from when a connection is obtained until it is closed.
+     */
+    public Duration getTimeSpent() {
+        return Duration.ofNanos(nanos.sum());
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    private final class TimedConnection extends RDFConnectionWrapper {
+        private final long start = System.nanoTime();
+
+        private TimedConnection(RDFConnection connection) {
+            super(connection);
+        }
+
+        @Override
+        public void close() {
+            try {
+                super.close();
+            } finally {
+                nanos.add(System.nanoTime() - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package it.gov.innovazione.ndc.loadtest;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.ThreadMXBean;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Measures the memory used while a load test runs. The bytes allocated by each thread are sampled periodically, so
+ * that the threads ending before the test still count, up to their last sample. The heap in use is sampled as a
+ * whole, and it is also taken right before each collection from the notifications of the collectors, when it peaks.
+ */
+final class MemorySampler implements AutoCloseable {
+    private static final long INTERVAL_MILLIS = 10;
+
+    private final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final Set<String> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .map(MemoryPoolMXBean::getName)
+            .collect(Collectors.toUnmodifiableSet());
+    private final Map<Long, Long> initialAllocations = new HashMap<>();
+    private final Map<Long, Long> lastAllocations = new HashMap<>();
+    private final AtomicLong peakHeapBytes = new AtomicLong();
+    private final NotificationListener gcListener = this::collected;
+    private final long initialGcCount = gcCount();
+    private final long initialGcMillis = gcMillis();
+    private final Thread thread = new Thread(this::run, "load-test-memory-sampler");
+    private volatile boolean stopping;
+    private Usage usage;
+
+    private MemorySampler() {
+        long[] ids = threads.getAllThreadIds();
+        long[] allocations = threads.getThreadAllocatedBytes(ids);
+        for (int i = 0; i < ids.length; i++) {
+            initialAllocations.put(ids[i], Math.max(0, allocations[i]));
+        }
+    }
+
+    static MemorySampler start() {
+        MemorySampler sampler = new MemorySampler();
+        ManagementFactory.getGarbageCollectorMXBeans().forEach(gc -> ((NotificationEmitter) gc).addNotificationListener(sampler.gcListener, null, null));
+        sampler.thread.setDaemon(true);
+        sampler.thread.start();
+        return sampler;
+    }
+
+    /**
+     * Stops sampling, taking a last sample.
+     */
+    synchronized Usage stop() throws InterruptedException {
+        if (usage != null) {
+            return usage;
+        }
+        stopping = true;
+        thread.join();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            try {
+                ((NotificationEmitter) gc).removeNotificationListener(gcListener);
+            } catch (ListenerNotFoundException e) {
+                // never registered, nothing to remove
+            }
+        }
+        long allocatedBytes = lastAllocations.entrySet().stream()
+                .mapToLong(allocation -> allocation.getValue() - initialAllocations.getOrDefault(allocation.getKey(), 0L))
+                .filter(bytes -> bytes > 0)
+                .sum();
+        usage = new Usage(allocatedBytes, peakHeapBytes.get(), gcCount() - initialGcCount, gcMillis() - initialGcMillis);
+        return usage;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        stop();
+    }
+
+    private void run() {
+        while (!stopping) {
+            sample();
+            try {
+                Thread.sleep(INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        sample();
+    }
+
+    private void sample() {
+        long[] ids = threads.getAllThreadIds();
+        long[] allocations = threads.getThreadAllocatedBytes(ids);
+        for (int i = 0; i < ids.length; i++) {
+            if (allocations[i] > 0) {
+                lastAllocations.put(ids[i], allocations[i]);
+            }
+        }
+        peakHeapBytes.accumulateAndGet(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(), Math::max);
+    }
+
+    private void collected(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        Map<String, MemoryUsage> beforeGc = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData())
+                .getGcInfo()
+                .getMemoryUsageBeforeGc();
+        long heapBytes = beforeGc.entrySet().stream()
+                .filter(pool -> heapPools.contains(pool.getKey()))
+                .mapToLong(pool -> pool.getValue().getUsed())
+                .sum();
+        peakHeapBytes.accumulateAndGet(heapBytes, Math::max);
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(gc -> Math.max(0, gc.getCollectionCount())).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(gc -> Math.max(0, gc.getCollectionTime())).sum();
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    static final class Usage {
+        private final long allocatedBytes;
+        private final long peakHeapBytes;
+        private final long gcCount;
+        private final long gcMillis;
+    }
+}
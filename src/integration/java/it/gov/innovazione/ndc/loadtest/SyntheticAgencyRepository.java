@@ -0,0 +1,109 @@
+package it.gov.innovazione.ndc.loadtest;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Local git repository laid out as an agency one, with ontologies and controlled vocabularies made from the test
+ * fixtures, each in a few versioned folders of which only the latest is harvested.
+ */
+@Getter
+@ToString
+@Builder
+public class SyntheticAgencyRepository {
+    private static final String ONTOLOGY_FIXTURE = "src/test/resources/testdata/onto.ttl";
+    private static final String ONTOLOGY_IRI = "https://w3id.org/italia/onto/CulturalHeritage";
+    private static final String VOCABULARY_FIXTURE = "src/test/resources/testdata/cv.ttl";
+    private static final String VOCABULARY_IRI =
+            "https://w3id.org/italia/controlled-vocabulary/classifications-for-accommodation-facilities/accommodation-star-rating";
+    private static final String KEY_CONCEPT = "\"testVocabulary\"";
+
+    @Builder.Default
+    private final int ontologies = 20;
+    @Builder.Default
+    private final int classesPerOntology = 200;
+    @Builder.Default
+    private final int vocabularies = 20;
+    @Builder.Default
+    private final int csvRows = 1000;
+    @Builder.Default
+    private final int versions = 2;
+
+    /**
+     * Reads the size of the repository from the {@code loadtest.*} system properties, falling back to the defaults.
+     */
+    public static SyntheticAgencyRepository fromSystemProperties() {
+        return SyntheticAgencyRepository.builder()
+                .ontologies(Integer.getInteger("loadtest.ontologies", 20))
+                .classesPerOntology(Integer.getInteger("loadtest.classesPerOntology", 200))
+                .vocabularies(Integer.getInteger("loadtest.vocabularies", 20))
+                .csvRows(Integer.getInteger("loadtest.csvRows", 1000))
+                .versions(Integer.getInteger("loadtest.versions", 2))
+                .build();
+    }
+
+    /**
+     * Writes the repository in the given directory and commits all of its files.
+     */
+    public Path createIn(Path directory) throws IOException {
+        String ontology = Files.readString(Path.of(ONTOLOGY_FIXTURE));
+        String vocabulary = Files.readString(Path.of(VOCABULARY_FIXTURE));
+        for (int version = 1; version <= versions; version++) {
+            String versionFolder = version + ".0";
+            for (int i = 0; i < ontologies; i++) {
+                Path folder = Files.createDirectories(directory.resolve("assets/ontologies/onto-" + i + "/" + versionFolder));
+                writeOntology(folder.resolve("onto-" + i + ".ttl"), ontology, i);
+            }
+            for (int i = 0; i < vocabularies; i++) {
+                Path folder = Files.createDirectories(directory.resolve("assets/controlled-vocabularies/cv-" + i + "/" + versionFolder));
+                Files.writeString(folder.resolve("cv-" + i + ".ttl"), vocabulary
+                        .replace(VOCABULARY_IRI, VOCABULARY_IRI + "-" + i)
+                        .replace(KEY_CONCEPT, "\"vocabulary-" + i + "\""));
+                writeCsv(folder.resolve("cv-" + i + ".csv"));
+            }
+        }
+        commit(directory);
+        return directory;
+    }
+
+    private void writeOntology(Path file, String ontology, int index) throws IOException {
+        String ontologyIri = ONTOLOGY_IRI + index;
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(ontology.replace("<" + ONTOLOGY_IRI + ">", "<" + ontologyIri + ">"));
+            writer.newLine();
+            for (int i = 0; i < classesPerOntology; i++) {
+                writer.write(String.format("<%s/Class%d> rdf:type owl:Class ; rdfs:label \"Class %d\"@en ; rdfs:isDefinedBy <%s> .%n",
+                        ontologyIri, i, i, ontologyIri));
+            }
+        }
+    }
+
+    private void writeCsv(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("code_level_1,label_level_1");
+            writer.newLine();
+            for (int i = 0; i < csvRows; i++) {
+                writer.write(i + ",label " + i);
+                writer.newLine();
+            }
+        }
+    }
+
+    private static void commit(Path directory) throws IOException {
+        try (Git git = Git.init().setDirectory(directory.toFile()).call()) {
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("Synthetic agency repository").setAuthor("load-test", "load-test@localhost").call();
+        } catch (GitAPIException e) {
+            throw new IOException("Cannot commit the synthetic repository in " + directory, e);
+        }
+    }
+}
@@ -60,7 +60,7 @@ public class VocabularyDataServiceIntegrationTest {
         Map<String, String> kentRecord = Map.of("id", "kent", "name", "Kent Beck");
         CsvParser.CsvData data = new CsvParser.CsvData(List.of(kentRecord, martinRecord), "id");
 
-        vocabularyDataService.indexData(VOCABULARY_IDENTIFIER, data);
+        vocabularyDataService.switchToGeneration(vocabularyDataService.indexData(VOCABULARY_IDENTIFIER, data));
 
         forceIndexFlush();
 
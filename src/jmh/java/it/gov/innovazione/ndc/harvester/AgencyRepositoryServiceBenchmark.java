@@ -0,0 +1,89 @@
+package it.gov.innovazione.ndc.harvester;
+
+import it.gov.innovazione.ndc.harvester.scanners.ControlledVocabularyFolderScanner;
+import it.gov.innovazione.ndc.harvester.scanners.ControlledVocabularyFolderScannerProperties;
+import it.gov.innovazione.ndc.harvester.scanners.OntologyFolderScanner;
+import it.gov.innovazione.ndc.harvester.scanners.OntologyFolderScannerProperties;
+import it.gov.innovazione.ndc.harvester.scanners.SchemaFolderScanner;
+import it.gov.innovazione.ndc.harvester.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scanning of a synthetic agency repo for the paths of all the semantic asset types, as done at the start of a harvest.
+ * Each asset has a few versioned folders, plus folders to be skipped, as found in the agency repos.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AgencyRepositoryServiceBenchmark {
+    private static final List<String> VERSIONS = List.of("0.1", "0.2", "1.0", "latest");
+    private static final String TTL = "@prefix dct: <http://purl.org/dc/terms/> .\n";
+
+    @Param({"100", "1000"})
+    private int assetsPerType;
+
+    private final FileUtils fileUtils = new FileUtils();
+    private Path repo;
+
+    @Setup(Level.Trial)
+    public void createRepo() throws IOException {
+        repo = fileUtils.createTempDirectory("ndc-benchmark-");
+        for (int i = 0; i < assetsPerType; i++) {
+            for (String version : VERSIONS) {
+                Path ontology = Files.createDirectories(repo.resolve("assets/ontologies/onto-" + i + "/" + version));
+                Files.writeString(ontology.resolve("onto-" + i + ".ttl"), TTL);
+                Files.writeString(ontology.resolve("onto-" + i + "-aligns.ttl"), TTL);
+
+                Path vocabulary = Files.createDirectories(repo.resolve("assets/controlled-vocabularies/cv-" + i + "/" + version));
+                Files.writeString(vocabulary.resolve("cv-" + i + ".ttl"), TTL);
+                Files.writeString(vocabulary.resolve("cv-" + i + ".csv"), "code,label\n1,one\n");
+
+                Path schema = Files.createDirectories(repo.resolve("assets/schemas/schema-" + i + "/" + version));
+                Files.writeString(schema.resolve("index.ttl"), TTL);
+            }
+            Path skipped = Files.createDirectories(repo.resolve("assets/ontologies/onto-" + i + "/sparql"));
+            Files.writeString(skipped.resolve("query.ttl"), TTL);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void removeRepo() throws IOException {
+        fileUtils.removeDirectory(repo);
+    }
+
+    @Benchmark
+    public void scanAllAssetTypes(Blackhole blackhole) {
+        // a new service for each scan, as it keeps the scan of each cloned repo until the repo is removed
+        AgencyRepositoryService service = new AgencyRepositoryService(fileUtils, null,
+                new OntologyFolderScanner(fileUtils, OntologyFolderScannerProperties.forWords("aligns", "example")),
+                new ControlledVocabularyFolderScanner(fileUtils, ControlledVocabularyFolderScannerProperties.forWords()),
+                new SchemaFolderScanner(fileUtils),
+                new AgencyRepositoryServiceProperties(List.of("scriptR2RML", "sparql", "deprecated")));
+
+        blackhole.consume(service.getOntologyPaths(repo));
+        blackhole.consume(service.getControlledVocabularyPaths(repo));
+        blackhole.consume(service.getSchemaPaths(repo));
+    }
+}
@@ -0,0 +1,67 @@
+package it.gov.innovazione.ndc.harvester.csv;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading of a controlled vocabulary CSV fixture, with its records repeated to reach the size of larger vocabularies.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CsvParserBenchmark {
+    private static final String FIXTURE = "src/test/resources/testdata/VocabolariControllati/CVWithCSV/licences.csv";
+
+    @Param({"1", "200"})
+    private int copies;
+
+    private final CsvParser csvParser = new CsvParser(List.of(new DeepestLevelExtractor(), new FirstColumnExtractor()));
+    private Path csvFile;
+
+    @Setup(Level.Trial)
+    public void writeCsv() throws IOException {
+        List<String> lines = Files.readAllLines(Path.of(FIXTURE), StandardCharsets.UTF_8);
+        List<String> scaled = new ArrayList<>(lines.subList(0, 1));
+        for (int i = 0; i < copies; i++) {
+            scaled.addAll(lines.subList(1, lines.size()));
+        }
+        csvFile = Files.createTempFile("ndc-benchmark-", ".csv");
+        Files.write(csvFile, scaled, StandardCharsets.UTF_8);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCsv() throws IOException {
+        Files.deleteIfExists(csvFile);
+    }
+
+    @Benchmark
+    public void loadCsvDataFromFile(Blackhole blackhole) throws IOException {
+        try (CsvParser.CsvData csvData = csvParser.loadCsvDataFromFile(csvFile.toString())) {
+            blackhole.consume(csvData.getIdName());
+            csvData.getRecords().forEach(blackhole::consume);
+        }
+    }
+}
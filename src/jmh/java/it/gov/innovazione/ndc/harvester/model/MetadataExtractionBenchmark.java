@@ -0,0 +1,122 @@
+package it.gov.innovazione.ndc.harvester.model;
+
+import it.gov.innovazione.ndc.harvester.model.index.SemanticAssetMetadata;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extraction of the metadata of the test fixtures, reading the statements of the main resource from its property index
+ * or, as a baseline, from the graph on every lookup.
+ * Each invocation gets a copy of the parsed file, so that the models built on it do not pile up listeners.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MetadataExtractionBenchmark {
+    private static final String REPO_URL = "http://repo";
+
+    @Param({"CONTROLLED_VOCABULARY", "ONTOLOGY", "SCHEMA"})
+    private Fixture fixture;
+
+    @Param({"true", "false"})
+    private boolean indexed;
+
+    private Model parsed;
+    private Model rdfModel;
+
+    public enum Fixture {
+        CONTROLLED_VOCABULARY("src/test/resources/testdata/cv.ttl"),
+        ONTOLOGY("src/test/resources/testdata/onto.ttl"),
+        SCHEMA("src/test/resources/testdata/schema.ttl");
+
+        private final String ttlFile;
+
+        Fixture(String ttlFile) {
+            this.ttlFile = ttlFile;
+        }
+
+        public String getTtlFile() {
+            return ttlFile;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void parse() {
+        parsed = RDFDataMgr.loadModel(fixture.ttlFile, Lang.TURTLE);
+    }
+
+    @Setup(Level.Invocation)
+    public void copy() {
+        rdfModel = ModelFactory.createDefaultModel().add(parsed);
+    }
+
+    @Benchmark
+    public SemanticAssetMetadata extractMetadata() {
+        return newModel().extractMetadata();
+    }
+
+    @Benchmark
+    public SemanticAssetModelValidationContext extractAndValidateMetadata() {
+        BaseSemanticAssetModel model = newModel();
+        model.extractMetadata();
+        return model.validateMetadata();
+    }
+
+    private BaseSemanticAssetModel newModel() {
+        switch (fixture) {
+            case CONTROLLED_VOCABULARY:
+                return indexed
+                        ? new ControlledVocabularyModel(rdfModel, fixture.ttlFile, REPO_URL)
+                        : new ControlledVocabularyModel(rdfModel, fixture.ttlFile, REPO_URL) {
+                            @Override
+                            public Resource getMainResource() {
+                                return fromGraph(super.getMainResource());
+                            }
+                        };
+            case ONTOLOGY:
+                return indexed
+                        ? new OntologyModel(rdfModel, fixture.ttlFile, REPO_URL)
+                        : new OntologyModel(rdfModel, fixture.ttlFile, REPO_URL) {
+                            @Override
+                            public Resource getMainResource() {
+                                return fromGraph(super.getMainResource());
+                            }
+                        };
+            case SCHEMA:
+                return indexed
+                        ? new SchemaModel(rdfModel, fixture.ttlFile, REPO_URL)
+                        : new SchemaModel(rdfModel, fixture.ttlFile, REPO_URL) {
+                            @Override
+                            public Resource getMainResource() {
+                                return fromGraph(super.getMainResource());
+                            }
+                        };
+            default:
+                throw new IllegalArgumentException("Unknown fixture " + fixture);
+        }
+    }
+
+    private Resource fromGraph(Resource mainResource) {
+        return rdfModel.getResource(mainResource.getURI());
+    }
+}
@@ -0,0 +1,87 @@
+package it.gov.innovazione.ndc.harvester.model;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading of the test fixtures as semantic asset models, as done when harvesting, and validation of their metadata,
+ * as done by the validation endpoint.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SemanticAssetModelBenchmark {
+    private static final String REPO_URL = "http://repo";
+
+    @Param({"CONTROLLED_VOCABULARY", "ONTOLOGY", "SCHEMA"})
+    private MetadataExtractionBenchmark.Fixture fixture;
+
+    private final SemanticAssetModelFactory modelFactory = new SemanticAssetModelFactory();
+
+    /**
+     * The model validated by each invocation, a fresh copy of the parsed fixture; being a state of its own, it is not
+     * copied for the benchmarks which load the fixture themselves.
+     */
+    @State(Scope.Thread)
+    public static class ValidationInput {
+        private Model parsed;
+        private Model rdfModel;
+
+        @Setup(Level.Trial)
+        public void parse(SemanticAssetModelBenchmark benchmark) {
+            parsed = RDFDataMgr.loadModel(benchmark.fixture.getTtlFile(), Lang.TURTLE);
+        }
+
+        @Setup(Level.Invocation)
+        public void copy() {
+            rdfModel = ModelFactory.createDefaultModel().add(parsed);
+        }
+    }
+
+    @Benchmark
+    public SemanticAssetModel loadAndBuild() {
+        switch (fixture) {
+            case CONTROLLED_VOCABULARY:
+                return modelFactory.createControlledVocabulary(fixture.getTtlFile(), REPO_URL);
+            case ONTOLOGY:
+                return modelFactory.createOntology(fixture.getTtlFile(), REPO_URL);
+            case SCHEMA:
+                return modelFactory.createSchema(fixture.getTtlFile(), REPO_URL);
+            default:
+                throw new IllegalArgumentException("Unknown fixture " + fixture);
+        }
+    }
+
+    @Benchmark
+    public SemanticAssetModelValidationContext validateMetadata(ValidationInput input) {
+        switch (fixture) {
+            case CONTROLLED_VOCABULARY:
+                return ControlledVocabularyModel.forValidation(input.rdfModel, fixture.getTtlFile(), REPO_URL).validateMetadata();
+            case ONTOLOGY:
+                return OntologyModel.forValidation(input.rdfModel, fixture.getTtlFile(), REPO_URL).validateMetadata();
+            case SCHEMA:
+                return SchemaModel.forValidation(input.rdfModel, fixture.getTtlFile(), REPO_URL).validateMetadata();
+            default:
+                throw new IllegalArgumentException("Unknown fixture " + fixture);
+        }
+    }
+}
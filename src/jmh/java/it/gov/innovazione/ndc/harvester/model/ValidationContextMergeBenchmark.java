@@ -0,0 +1,63 @@
+package it.gov.innovazione.ndc.harvester.model;
+
+import it.gov.innovazione.ndc.harvester.model.exception.InvalidModelException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merging of the validation contexts of the metadata fields, as done by the validation of each semantic asset, with
+ * half of the outcomes repeated across the contexts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationContextMergeBenchmark {
+    private static final int FIELDS = 20;
+
+    @Param({"1", "10"})
+    private int outcomesPerField;
+
+    private List<SemanticAssetModelValidationContext> contexts;
+
+    @Setup(Level.Trial)
+    public void createContexts() {
+        contexts = new ArrayList<>();
+        for (int field = 0; field < FIELDS; field++) {
+            SemanticAssetModelValidationContext errors = SemanticAssetModelValidationContext.getForValidation()
+                    .withFieldName("field-" + field);
+            SemanticAssetModelValidationContext warnings = SemanticAssetModelValidationContext.getForValidation()
+                    .withFieldName("field-" + field)
+                    .withWarningValidationType();
+            for (int outcome = 0; outcome < outcomesPerField; outcome++) {
+                errors.addValidationException(new InvalidModelException("Error " + (field % 2) + "-" + outcome));
+                warnings.addValidationException(new InvalidModelException("Warning " + field + "-" + outcome));
+            }
+            contexts.add(errors);
+            contexts.add(warnings);
+        }
+    }
+
+    @Benchmark
+    public SemanticAssetModelValidationContext merge() {
+        return contexts.stream()
+                .reduce(SemanticAssetModelValidationContext::merge)
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,37 @@
+package it.gov.innovazione.ndc.harvester.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of version folder names and choice of the latest version, as done for each versioned semantic asset.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VersionBenchmark {
+    private final List<String> folderNames = List.of(
+            "0.1", "0.2", "0.4", "v0.5", "0.8", "1.0", "1.0.1", "v1.1", "1.2.3", "2.0", "latest", "examples", "old-stuff");
+
+    @Benchmark
+    public Optional<Version> latestVersion() {
+        return folderNames.stream()
+                .map(Version::of)
+                .flatMap(Optional::stream)
+                .max(Version::compareTo);
+    }
+}
@@ -1,6 +1,9 @@
 package it.gov.innovazione.ndc.config;
 
+import it.gov.innovazione.ndc.harvester.service.HarvesterMetrics;
+import it.gov.innovazione.ndc.harvester.service.RunningHarvest;
 import it.gov.innovazione.ndc.model.harvester.Repository;
+import it.gov.innovazione.ndc.repository.SemanticAssetMetadataBatch;
 import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Data;
@@ -18,4 +21,8 @@ public class HarvestExecutionContext {
     private final String runId;
     private final String currentUserId;
     private final String rootPath;
+    private final String graphName;
+    private final SemanticAssetMetadataBatch metadataBatch;
+    private final RunningHarvest runningHarvest;
+    private final HarvesterMetrics metrics;
 }
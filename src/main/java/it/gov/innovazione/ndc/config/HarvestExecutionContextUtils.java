@@ -1,7 +1,15 @@
 package it.gov.innovazione.ndc.config;
 
+import it.gov.innovazione.ndc.harvester.SemanticAssetType;
+import it.gov.innovazione.ndc.harvester.service.RunningHarvest;
+import it.gov.innovazione.ndc.model.harvester.HarvestStep;
+import it.gov.innovazione.ndc.model.harvester.Repository;
 import lombok.NoArgsConstructor;
 
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+
 @NoArgsConstructor(access = lombok.AccessLevel.PRIVATE)
 public class HarvestExecutionContextUtils {
 
@@ -14,4 +22,112 @@ public class HarvestExecutionContextUtils {
     public static void setContext(HarvestExecutionContext context) {
         CONTEXT_HOLDER.set(context);
     }
+
+    public static Optional<RunningHarvest> getRunningHarvest() {
+        return Optional.ofNullable(getContext())
+                .map(HarvestExecutionContext::getRunningHarvest);
+    }
+
+    /**
+     * Defers an action until the current run has succeeded; without a current run it is executed straight away.
+     */
+    public static void afterSuccess(Runnable action) {
+        getRunningHarvest().ifPresentOrElse(run -> run.afterSuccess(action), action);
+    }
+
+    /**
+     * Stops the current run, if any, when it was cancelled.
+     */
+    public static void checkNotCancelled() {
+        getRunningHarvest().ifPresent(RunningHarvest::checkNotCancelled);
+    }
+
+    /**
+     * Passes the last safe point of the current run, if any: it stops when cancelled, otherwise it goes on to the end.
+     *
+     * @see RunningHarvest#commit()
+     */
+    public static void commit() {
+        getRunningHarvest().ifPresent(RunningHarvest::commit);
+    }
+
+    /**
+     * Runs a piece of work within a phase of the current run, bounded by the timeout of the phase; without a current
+     * run it is simply executed.
+     */
+    public static <T, E extends Exception> T inPhase(RunningHarvest.Phase phase, RunningHarvest.PhaseCall<T, E> call) throws E {
+        Optional<RunningHarvest> run = getRunningHarvest();
+        if (run.isEmpty()) {
+            return call.call();
+        }
+        return run.get().inPhase(phase, call);
+    }
+
+    /**
+     * Runs a piece of work within a phase of the current run, measured as a step of the run as well.
+     *
+     * @see #inStep(HarvestStep, SemanticAssetType, RunningHarvest.PhaseCall)
+     */
+    public static <T, E extends Exception> T inPhase(RunningHarvest.Phase phase, HarvestStep step, SemanticAssetType assetType,
+                                                     RunningHarvest.PhaseCall<T, E> call) throws E {
+        return inStep(step, assetType, () -> inPhase(phase, call));
+    }
+
+    /**
+     * Runs a piece of work within a step of the current run, adding its time to the report of the run and to the
+     * metrics; without a current run it is simply executed.
+     *
+     * @param assetType the type of the assets the work is done for, none if done for the whole repository
+     */
+    public static <T, E extends Exception> T inStep(HarvestStep step, SemanticAssetType assetType, RunningHarvest.PhaseCall<T, E> call) throws E {
+        HarvestExecutionContext context = getContext();
+        if (Objects.isNull(context)) {
+            return call.call();
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = call.call();
+            failed = false;
+            return result;
+        } finally {
+            stepDone(context, step, assetType, System.nanoTime() - start, failed);
+        }
+    }
+
+    private static void stepDone(HarvestExecutionContext context, HarvestStep step, SemanticAssetType assetType, long nanos, boolean failed) {
+        Optional.ofNullable(context.getRunningHarvest()).ifPresent(run -> run.stepDone(step, assetType, nanos, failed));
+        Optional.ofNullable(context.getMetrics()).ifPresent(metrics -> metrics.recordStep(step, assetType, getRepoUrl(context), nanos, failed));
+    }
+
+    /**
+     * Counts the triples of a semantic asset loaded to Virtuoso by the current run; they are only counted within a run.
+     */
+    public static void triplesLoaded(SemanticAssetType assetType, LongSupplier triplesCounter) {
+        HarvestExecutionContext context = getContext();
+        if (Objects.isNull(context)) {
+            return;
+        }
+        long triples = triplesCounter.getAsLong();
+        Optional.ofNullable(context.getRunningHarvest()).ifPresent(run -> run.stepItems(HarvestStep.VIRTUOSO_LOAD, assetType, triples));
+        Optional.ofNullable(context.getMetrics()).ifPresent(metrics -> metrics.recordTriples(assetType, getRepoUrl(context), triples));
+    }
+
+    /**
+     * Counts the rows of a controlled vocabulary CSV indexed by the current run.
+     */
+    public static void csvRowsIndexed(long rows) {
+        HarvestExecutionContext context = getContext();
+        if (Objects.isNull(context)) {
+            return;
+        }
+        Optional.ofNullable(context.getRunningHarvest()).ifPresent(run -> run.stepItems(HarvestStep.CSV_INDEX, SemanticAssetType.CONTROLLED_VOCABULARY, rows));
+        Optional.ofNullable(context.getMetrics()).ifPresent(metrics -> metrics.recordCsvRows(getRepoUrl(context), rows));
+    }
+
+    private static String getRepoUrl(HarvestExecutionContext context) {
+        return Optional.ofNullable(context.getRepository())
+                .map(Repository::getUrl)
+                .orElse(null);
+    }
 }
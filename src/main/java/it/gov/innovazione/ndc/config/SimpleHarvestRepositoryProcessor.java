@@ -4,23 +4,21 @@ import it.gov.innovazione.ndc.eventhandler.NdcEventPublisher;
 import it.gov.innovazione.ndc.eventhandler.event.HarvesterFinishedEvent;
 import it.gov.innovazione.ndc.eventhandler.event.HarvesterStartedEvent;
 import it.gov.innovazione.ndc.harvester.HarvesterService;
+import it.gov.innovazione.ndc.harvester.exception.HarvestCancelledException;
+import it.gov.innovazione.ndc.harvester.service.HarvestRunRegistry;
+import it.gov.innovazione.ndc.harvester.service.HarvesterMetrics;
 import it.gov.innovazione.ndc.harvester.service.HarvesterRunService;
+import it.gov.innovazione.ndc.harvester.service.RunningHarvest;
 import it.gov.innovazione.ndc.model.harvester.HarvesterRun;
+import it.gov.innovazione.ndc.model.harvester.HarvesterRunReport;
 import it.gov.innovazione.ndc.model.harvester.Repository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.ThreadUtils;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
-
-import static it.gov.innovazione.ndc.config.AsyncConfiguration.THREAD_PREFIX;
-import static org.apache.commons.lang3.StringUtils.endsWith;
-import static org.apache.commons.lang3.StringUtils.startsWith;
+import java.util.Optional;
 
 @Slf4j
 @Service
@@ -31,50 +29,37 @@ public class SimpleHarvestRepositoryProcessor {
     private final HarvesterService harvesterService;
     private final HarvesterRunService harvesterRunService;
     private final NdcEventPublisher ndcEventPublisher;
-    private final List<String> locks = new ArrayList<>();
-
-    private boolean harvestingInProgress = false;
-
-    public static List<String> getAllRunningHarvestThreadNames() {
-        return ThreadUtils.getAllThreads().stream()
-                .map(Thread::getName)
-                .filter(name -> startsWith(name, THREAD_PREFIX))
-                .filter(name -> endsWith(name, "RUNNING"))
-                .collect(Collectors.toList());
-    }
+    private final HarvestRunRegistry harvestRunRegistry;
+    private final HarvesterMetrics harvesterMetrics;
 
     public boolean isHarvestingInProgress() {
-        return harvestingInProgress;
+        return harvestRunRegistry.hasRunningHarvests();
     }
 
-    private void setThreadName(String runId, String repoId, String revision, String status) {
-        Thread.currentThread().setName(THREAD_PREFIX + "|" + runId + "|" + repoId + "|" + revision + "|" + status);
-    }
-
-    @Async
+    /**
+     * Runs the harvest of a repository in the calling thread; runs are started by the
+     * {@link it.gov.innovazione.ndc.harvester.scheduler.HarvestScheduler}.
+     */
     public void execute(String runId, Repository repository, String correlationId, String revision, boolean force, String currentUserLogin) {
-        this.harvestingInProgress = true;
+        Optional<RunningHarvest> runningHarvest = Optional.empty();
         try {
-            setThreadName(runId, repository.getId(), revision, "RUNNING");
             publishHarvesterStartedEvent(repository, correlationId, revision, runId, currentUserLogin);
 
-            synchronized (locks) {
-                if (locks.contains(repository.getId() + revision)) {
-                    log.info("Harvesting for repo '{}' is already in progress", repository.getUrl());
-                    publishHarvesterFailedEvent(
-                            repository,
-                            correlationId,
-                            revision,
-                            runId,
-                            HarvesterRun.Status.ALREADY_RUNNING,
-                            new HarvesterAlreadyInProgress(
-                                    String.format("Harvesting for repo %s is already running",
-                                            repository.getUrl())),
-                            currentUserLogin);
-                    setThreadName(runId, repository.getId(), revision, "IDLE");
-                    return;
-                }
-                locks.add(repository.getId() + revision);
+            runningHarvest = harvestRunRegistry.register(runId, correlationId, repository, revision, currentUserLogin);
+            if (runningHarvest.isEmpty()) {
+                log.info("Harvesting for repo '{}' is already in progress", repository.getUrl());
+                publishHarvesterFailedEvent(
+                        repository,
+                        correlationId,
+                        revision,
+                        runId,
+                        HarvesterRun.Status.ALREADY_RUNNING,
+                        new HarvesterAlreadyInProgress(
+                                String.format("Harvesting for repo %s is already running",
+                                        repository.getUrl())),
+                        currentUserLogin,
+                        List.of());
+                return;
             }
 
             verifyHarvestingIsNotInProgress(runId, repository);
@@ -90,29 +75,45 @@ public class SimpleHarvestRepositoryProcessor {
                             .correlationId(correlationId)
                             .runId(runId)
                             .currentUserId(currentUserLogin)
+                            .runningHarvest(runningHarvest.get())
+                            .metrics(harvesterMetrics)
                             .build());
 
-            harvesterService.harvest(repository, revision);
+            try {
+                harvesterService.harvest(repository, revision);
+            } finally {
+                // the outcome of the run is published without being interrupted by a late cancellation
+                runningHarvest.get().finish();
+            }
+            runningHarvest.get().succeeded();
 
-            publishHarvesterSuccessfulEvent(repository, correlationId, revision, runId, currentUserLogin);
-            setThreadName(runId, repository.getId(), revision, "IDLE");
+            publishHarvesterSuccessfulEvent(repository, correlationId, revision, runId, currentUserLogin, stepReports(runningHarvest));
         } catch (HarvesterAlreadyExecuted e) {
-            publishHarvesterFailedEvent(repository, correlationId, revision, runId, HarvesterRun.Status.UNCHANGED, e, currentUserLogin);
+            publishHarvesterFailedEvent(repository, correlationId, revision, runId, HarvesterRun.Status.UNCHANGED, e, currentUserLogin, stepReports(runningHarvest));
         } catch (HarvesterAlreadyInProgress e) {
-            publishHarvesterFailedEvent(repository, correlationId, revision, runId, HarvesterRun.Status.ALREADY_RUNNING, e, currentUserLogin);
+            publishHarvesterFailedEvent(repository, correlationId, revision, runId, HarvesterRun.Status.ALREADY_RUNNING, e, currentUserLogin, stepReports(runningHarvest));
         } catch (Exception e) {
-            publishHarvesterFailedEvent(repository, correlationId, revision, runId, HarvesterRun.Status.FAILURE, e, currentUserLogin);
-            log.error("Unable to process {}", repository.getUrl(), e);
+            // whatever the failure of a cancelled run, it follows the cancellation, which is what is reported
+            Optional<HarvestCancelledException> cancellation = runningHarvest.flatMap(RunningHarvest::getCancellation);
+            if (cancellation.isPresent()) {
+                log.warn(cancellation.get().getMessage());
+                publishHarvesterFailedEvent(repository, correlationId, revision, runId, HarvesterRun.Status.CANCELLED, cancellation.get(), currentUserLogin, stepReports(runningHarvest));
+            } else {
+                publishHarvesterFailedEvent(repository, correlationId, revision, runId, HarvesterRun.Status.FAILURE, e, currentUserLogin, stepReports(runningHarvest));
+                log.error("Unable to process {}", repository.getUrl(), e);
+            }
+        } finally {
+            runningHarvest.ifPresent(run -> {
+                run.finish();
+                log.info("Harvest run {} of {} done: {} of {} path(s) processed, CSV indexing skipped for {}",
+                        runId, repository.getUrl(), run.getPathsDone(), run.getPathsTotal(), run.getCsvIndexingSkipped());
+                harvestRunRegistry.unregister(run);
+            });
         }
-        removeLock(repository, revision);
-        setThreadName(runId, repository.getId(), revision, "IDLE");
-        this.harvestingInProgress = false;
     }
 
-    private void removeLock(Repository repository, String revision) {
-        synchronized (locks) {
-            locks.remove(repository.getId() + revision);
-        }
+    private static List<HarvesterRunReport.StepReport> stepReports(Optional<RunningHarvest> runningHarvest) {
+        return runningHarvest.map(RunningHarvest::getStepReports).orElse(List.of());
     }
 
     private synchronized void verifySameRunWasNotExecuted(Repository repository, String revision) {
@@ -122,8 +123,9 @@ public class SimpleHarvestRepositoryProcessor {
         }
     }
 
-    private synchronized void verifyHarvestingIsNotInProgress(String runId, Repository repository) {
-        if (harvesterRunService.isHarvestingInProgress(runId, repository)) {
+    private void verifyHarvestingIsNotInProgress(String runId, Repository repository) {
+        // the registry knows the runs of this instance as soon as they start, the table those of the other instances
+        if (harvestRunRegistry.isRepositoryBeingHarvested(runId, repository) || harvesterRunService.isHarvestingInProgress(runId, repository)) {
             throw new HarvesterAlreadyInProgress(String.format("Harvesting for repo '%s' is already in progress", repository.getUrl()));
         }
     }
@@ -141,7 +143,8 @@ public class SimpleHarvestRepositoryProcessor {
                         .build());
     }
 
-    public void publishHarvesterSuccessfulEvent(Repository repository, String correlationId, String revision, String runId, String currentUserLogin) {
+    public void publishHarvesterSuccessfulEvent(Repository repository, String correlationId, String revision, String runId, String currentUserLogin,
+                                                List<HarvesterRunReport.StepReport> steps) {
         ndcEventPublisher.publishEvent(
                 "harvester",
                 "harvester.finished.success",
@@ -152,6 +155,7 @@ public class SimpleHarvestRepositoryProcessor {
                         .repository(repository)
                         .revision(revision)
                         .status(HarvesterRun.Status.SUCCESS)
+                        .steps(steps)
                         .build());
     }
 
@@ -161,7 +165,8 @@ public class SimpleHarvestRepositoryProcessor {
             String revision,
             String runId,
             HarvesterRun.Status status,
-            Exception e, String currentUserLogin) {
+            Exception e, String currentUserLogin,
+            List<HarvesterRunReport.StepReport> steps) {
         ndcEventPublisher.publishEvent(
                 "harvester",
                 "harvester.finished.failure",
@@ -173,6 +178,7 @@ public class SimpleHarvestRepositoryProcessor {
                         .revision(revision)
                         .status(status)
                         .exception(e)
+                        .steps(steps)
                         .build());
     }
 }
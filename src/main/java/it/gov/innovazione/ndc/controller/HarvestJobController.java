@@ -1,20 +1,26 @@
 package it.gov.innovazione.ndc.controller;
 
+import it.gov.innovazione.ndc.controller.exception.HarvesterRunNotFoundException;
 import it.gov.innovazione.ndc.harvester.HarvesterJob;
 import it.gov.innovazione.ndc.harvester.HarvesterService;
 import it.gov.innovazione.ndc.harvester.JobExecutionResponse;
+import it.gov.innovazione.ndc.harvester.service.HarvesterRunQuery;
 import it.gov.innovazione.ndc.harvester.service.HarvesterRunService;
 import it.gov.innovazione.ndc.model.harvester.HarvesterRun;
+import it.gov.innovazione.ndc.model.harvester.HarvesterRunReport;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -34,9 +40,33 @@ public class HarvestJobController {
         return harvesterJob.harvest(force);
     }
 
+    /**
+     * Lists the runs, most recent first; the next page is read passing the {@code startedAt} and {@code id} of the
+     * last run received as {@code startedBefore} and {@code beforeId}.
+     */
     @GetMapping("jobs/harvest/run")
-    public List<HarvesterRun> getAllRuns() {
-        return harvesterRunService.getAllRuns();
+    public List<HarvesterRun> getRuns(
+            @RequestParam(required = false) String repositoryId,
+            @RequestParam(required = false) HarvesterRun.Status status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant startedBefore,
+            @RequestParam(required = false) String beforeId,
+            @RequestParam(required = false, defaultValue = "" + HarvesterRunQuery.DEFAULT_LIMIT) Integer limit) {
+        return harvesterRunService.getRuns(HarvesterRunQuery.builder()
+                .repositoryId(repositoryId)
+                .status(status)
+                .startedBefore(startedBefore)
+                .beforeId(beforeId)
+                .limit(limit)
+                .build());
+    }
+
+    /**
+     * Returns where the time of a run went, step by step; the report of a run still running is the one so far.
+     */
+    @GetMapping("jobs/harvest/run/{runId}/report")
+    public HarvesterRunReport getRunReport(@PathVariable String runId) {
+        return harvesterRunService.getRunReport(runId)
+                .orElseThrow(() -> new HarvesterRunNotFoundException(runId));
     }
 
     @GetMapping("jobs/harvest/running")
@@ -49,6 +79,12 @@ public class HarvestJobController {
         harvesterRunService.deletePendingRuns();
     }
 
+    @DeleteMapping("jobs/harvest/run/{runId}")
+    public void cancelRun(@PathVariable String runId) {
+        log.info("Cancelling harvest run {}", runId);
+        harvesterJob.cancel(runId);
+    }
+
     @PostMapping(value = "jobs/harvest", params = "repositoryId")
     public JobExecutionResponse harvestRepositories(
             @RequestParam("repositoryId") String repositoryId,
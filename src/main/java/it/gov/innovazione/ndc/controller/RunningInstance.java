@@ -9,4 +9,8 @@ import lombok.Data;
 public class RunningInstance {
     private final String threadName;
     private final HarvesterRun harvesterRun;
+    private final int pathsDone;
+    private final int pathsTotal;
+    private final int csvIndexingSkipped;
+    private final boolean cancelled;
 }
@@ -0,0 +1,7 @@
+package it.gov.innovazione.ndc.controller.exception;
+
+public class HarvesterRunNotFoundException extends BaseNotFoundException {
+    public HarvesterRunNotFoundException(String runId) {
+        super("Harvester run not found for id : " + runId);
+    }
+}
@@ -0,0 +1,50 @@
+package it.gov.innovazione.ndc.eventhandler;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ConfigurationProperties("events.dispatch")
+public class NdcEventDispatchProperties {
+    /**
+     * Maximum number of events waiting in each queue of a handler.
+     */
+    @Builder.Default
+    private int queueCapacity = 1000;
+
+    /**
+     * Number of queues, each with its own thread, of each handler; the events with the same correlation id always go
+     * to the same queue, so that they are handled in the order they were published.
+     */
+    @Builder.Default
+    private int lanes = 2;
+
+    /**
+     * Maximum number of queued events passed at once to a handler.
+     */
+    @Builder.Default
+    private int maxBatchSize = 100;
+
+    /**
+     * How long the publisher waits for room in a full queue of a handler that does not drop events; past this time the
+     * event is dropped anyway, so that a stuck handler cannot stop the harvest.
+     */
+    @Builder.Default
+    private Duration blockTimeout = Duration.ofSeconds(5);
+
+    /**
+     * How long the events still queued at shutdown are given to be handled.
+     */
+    @Builder.Default
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+}
@@ -1,7 +1,55 @@
 package it.gov.innovazione.ndc.eventhandler;
 
+import java.util.List;
+
 public interface NdcEventHandler {
     boolean canHandle(NdcEventWrapper<?> event);
 
     void handle(NdcEventWrapper<?> event);
+
+    /**
+     * Handles the events queued for this handler, in the order they were published; handlers able to process several
+     * events at once override it. An event that fails does not keep the following ones from being handled: the first
+     * failure is thrown once all of them were handled, with the others suppressed in it.
+     */
+    default void handleAll(List<NdcEventWrapper<?>> events) {
+        RuntimeException failure = null;
+        for (NdcEventWrapper<?> event : events) {
+            try {
+                handle(event);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * What to do with an event when the queue of this handler is full, or whether the handler is not queued at all.
+     */
+    default OverflowPolicy getOverflowPolicy() {
+        return OverflowPolicy.BLOCK;
+    }
+
+    enum OverflowPolicy {
+        /**
+         * The publisher waits for room in the queue, up to the configured timeout.
+         */
+        BLOCK,
+        /**
+         * The event is dropped straight away.
+         */
+        DROP,
+        /**
+         * The event is not queued but handled by the publishing thread, so that it is never dropped and the events
+         * are handled in the order they were published, whatever their correlation id.
+         */
+        INLINE
+    }
 }
@@ -0,0 +1,155 @@
+package it.gov.innovazione.ndc.eventhandler;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The events waiting to be handled by a single handler, split in lanes by correlation id: each lane is drained in
+ * order by its own thread, in batches, so that a slow handler only delays its own events. The events of
+ * {@link NdcEventHandler.OverflowPolicy#INLINE inline} handlers are not queued: they have no lanes.
+ */
+@Slf4j
+class NdcEventHandlerQueue {
+    private static final long POLL_INTERVAL_MILLIS = 200;
+
+    private final NdcEventHandler handler;
+    private final String handlerName;
+    private final NdcEventDispatchProperties properties;
+    private final List<Lane> lanes;
+    private final Timer lagTimer;
+    private final Counter droppedCounter;
+    private volatile boolean stopping;
+
+    NdcEventHandlerQueue(NdcEventHandler handler, NdcEventDispatchProperties properties, MeterRegistry meterRegistry) {
+        this.handler = handler;
+        this.handlerName = handler.getClass().getSimpleName();
+        this.properties = properties;
+        int laneCount = handler.getOverflowPolicy() == NdcEventHandler.OverflowPolicy.INLINE ? 0 : Math.max(1, properties.getLanes());
+        this.lanes = IntStream.range(0, laneCount)
+                .mapToObj(Lane::new)
+                .collect(Collectors.toUnmodifiableList());
+        Gauge.builder("events.dispatch.queue.depth", this, NdcEventHandlerQueue::getQueueDepth)
+                .description("Events waiting to be handled")
+                .tag("handler", handlerName)
+                .register(meterRegistry);
+        this.lagTimer = Timer.builder("events.dispatch.lag")
+                .description("Time from the publication of an event to its handling")
+                .tag("handler", handlerName)
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("events.dispatch.dropped")
+                .description("Events dropped because the queue of the handler was full")
+                .tag("handler", handlerName)
+                .register(meterRegistry);
+        lanes.forEach(lane -> lane.thread.start());
+    }
+
+    boolean canHandle(NdcEventWrapper<?> event) {
+        return handler.canHandle(event);
+    }
+
+    /**
+     * Queues the event for the handler, waiting for room if the handler asks so, or handles it straight away if the
+     * handler is an inline one.
+     */
+    void enqueue(NdcEventWrapper<?> event) {
+        if (lanes.isEmpty()) {
+            handleBatch(List.of(event));
+            return;
+        }
+        BlockingQueue<NdcEventWrapper<?>> queue = lanes.get(Math.floorMod(Objects.hashCode(event.getCorrelationId()), lanes.size())).queue;
+        if (stopping || !(queue.offer(event) || waitForRoom(queue, event))) {
+            droppedCounter.increment();
+            log.error("Event {} of {} dropped, the queue of {} is full", event.getType(), event.getCorrelationId(), handlerName);
+        }
+    }
+
+    private boolean waitForRoom(BlockingQueue<NdcEventWrapper<?>> queue, NdcEventWrapper<?> event) {
+        if (handler.getOverflowPolicy() == NdcEventHandler.OverflowPolicy.DROP) {
+            return false;
+        }
+        try {
+            return queue.offer(event, properties.getBlockTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    int getQueueDepth() {
+        return lanes.stream().mapToInt(lane -> lane.queue.size()).sum();
+    }
+
+    /**
+     * Stops accepting events and gives the queued ones time to be handled until the deadline.
+     */
+    void shutdown(Instant deadline) {
+        stopping = true;
+        for (Lane lane : lanes) {
+            try {
+                lane.thread.join(Math.max(1, Duration.between(Instant.now(), deadline).toMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (lane.thread.isAlive()) {
+                log.warn("{} event(s) left unhandled by {}", lane.queue.size(), handlerName);
+                lane.thread.interrupt();
+            }
+        }
+    }
+
+    private void handleBatch(List<NdcEventWrapper<?>> batch) {
+        Instant now = Instant.now();
+        batch.stream()
+                .map(NdcEventWrapper::getTimestamp)
+                .filter(Objects::nonNull)
+                .forEach(publishedAt -> lagTimer.record(Duration.between(publishedAt, now)));
+        try {
+            handler.handleAll(batch);
+        } catch (Exception e) {
+            log.error("Error handling event", e);
+        }
+    }
+
+    private final class Lane implements Runnable {
+        private final BlockingQueue<NdcEventWrapper<?>> queue = new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity()));
+        private final Thread thread;
+
+        private Lane(int index) {
+            this.thread = new Thread(this, "ndc-events-" + handlerName + "-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            List<NdcEventWrapper<?>> batch = new ArrayList<>();
+            while (!stopping || !queue.isEmpty()) {
+                try {
+                    NdcEventWrapper<?> first = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (Objects.isNull(first)) {
+                        continue;
+                    }
+                    batch.add(first);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                queue.drainTo(batch, Math.max(1, properties.getMaxBatchSize()) - 1);
+                handleBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+}
@@ -1,31 +1,45 @@
 package it.gov.innovazione.ndc.eventhandler;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
+import java.time.Instant;
 import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
 
+/**
+ * Passes the published events to the handlers asynchronously: each handler drains its own bounded queues, so that the
+ * publishing thread, usually a harvesting one, does not wait for the handlers. Inline handlers, whose events must
+ * neither be lost nor reordered, are called by the publishing thread instead.
+ */
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class NdcEventListener {
-    private final Collection<NdcEventHandler> handlers;
+    private final NdcEventDispatchProperties properties;
+    private final List<NdcEventHandlerQueue> queues;
+
+    public NdcEventListener(Collection<NdcEventHandler> handlers, NdcEventDispatchProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.queues = handlers.stream()
+                .map(handler -> new NdcEventHandlerQueue(handler, properties, meterRegistry))
+                .collect(Collectors.toUnmodifiableList());
+    }
 
     @EventListener(NdcEventWrapper.class)
     public void handleNdcEvent(NdcEventWrapper<?> event) {
         log.info("Received event: {}", event);
-        handlers.stream()
-                .filter(handler -> handler.canHandle(event))
-                .forEach(handler -> handleSafely(() -> handler.handle(event)));
+        queues.stream()
+                .filter(queue -> queue.canHandle(event))
+                .forEach(queue -> queue.enqueue(event));
     }
 
-    private void handleSafely(Runnable handlerExecution) {
-        try {
-            handlerExecution.run();
-        } catch (Exception e) {
-            log.error("Error handling event", e);
-        }
+    @PreDestroy
+    public void shutdown() {
+        Instant deadline = Instant.now().plus(properties.getShutdownTimeout());
+        queues.forEach(queue -> queue.shutdown(deadline));
     }
 }
@@ -1,10 +1,13 @@
 package it.gov.innovazione.ndc.eventhandler.event;
 
 import it.gov.innovazione.ndc.model.harvester.HarvesterRun;
+import it.gov.innovazione.ndc.model.harvester.HarvesterRunReport;
 import it.gov.innovazione.ndc.model.harvester.Repository;
 import lombok.Builder;
 import lombok.Data;
 
+import java.util.List;
+
 @Builder
 @Data
 public class HarvesterFinishedEvent {
@@ -13,4 +16,5 @@ public class HarvesterFinishedEvent {
     private final String revision;
     private final HarvesterRun.Status status;
     private final Exception exception;
+    private final List<HarvesterRunReport.StepReport> steps;
 }
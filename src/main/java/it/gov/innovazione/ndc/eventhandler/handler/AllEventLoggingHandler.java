@@ -17,4 +17,10 @@ public class AllEventLoggingHandler implements NdcEventHandler {
     public void handle(NdcEventWrapper<?> event) {
         log.info("Received event: {}", event);
     }
+
+    @Override
+    public OverflowPolicy getOverflowPolicy() {
+        // losing a log line is better than slowing the harvest down
+        return OverflowPolicy.DROP;
+    }
 }
@@ -12,6 +12,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
@@ -30,6 +31,15 @@ public class HarvesterRunUpdatingHandler implements NdcEventHandler {
         return SUPPORTED_EVENTS.contains(event.getPayload().getClass());
     }
 
+    /**
+     * The run table tells which revision was harvested last, and the report of a run is kept with it, so its updates
+     * are written by the harvesting thread itself: none is dropped and each run sees those of the previous ones.
+     */
+    @Override
+    public OverflowPolicy getOverflowPolicy() {
+        return OverflowPolicy.INLINE;
+    }
+
     @Override
     public void handle(NdcEventWrapper<?> event) {
         if (event.getPayload() instanceof HarvesterStartedEvent) {
@@ -56,6 +66,8 @@ public class HarvesterRunUpdatingHandler implements NdcEventHandler {
         int saved = harvesterRunService.updateHarvesterRun(harvesterRun);
         if (saved != 1) {
             log.error("*** HarvesterRun not updated: {}", harvesterRun);
+        } else if (Objects.nonNull(event.getPayload().getSteps()) && !event.getPayload().getSteps().isEmpty()) {
+            harvesterRunService.saveRunReport(harvesterRun.getId(), event.getPayload().getSteps());
         }
     }
 
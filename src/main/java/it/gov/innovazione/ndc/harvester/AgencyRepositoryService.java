@@ -7,22 +7,29 @@ import it.gov.innovazione.ndc.harvester.scanners.ControlledVocabularyFolderScann
 import it.gov.innovazione.ndc.harvester.scanners.FolderScanner;
 import it.gov.innovazione.ndc.harvester.scanners.OntologyFolderScanner;
 import it.gov.innovazione.ndc.harvester.scanners.SchemaFolderScanner;
+import it.gov.innovazione.ndc.harvester.util.DirectoryNode;
 import it.gov.innovazione.ndc.harvester.util.FileUtils;
 import it.gov.innovazione.ndc.harvester.util.GitUtils;
 import it.gov.innovazione.ndc.harvester.util.PropertiesUtils;
 import it.gov.innovazione.ndc.harvester.util.Version;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static java.util.function.Predicate.not;
 
@@ -31,12 +38,14 @@ import static java.util.function.Predicate.not;
 public class AgencyRepositoryService {
     public static final String TEMP_DIR_PREFIX = "ndc-";
     public static final int MIN_SKIP_WORD_LENGTH = 3;
+    private static final String CSV_FILE_EXTENSION = ".csv";
     private final FileUtils fileUtils;
     private final GitUtils gitUtils;
     private final OntologyFolderScanner ontologyFolderScanner;
     private final ControlledVocabularyFolderScanner controlledVocabularyFolderScanner;
     private final SchemaFolderScanner schemaFolderScanner;
     private final List<String> lowerSkipWords;
+    private final Map<Path, CompletableFuture<Map<SemanticAssetType, DirectoryNode>>> assetFolderScans = new ConcurrentHashMap<>();
 
     public AgencyRepositoryService(FileUtils fileUtils,
                                    GitUtils gitUtils,
@@ -59,7 +68,7 @@ public class AgencyRepositoryService {
     public Path cloneRepo(String repoUrl, String revision) throws IOException {
         Path cloneDir = fileUtils.createTempDirectory(TEMP_DIR_PREFIX);
         log.info("Cloning repo {} @ revision {}, at location {}", repoUrl, revision, cloneDir);
-        gitUtils.cloneRepo(repoUrl, cloneDir.toFile(), revision);
+        gitUtils.cloneRepo(repoUrl, cloneDir.toFile(), revision, this::isHarvestedFile);
         return cloneDir;
     }
 
@@ -72,6 +81,8 @@ public class AgencyRepositoryService {
     }
 
     public void removeClonedRepo(Path repoPath) throws IOException {
+        assetFolderScans.remove(repoPath);
+        gitUtils.releaseClone(repoPath.toFile());
         fileUtils.removeDirectory(repoPath);
     }
 
@@ -80,66 +91,111 @@ public class AgencyRepositoryService {
     }
 
     private <P extends SemanticAssetPath> List<P> findPaths(Path clonedRepo, SemanticAssetType type, FolderScanner<P> scanner) {
+        return Optional.ofNullable(getAssetFolders(clonedRepo).get(type))
+                .map(assetRoot -> createSemanticAssetPaths(assetRoot, scanner, type.isIgnoringObsoleteVersions()))
+                .orElse(List.of());
+    }
+
+    /**
+     * Scans the asset folders of all the semantic asset types at once, the first time the paths of any type are asked
+     * for, so that each cloned repo is walked only once.
+     */
+    private Map<SemanticAssetType, DirectoryNode> getAssetFolders(Path clonedRepo) {
+        CompletableFuture<Map<SemanticAssetType, DirectoryNode>> scan = new CompletableFuture<>();
+        CompletableFuture<Map<SemanticAssetType, DirectoryNode>> existingScan = assetFolderScans.putIfAbsent(clonedRepo, scan);
+        if (Objects.nonNull(existingScan)) {
+            return existingScan.join();
+        }
+        try {
+            scan.complete(scanAssetFolders(clonedRepo));
+        } catch (RuntimeException e) {
+            assetFolderScans.remove(clonedRepo, scan);
+            scan.completeExceptionally(e);
+            throw e;
+        }
+        return scan.join();
+    }
+
+    private Map<SemanticAssetType, DirectoryNode> scanAssetFolders(Path clonedRepo) {
+        Map<SemanticAssetType, DirectoryNode> assetFolders = new ConcurrentHashMap<>();
+        Arrays.stream(SemanticAssetType.values())
+                .parallel()
+                .forEach(type -> findAssetRootPath(clonedRepo, type)
+                        .map(assetRootPath -> fileUtils.scanDirectoryTree(assetRootPath, this::isSkippedDirectoryName))
+                        .ifPresent(assetRoot -> assetFolders.put(type, assetRoot)));
+        return Map.copyOf(assetFolders);
+    }
+
+    private Optional<Path> findAssetRootPath(Path clonedRepo, SemanticAssetType type) {
         Path assetRootPath = Path.of(clonedRepo.toString(), type.getFolderName());
         if (!fileUtils.folderExists(assetRootPath)) {
             log.warn("No {} folder found in {}", type.getDescription(), clonedRepo);
 
-            assetRootPath = Path.of(clonedRepo.toString(), type.getLegacyFolderName()); 
+            assetRootPath = Path.of(clonedRepo.toString(), type.getLegacyFolderName());
             if (!fileUtils.folderExists(assetRootPath)) {
-                return List.of();
+                return Optional.empty();
             }
         }
+        return Optional.of(assetRootPath);
+    }
+
+    /**
+     * Tells, from its path relative to the repo root, whether a file can be part of a semantic asset: TTL and CSV
+     * files in the asset folders, outside directories containing skip words.
+     */
+    private boolean isHarvestedFile(String repoRelativePath) {
+        String lowerPath = repoRelativePath.toLowerCase(Locale.ROOT);
+        if (!lowerPath.endsWith(FolderScanner.TURTLE_FILE_EXTENSION) && !lowerPath.endsWith(CSV_FILE_EXTENSION)) {
+            return false;
+        }
 
-        return createSemanticAssetPaths(assetRootPath, scanner, type.isIgnoringObsoleteVersions());
+        return Arrays.stream(SemanticAssetType.values())
+                .flatMap(type -> Stream.of(type.getFolderName(), type.getLegacyFolderName()))
+                .filter(assetFolder -> repoRelativePath.startsWith(assetFolder + "/"))
+                .map(assetFolder -> lowerPath.substring(assetFolder.length() + 1).split("/"))
+                .anyMatch(segments -> Arrays.stream(segments, 0, segments.length - 1)
+                        .noneMatch(directoryName -> this.lowerSkipWords.stream().anyMatch(directoryName::contains)));
     }
 
-    private boolean isDirectoryToBeSkipped(Path path) {
-        String directoryName = fileUtils.getLowerCaseFileName(path);
-        return fileUtils.isDirectory(path) && this.lowerSkipWords.stream().anyMatch(directoryName::contains);
+    private boolean isSkippedDirectoryName(String lowerCaseDirectoryName) {
+        return this.lowerSkipWords.stream().anyMatch(lowerCaseDirectoryName::contains);
     }
 
-    @SneakyThrows
-    private <P extends SemanticAssetPath> List<P> createSemanticAssetPaths(Path path, FolderScanner<P> scanner, boolean ignoreObsoleteVersions) {
-        List<Path> dirContents = fileUtils.listContents(path).stream()
-                .filter(c -> !isDirectoryToBeSkipped(c))
-                .collect(Collectors.toList());
-        boolean hasSubDir = dirContents.stream().anyMatch(fileUtils::isDirectory);
-        if (!hasSubDir) {
-            return tryScanDir(path, scanner);
+    private <P extends SemanticAssetPath> List<P> createSemanticAssetPaths(DirectoryNode directory, FolderScanner<P> scanner, boolean ignoreObsoleteVersions) {
+        if (directory.isLeaf()) {
+            return tryScanDir(directory, scanner);
         }
 
         Predicate<Path> isObsoleteVersion = p -> false;
         if (ignoreObsoleteVersions) {
-            Optional<Version> maybeLatestVersion = getLatestVersion(dirContents);
+            Optional<Version> maybeLatestVersion = getLatestVersion(directory);
 
             if (maybeLatestVersion.isPresent()) {
                 isObsoleteVersion = isObsoleteVersionPredicate(maybeLatestVersion.get().getSourceString());
             }
         }
 
-        return dirContents.stream()
-                // consider folders for recursion
-                .filter(fileUtils::isDirectory)
+        Predicate<Path> isNotObsoleteVersion = not(isObsoleteVersion);
+        return directory.getDirectories().stream()
                 // only consider folders which are not obsolete
-                .filter(not(isObsoleteVersion))
+                .filter(subDir -> isNotObsoleteVersion.test(subDir.getPath()))
                 // recurse and flatten
                 .flatMap(subDir -> createSemanticAssetPaths(subDir, scanner, ignoreObsoleteVersions).stream())
                 // then collect
                 .collect(Collectors.toList());
     }
 
-    private <P extends SemanticAssetPath> List<P> tryScanDir(Path dir, FolderScanner<P> scanner) throws IOException {
+    private <P extends SemanticAssetPath> List<P> tryScanDir(DirectoryNode dir, FolderScanner<P> scanner) {
         try {
-            return scanner.scanFolder(dir);
+            return scanner.scanFolder(dir.getPath(), dir.getFiles());
         } catch (InvalidAssetFolderException e) {
-            log.warn("Invalid folder {}; skipping", dir, e);
+            log.warn("Invalid folder {}; skipping", dir.getPath(), e);
             return Collections.emptyList();
         }
     }
 
-    private Optional<Version> getLatestVersion(List<Path> dirContents) {
-        return dirContents.stream()
-                .map(p -> p.getFileName().toString())
+    private Optional<Version> getLatestVersion(DirectoryNode directory) {
+        return directory.getEntryNames()
                 .flatMap(s -> Version.of(s).stream())
                 .max(Comparator.naturalOrder());
     }
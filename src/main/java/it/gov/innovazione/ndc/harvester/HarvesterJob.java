@@ -1,6 +1,9 @@
 package it.gov.innovazione.ndc.harvester;
 
 import it.gov.innovazione.ndc.config.SimpleHarvestRepositoryProcessor;
+import it.gov.innovazione.ndc.harvester.scheduler.HarvestScheduler;
+import it.gov.innovazione.ndc.harvester.scheduler.HarvestTask;
+import it.gov.innovazione.ndc.harvester.service.HarvestRunRegistry;
 import it.gov.innovazione.ndc.harvester.service.RepositoryService;
 import it.gov.innovazione.ndc.harvester.util.GitUtils;
 import it.gov.innovazione.ndc.model.harvester.Repository;
@@ -25,6 +28,8 @@ public class HarvesterJob {
     private final RepositoryService repositoryService;
     private final SimpleHarvestRepositoryProcessor simpleHarvestRepositoryProcessor;
     private final GitUtils gitUtils;
+    private final HarvestScheduler harvestScheduler;
+    private final HarvestRunRegistry harvestRunRegistry;
 
     public List<JobExecutionResponse> harvest(Boolean force) {
         List<Repository> allRepos = repositoryService.getAllRepos();
@@ -34,9 +39,11 @@ public class HarvesterJob {
     public List<JobExecutionResponse> harvest(List<Repository> repositories, Boolean force) {
         String correlationId = UUID.randomUUID().toString();
         List<JobExecutionResponse> responses = new ArrayList<>();
+        List<HarvestTask> tasks = new ArrayList<>();
         for (Repository repository : repositories) {
-            responses.add(harvest(repository, correlationId, force));
+            responses.add(harvest(repository, correlationId, null, force, HarvestTask.Priority.BULK, tasks));
         }
+        harvestScheduler.submit(tasks);
         return responses;
     }
 
@@ -48,19 +55,18 @@ public class HarvesterJob {
         return harvest(false);
     }
 
-    private JobExecutionResponse harvest(Repository repository, String correlationId, boolean force) {
-        return harvest(repository, correlationId, null, force);
-    }
-
     public JobExecutionResponse harvest(String repositoryId, String revision, Boolean force) {
         Repository repository = repositoryService.findRepoById(repositoryId)
                 .orElseThrow(() -> new HarvestJobException(String.format("Repository %s not found", repositoryId)));
         String correlationId = UUID.randomUUID().toString();
-        return harvest(repository, correlationId, revision, force);
+        List<HarvestTask> tasks = new ArrayList<>();
+        JobExecutionResponse response = harvest(repository, correlationId, revision, force, HarvestTask.Priority.MANUAL, tasks);
+        harvestScheduler.submit(tasks);
+        return response;
     }
 
-
-    private JobExecutionResponse harvest(Repository repository, String correlationId, String revision, boolean force) {
+    private JobExecutionResponse harvest(Repository repository, String correlationId, String revision, boolean force,
+                                         HarvestTask.Priority priority, List<HarvestTask> tasks) {
 
         String runId = UUID.randomUUID().toString();
 
@@ -72,16 +78,31 @@ public class HarvesterJob {
                 .startedAt(Instant.now().toString())
                 .forced(force);
 
-        revision = Optional.ofNullable(revision)
+        String resolvedRevision = Optional.ofNullable(revision)
                 .filter(StringUtils::isNotBlank)
                 .orElseGet(() -> gitUtils.getHeadRemoteRevision(repository.getUrl()));
+        String currentUserLogin = SecurityUtils.getCurrentUserLogin();
+        tasks.add(HarvestTask.builder()
+                .runId(runId)
+                .repository(repository)
+                .priority(priority)
+                .action(() -> simpleHarvestRepositoryProcessor.execute(runId, repository, correlationId, resolvedRevision, force, currentUserLogin))
+                .build());
 
-        simpleHarvestRepositoryProcessor.execute(runId, repository, correlationId, revision, force, SecurityUtils.getCurrentUserLogin());
-
-        log.info("Harvest job started at " + LocalDateTime.now());
+        log.info("Harvest job queued at " + LocalDateTime.now());
 
         return responseBuilder.build();
 
     }
 
+    /**
+     * Cancels a run: a queued run is never started, a running one stops at its next safe point, leaving the data of
+     * the repository as they were before the run.
+     */
+    public void cancel(String runId) {
+        if (harvestScheduler.cancel(runId) || harvestRunRegistry.cancel(runId)) {
+            return;
+        }
+        throw new HarvestJobException(String.format("Harvest run %s is neither queued nor running", runId));
+    }
 }
@@ -2,26 +2,40 @@ package it.gov.innovazione.ndc.harvester;
 
 import it.gov.innovazione.ndc.config.HarvestExecutionContext;
 import it.gov.innovazione.ndc.config.HarvestExecutionContextUtils;
+import it.gov.innovazione.ndc.harvester.service.ConfigService;
+import it.gov.innovazione.ndc.harvester.service.RunningHarvest;
+import it.gov.innovazione.ndc.model.harvester.HarvestStep;
 import it.gov.innovazione.ndc.model.harvester.Repository;
+import it.gov.innovazione.ndc.repository.SemanticAssetMetadataBatch;
 import it.gov.innovazione.ndc.repository.SemanticAssetMetadataRepository;
 import it.gov.innovazione.ndc.repository.TripleStoreRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static it.gov.innovazione.ndc.harvester.service.ActualConfigService.ConfigKey.METADATA_BULK_INDEXING_CHUNK_SIZE;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class HarvesterService {
+    private static final String LATEST_REVISION = "HEAD";
+    private static final long DEFAULT_METADATA_CHUNK_SIZE = 500L;
+
     private final AgencyRepositoryService agencyRepositoryService;
     private final List<SemanticAssetHarvester> semanticAssetHarvesters;
     private final TripleStoreRepository tripleStoreRepository;
     private final SemanticAssetMetadataRepository semanticAssetMetadataRepository;
+    private final ConfigService configService;
 
     public void harvest(Repository repository) throws IOException {
         harvest(repository, null);
@@ -36,8 +50,8 @@ public class HarvesterService {
             Path path = cloneRepoToTempPath(repoUrl, revision);
 
             try {
-                updateContextWithRootPath(path);
-                harvestClonedRepo(normalisedRepo, path);
+                updateContextForRun(path);
+                harvestClonedRepo(normalisedRepo, path, revision);
             } finally {
                 agencyRepositoryService.removeClonedRepo(path);
             }
@@ -48,11 +62,38 @@ public class HarvesterService {
         }
     }
 
-    private static void updateContextWithRootPath(Path path) {
+    private void updateContextForRun(Path path) {
         HarvestExecutionContext context = HarvestExecutionContextUtils.getContext();
         if (Objects.nonNull(context)) {
-            HarvestExecutionContextUtils.setContext(context.withRootPath(path.toString()));
+            // path processors collect the metadata in the batch, flushed once the assets have been harvested
+            String harvestRunId = Objects.requireNonNullElseGet(context.getRunId(), () -> UUID.randomUUID().toString());
+            SemanticAssetMetadataBatch metadataBatch = new SemanticAssetMetadataBatch(semanticAssetMetadataRepository, getMetadataChunkSize(), harvestRunId);
+            HarvestExecutionContextUtils.setContext(context
+                    .withRootPath(path.toString())
+                    .withMetadataBatch(metadataBatch));
+        }
+    }
+
+    private int getMetadataChunkSize() {
+        Long chunkSize = configService.getParsedOrGetDefault(METADATA_BULK_INDEXING_CHUNK_SIZE, () -> DEFAULT_METADATA_CHUNK_SIZE);
+        return (int) Math.min(Integer.MAX_VALUE, Objects.requireNonNullElse(chunkSize, DEFAULT_METADATA_CHUNK_SIZE));
+    }
+
+    /**
+     * Indexes the metadata collected during the run, overwriting the documents of the same assets, then deletes the
+     * documents of the assets no longer in the repo, so that searches find the assets of the repo all along.
+     */
+    private void replaceIndexedMetadata(String repoUrl, SemanticAssetMetadataBatch metadataBatch) {
+        if (Objects.isNull(metadataBatch)) {
+            cleanUpIndexedMetadata(repoUrl);
+            return;
+        }
+        Map<String, String> failedDocuments = metadataBatch.flush();
+        if (!failedDocuments.isEmpty()) {
+            log.warn("Metadata of {} asset(s) of repo {} could not be indexed: {}", failedDocuments.size(), repoUrl, failedDocuments.keySet());
         }
+        long deletedCount = semanticAssetMetadataRepository.deleteStaleByRepoUrl(repoUrl, metadataBatch.getHarvestRunId());
+        log.debug("Deleted {} stale indexed metadata for {}", deletedCount, repoUrl);
     }
 
     public void clear(String repoUrl) {
@@ -72,14 +113,84 @@ public class HarvesterService {
         return repoUrl.replace(".git", "");
     }
 
-    private void harvestClonedRepo(Repository repository, Path path) {
-        clearRepo(repository.getUrl());
-
-        harvestSemanticAssets(repository, path);
+    private void harvestClonedRepo(Repository repository, Path path, String revision) {
+        HarvestExecutionContext context = HarvestExecutionContextUtils.getContext();
+        if (Objects.isNull(context)) {
+            // without a context path processors cannot be pointed to a staging graph
+            clearRepo(repository.getUrl());
+            harvestSemanticAssets(repository, path);
+        } else {
+            harvestIntoStagingGraph(repository, path, revision, context);
+        }
 
         log.info("Repo {} processed", repository);
     }
 
+    private void harvestIntoStagingGraph(Repository repository, Path path, String revision, HarvestExecutionContext context) {
+        String repoUrl = repository.getUrl();
+        String stagingGraphName = getStagingGraphName(repoUrl, revision);
+
+        List<SemanticAssetHarvester.Replacement> replacements = semanticAssetHarvesters.stream()
+                .map(h -> h.prepareReplacement(repoUrl))
+                .collect(Collectors.toList());
+        // a failed run may have left its staging graph behind
+        cleanUpTripleStore(stagingGraphName);
+        tripleStoreRepository.hideStagingGraph(stagingGraphName);
+
+        HarvestExecutionContextUtils.setContext(context.withGraphName(stagingGraphName));
+        try {
+            harvestSemanticAssets(repository, path);
+
+            // last safe point: until here a cancelled run leaves the indexed metadata and the live graph untouched,
+            // from here on neither a cancellation nor a timeout stops it halfway through replacing them
+            HarvestExecutionContextUtils.commit();
+            HarvestExecutionContextUtils.inPhase(RunningHarvest.Phase.INDEX, HarvestStep.ES_INDEX, null, () -> {
+                replaceIndexedMetadata(repoUrl, context.getMetadataBatch());
+                return null;
+            });
+
+            log.debug("Swapping staging graph {} in for {}", stagingGraphName, repoUrl);
+            HarvestExecutionContextUtils.inPhase(RunningHarvest.Phase.STORE, HarvestStep.VIRTUOSO_LOAD, null, () -> {
+                tripleStoreRepository.replaceNamedGraph(stagingGraphName, repoUrl);
+                return null;
+            });
+            tripleStoreRepository.releaseStagingGraph(stagingGraphName);
+            replacements.forEach(SemanticAssetHarvester.Replacement::complete);
+        } catch (RuntimeException e) {
+            log.error("Harvest of {} failed, dropping staging graph {}", repoUrl, stagingGraphName);
+            dropStagingGraphQuietly(stagingGraphName);
+            replacements.forEach(HarvesterService::discardQuietly);
+            throw e;
+        } finally {
+            HarvestExecutionContextUtils.setContext(context);
+        }
+    }
+
+    private static void discardQuietly(SemanticAssetHarvester.Replacement replacement) {
+        try {
+            replacement.discard();
+        } catch (RuntimeException e) {
+            log.warn("Could not discard data written aside by failed harvest", e);
+        }
+    }
+
+    private void dropStagingGraphQuietly(String stagingGraphName) {
+        if (Thread.interrupted()) {
+            // the run was cancelled: the interruption is cleared, or the triple store could not be reached
+            log.debug("Harvest interrupted, dropping staging graph {} anyway", stagingGraphName);
+        }
+        try {
+            cleanUpTripleStore(stagingGraphName);
+        } catch (RuntimeException e) {
+            log.warn("Could not drop staging graph {}", stagingGraphName, e);
+        }
+        tripleStoreRepository.releaseStagingGraph(stagingGraphName);
+    }
+
+    static String getStagingGraphName(String repoUrl, String revision) {
+        return repoUrl + "#rev-" + (StringUtils.isNotBlank(revision) ? revision : LATEST_REVISION);
+    }
+
     private void clearRepo(String repoUrl) {
         cleanUpWithHarvesters(repoUrl);
         cleanUpTripleStore(repoUrl);
@@ -105,7 +216,7 @@ public class HarvesterService {
     }
 
     private Path cloneRepoToTempPath(String repoUrl, String revision) throws IOException {
-        Path path = agencyRepositoryService.cloneRepo(repoUrl, revision);
+        Path path = HarvestExecutionContextUtils.inPhase(RunningHarvest.Phase.CLONE, HarvestStep.CLONE, null, () -> agencyRepositoryService.cloneRepo(repoUrl, revision));
         log.debug("Repo {} cloned to temp folder {}", repoUrl, path);
         return path;
     }
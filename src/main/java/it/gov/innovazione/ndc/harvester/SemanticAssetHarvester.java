@@ -9,5 +9,32 @@ public interface SemanticAssetHarvester {
 
     void cleanUpBeforeHarvesting(String repoUrl);
 
+    /**
+     * Prepares a full harvest whose data replaces the existing one only once loaded, rather than being cleaned up
+     * before harvesting.
+     *
+     * @return what to do with the data written aside by the harvest once it succeeded or failed
+     */
+    Replacement prepareReplacement(String repoUrl);
+
     void harvest(Repository repository, Path rootPath);
+
+    /**
+     * Data of a harvest written aside from the live ones, which they replace only once the whole harvest succeeded.
+     */
+    @FunctionalInterface
+    interface Replacement {
+        /**
+         * Runs once the harvest succeeded and its graph was swapped in: makes the data written aside live, and removes
+         * the data the harvest did not replace.
+         */
+        void complete();
+
+        /**
+         * Runs when the harvest failed, discarding the data written aside.
+         */
+        default void discard() {
+            // by default nothing is written aside
+        }
+    }
 }
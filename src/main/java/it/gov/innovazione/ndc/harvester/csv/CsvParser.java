@@ -9,12 +9,17 @@ import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
 import org.springframework.stereotype.Component;
 
+import java.io.Closeable;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
@@ -23,50 +28,111 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 public class CsvParser {
     private final List<HeadersToIdNameExtractor> nameExtractors;
 
+    /**
+     * Records of a CSV file, read lazily from the file while being iterated: they can be iterated only once, and the
+     * data must be closed once done.
+     */
     @RequiredArgsConstructor
     @Getter
-    @EqualsAndHashCode
-    @ToString
-    public static class CsvData {
-        private final List<Map<String, String>> records;
+    @EqualsAndHashCode(exclude = "source")
+    @ToString(exclude = "source")
+    public static class CsvData implements Closeable {
+        private final Iterable<Map<String, String>> records;
         private final String idName;
-    }
+        private final Closeable source;
 
+        public CsvData(Iterable<Map<String, String>> records, String idName) {
+            this(records, idName, () -> { });
+        }
 
-    public CsvData loadCsvDataFromFile(String csvFile) {
-        try (FileReader csvReader = new FileReader(csvFile, UTF_8)) {
-            return tryParseCsv(csvReader, csvFile);
+        public Stream<Map<String, String>> stream() {
+            return StreamSupport.stream(records.spliterator(), false);
+        }
 
-        } catch (IOException e) {
-            throw new InvalidCsvException(String.format("Cannot parse CSV file '%s'", csvFile), e);
+        @Override
+        public void close() throws IOException {
+            source.close();
         }
     }
 
-    private CsvData tryParseCsv(FileReader csvReader, String csvFile) throws IOException {
-        try (CSVParser parser = parseReader(csvReader)) {
+    /**
+     * Reads the headers of the CSV file, leaving the records to be read while iterating on the returned data, which
+     * keeps the file open until closed.
+     */
+    public CsvData loadCsvDataFromFile(String csvFile) {
+        CSVParser parser = null;
+        try {
+            parser = parseReader(new FileReader(csvFile, UTF_8));
             return buildCsvDataFromParser(parser, csvFile);
+        } catch (IOException e) {
+            closeQuietly(parser);
+            throw new InvalidCsvException(String.format("Cannot parse CSV file '%s'", csvFile), e);
+        } catch (RuntimeException e) {
+            closeQuietly(parser);
+            throw e;
         }
     }
 
     private CsvData buildCsvDataFromParser(CSVParser parser, String csvFile) {
         String idName = getIdName(parser, csvFile);
-        List<Map<String, String>> records = readRecords(parser);
+        CsvRow.Header header = CsvRow.Header.of(parser.getHeaderMap());
+        Iterable<Map<String, String>> records = () -> readRecords(parser, header, csvFile);
 
-        return new CsvData(records, idName);
+        return new CsvData(records, idName, parser);
     }
 
     private CSVParser parseReader(FileReader csvReader) throws IOException {
-        return Objects.requireNonNull(CSVFormat.DEFAULT.builder()
-                .setHeader()
-                .setSkipHeaderRecord(true)
-                .build()
-                .parse(csvReader));
+        try {
+            return Objects.requireNonNull(CSVFormat.DEFAULT.builder()
+                    .setHeader()
+                    .setSkipHeaderRecord(true)
+                    .build()
+                    .parse(csvReader));
+        } catch (IOException | RuntimeException e) {
+            csvReader.close();
+            throw e;
+        }
     }
 
-    private List<Map<String, String>> readRecords(CSVParser parser) {
-        return parser.stream()
-                .map(CSVRecord::toMap)
-                .collect(Collectors.toList());
+    private Iterator<Map<String, String>> readRecords(CSVParser parser, CsvRow.Header header, String csvFile) {
+        Iterator<CSVRecord> csvRecords = parser.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    return csvRecords.hasNext();
+                } catch (UncheckedIOException | IllegalStateException e) {
+                    throw new InvalidCsvException(String.format("Cannot parse CSV file '%s'", csvFile), e);
+                }
+            }
+
+            @Override
+            public Map<String, String> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return toRow(header, csvRecords.next());
+            }
+        };
+    }
+
+    private static CsvRow toRow(CsvRow.Header header, CSVRecord csvRecord) {
+        String[] values = new String[csvRecord.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = csvRecord.get(i);
+        }
+        return header.row(values);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // nothing more to do on a file which could not be parsed anyway
+        }
     }
 
     private String getIdName(CSVParser parser, String csvFile) {
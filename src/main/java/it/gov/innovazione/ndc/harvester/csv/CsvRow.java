@@ -0,0 +1,118 @@
+package it.gov.innovazione.ndc.harvester.csv;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read-only CSV record backed by the array of its values. The header names and their columns are shared by all the
+ * records of a file, instead of being repeated in a map per record.
+ */
+public final class CsvRow extends AbstractMap<String, String> {
+    private final Header header;
+    private final String[] values;
+
+    private CsvRow(Header header, String[] values) {
+        this.header = header;
+        this.values = values;
+    }
+
+    @Override
+    public String get(Object key) {
+        Integer column = header.columnsByName.get(key);
+        return column != null && column < values.length ? values[column] : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (int column : header.columns) {
+            if (column < values.length) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return CsvRow.this.size();
+            }
+        };
+    }
+
+    private class EntryIterator implements Iterator<Entry<String, String>> {
+        private int next = skipMissing(0);
+
+        private int skipMissing(int from) {
+            int i = from;
+            while (i < header.names.length && header.columns[i] >= values.length) {
+                i++;
+            }
+            return i;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < header.names.length;
+        }
+
+        @Override
+        public Entry<String, String> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry<String, String> entry = new SimpleImmutableEntry<>(header.names[next], values[header.columns[next]]);
+            next = skipMissing(next + 1);
+            return entry;
+        }
+    }
+
+    /**
+     * The names of the columns of a CSV file, each with the position of its value in the rows.
+     */
+    public static final class Header {
+        private final String[] names;
+        private final int[] columns;
+        private final Map<String, Integer> columnsByName;
+
+        private Header(Map<String, Integer> columnsByName) {
+            this.columnsByName = Map.copyOf(columnsByName);
+            this.names = new String[columnsByName.size()];
+            this.columns = new int[columnsByName.size()];
+            int i = 0;
+            for (Entry<String, Integer> entry : columnsByName.entrySet()) {
+                names[i] = entry.getKey();
+                columns[i] = entry.getValue();
+                i++;
+            }
+        }
+
+        /**
+         * Builds the header from the column of each name, iterated in the order the entries of the rows will be.
+         */
+        public static Header of(Map<String, Integer> columnsByName) {
+            return new Header(columnsByName);
+        }
+
+        public CsvRow row(String... values) {
+            return new CsvRow(this, values);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package it.gov.innovazione.ndc.harvester.exception;
+
+/**
+ * Thrown at the safe points of a harvest run which was cancelled or took too long in one of its phases.
+ */
+public class HarvestCancelledException extends RuntimeException {
+    public HarvestCancelledException(String message) {
+        super(message);
+    }
+}
@@ -10,19 +10,33 @@ import it.gov.innovazione.ndc.harvester.SemanticAssetType;
 import it.gov.innovazione.ndc.harvester.exception.SinglePathProcessingException;
 import it.gov.innovazione.ndc.harvester.model.SemanticAssetPath;
 import it.gov.innovazione.ndc.harvester.service.ConfigService;
+import it.gov.innovazione.ndc.harvester.service.RunningHarvest;
+import it.gov.innovazione.ndc.model.harvester.HarvestStep;
 import it.gov.innovazione.ndc.model.harvester.Repository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 import java.io.File;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static it.gov.innovazione.ndc.harvester.service.ActualConfigService.ConfigKey.MAX_FILE_SIZE_BYTES;
+import static it.gov.innovazione.ndc.harvester.service.ActualConfigService.ConfigKey.PATH_PROCESSING_PARALLELISM;
 
 @Slf4j
 @RequiredArgsConstructor
 public abstract class BaseSemanticAssetHarvester<P extends SemanticAssetPath> implements SemanticAssetHarvester {
+    private static final String PATH_WORKER_THREAD_PREFIX = "path-processor-";
+    private static final long DEFAULT_PATH_PROCESSING_PARALLELISM = 1L;
+
     private final SemanticAssetType type;
     private final NdcEventPublisher eventPublisher;
     private final ConfigService configService;
@@ -36,23 +50,105 @@ public abstract class BaseSemanticAssetHarvester<P extends SemanticAssetPath> im
     public void harvest(Repository repository, Path rootPath) {
         log.debug("Looking for {} paths", type);
 
-        List<P> paths = scanForPaths(rootPath);
+        List<P> paths = scan(rootPath);
+
+        log.debug("Found {} {} path(s) for processing", paths.size(), type);
+
+        processPaths(repository, paths);
+    }
+
+    private List<P> scan(Path rootPath) {
+        return HarvestExecutionContextUtils.inPhase(RunningHarvest.Phase.SCAN, HarvestStep.SCAN, type, () -> scanForPaths(rootPath));
+    }
 
+    private void processPaths(Repository repository, List<P> paths) {
         paths.forEach(this::notifyIfSizeExceed);
+        HarvestExecutionContextUtils.getRunningHarvest().ifPresent(run -> run.addPaths(paths.size()));
 
-        log.debug("Found {} {} path(s) for processing", paths.size(), type);
+        int parallelism = getParallelism(paths.size());
+        long start = System.nanoTime();
 
-        for (P path : paths) {
-            try {
-                processPath(repository.getUrl(), path);
-                log.debug("Path {} processed correctly for {}", path, type);
+        if (parallelism > 1) {
+            processInParallel(repository, paths, parallelism);
+        } else {
+            paths.forEach(path -> processSafely(repository, path));
+        }
+
+        log.info("Processed {} {} path(s) for repo {} in {} ms using {} worker(s)",
+                paths.size(), type, repository.getUrl(), elapsedMillis(start), parallelism);
+    }
 
-            } catch (SinglePathProcessingException e) {
-                log.error("Error processing {} {} in repo {}", type, path, repository.getUrl(), e);
+    private int getParallelism(int pathCount) {
+        long configured = Optional.ofNullable(configService.<Long>getParsedOrGetDefault(
+                        PATH_PROCESSING_PARALLELISM,
+                        () -> DEFAULT_PATH_PROCESSING_PARALLELISM))
+                .orElse(DEFAULT_PATH_PROCESSING_PARALLELISM);
+        return (int) Math.max(1, Math.min(configured, pathCount));
+    }
+
+    private void processInParallel(Repository repository, List<P> paths, int parallelism) {
+        HarvestExecutionContext context = HarvestExecutionContextUtils.getContext();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                new CustomizableThreadFactory(PATH_WORKER_THREAD_PREFIX));
+        try {
+            List<Future<?>> futures = paths.stream()
+                    .map(path -> executor.submit(() -> processWithContext(context, repository, path)))
+                    .collect(Collectors.toList());
+
+            for (Future<?> future : futures) {
+                waitFor(future);
             }
+        } finally {
+            executor.shutdownNow();
         }
     }
 
+    private void processWithContext(HarvestExecutionContext context, Repository repository, P path) {
+        HarvestExecutionContextUtils.setContext(context);
+        try {
+            processSafely(repository, path);
+        } finally {
+            HarvestExecutionContextUtils.setContext(null);
+        }
+    }
+
+    private void waitFor(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + type + " paths to be processed", e);
+        } catch (ExecutionException e) {
+            // anything but a SinglePathProcessingException aborts the harvest, as in sequential mode
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void processSafely(Repository repository, P path) {
+        // the paths left are skipped as soon as the run is cancelled
+        HarvestExecutionContextUtils.checkNotCancelled();
+        long start = System.nanoTime();
+        try {
+            HarvestExecutionContextUtils.inPhase(RunningHarvest.Phase.PARSE, () -> {
+                processPath(repository.getUrl(), path);
+                return null;
+            });
+            log.debug("Path {} processed correctly for {} in {} ms", path, type, elapsedMillis(start));
+
+        } catch (SinglePathProcessingException e) {
+            log.error("Error processing {} {} in repo {} after {} ms", type, path, repository.getUrl(), elapsedMillis(start), e);
+        } finally {
+            HarvestExecutionContextUtils.getRunningHarvest().ifPresent(RunningHarvest::pathDone);
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
     private void notifyIfSizeExceed(P path) {
         HarvestExecutionContext context = HarvestExecutionContextUtils.getContext();
         if (context != null) {
@@ -107,6 +203,12 @@ public abstract class BaseSemanticAssetHarvester<P extends SemanticAssetPath> im
         // by default nothing specific
     }
 
+    @Override
+    public Replacement prepareReplacement(String repoUrl) {
+        cleanUpBeforeHarvesting(repoUrl);
+        return () -> { };
+    }
+
     protected abstract void processPath(String repoUrl, P path);
 
     protected abstract List<P> scanForPaths(Path rootPath);
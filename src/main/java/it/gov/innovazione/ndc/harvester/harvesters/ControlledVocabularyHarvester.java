@@ -4,6 +4,7 @@ import it.gov.innovazione.ndc.eventhandler.NdcEventPublisher;
 import it.gov.innovazione.ndc.harvester.AgencyRepositoryService;
 import it.gov.innovazione.ndc.harvester.SemanticAssetType;
 import it.gov.innovazione.ndc.harvester.model.CvPath;
+import it.gov.innovazione.ndc.harvester.model.index.SemanticAssetMetadata;
 import it.gov.innovazione.ndc.harvester.pathprocessors.ControlledVocabularyPathProcessor;
 import it.gov.innovazione.ndc.harvester.service.ConfigService;
 import org.springframework.stereotype.Component;
@@ -36,4 +37,24 @@ public class ControlledVocabularyHarvester extends BaseSemanticAssetHarvester<Cv
     public void cleanUpBeforeHarvesting(String repoUrl) {
         pathProcessor.dropCsvIndicesForRepo(repoUrl);
     }
+
+    @Override
+    public Replacement prepareReplacement(String repoUrl) {
+        // CSV indices are reindexed into new generations, switched to once the graph is: only the indices of the
+        // vocabularies gone from the repo are dropped
+        List<SemanticAssetMetadata> previousVocabularies = pathProcessor.findVocabulariesForRepo(repoUrl);
+        pathProcessor.startReplacement(repoUrl);
+        return new Replacement() {
+            @Override
+            public void complete() {
+                pathProcessor.completeReplacement(repoUrl);
+                pathProcessor.dropCsvIndicesOfRemovedVocabularies(repoUrl, previousVocabularies);
+            }
+
+            @Override
+            public void discard() {
+                pathProcessor.discardReplacement(repoUrl);
+            }
+        };
+    }
 }
@@ -9,6 +9,8 @@ import it.gov.innovazione.ndc.harvester.model.index.NodeSummary;
 import it.gov.innovazione.ndc.harvester.model.index.SemanticAssetMetadata;
 import it.gov.innovazione.ndc.model.profiles.Admsapit;
 import lombok.Getter;
+import org.apache.jena.enhanced.EnhGraph;
+import org.apache.jena.rdf.listeners.StatementListener;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.Resource;
@@ -89,12 +91,39 @@ public abstract class BaseSemanticAssetModel implements SemanticAssetModel {
     @Override
     public Resource getMainResource() {
         if (mainResource == null) {
-            mainResource = getUniqueResourceByType(getMainResourceTypeIri());
+            mainResource = indexProperties(getUniqueResourceByType(getMainResourceTypeIri()));
         }
 
         return mainResource;
     }
 
+    /**
+     * Called when statements are added to or removed from the model, to drop whatever was read from it so far.
+     */
+    protected void onModelChanged() {
+        if (mainResource instanceof PropertyIndexedResource) {
+            ((PropertyIndexedResource) mainResource).invalidate();
+        }
+    }
+
+    private Resource indexProperties(Resource resource) {
+        if (!(resource.getModel() instanceof EnhGraph)) {
+            return resource;
+        }
+        rdfModel.register(new StatementListener() {
+            @Override
+            public void addedStatement(Statement statement) {
+                onModelChanged();
+            }
+
+            @Override
+            public void removedStatement(Statement statement) {
+                onModelChanged();
+            }
+        });
+        return new PropertyIndexedResource(resource, (EnhGraph) resource.getModel());
+    }
+
     protected abstract String getMainResourceTypeIri();
 
     private Resource getUniqueResourceByType(String resourceTypeIri) {
@@ -28,6 +28,8 @@ public class ControlledVocabularyModel extends BaseSemanticAssetModel {
     public static final String KEY_CONCEPT_VALIDATION_PATTERN = "^\\w(:?[\\w-]+\\w)*$";
 
     private String endpointUrl = "";
+    private String keyConcept;
+    private String agencyId;
 
     public ControlledVocabularyModel(Model coreModel, String source, String repoUrl) {
         super(coreModel, source, repoUrl);
@@ -42,7 +44,10 @@ public class ControlledVocabularyModel extends BaseSemanticAssetModel {
     }
 
     public String getKeyConcept() {
-        return getKeyConcept(getMainResource(), NO_VALIDATION);
+        if (keyConcept == null) {
+            keyConcept = getKeyConcept(getMainResource(), NO_VALIDATION);
+        }
+        return keyConcept;
     }
 
     public static String getKeyConcept(Resource mainResource, SemanticAssetModelValidationContext validationContext) {
@@ -91,7 +96,10 @@ public class ControlledVocabularyModel extends BaseSemanticAssetModel {
     }
 
     public String getAgencyId() {
-        return getAgencyId(getMainResource(), NO_VALIDATION);
+        if (agencyId == null) {
+            agencyId = getAgencyId(getMainResource(), NO_VALIDATION);
+        }
+        return agencyId;
     }
 
     public static String getAgencyId(Resource mainResource, SemanticAssetModelValidationContext validationContext) {
@@ -136,6 +144,13 @@ public class ControlledVocabularyModel extends BaseSemanticAssetModel {
         return format(NDC_ENDPOINT_URL_TEMPLATE, baseUrl, getAgencyId(), getKeyConcept());
     }
 
+    @Override
+    protected void onModelChanged() {
+        super.onModelChanged();
+        keyConcept = null;
+        agencyId = null;
+    }
+
     @Override
     protected String getMainResourceTypeIri() {
         return CONTROLLED_VOCABULARY.getTypeIri();
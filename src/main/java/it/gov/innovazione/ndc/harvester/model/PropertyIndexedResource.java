@@ -0,0 +1,71 @@
+package it.gov.innovazione.ndc.harvester.model;
+
+import org.apache.jena.enhanced.EnhGraph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.rdf.model.impl.ResourceImpl;
+import org.apache.jena.rdf.model.impl.StmtIteratorImpl;
+import org.apache.jena.shared.PropertyNotFoundException;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Main resource of a semantic asset whose statements are read from the graph in a single scan and grouped by predicate,
+ * so that the many lookups needed to extract and validate the metadata do not query the graph again.
+ * The statements are read on first use, and again after {@link #invalidate()}.
+ */
+class PropertyIndexedResource extends ResourceImpl {
+    private Map<Node, List<Statement>> statementsByPredicate;
+
+    PropertyIndexedResource(Resource resource, EnhGraph model) {
+        super(resource.asNode(), model);
+    }
+
+    @Override
+    public StmtIterator listProperties(Property property) {
+        return new StmtIteratorImpl(statementsOf(property).iterator());
+    }
+
+    @Override
+    public Statement getProperty(Property property) {
+        List<Statement> statements = statementsOf(property);
+        return statements.isEmpty() ? null : statements.get(0);
+    }
+
+    @Override
+    public Statement getRequiredProperty(Property property) {
+        Statement statement = getProperty(property);
+        if (Objects.isNull(statement)) {
+            throw new PropertyNotFoundException(property);
+        }
+        return statement;
+    }
+
+    @Override
+    public boolean hasProperty(Property property) {
+        return !statementsOf(property).isEmpty();
+    }
+
+    /**
+     * Drops the statements read so far, to be called when the model changes.
+     */
+    void invalidate() {
+        statementsByPredicate = null;
+    }
+
+    private List<Statement> statementsOf(Property property) {
+        if (Objects.isNull(statementsByPredicate)) {
+            statementsByPredicate = super.listProperties().toList().stream()
+                    .collect(Collectors.groupingBy(statement -> statement.getPredicate().asNode(),
+                            Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList)));
+        }
+        return statementsByPredicate.getOrDefault(property.asNode(), List.of());
+    }
+}
@@ -1,17 +1,62 @@
 package it.gov.innovazione.ndc.harvester.model;
 
 import static java.lang.String.format;
+import static org.apache.jena.rdf.model.ResourceFactory.createProperty;
 
+import it.gov.innovazione.ndc.harvester.SemanticAssetType;
 import it.gov.innovazione.ndc.harvester.model.exception.InvalidModelException;
+import it.gov.innovazione.ndc.model.profiles.Admsapit;
+import it.gov.innovazione.ndc.model.profiles.NDC;
 import lombok.RequiredArgsConstructor;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.sparql.vocabulary.FOAF;
+import org.apache.jena.vocabulary.DCAT;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.vocabulary.VCARD4;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 @Component
 @RequiredArgsConstructor
 public class SemanticAssetModelFactory {
+    /**
+     * Predicates read from the main resource, and from the resources it refers to, when extracting the metadata.
+     */
+    private static final Set<Node> METADATA_PREDICATES = Stream.of(
+                    DCTerms.rightsHolder, DCTerms.title, DCTerms.description, DCTerms.modified, DCTerms.accrualPeriodicity,
+                    DCTerms.subject, DCTerms.publisher, DCTerms.creator, DCTerms.issued, DCTerms.language, DCTerms.temporal,
+                    DCTerms.conformsTo, DCTerms.format, DCTerms.identifier,
+                    DCAT.theme, DCAT.contactPoint, DCAT.keyword, DCAT.distribution, DCAT.downloadURL, DCAT.accessURL,
+                    FOAF.name, VCARD4.hasEmail, OWL.versionInfo, RDFS.label, createProperty("https://w3id.org/italia/onto/l0/name"),
+                    Admsapit.status, Admsapit.hasKeyClass, Admsapit.prefix, Admsapit.semanticAssetInUse,
+                    Admsapit.hasSemanticAssetDistribution, NDC.keyConcept)
+            .map(Property::asNode)
+            .collect(Collectors.toUnmodifiableSet());
+
     private interface ModelConstructor<T extends SemanticAssetModel> {
         T build(Model model, String source);
     }
@@ -32,6 +77,25 @@ public class SemanticAssetModelFactory {
             (coreModel, source) -> new SchemaModel(coreModel, source, repoUrl));
     }
 
+    /**
+     * Parses the file once, passing each triple to the given sink; the returned model only holds the triples needed to
+     * find the main resource and extract its metadata.
+     */
+    public ControlledVocabularyModel streamControlledVocabulary(String ttlFile, String repoUrl, Consumer<Triple> sink) {
+        return streamAndBuild(ttlFile, SemanticAssetType.CONTROLLED_VOCABULARY, sink,
+            (coreModel, source) -> new ControlledVocabularyModel(coreModel, source, repoUrl));
+    }
+
+    public OntologyModel streamOntology(String ttlFile, String repoUrl, Consumer<Triple> sink) {
+        return streamAndBuild(ttlFile, SemanticAssetType.ONTOLOGY, sink,
+            (coreModel, source) -> new OntologyModel(coreModel, source, repoUrl));
+    }
+
+    public SchemaModel streamSchema(String ttlFile, String repoUrl, Consumer<Triple> sink) {
+        return streamAndBuild(ttlFile, SemanticAssetType.SCHEMA, sink,
+            (coreModel, source) -> new SchemaModel(coreModel, source, repoUrl));
+    }
+
     private <T extends SemanticAssetModel> T loadAndBuild(String source, ModelConstructor<T> c) {
         try {
             Model model = RDFDataMgr.loadModel(source, Lang.TURTLE);
@@ -40,4 +104,80 @@ public class SemanticAssetModelFactory {
             throw new InvalidModelException(format("Cannot load RDF model from '%s'", source), e);
         }
     }
+
+    private <T extends SemanticAssetModel> T streamAndBuild(String source, SemanticAssetType type, Consumer<Triple> sink,
+                                                            ModelConstructor<T> c) {
+        Graph metadata = GraphFactory.createDefaultGraph();
+        try {
+            RDFParser.source(source).lang(Lang.TURTLE).parse(new MetadataCapturingStream(sink, metadata, type));
+        } catch (RiotException e) {
+            // failures of the sink are not about the model, hence they are not wrapped
+            throw new InvalidModelException(format("Cannot load RDF model from '%s'", source), e);
+        }
+        return c.build(StreamedRdfModel.of(metadata), source);
+    }
+
+    /**
+     * Captures the metadata of the main resource and of the resources it refers to, leaving out the ones of the other
+     * resources, such as the labels of all the classes of an ontology. The metadata of a resource met before the main
+     * resource is known are kept aside until then, and dropped once the main resource has been described, i.e. when
+     * the parser moves on to another resource with an iri, as the main resource cannot refer to them any more: the
+     * description of the main resource is expected in a single block, as Turtle files have it.
+     */
+    private static class MetadataCapturingStream extends StreamRDFBase {
+        private final Consumer<Triple> sink;
+        private final Graph metadata;
+        private final Node mainResourceType;
+        private final Set<Node> mainResources = new HashSet<>();
+        private final Set<Node> neighbours = new HashSet<>();
+        private final Map<Node, List<Triple>> pending = new HashMap<>();
+        private boolean mainResourceDescribed;
+
+        MetadataCapturingStream(Consumer<Triple> sink, Graph metadata, SemanticAssetType type) {
+            this.sink = sink;
+            this.metadata = metadata;
+            this.mainResourceType = NodeFactory.createURI(type.getTypeIri());
+        }
+
+        @Override
+        public void triple(Triple triple) {
+            sink.accept(triple);
+            Node subject = triple.getSubject();
+            if (!mainResourceDescribed && !mainResources.isEmpty() && subject.isURI() && !mainResources.contains(subject)) {
+                mainResourceDescribed = true;
+                pending.clear();
+            }
+            if (RDF.type.asNode().equals(triple.getPredicate())) {
+                if (mainResourceType.equals(triple.getObject())) {
+                    metadata.add(triple);
+                    mainResources.add(subject);
+                    release(subject);
+                }
+                return;
+            }
+            if (!METADATA_PREDICATES.contains(triple.getPredicate())) {
+                return;
+            }
+            if (mainResources.contains(subject) || neighbours.contains(subject)) {
+                capture(triple);
+            } else if (!mainResourceDescribed) {
+                pending.computeIfAbsent(subject, resource -> new ArrayList<>()).add(triple);
+            }
+        }
+
+        private void capture(Triple triple) {
+            metadata.add(triple);
+            Node object = triple.getObject();
+            if (mainResources.contains(triple.getSubject()) && !object.isLiteral() && neighbours.add(object)) {
+                release(object);
+            }
+        }
+
+        private void release(Node resource) {
+            List<Triple> triples = pending.remove(resource);
+            if (Objects.nonNull(triples)) {
+                triples.forEach(this::capture);
+            }
+        }
+    }
 }
@@ -0,0 +1,30 @@
+package it.gov.innovazione.ndc.harvester.model;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.compose.Union;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.impl.ModelCom;
+import org.apache.jena.sparql.graph.GraphFactory;
+
+/**
+ * RDF model of a file streamed to the triple store while being parsed: it holds only the triples captured during the
+ * parsing, plus the ones added afterwards, which are the only ones still to be stored.
+ */
+public class StreamedRdfModel extends ModelCom {
+    private final Model additions;
+
+    private StreamedRdfModel(Graph additions, Graph captured) {
+        // the union adds new triples to its left graph
+        super(new Union(additions, captured));
+        this.additions = ModelFactory.createModelForGraph(additions);
+    }
+
+    public static StreamedRdfModel of(Graph captured) {
+        return new StreamedRdfModel(GraphFactory.createDefaultGraph(), captured);
+    }
+
+    public Model getAdditions() {
+        return additions;
+    }
+}
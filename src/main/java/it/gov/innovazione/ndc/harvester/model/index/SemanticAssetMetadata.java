@@ -31,6 +31,10 @@ public class SemanticAssetMetadata {
     private SemanticAssetType type;
     @Field(type = Keyword)
     private String repoUrl;
+    // the harvest run which indexed the document, so that the documents left by the previous runs can be told apart
+    @JsonIgnore
+    @Field(type = Keyword)
+    private String harvestRunId;
 
     @Field(type = Text, copyTo = "searchableText")
     private String title;
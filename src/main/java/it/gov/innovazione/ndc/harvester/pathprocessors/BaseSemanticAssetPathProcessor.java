@@ -1,15 +1,29 @@
 package it.gov.innovazione.ndc.harvester.pathprocessors;
 
+import it.gov.innovazione.ndc.config.HarvestExecutionContext;
+import it.gov.innovazione.ndc.config.HarvestExecutionContextUtils;
+import it.gov.innovazione.ndc.harvester.SemanticAssetType;
 import it.gov.innovazione.ndc.harvester.exception.SinglePathProcessingException;
 import it.gov.innovazione.ndc.harvester.model.SemanticAssetModel;
 import it.gov.innovazione.ndc.harvester.model.SemanticAssetPath;
+import it.gov.innovazione.ndc.harvester.model.StreamedRdfModel;
 import it.gov.innovazione.ndc.harvester.model.index.SemanticAssetMetadata;
+import it.gov.innovazione.ndc.model.harvester.HarvestStep;
+import it.gov.innovazione.ndc.repository.SemanticAssetMetadataBatch;
 import it.gov.innovazione.ndc.repository.SemanticAssetMetadataRepository;
 import it.gov.innovazione.ndc.repository.TripleStoreRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.Resource;
 
+import java.io.File;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
 @RequiredArgsConstructor
 @Slf4j
 public abstract class BaseSemanticAssetPathProcessor<P extends SemanticAssetPath, M extends SemanticAssetModel> implements SemanticAssetPathProcessor<P> {
@@ -21,8 +35,16 @@ public abstract class BaseSemanticAssetPathProcessor<P extends SemanticAssetPath
         try {
             log.info("Processing path {}", path);
 
+            // files that cannot be read are left to the loader, which reports why
+            long ttlFileSize = new File(path.getTtlPath()).length();
+            if (ttlFileSize > 0 && tripleStoreRepository.shouldStreamUpload(ttlFileSize)) {
+                processStreamed(repoUrl, path);
+                log.info("Path {} processed", path);
+                return;
+            }
+
             log.debug("Loading model");
-            M model = loadModel(path.getTtlPath(), repoUrl);
+            M model = HarvestExecutionContextUtils.inStep(HarvestStep.PARSE, getType(), () -> loadModel(path.getTtlPath(), repoUrl));
 
             log.debug("Extracting main resource");
             Resource resource = model.getMainResource();
@@ -36,6 +58,51 @@ public abstract class BaseSemanticAssetPathProcessor<P extends SemanticAssetPath
         }
     }
 
+    /**
+     * Parses the file once, streaming its content to a graph of its own while keeping in memory only the triples
+     * needed for the metadata. The graph is merged into the target one only if the whole path is processed, so that
+     * nothing of an invalid asset is left in the triple store.
+     */
+    private void processStreamed(String repoUrl, P path) {
+        String graphName = getGraphName(repoUrl);
+        String assetGraphName = graphName + "#asset-" + UUID.randomUUID();
+        HarvestExecutionContext context = HarvestExecutionContextUtils.getContext();
+        try {
+            M model;
+            try (TripleStoreRepository.ChunkedUpload upload = tripleStoreRepository.openUpload(assetGraphName)) {
+                log.debug("Streaming model to Virtuoso graph {}", assetGraphName);
+                model = HarvestExecutionContextUtils.inStep(HarvestStep.PARSE, getType(), () -> {
+                    M streamed = streamModel(path.getTtlPath(), repoUrl, upload::add);
+                    upload.finish();
+                    return streamed;
+                });
+                HarvestExecutionContextUtils.triplesLoaded(getType(), upload::getTripleCount);
+            }
+            log.info("Found resource {}", model.getMainResource());
+
+            HarvestExecutionContextUtils.setContext(withGraphName(context, assetGraphName));
+            processWithModel(repoUrl, path, model);
+
+            tripleStoreRepository.mergeNamedGraph(assetGraphName, graphName);
+        } catch (RuntimeException e) {
+            try {
+                tripleStoreRepository.clearExistingNamedGraph(assetGraphName);
+            } catch (RuntimeException dropFailure) {
+                e.addSuppressed(dropFailure);
+            }
+            throw e;
+        } finally {
+            HarvestExecutionContextUtils.setContext(context);
+        }
+    }
+
+    private static HarvestExecutionContext withGraphName(HarvestExecutionContext context, String graphName) {
+        if (Objects.isNull(context)) {
+            return HarvestExecutionContext.builder().graphName(graphName).build();
+        }
+        return context.withGraphName(graphName);
+    }
+
     protected void processWithModel(String repoUrl, P path, M model) {
         log.debug("Enriching model before persisting");
         enrichModelBeforePersisting(model, path);
@@ -51,14 +118,50 @@ public abstract class BaseSemanticAssetPathProcessor<P extends SemanticAssetPath
 
     private void indexMetadataForSearch(M model) {
         log.debug("Indexing {} for search", model.getMainResource());
-        SemanticAssetMetadata metadata = model.extractMetadata();
-        metadataRepository.save(metadata);
+        SemanticAssetMetadata metadata = HarvestExecutionContextUtils.inStep(HarvestStep.EXTRACT, getType(), model::extractMetadata);
+        // during a harvest run the metadata are collected and indexed in bulk at the end
+        Optional<SemanticAssetMetadataBatch> metadataBatch = Optional.ofNullable(HarvestExecutionContextUtils.getContext())
+                .map(HarvestExecutionContext::getMetadataBatch);
+        if (metadataBatch.isPresent()) {
+            metadataBatch.get().add(metadata);
+        } else {
+            metadataRepository.save(metadata);
+        }
     }
 
     private void persistModelToTripleStore(String repoUrl, P path, M model) {
-        log.debug("Storing RDF content for {} in Virtuoso", model.getMainResource());
-        tripleStoreRepository.save(repoUrl, model.getRdfModel());
+        String graphName = getGraphName(repoUrl);
+        Model content = model.getRdfModel();
+        boolean streamed = content instanceof StreamedRdfModel;
+        if (streamed) {
+            // the parsed content is already in the graph, only the triples added since are left to store
+            content = ((StreamedRdfModel) content).getAdditions();
+            if (content.isEmpty()) {
+                return;
+            }
+        }
+        log.debug("Storing RDF content for {} in Virtuoso graph {}", model.getMainResource(), graphName);
+        Model stored = content;
+        HarvestExecutionContextUtils.inStep(HarvestStep.VIRTUOSO_LOAD, getType(), () -> {
+            tripleStoreRepository.save(graphName, stored);
+            return null;
+        });
+        if (!streamed) {
+            // the triples of streamed models are counted as they are uploaded
+            HarvestExecutionContextUtils.triplesLoaded(getType(), () -> stored.size());
+        }
     }
 
+    private static String getGraphName(String repoUrl) {
+        // during a full harvest the content is loaded in a staging graph, swapped in at the end
+        return Optional.ofNullable(HarvestExecutionContextUtils.getContext())
+                .map(HarvestExecutionContext::getGraphName)
+                .orElse(repoUrl);
+    }
+
+    protected abstract SemanticAssetType getType();
+
     protected abstract M loadModel(String ttlFile, String repoUrl);
+
+    protected abstract M streamModel(String ttlFile, String repoUrl, Consumer<Triple> sink);
 }
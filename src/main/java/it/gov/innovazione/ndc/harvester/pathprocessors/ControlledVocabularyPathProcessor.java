@@ -1,20 +1,40 @@
 package it.gov.innovazione.ndc.harvester.pathprocessors;
 
+import it.gov.innovazione.ndc.config.HarvestExecutionContext;
+import it.gov.innovazione.ndc.config.HarvestExecutionContextUtils;
 import it.gov.innovazione.ndc.repository.TripleStoreRepository;
+import it.gov.innovazione.ndc.harvester.SemanticAssetType;
 import it.gov.innovazione.ndc.harvester.csv.CsvParser;
 import it.gov.innovazione.ndc.harvester.csv.CsvParser.CsvData;
 import it.gov.innovazione.ndc.harvester.model.ControlledVocabularyModel;
 import it.gov.innovazione.ndc.harvester.model.CvPath;
 import it.gov.innovazione.ndc.harvester.model.SemanticAssetModelFactory;
 import it.gov.innovazione.ndc.harvester.model.index.SemanticAssetMetadata;
+import it.gov.innovazione.ndc.harvester.service.AssetFingerprint;
+import it.gov.innovazione.ndc.harvester.service.AssetFingerprintService;
+import it.gov.innovazione.ndc.harvester.service.RunningHarvest;
+import it.gov.innovazione.ndc.model.harvester.HarvestStep;
 import it.gov.innovazione.ndc.repository.SemanticAssetMetadataRepository;
 import it.gov.innovazione.ndc.service.VocabularyDataService;
 import it.gov.innovazione.ndc.service.VocabularyIdentifier;
+import it.gov.innovazione.ndc.service.VocabularyIndexGeneration;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.jena.graph.Triple;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Component
 @Slf4j
@@ -22,16 +42,23 @@ public class ControlledVocabularyPathProcessor extends BaseSemanticAssetPathProc
     private final SemanticAssetModelFactory modelFactory;
     private final CsvParser csvParser;
     private final VocabularyDataService vocabularyDataService;
+    private final AssetFingerprintService fingerprintService;
     private final String baseUrl;
+    /**
+     * Index generations loaded by the replacement in progress for each repository, switched to once it completes.
+     */
+    private final ConcurrentMap<String, Queue<VocabularyIndexGeneration>> pendingGenerations = new ConcurrentHashMap<>();
 
     public ControlledVocabularyPathProcessor(TripleStoreRepository tripleStoreRepository, SemanticAssetModelFactory modelFactory,
                                              CsvParser csvParser, VocabularyDataService vocabularyDataService,
                                              SemanticAssetMetadataRepository metadataRepository,
+                                             AssetFingerprintService fingerprintService,
                                              @Value("${ndc.baseUrl}") String baseUrl) {
         super(tripleStoreRepository, metadataRepository);
         this.modelFactory = modelFactory;
         this.csvParser = csvParser;
         this.vocabularyDataService = vocabularyDataService;
+        this.fingerprintService = fingerprintService;
         this.baseUrl = baseUrl;
     }
 
@@ -44,43 +71,158 @@ public class ControlledVocabularyPathProcessor extends BaseSemanticAssetPathProc
             String agencyId = model.getAgencyId();
             VocabularyIdentifier vocabularyIdentifier = new VocabularyIdentifier(agencyId, keyConcept);
 
-            parseAndIndexCsv(vocabularyIdentifier, p);
+            Optional<String> assetPath = relativeAssetPath(path);
+            if (assetPath.isEmpty()) {
+                parseAndIndexCsv(repoUrl, vocabularyIdentifier, p);
+                return;
+            }
+            indexCsvIfChanged(repoUrl, path, assetPath.get(), vocabularyIdentifier);
         });
     }
 
+    /**
+     * Compares the files of the vocabulary with the ones of the previous harvest, indexing the CSV unless it did not
+     * change. Only the CSV indexing is skipped: the CSV data live in an index of their own, still there when neither
+     * the CSV nor the index name changed. The TTL is parsed and its triples and metadata are written anyway, as they go
+     * to a fresh graph and index on every run, and the triples of one asset cannot be told apart from the others of the
+     * repository graph to be carried over. The new fingerprint is recorded only once the CSV is indexed and the whole
+     * run succeeded, so that a failed run leaves the vocabulary to be indexed again by the next one.
+     */
+    private void indexCsvIfChanged(String repoUrl, CvPath path, String assetPath, VocabularyIdentifier vocabularyIdentifier) {
+        String csvPath = path.getCsvPath().orElseThrow();
+        AssetFingerprint fingerprint = AssetFingerprint.of(path.getTtlPath(), csvPath, baseUrl + "|" + vocabularyIdentifier.getIndexName());
+        Optional<AssetFingerprint> previous = fingerprintService.find(repoUrl, assetPath);
+
+        if (previous.filter(fingerprint::hasSameCsvAs).isPresent() && vocabularyDataService.isIndexed(vocabularyIdentifier)) {
+            log.info("CSV of {} unchanged since the previous harvest, keeping {} as indexed", path, vocabularyIdentifier);
+            HarvestExecutionContextUtils.getRunningHarvest().ifPresent(RunningHarvest::csvIndexingSkipped);
+        } else {
+            parseAndIndexCsv(repoUrl, vocabularyIdentifier, csvPath);
+        }
+
+        if (previous.filter(fingerprint::equals).isEmpty()) {
+            HarvestExecutionContextUtils.afterSuccess(() -> fingerprintService.save(repoUrl, assetPath, fingerprint));
+        }
+    }
+
+    private static Optional<String> relativeAssetPath(CvPath path) {
+        Path ttlPath = Path.of(path.getTtlPath());
+        return Optional.ofNullable(HarvestExecutionContextUtils.getContext())
+                .map(HarvestExecutionContext::getRootPath)
+                .map(Path::of)
+                .filter(ttlPath::startsWith)
+                .map(rootPath -> rootPath.relativize(ttlPath).toString());
+    }
+
+    @Override
+    protected SemanticAssetType getType() {
+        return SemanticAssetType.CONTROLLED_VOCABULARY;
+    }
+
     @Override
     protected ControlledVocabularyModel loadModel(String ttlFile, String repoUrl) {
         return modelFactory.createControlledVocabulary(ttlFile, repoUrl);
     }
 
+    @Override
+    protected ControlledVocabularyModel streamModel(String ttlFile, String repoUrl, Consumer<Triple> sink) {
+        return modelFactory.streamControlledVocabulary(ttlFile, repoUrl, sink);
+    }
+
     @Override
     protected void enrichModelBeforePersisting(ControlledVocabularyModel model, CvPath path) {
         path.getCsvPath().ifPresent(p -> model.addNdcDataServiceProperties(baseUrl));
     }
 
-    private void parseAndIndexCsv(VocabularyIdentifier vocabularyIdentifier, String csvPath) {
-        CsvData flatData = csvParser.loadCsvDataFromFile(csvPath);
-        vocabularyDataService.indexData(vocabularyIdentifier, flatData);
+    private void parseAndIndexCsv(String repoUrl, VocabularyIdentifier vocabularyIdentifier, String csvPath) {
+        try (CsvData flatData = csvParser.loadCsvDataFromFile(csvPath)) {
+            VocabularyIndexGeneration generation = HarvestExecutionContextUtils.inStep(HarvestStep.CSV_INDEX, getType(),
+                    () -> vocabularyDataService.indexData(vocabularyIdentifier, flatData));
+            HarvestExecutionContextUtils.csvRowsIndexed(generation.getRecordCount());
+            Queue<VocabularyIndexGeneration> replacementGenerations = pendingGenerations.get(repoUrl);
+            if (Objects.isNull(replacementGenerations)) {
+                vocabularyDataService.switchToGeneration(generation);
+            } else {
+                replacementGenerations.add(generation);
+            }
+        } catch (IOException e) {
+            log.warn("Could not close CSV file {}", csvPath, e);
+        }
+    }
+
+    /**
+     * From now on, the CSV indices of the vocabularies of the repository are loaded into new generations, switched to
+     * only when the replacement completes.
+     */
+    public void startReplacement(String repoUrl) {
+        // a replacement left behind by a run which did not get to its end is discarded
+        discardReplacement(repoUrl);
+        pendingGenerations.put(repoUrl, new ConcurrentLinkedQueue<>());
+    }
+
+    /**
+     * Switches to the index generations loaded by the replacement, once the graph of the repository has been swapped.
+     */
+    public void completeReplacement(String repoUrl) {
+        Queue<VocabularyIndexGeneration> generations = pendingGenerations.getOrDefault(repoUrl, new ConcurrentLinkedQueue<>());
+        VocabularyIndexGeneration generation;
+        while ((generation = generations.peek()) != null) {
+            vocabularyDataService.switchToGeneration(generation);
+            generations.remove();
+        }
+        pendingGenerations.remove(repoUrl, generations);
+    }
+
+    /**
+     * Deletes the index generations loaded by the replacement and not switched to, leaving the previous ones served.
+     */
+    public void discardReplacement(String repoUrl) {
+        Queue<VocabularyIndexGeneration> generations = pendingGenerations.remove(repoUrl);
+        if (Objects.isNull(generations)) {
+            return;
+        }
+        generations.forEach(generation -> {
+            try {
+                vocabularyDataService.deleteGeneration(generation);
+            } catch (Exception e) {
+                log.error("Could not delete generation {} of {}", generation.getIndexName(), generation.getVocabularyIdentifier(), e);
+            }
+        });
     }
 
     public void dropCsvIndicesForRepo(String repoUrl) {
         log.debug("Retrieving vocab metadata for {} to drop indices", repoUrl);
 
-        List<SemanticAssetMetadata> vocabs = metadataRepository.findVocabulariesForRepoUrl(repoUrl);
+        List<SemanticAssetMetadata> vocabs = findVocabulariesForRepo(repoUrl);
 
         if (log.isDebugEnabled()) {
             log.debug("Found {} vocabs with indices to drop", vocabs.size());
         }
 
-        vocabs.forEach(v -> {
-            VocabularyIdentifier vocabId = new VocabularyIdentifier(v.getAgencyId(), v.getKeyConcept());
+        vocabs.forEach(this::tryToDropIndex);
+    }
 
-            tryToDropIndex(v, vocabId);
-        });
+    public List<SemanticAssetMetadata> findVocabulariesForRepo(String repoUrl) {
+        return metadataRepository.findVocabulariesForRepoUrl(repoUrl);
+    }
+
+    public void dropCsvIndicesOfRemovedVocabularies(String repoUrl, List<SemanticAssetMetadata> previousVocabs) {
+        Set<VocabularyIdentifier> currentVocabIds = findVocabulariesForRepo(repoUrl).stream()
+                .map(ControlledVocabularyPathProcessor::toVocabularyIdentifier)
+                .collect(Collectors.toSet());
+
+        previousVocabs.stream()
+                .filter(v -> !currentVocabIds.contains(toVocabularyIdentifier(v)))
+                .forEach(this::tryToDropIndex);
+    }
+
+    private static VocabularyIdentifier toVocabularyIdentifier(SemanticAssetMetadata metadata) {
+        return new VocabularyIdentifier(metadata.getAgencyId(), metadata.getKeyConcept());
     }
 
-    private void tryToDropIndex(SemanticAssetMetadata v, VocabularyIdentifier vocabId) {
-        log.info("Dropping {} for {}", vocabId, v.getIri());
+    private void tryToDropIndex(SemanticAssetMetadata vocab) {
+        VocabularyIdentifier vocabId = toVocabularyIdentifier(vocab);
+        log.info("Dropping {} for {}", vocabId, vocab.getIri());
         try {
             vocabularyDataService.dropIndex(vocabId);
             log.info("{} dropped", vocabId);
@@ -1,13 +1,17 @@
 package it.gov.innovazione.ndc.harvester.pathprocessors;
 
+import it.gov.innovazione.ndc.harvester.SemanticAssetType;
 import it.gov.innovazione.ndc.harvester.model.SemanticAssetModelFactory;
 import it.gov.innovazione.ndc.harvester.model.SemanticAssetPath;
 import it.gov.innovazione.ndc.repository.TripleStoreRepository;
 import it.gov.innovazione.ndc.harvester.model.OntologyModel;
 import it.gov.innovazione.ndc.repository.SemanticAssetMetadataRepository;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.jena.graph.Triple;
 import org.springframework.stereotype.Component;
 
+import java.util.function.Consumer;
+
 @Component
 @Slf4j
 public class OntologyPathProcessor extends BaseSemanticAssetPathProcessor<SemanticAssetPath, OntologyModel> {
@@ -19,8 +23,18 @@ public class OntologyPathProcessor extends BaseSemanticAssetPathProcessor<Semant
         this.modelFactory = modelFactory;
     }
 
+    @Override
+    protected SemanticAssetType getType() {
+        return SemanticAssetType.ONTOLOGY;
+    }
+
     @Override
     protected OntologyModel loadModel(String ttlFile, String repoUrl) {
         return modelFactory.createOntology(ttlFile, repoUrl);
     }
+
+    @Override
+    protected OntologyModel streamModel(String ttlFile, String repoUrl, Consumer<Triple> sink) {
+        return modelFactory.streamOntology(ttlFile, repoUrl, sink);
+    }
 }
@@ -1,13 +1,17 @@
 package it.gov.innovazione.ndc.harvester.pathprocessors;
 
+import it.gov.innovazione.ndc.harvester.SemanticAssetType;
 import it.gov.innovazione.ndc.harvester.model.SchemaModel;
 import it.gov.innovazione.ndc.harvester.model.SemanticAssetModelFactory;
 import it.gov.innovazione.ndc.harvester.model.SemanticAssetPath;
 import it.gov.innovazione.ndc.repository.SemanticAssetMetadataRepository;
 import it.gov.innovazione.ndc.repository.TripleStoreRepository;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.jena.graph.Triple;
 import org.springframework.stereotype.Component;
 
+import java.util.function.Consumer;
+
 @Component
 @Slf4j
 public class SchemaPathProcessor
@@ -22,8 +26,18 @@ public class SchemaPathProcessor
         this.modelFactory = modelFactory;
     }
 
+    @Override
+    protected SemanticAssetType getType() {
+        return SemanticAssetType.SCHEMA;
+    }
+
     @Override
     protected SchemaModel loadModel(String ttlFile, String repoUrl) {
         return modelFactory.createSchema(ttlFile, repoUrl);
     }
+
+    @Override
+    protected SchemaModel streamModel(String ttlFile, String repoUrl, Consumer<Triple> sink) {
+        return modelFactory.streamSchema(ttlFile, repoUrl, sink);
+    }
 }
@@ -32,7 +32,12 @@ public class ControlledVocabularyFolderScanner implements FolderScanner<CvPath>
 
     @Override
     public List<CvPath> scanFolder(Path folder) throws IOException {
-        Optional<Path> maybeTtl = findAtMostOne(folder, TURTLE_FILE_EXTENSION, "turtle controlled vocabulary");
+        return scanFolder(folder, fileUtils.listContents(folder));
+    }
+
+    @Override
+    public List<CvPath> scanFolder(Path folder, List<Path> files) {
+        Optional<Path> maybeTtl = findAtMostOne(folder, files, TURTLE_FILE_EXTENSION, "turtle controlled vocabulary");
 
         if (maybeTtl.isEmpty()) {
             log.warn("Controlled vocabulary folder '{}' does not contain any TTL file", folder.toString());
@@ -41,7 +46,7 @@ public class ControlledVocabularyFolderScanner implements FolderScanner<CvPath>
 
         String ttlPath = maybeTtl.get().toString();
 
-        Optional<Path> maybeCsv = findAtMostOne(folder, ".csv", "flattened controlled vocabulary");
+        Optional<Path> maybeCsv = findAtMostOne(folder, files, ".csv", "flattened controlled vocabulary");
 
         if (maybeCsv.isPresent()) {
             return List.of(CvPath.of(ttlPath, maybeCsv.get().toString()));
@@ -55,8 +60,8 @@ public class ControlledVocabularyFolderScanner implements FolderScanner<CvPath>
         return lowerSkipWords.stream().noneMatch(fileUtils.getLowerCaseFileName(path)::contains);
     }
 
-    private Optional<Path> findAtMostOne(Path parent, String extension, String fileTypeDescription) throws IOException {
-        List<Path> hits = fileUtils.listContents(parent).stream()
+    private Optional<Path> findAtMostOne(Path parent, List<Path> files, String extension, String fileTypeDescription) {
+        List<Path> hits = files.stream()
                 .filter(path -> path.toString().toLowerCase(Locale.ROOT).endsWith(extension))
                 .filter(this::fileNameDoesNotContainSkipWords)
                 .limit(2)
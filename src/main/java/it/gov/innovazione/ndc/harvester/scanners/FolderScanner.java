@@ -10,4 +10,9 @@ public interface FolderScanner<P extends SemanticAssetPath> {
     String TURTLE_FILE_EXTENSION = ".ttl";
 
     List<P> scanFolder(Path folder) throws IOException;
+
+    /**
+     * Scans a folder whose files have already been listed.
+     */
+    List<P> scanFolder(Path folder, List<Path> files);
 }
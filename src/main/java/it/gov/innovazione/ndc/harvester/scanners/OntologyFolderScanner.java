@@ -29,8 +29,12 @@ public class OntologyFolderScanner implements FolderScanner<SemanticAssetPath> {
 
     @Override
     public List<SemanticAssetPath> scanFolder(Path folder) throws IOException {
-        return fileUtils.listContents(folder)
-                .stream()
+        return scanFolder(folder, fileUtils.listContents(folder));
+    }
+
+    @Override
+    public List<SemanticAssetPath> scanFolder(Path folder, List<Path> files) {
+        return files.stream()
                 // only accept ttls
                 .filter(this::isTurtleFilePath)
                 // discard filenames containing skip words
@@ -17,7 +17,12 @@ public class SchemaFolderScanner implements FolderScanner<SemanticAssetPath> {
 
     @Override
     public List<SemanticAssetPath> scanFolder(Path folder) throws IOException {
-        return fileUtils.listContents(folder).stream()
+        return scanFolder(folder, fileUtils.listContents(folder));
+    }
+
+    @Override
+    public List<SemanticAssetPath> scanFolder(Path folder, List<Path> files) {
+        return files.stream()
             .filter(path -> path.toString().toLowerCase(Locale.ROOT).endsWith("/index.ttl"))
             .map(path -> SemanticAssetPath.of(path.toString()))
             .collect(Collectors.toList());
@@ -0,0 +1,188 @@
+package it.gov.innovazione.ndc.harvester.scheduler;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.gov.innovazione.ndc.model.harvester.Repository;
+import it.gov.innovazione.ndc.repository.HarvestJobException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+
+/**
+ * Queues the harvest runs and starts them on the harvesting executor as long as the configured limits allow it: at
+ * most {@code maxConcurrentRuns} in total and {@code maxRunsPerHost} per git host.
+ * Manually triggered runs are started before bulk ones; among the runs of the same priority, those of the hosts with
+ * fewer runs in progress go first, so that a host with many repositories does not hold back the others.
+ */
+@Slf4j
+@Component
+public class HarvestScheduler {
+    private static final String UNKNOWN_HOST = "unknown";
+
+    private final HarvestSchedulerProperties properties;
+    private final TaskExecutor taskExecutor;
+    private final List<QueuedTask> queue = new ArrayList<>();
+    private final Map<String, Integer> runsByHost = new HashMap<>();
+    private final Map<HarvestTask.Priority, Timer> waitTimers = new EnumMap<>(HarvestTask.Priority.class);
+    private final Counter rejectedCounter;
+    private long sequence;
+    private int activeRuns;
+
+    public HarvestScheduler(HarvestSchedulerProperties properties, TaskExecutor taskExecutor, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.taskExecutor = taskExecutor;
+        for (HarvestTask.Priority priority : HarvestTask.Priority.values()) {
+            String tag = priority.name().toLowerCase(Locale.ROOT);
+            waitTimers.put(priority, Timer.builder("harvester.scheduler.queue.wait")
+                    .description("Time harvest runs wait in the queue before being started")
+                    .tag("priority", tag)
+                    .register(meterRegistry));
+            Gauge.builder("harvester.scheduler.queue.depth", this, s -> s.getQueueDepth(priority))
+                    .description("Harvest runs waiting to be started")
+                    .tag("priority", tag)
+                    .register(meterRegistry);
+        }
+        Gauge.builder("harvester.scheduler.runs.active", this, HarvestScheduler::getActiveRuns)
+                .description("Harvest runs in progress")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("harvester.scheduler.rejected")
+                .description("Harvest runs rejected because the queue was full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues all the given runs, or none of them if the queue has not enough room left.
+     */
+    public synchronized void submit(List<HarvestTask> tasks) {
+        if (queue.size() + tasks.size() > properties.getQueueCapacity()) {
+            rejectedCounter.increment(tasks.size());
+            throw new HarvestJobException(format("Harvest queue is full: %d run(s) waiting, %d more requested", queue.size(), tasks.size()));
+        }
+        for (HarvestTask task : tasks) {
+            queue.add(new QueuedTask(task, sequence++, hostOf(task.getRepository()), System.nanoTime()));
+            log.info("Harvest run {} of {} queued with priority {}", task.getRunId(), task.getRepository().getUrl(), task.getPriority());
+        }
+        dispatch();
+    }
+
+    /**
+     * Removes a run from the queue, if it was not started yet.
+     *
+     * @return whether the run was waiting in the queue
+     */
+    public synchronized boolean cancel(String runId) {
+        boolean removed = queue.removeIf(queued -> queued.task.getRunId().equals(runId));
+        if (removed) {
+            log.info("Harvest run {} removed from the queue", runId);
+        }
+        return removed;
+    }
+
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    private synchronized int getQueueDepth(HarvestTask.Priority priority) {
+        return (int) queue.stream().filter(queued -> queued.task.getPriority() == priority).count();
+    }
+
+    public synchronized int getActiveRuns() {
+        return activeRuns;
+    }
+
+    private void dispatch() {
+        Comparator<QueuedTask> order = Comparator.<QueuedTask, HarvestTask.Priority>comparing(queued -> queued.task.getPriority())
+                .thenComparing(queued -> runsByHost.getOrDefault(queued.host, 0))
+                .thenComparingLong(queued -> queued.sequence);
+        while (activeRuns < Math.max(1, properties.getMaxConcurrentRuns())) {
+            Optional<QueuedTask> next = queue.stream()
+                    .filter(this::canStart)
+                    .min(order);
+            if (next.isEmpty() || !start(next.get())) {
+                return;
+            }
+        }
+    }
+
+    private boolean canStart(QueuedTask queued) {
+        return runsByHost.getOrDefault(queued.host, 0) < getHostLimit(queued.host);
+    }
+
+    private int getHostLimit(String host) {
+        return Math.max(1, properties.getHostLimits().getOrDefault(host, properties.getMaxRunsPerHost()));
+    }
+
+    private boolean start(QueuedTask queued) {
+        queue.remove(queued);
+        reserve(queued, 1);
+        try {
+            taskExecutor.execute(() -> run(queued));
+        } catch (TaskRejectedException e) {
+            // runs are started only when there is room for them, so this happens only if the executor is shut down
+            log.error("Cannot start harvest run {} of {}", queued.task.getRunId(), queued.task.getRepository().getUrl(), e);
+            reserve(queued, -1);
+            queue.add(queued);
+            return false;
+        }
+        waitTimers.get(queued.task.getPriority()).record(System.nanoTime() - queued.queuedAt, TimeUnit.NANOSECONDS);
+        log.info("Harvest run {} of {} started, {} run(s) in progress", queued.task.getRunId(), queued.task.getRepository().getUrl(), activeRuns);
+        return true;
+    }
+
+    private void run(QueuedTask queued) {
+        try {
+            queued.task.getAction().run();
+        } catch (RuntimeException e) {
+            log.error("Harvest run {} of {} failed", queued.task.getRunId(), queued.task.getRepository().getUrl(), e);
+        } finally {
+            finished(queued);
+        }
+    }
+
+    private synchronized void finished(QueuedTask queued) {
+        reserve(queued, -1);
+        dispatch();
+    }
+
+    private void reserve(QueuedTask queued, int delta) {
+        activeRuns += delta;
+        runsByHost.merge(queued.host, delta, Integer::sum);
+    }
+
+    static String hostOf(Repository repository) {
+        try {
+            return Optional.ofNullable(repository.getUrl())
+                    .map(URI::create)
+                    .map(URI::getHost)
+                    .map(host -> host.toLowerCase(Locale.ROOT))
+                    .orElse(UNKNOWN_HOST);
+        } catch (IllegalArgumentException e) {
+            return UNKNOWN_HOST;
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class QueuedTask {
+        private final HarvestTask task;
+        private final long sequence;
+        private final String host;
+        private final long queuedAt;
+    }
+}
@@ -0,0 +1,43 @@
+package it.gov.innovazione.ndc.harvester.scheduler;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@Configuration
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ConfigurationProperties("harvester.scheduler")
+public class HarvestSchedulerProperties {
+    /**
+     * Maximum number of runs waiting to be started; further requests are rejected.
+     */
+    @Builder.Default
+    private int queueCapacity = 200;
+
+    /**
+     * Maximum number of runs executed at the same time, whatever their repository.
+     */
+    @Builder.Default
+    private int maxConcurrentRuns = 4;
+
+    /**
+     * Maximum number of runs executed at the same time for the repositories of a single git host.
+     */
+    @Builder.Default
+    private int maxRunsPerHost = 2;
+
+    /**
+     * Overrides of {@link #maxRunsPerHost} for specific git hosts, by host name.
+     */
+    @Builder.Default
+    private Map<String, Integer> hostLimits = new HashMap<>();
+}
@@ -0,0 +1,22 @@
+package it.gov.innovazione.ndc.harvester.scheduler;
+
+import it.gov.innovazione.ndc.model.harvester.Repository;
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class HarvestTask {
+    /**
+     * Runs of higher priority, declared first, are started before the others waiting.
+     */
+    public enum Priority {
+        MANUAL,
+        BULK
+    }
+
+    private final String runId;
+    private final Repository repository;
+    private final Priority priority;
+    private final Runnable action;
+}
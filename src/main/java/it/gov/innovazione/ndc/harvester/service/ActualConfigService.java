@@ -6,23 +6,30 @@ import it.gov.innovazione.ndc.eventhandler.NdcEventPublisher;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.util.EnumMap;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static java.lang.String.format;
+
 @Service
+@Slf4j
 @RequiredArgsConstructor
 public class ActualConfigService implements ConfigService {
 
     private static final String CONFIG_ID = "ndc";
+    private static final long NO_VERSION = 0;
+    private static final int MAX_WRITE_ATTEMPTS = 5;
     private static final TypeReference<Map<ConfigKey, ConfigEntry>> TYPE_REF = new TypeReference<>() {
     };
     private final JdbcTemplate jdbcTemplate;
@@ -32,45 +39,60 @@ public class ActualConfigService implements ConfigService {
     @Override
     public NdcConfiguration getNdcConfiguration() {
         try {
-            return jdbcTemplate.queryForObject(
-                    "SELECT * FROM CONFIGURATION WHERE ID = ?",
-                    new Object[]{CONFIG_ID},
-                    (rs, rowNum) -> NdcConfiguration.of(readSafely(rs.getString("VALUE"))));
+            return readConfiguration().getConfiguration();
         } catch (Exception e) {
             return NdcConfiguration.of(Map.of());
         }
     }
 
+    /**
+     * Reads the configuration together with its version; a configuration never written has version 0.
+     */
+    public VersionedConfiguration readConfiguration() {
+        return jdbcTemplate.query(
+                        "SELECT VALUE, VERSION FROM CONFIGURATION WHERE ID = ?",
+                        (rs, rowNum) -> VersionedConfiguration.of(rs.getLong("VERSION"), NdcConfiguration.of(readSafely(rs.getString("VALUE")))),
+                        CONFIG_ID)
+                .stream()
+                .findFirst()
+                .orElseGet(() -> VersionedConfiguration.of(NO_VERSION, NdcConfiguration.of(Map.of())));
+    }
+
+    /**
+     * Reads only the version of the configuration, to cheaply find out whether it was changed.
+     */
+    public long readVersion() {
+        return jdbcTemplate.queryForList("SELECT VERSION FROM CONFIGURATION WHERE ID = ?", Long.class, CONFIG_ID)
+                .stream()
+                .findFirst()
+                .orElse(NO_VERSION);
+    }
+
     @Override
     public void writeConfigKey(ConfigKey key, String writtenBy, Object value) {
         validateOne(key, value);
-        ConfigEntry oldValueIfExist = null;
         try {
-            Map<ConfigKey, ConfigEntry> config = new HashMap<>(getNdcConfiguration().getValue());
-
-            if (config.containsKey(key)) {
-                oldValueIfExist = config.get(key);
-            }
-
             ConfigEntry newValue = ConfigEntry.builder()
                     .writtenBy(writtenBy)
                     .writtenAt(Instant.now())
                     .value(value)
                     .build();
 
-            config.put(key, newValue);
-            writeConfig(config);
+            Map<ConfigKey, ConfigEntry> oldConfig = updateConfig(config -> {
+                config.put(key, newValue);
+                return config;
+            });
             sendConfigWrittenEvent(
                     "write-config-key",
                     Map.of(key, ConfigChange.builder()
-                            .oldValue(oldValueIfExist)
+                            .oldValue(oldConfig.get(key))
                             .newValue(newValue)
                             .build()), writtenBy);
         } catch (Exception e) {
             sendConfigWriteErrorEvent(
                     "write-config-key",
                     Map.of(key, ConfigChange.builder()
-                            .oldValue(oldValueIfExist)
+                            .oldValue(getNdcConfiguration().getValue().get(key))
                             .build()), writtenBy, e);
         }
 
@@ -108,7 +130,6 @@ public class ActualConfigService implements ConfigService {
     public void setNdConfig(Map<ConfigKey, Object> config, String writtenBy) {
         validate(config);
         try {
-            Map<ConfigKey, ConfigEntry> oldConfig = getNdcConfiguration().getValue();
             Map<ConfigKey, ConfigEntry> newConfig = config.entrySet().stream()
                     .collect(Collectors.toMap(
                             Map.Entry::getKey,
@@ -117,7 +138,7 @@ public class ActualConfigService implements ConfigService {
                                     .writtenAt(Instant.now())
                                     .value(entry.getValue())
                                     .build()));
-            writeConfig(newConfig);
+            Map<ConfigKey, ConfigEntry> oldConfig = updateConfig(current -> copyOf(newConfig));
 
             Map<ConfigKey, ConfigChange> changes = Stream.concat(oldConfig.keySet().stream(), newConfig.keySet().stream())
                     .distinct()
@@ -139,12 +160,45 @@ public class ActualConfigService implements ConfigService {
         }
     }
 
+    /**
+     * Applies a change to the stored configuration with optimistic locking: the change is computed on the version just
+     * read and written only if no other writer, on any instance, stored a newer version meanwhile; otherwise it is
+     * computed again on the newer version.
+     *
+     * @return the configuration the change was applied to
+     */
+    private Map<ConfigKey, ConfigEntry> updateConfig(UnaryOperator<Map<ConfigKey, ConfigEntry>> change) {
+        for (int attempt = 1; attempt <= MAX_WRITE_ATTEMPTS; attempt++) {
+            VersionedConfiguration current = readConfiguration();
+            Map<ConfigKey, ConfigEntry> oldConfig = current.getConfiguration().getValue();
+            Map<ConfigKey, ConfigEntry> newConfig = change.apply(copyOf(oldConfig));
+            if (compareAndSet(current.getVersion(), newConfig)) {
+                return oldConfig;
+            }
+            log.info("Configuration changed concurrently from version {}, attempt {} of {}", current.getVersion(), attempt, MAX_WRITE_ATTEMPTS);
+        }
+        throw new OptimisticLockingFailureException(format("Configuration changed concurrently %d times in a row", MAX_WRITE_ATTEMPTS));
+    }
+
     @SneakyThrows
-    private void writeConfig(Map<ConfigKey, ConfigEntry> config) {
+    private boolean compareAndSet(long expectedVersion, Map<ConfigKey, ConfigEntry> config) {
         String valueAsString = objectMapper.writeValueAsString(config);
-        jdbcTemplate.update(
-                "INSERT INTO CONFIGURATION (ID, VALUE) VALUES (?, ?) ON DUPLICATE KEY UPDATE VALUE = ?",
-                CONFIG_ID, valueAsString, valueAsString);
+        int updated = jdbcTemplate.update(
+                "UPDATE CONFIGURATION SET VALUE = ?, VERSION = VERSION + 1 WHERE ID = ? AND VERSION = ?",
+                valueAsString, CONFIG_ID, expectedVersion);
+        if (updated == 0 && expectedVersion == NO_VERSION) {
+            // first write ever: only one of the concurrent writers manages to create the row
+            updated = jdbcTemplate.update(
+                    "INSERT IGNORE INTO CONFIGURATION (ID, VALUE, VERSION) VALUES (?, ?, ?)",
+                    CONFIG_ID, valueAsString, NO_VERSION + 1);
+        }
+        return updated == 1;
+    }
+
+    private static Map<ConfigKey, ConfigEntry> copyOf(Map<ConfigKey, ConfigEntry> config) {
+        Map<ConfigKey, ConfigEntry> copy = new EnumMap<>(ConfigKey.class);
+        copy.putAll(config);
+        return copy;
     }
 
     @SneakyThrows
@@ -158,32 +212,43 @@ public class ActualConfigService implements ConfigService {
 
     @Override
     public void removeConfigKey(ConfigKey configKey, String writtenBy) {
-        ConfigEntry oldValue = null;
         try {
-            Map<ConfigKey, ConfigEntry> config = new EnumMap<>(getNdcConfiguration().getValue());
-            if (config.containsKey(configKey)) {
-                oldValue = config.get(configKey);
-            }
-            config.remove(configKey);
-            writeConfig(config);
+            Map<ConfigKey, ConfigEntry> oldConfig = updateConfig(config -> {
+                config.remove(configKey);
+                return config;
+            });
             sendConfigWrittenEvent(
                     "remove-config-key",
                     Map.of(configKey, ConfigChange.builder()
-                            .oldValue(oldValue)
+                            .oldValue(oldConfig.get(configKey))
                             .build()), writtenBy);
         } catch (Exception e) {
             sendConfigWriteErrorEvent(
                     "remove-config-key",
                     Map.of(configKey, ConfigChange.builder()
-                            .oldValue(oldValue)
+                            .oldValue(getNdcConfiguration().getValue().get(configKey))
                             .build()), writtenBy, e);
         }
     }
 
+    /**
+     * The configuration as stored, with the version it was stored with.
+     */
+    @Getter
+    @RequiredArgsConstructor(staticName = "of")
+    public static class VersionedConfiguration {
+        private final long version;
+        private final NdcConfiguration configuration;
+    }
+
     @Getter
     @RequiredArgsConstructor
     public enum ConfigKey {
-        MAX_FILE_SIZE_BYTES("The maximum file size in bytes of a file to be harvested", Validator.IS_LONG, Parser.TO_LONG),;
+        MAX_FILE_SIZE_BYTES("The maximum file size in bytes of a file to be harvested", Validator.IS_LONG, Parser.TO_LONG),
+        PATH_PROCESSING_PARALLELISM("The number of semantic asset paths processed in parallel by each harvester", Validator.IS_LONG, Parser.TO_LONG),
+        CSV_BULK_INDEXING_CHUNK_SIZE("The number of controlled vocabulary CSV rows sent in each bulk indexing request", Validator.IS_LONG, Parser.TO_LONG),
+        CSV_BULK_INDEXING_MAX_IN_FLIGHT("The maximum number of controlled vocabulary bulk indexing requests running at once", Validator.IS_LONG, Parser.TO_LONG),
+        METADATA_BULK_INDEXING_CHUNK_SIZE("The number of semantic asset metadata documents sent in each bulk indexing request", Validator.IS_LONG, Parser.TO_LONG);
 
         private final String description;
         private final Validator validator;
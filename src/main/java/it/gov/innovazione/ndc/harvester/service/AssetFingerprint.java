@@ -0,0 +1,65 @@
+package it.gov.innovazione.ndc.harvester.service;
+
+import lombok.Builder;
+import lombok.SneakyThrows;
+import lombok.Value;
+
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Objects;
+
+/**
+ * Hashes of what a semantic asset is harvested from: its TTL file, its CSV file if any, and the other inputs, such as
+ * the base url of the API, that change what is written for it.
+ */
+@Value
+@Builder
+public class AssetFingerprint {
+    private static final String ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    String ttlHash;
+    String csvHash;
+    String inputsHash;
+
+    public static AssetFingerprint of(String ttlPath, String csvPath, String inputs) {
+        return AssetFingerprint.builder()
+                .ttlHash(hashFile(ttlPath))
+                .csvHash(Objects.isNull(csvPath) ? null : hashFile(csvPath))
+                .inputsHash(hash(inputs.getBytes(StandardCharsets.UTF_8)))
+                .build();
+    }
+
+    /**
+     * Tells whether the CSV file, and the inputs it is indexed with, are the same as in the given fingerprint.
+     */
+    public boolean hasSameCsvAs(AssetFingerprint other) {
+        return Objects.nonNull(csvHash) && csvHash.equals(other.csvHash) && inputsHash.equals(other.inputsHash);
+    }
+
+    @SneakyThrows
+    private static String hashFile(String path) {
+        MessageDigest digest = MessageDigest.getInstance(ALGORITHM);
+        try (InputStream in = Files.newInputStream(Path.of(path))) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    @SneakyThrows
+    private static String hash(byte[] content) {
+        return toHex(MessageDigest.getInstance(ALGORITHM).digest(content));
+    }
+
+    private static String toHex(byte[] digest) {
+        return String.format("%064x", new BigInteger(1, digest));
+    }
+}
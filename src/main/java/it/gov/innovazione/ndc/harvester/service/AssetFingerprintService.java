@@ -0,0 +1,57 @@
+package it.gov.innovazione.ndc.harvester.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/**
+ * Keeps the fingerprint each semantic asset had when it was last harvested, by repo and path within the repo.
+ * Fingerprints only allow work to be skipped: when they cannot be read or written the assets are processed as usual.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class AssetFingerprintService {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public Optional<AssetFingerprint> find(String repoUrl, String assetPath) {
+        try {
+            return jdbcTemplate.query(
+                            "SELECT TTL_HASH, CSV_HASH, INPUTS_HASH FROM SEMANTIC_ASSET_FINGERPRINT WHERE REPOSITORY_URL = ? AND ASSET_PATH = ?",
+                            (rs, rowNum) -> AssetFingerprint.builder()
+                                    .ttlHash(rs.getString("TTL_HASH"))
+                                    .csvHash(rs.getString("CSV_HASH"))
+                                    .inputsHash(rs.getString("INPUTS_HASH"))
+                                    .build(),
+                            repoUrl,
+                            assetPath)
+                    .stream()
+                    .findFirst();
+        } catch (DataAccessException e) {
+            log.warn("Cannot read the fingerprint of {} in {}", assetPath, repoUrl, e);
+            return Optional.empty();
+        }
+    }
+
+    public void save(String repoUrl, String assetPath, AssetFingerprint fingerprint) {
+        try {
+            jdbcTemplate.update(
+                    "INSERT INTO SEMANTIC_ASSET_FINGERPRINT (REPOSITORY_URL, ASSET_PATH, TTL_HASH, CSV_HASH, INPUTS_HASH, UPDATED) "
+                    + "VALUES (?, ?, ?, ?, ?, CURRENT_TIMESTAMP) "
+                    + "ON DUPLICATE KEY UPDATE TTL_HASH = VALUES(TTL_HASH), CSV_HASH = VALUES(CSV_HASH), "
+                    + "INPUTS_HASH = VALUES(INPUTS_HASH), UPDATED = CURRENT_TIMESTAMP",
+                    repoUrl,
+                    assetPath,
+                    fingerprint.getTtlHash(),
+                    fingerprint.getCsvHash(),
+                    fingerprint.getInputsHash());
+        } catch (DataAccessException e) {
+            log.warn("Cannot save the fingerprint of {} in {}", assetPath, repoUrl, e);
+        }
+    }
+}
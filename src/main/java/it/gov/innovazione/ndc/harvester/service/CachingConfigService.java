@@ -1,42 +1,152 @@
 package it.gov.innovazione.ndc.harvester.service;
 
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Serves the configuration from an immutable snapshot, read without locks on every harvested path.
+ * The snapshot is replaced after each write of this instance, and by the poller, when the version polled from the
+ * database shows that another instance changed the configuration or when the snapshot would expire before the next
+ * poll, so that readers are not the ones waiting for the database. Only the first load is left to the readers, which
+ * share a single read of the database.
+ */
 @Service
 @Primary
+@Slf4j
 @RequiredArgsConstructor
 public class CachingConfigService implements ConfigService {
 
     private final ActualConfigService actualConfigService;
-    private NdcConfiguration ndcConfiguration;
+
+    @Value("${harvester.config-cache.ttl:PT5M}")
+    private final Duration cacheTtl;
+
+    @Value("${harvester.config-cache.poll-interval:PT10S}")
+    private final Duration pollInterval;
+
+    private final AtomicReference<ConfigSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<ConfigSnapshot>> firstLoad = new AtomicReference<>();
 
     @Override
-    public synchronized NdcConfiguration getNdcConfiguration() {
-        if (ndcConfiguration == null) {
-            ndcConfiguration = actualConfigService.getNdcConfiguration();
+    public NdcConfiguration getNdcConfiguration() {
+        ConfigSnapshot current = snapshot.get();
+        if (Objects.nonNull(current)) {
+            // even when expired, as the poller keeps trying to replace it
+            return current.getConfiguration();
+        }
+        try {
+            return loadFirst().getConfiguration();
+        } catch (Exception e) {
+            log.warn("Cannot load the configuration", e);
+            return NdcConfiguration.of(Map.of());
+        }
+    }
+
+    /**
+     * Loads the first snapshot once for all the readers asking for it at the same time, which share its outcome.
+     */
+    private ConfigSnapshot loadFirst() {
+        CompletableFuture<ConfigSnapshot> load = new CompletableFuture<>();
+        CompletableFuture<ConfigSnapshot> inFlight = firstLoad.compareAndExchange(null, load);
+        if (Objects.nonNull(inFlight)) {
+            return inFlight.join();
+        }
+        try {
+            ConfigSnapshot current = snapshot.get();
+            load.complete(Objects.nonNull(current) ? current : reload());
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+        } finally {
+            firstLoad.set(null);
         }
-        return ndcConfiguration;
+        return load.join();
     }
 
     @Override
     public void writeConfigKey(ActualConfigService.ConfigKey key, String writtenBy, Object value) {
         actualConfigService.writeConfigKey(key, writtenBy, value);
-        ndcConfiguration = null;
+        reloadQuietly();
     }
 
     @Override
     public void setNdConfig(Map<ActualConfigService.ConfigKey, Object> config, String writtenBy) {
         actualConfigService.setNdConfig(config, writtenBy);
-        ndcConfiguration = null;
+        reloadQuietly();
     }
 
     @Override
     public void removeConfigKey(ActualConfigService.ConfigKey configKey, String writtenBy) {
         actualConfigService.removeConfigKey(configKey, writtenBy);
-        ndcConfiguration = null;
+        reloadQuietly();
+    }
+
+    /**
+     * Replaces the snapshot when another instance changed the configuration, or when it would expire before the next
+     * poll.
+     */
+    @Scheduled(fixedDelayString = "${harvester.config-cache.poll-interval:PT10S}")
+    public void refreshIfChanged() {
+        ConfigSnapshot current = snapshot.get();
+        if (Objects.isNull(current)) {
+            // nothing read yet, the first reader loads it
+            return;
+        }
+        try {
+            long version = actualConfigService.readVersion();
+            if (version != current.getVersion() || isDueForRefresh(current)) {
+                log.debug("Reloading configuration, version {} cached and {} stored", current.getVersion(), version);
+                reload();
+            }
+        } catch (Exception e) {
+            log.warn("Cannot check the version of the configuration", e);
+        }
+    }
+
+    private void reloadQuietly() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.warn("Cannot reload the configuration after writing it, dropping the cached one", e);
+            snapshot.set(null);
+        }
+    }
+
+    private ConfigSnapshot reload() {
+        ActualConfigService.VersionedConfiguration loaded = actualConfigService.readConfiguration();
+        ConfigSnapshot next = new ConfigSnapshot(loaded, Instant.now());
+        // a slow load must not replace a snapshot of a newer version installed meanwhile
+        return snapshot.accumulateAndGet(next, (previous, candidate) ->
+                Objects.isNull(previous) || candidate.getVersion() >= previous.getVersion() ? candidate : previous);
+    }
+
+    private boolean isDueForRefresh(ConfigSnapshot current) {
+        return !current.getLoadedAt().plus(cacheTtl).minus(pollInterval).isAfter(Instant.now());
+    }
+
+    @Getter
+    private static final class ConfigSnapshot {
+        private final long version;
+        private final NdcConfiguration configuration;
+        private final Instant loadedAt;
+
+        private ConfigSnapshot(ActualConfigService.VersionedConfiguration loaded, Instant loadedAt) {
+            this.version = loaded.getVersion();
+            this.configuration = NdcConfiguration.of(Collections.unmodifiableMap(new HashMap<>(loaded.getConfiguration().getValue())));
+            this.loadedAt = loadedAt;
+        }
     }
 }
@@ -0,0 +1,102 @@
+package it.gov.innovazione.ndc.harvester.service;
+
+import it.gov.innovazione.ndc.model.harvester.Repository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps track of the harvest runs in progress in this instance, by run id and by repository and revision, so that
+ * the same revision of a repository is never harvested twice at the same time. The runs are periodically checked
+ * for phases taking longer than their timeout, which cancels them.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HarvestRunRegistry {
+    private final HarvestTimeoutProperties timeoutProperties;
+    private final ConcurrentMap<String, RunningHarvest> runsByRevision = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, RunningHarvest> runsById = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a run executed by the calling thread.
+     *
+     * @return the registered run, or nothing if the same revision of the repository is being harvested already
+     */
+    public Optional<RunningHarvest> register(String runId, String correlationId, Repository repository, String revision, String startedBy) {
+        RunningHarvest run = new RunningHarvest(runId, correlationId, repository, revision, startedBy, Thread.currentThread(), timeoutProperties);
+        if (runsByRevision.putIfAbsent(revisionKey(repository, revision), run) != null) {
+            return Optional.empty();
+        }
+        runsById.put(runId, run);
+        return Optional.of(run);
+    }
+
+    public void unregister(RunningHarvest run) {
+        runsById.remove(run.getRunId(), run);
+        runsByRevision.remove(revisionKey(run.getRepository(), run.getRevision()), run);
+    }
+
+    public Optional<RunningHarvest> findByRunId(String runId) {
+        return Optional.ofNullable(runsById.get(runId));
+    }
+
+    /**
+     * Asks a run in progress to stop.
+     *
+     * @return whether a run with the given id is in progress
+     */
+    public boolean cancel(String runId) {
+        Optional<RunningHarvest> run = findByRunId(runId);
+        run.filter(RunningHarvest::cancel)
+                .ifPresent(cancelled -> log.info("Harvest run {} of {} cancelled", runId, cancelled.getRepository().getUrl()));
+        return run.isPresent();
+    }
+
+    @Scheduled(fixedDelayString = "${harvester.timeouts.check-interval:PT10S}")
+    public void cancelTimedOutRuns() {
+        Instant now = Instant.now();
+        runsById.values().stream()
+                .filter(run -> run.checkDeadlines(now))
+                .forEach(run -> log.warn("Harvest run {} of {} {}, cancelling it", run.getRunId(), run.getRepository().getUrl(), run.getCancelReason().orElse("timed out")));
+    }
+
+    public boolean isRunning(String runId) {
+        return runsById.containsKey(runId);
+    }
+
+    /**
+     * Tells whether another run is harvesting the same repository, or one whose url contains or is contained in the
+     * url of the repository.
+     */
+    public boolean isRepositoryBeingHarvested(String runId, Repository repository) {
+        return runsById.values().stream()
+                .filter(run -> !run.getRunId().equals(runId))
+                .map(RunningHarvest::getRepository)
+                .anyMatch(other -> Objects.equals(other.getId(), repository.getId()) || overlap(other.getUrl(), repository.getUrl()));
+    }
+
+    public boolean hasRunningHarvests() {
+        return !runsById.isEmpty();
+    }
+
+    public List<RunningHarvest> getRunningHarvests() {
+        return List.copyOf(runsById.values());
+    }
+
+    private static boolean overlap(String url, String otherUrl) {
+        return Objects.nonNull(url) && Objects.nonNull(otherUrl) && (url.startsWith(otherUrl) || otherUrl.startsWith(url));
+    }
+
+    private static String revisionKey(Repository repository, String revision) {
+        return repository.getId() + "@" + revision;
+    }
+}
@@ -0,0 +1,71 @@
+package it.gov.innovazione.ndc.harvester.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ConfigurationProperties("harvester.timeouts")
+public class HarvestTimeoutProperties {
+    /**
+     * Maximum time to clone the repository.
+     */
+    @Builder.Default
+    private Duration clone = Duration.ofMinutes(10);
+
+    /**
+     * Maximum time to scan the cloned repository for the paths of a semantic asset type.
+     */
+    @Builder.Default
+    private Duration scan = Duration.ofMinutes(5);
+
+    /**
+     * Maximum time to parse and load a single semantic asset path.
+     */
+    @Builder.Default
+    private Duration parse = Duration.ofMinutes(15);
+
+    /**
+     * Maximum time to replace the indexed metadata of the repository.
+     */
+    @Builder.Default
+    private Duration index = Duration.ofMinutes(10);
+
+    /**
+     * Maximum time to swap the harvested graph in for the repository one.
+     */
+    @Builder.Default
+    private Duration store = Duration.ofMinutes(30);
+
+    /**
+     * How often the runs in progress are checked for phases running late.
+     */
+    @Builder.Default
+    private Duration checkInterval = Duration.ofSeconds(10);
+
+    public Duration getTimeout(RunningHarvest.Phase phase) {
+        switch (phase) {
+            case CLONE:
+                return clone;
+            case SCAN:
+                return scan;
+            case PARSE:
+                return parse;
+            case INDEX:
+                return index;
+            case STORE:
+                return store;
+            default:
+                throw new IllegalArgumentException("Unknown harvest phase " + phase);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package it.gov.innovazione.ndc.harvester.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.gov.innovazione.ndc.harvester.SemanticAssetType;
+import it.gov.innovazione.ndc.model.harvester.HarvestStep;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics of the harvest runs, tagged by repository and type of semantic asset. Steps done once for the whole
+ * repository, like the clone, are tagged with the {@value #ALL_TYPES} type.
+ */
+@Component
+@RequiredArgsConstructor
+public class HarvesterMetrics {
+    static final String ALL_TYPES = "all";
+    private static final String UNKNOWN_REPOSITORY = "unknown";
+
+    private final MeterRegistry meterRegistry;
+
+    public void recordStep(HarvestStep step, SemanticAssetType assetType, String repoUrl, long nanos, boolean failed) {
+        Timer.builder("harvester.step")
+                .description("Time spent in each step of the harvest runs")
+                .tag("step", step.getTag())
+                .tag("type", typeTag(assetType))
+                .tag("repository", repositoryTag(repoUrl))
+                .tag("outcome", failed ? "failure" : "success")
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordTriples(SemanticAssetType assetType, String repoUrl, long triples) {
+        DistributionSummary.builder("harvester.asset.triples")
+                .description("Triples loaded to Virtuoso for each semantic asset")
+                .baseUnit("triples")
+                .tag("type", typeTag(assetType))
+                .tag("repository", repositoryTag(repoUrl))
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(triples);
+    }
+
+    public void recordCsvRows(String repoUrl, long rows) {
+        DistributionSummary.builder("harvester.csv.rows")
+                .description("Rows indexed for each controlled vocabulary CSV")
+                .baseUnit("rows")
+                .tag("repository", repositoryTag(repoUrl))
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(rows);
+    }
+
+    private static String typeTag(SemanticAssetType assetType) {
+        return Objects.isNull(assetType) ? ALL_TYPES : assetType.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static String repositoryTag(String repoUrl) {
+        return Objects.isNull(repoUrl) ? UNKNOWN_REPOSITORY : repoUrl;
+    }
+}
@@ -0,0 +1,29 @@
+package it.gov.innovazione.ndc.harvester.service;
+
+import it.gov.innovazione.ndc.model.harvester.HarvesterRun;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * A page of harvester runs, most recent first. Pages are chained by keyset: the next page starts before the
+ * {@code startedAt} and {@code id} of the last run of the previous one.
+ */
+@Value
+@Builder
+public class HarvesterRunQuery {
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    String repositoryId;
+    HarvesterRun.Status status;
+    Instant startedBefore;
+    String beforeId;
+    @Builder.Default
+    int limit = DEFAULT_LIMIT;
+
+    public int getLimit() {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+}
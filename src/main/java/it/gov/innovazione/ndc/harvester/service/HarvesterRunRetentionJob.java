@@ -0,0 +1,36 @@
+package it.gov.innovazione.ndc.harvester.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * Keeps the HARVESTER_RUN table from growing forever, by archiving or deleting the runs older than the retention
+ * period in small batches.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HarvesterRunRetentionJob {
+    private final HarvesterRunService harvesterRunService;
+    private final HarvesterRunRetentionProperties properties;
+
+    @Scheduled(cron = "${harvester.runs.retention.cron:0 30 3 * * *}")
+    public void applyRetention() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Instant threshold = Instant.now().minus(properties.getMaxAge());
+        int batchSize = Math.max(1, properties.getBatchSize());
+        int total = 0;
+        int removed;
+        do {
+            removed = harvesterRunService.archiveRunsStartedBefore(threshold, batchSize, properties.isArchive());
+            total += removed;
+        } while (removed == batchSize);
+        log.info("{} {} harvester run(s) started before {}", properties.isArchive() ? "Archived" : "Deleted", total, threshold);
+    }
+}
@@ -0,0 +1,42 @@
+package it.gov.innovazione.ndc.harvester.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ConfigurationProperties("harvester.runs.retention")
+public class HarvesterRunRetentionProperties {
+    /**
+     * Whether old harvester runs are periodically removed from the HARVESTER_RUN table.
+     */
+    @Builder.Default
+    private boolean enabled = true;
+
+    /**
+     * Runs started longer ago than this are removed, except the last successful one of each repository.
+     */
+    @Builder.Default
+    private Duration maxAge = Duration.ofDays(180);
+
+    /**
+     * Whether removed runs are moved to HARVESTER_RUN_ARCHIVE rather than deleted.
+     */
+    @Builder.Default
+    private boolean archive = true;
+
+    /**
+     * Maximum number of runs removed in a single transaction.
+     */
+    @Builder.Default
+    private int batchSize = 500;
+}
@@ -1,28 +1,31 @@
 package it.gov.innovazione.ndc.harvester.service;
 
 import it.gov.innovazione.ndc.controller.RunningInstance;
+import it.gov.innovazione.ndc.harvester.SemanticAssetType;
+import it.gov.innovazione.ndc.model.harvester.HarvestStep;
 import it.gov.innovazione.ndc.model.harvester.HarvesterRun;
+import it.gov.innovazione.ndc.model.harvester.HarvesterRunReport;
 import it.gov.innovazione.ndc.model.harvester.Repository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
-import static it.gov.innovazione.ndc.config.SimpleHarvestRepositoryProcessor.getAllRunningHarvestThreadNames;
-import static org.apache.commons.lang3.StringUtils.contains;
-import static org.apache.commons.lang3.StringUtils.endsWithIgnoreCase;
 import static org.apache.commons.lang3.StringUtils.equalsIgnoreCase;
-import static org.apache.commons.lang3.StringUtils.startsWithIgnoreCase;
 
 @Service
 @Slf4j
@@ -30,8 +33,29 @@ import static org.apache.commons.lang3.StringUtils.startsWithIgnoreCase;
 public class HarvesterRunService {
 
     private final JdbcTemplate jdbcTemplate;
+    private final HarvestRunRegistry harvestRunRegistry;
 
     private static final Long HARVESTING_RECENT_DAYS = 30L;
+    private static final String RUN_COLUMNS = "ID, "
+                                              + "CORRELATION_ID, "
+                                              + "REPOSITORY_ID, "
+                                              + "REPOSITORY_URL, "
+                                              + "REVISION, "
+                                              + "STARTED, "
+                                              + "STARTED_BY, "
+                                              + "FINISHED, "
+                                              + "STATUS, "
+                                              + "REASON";
+    private static final String SELECT_RUNS = "SELECT " + RUN_COLUMNS + " FROM HARVESTER_RUN ";
+    private static final String STEP_COLUMNS = "RUN_ID, "
+                                               + "STEP, "
+                                               + "ASSET_TYPE, "
+                                               + "STEP_COUNT, "
+                                               + "FAILURES, "
+                                               + "DURATION_MS, "
+                                               + "ITEMS";
+    // the steps done once for the whole repository have no asset type, which cannot be part of the primary key
+    private static final String ALL_ASSET_TYPES = "ALL";
 
     public int saveHarvesterRun(HarvesterRun harvesterRun) {
         String query = "INSERT INTO HARVESTER_RUN ("
@@ -58,38 +82,51 @@ public class HarvesterRunService {
                 harvesterRun.getReason());
     }
 
+    /**
+     * Tells whether another recent run of the same repository, or of a repository whose url is a prefix of its url or
+     * vice versa, is still running, as recorded by any instance of the application.
+     */
     public boolean isHarvestingInProgress(String runId, Repository repository) {
-        return getRecentRuns(HARVESTING_RECENT_DAYS)
-                .filter(harvesterRun -> !equalsIgnoreCase(harvesterRun.getId(), runId))
-                .anyMatch(harvesterRun -> isAlreadyRunning(harvesterRun, repository));
+        // the url prefixes are compared with the collation of the column, as LIKE would treat '_' as a wildcard
+        String query = "SELECT COUNT(*) "
+                       + "FROM HARVESTER_RUN "
+                       + "WHERE STATUS = ? AND STARTED > ? AND ID <> ? "
+                       + "AND (REPOSITORY_ID = ? "
+                       + "OR LEFT(REPOSITORY_URL, CHAR_LENGTH(?)) = ? "
+                       + "OR LEFT(?, CHAR_LENGTH(REPOSITORY_URL)) = REPOSITORY_URL)";
+        Integer count = jdbcTemplate.queryForObject(query, Integer.class,
+                HarvesterRun.Status.RUNNING.toString(),
+                Timestamp.from(recentRunsThreshold()),
+                runId,
+                repository.getId(),
+                repository.getUrl(),
+                repository.getUrl(),
+                repository.getUrl());
+        return Objects.nonNull(count) && count > 0;
     }
 
-    private boolean isMoreRecentThan(HarvesterRun harvesterRun, Long days) {
-        return Optional.of(harvesterRun)
-                .map(HarvesterRun::getStartedAt)
-                .filter(startedAt -> startedAt.isAfter(Instant.now().minus(days, ChronoUnit.DAYS)))
+    /**
+     * Tells whether the last recent successful run of the repository harvested the given revision.
+     */
+    public boolean isHarvestingAlreadyExecuted(String repositoryId, String revision) {
+        String query = "SELECT REVISION "
+                       + "FROM HARVESTER_RUN "
+                       + "WHERE REPOSITORY_ID = ? AND STATUS = ? AND STARTED > ? "
+                       + "ORDER BY STARTED DESC "
+                       + "LIMIT 1";
+        return jdbcTemplate.query(query,
+                        (rs, rowNum) -> Optional.ofNullable(rs.getString("REVISION")),
+                        repositoryId,
+                        HarvesterRun.Status.SUCCESS.toString(),
+                        Timestamp.from(recentRunsThreshold()))
+                .stream()
+                .findFirst()
+                .filter(lastRevision -> equalsIgnoreCase(lastRevision.orElse(null), revision))
                 .isPresent();
     }
 
-    private boolean isAlreadyRunning(HarvesterRun harvesterRun, Repository repository) {
-        return (
-                       harvesterRun.getRepositoryId().equals(repository.getId())
-                       || startsWithIgnoreCase(
-                               harvesterRun.getRepositoryUrl(),
-                               repository.getUrl())
-                       || startsWithIgnoreCase(
-                               repository.getUrl(),
-                               harvesterRun.getRepositoryUrl()))
-               && harvesterRun.getStatus() == HarvesterRun.Status.RUNNING;
-    }
-
-    public boolean isHarvestingAlreadyExecuted(String repositoryId, String revision) {
-        return getRecentRuns(HARVESTING_RECENT_DAYS)
-                .filter(harvesterRun -> harvesterRun.getRepositoryId().equals(repositoryId))
-                .filter(harvesterRun -> harvesterRun.getStatus() == HarvesterRun.Status.SUCCESS)
-                .max(Comparator.comparing(HarvesterRun::getStartedAt))
-                .filter(harvesterRun -> equalsIgnoreCase(harvesterRun.getRevision(), revision))
-                .isPresent();
+    private static Instant recentRunsThreshold() {
+        return Instant.now().minus(HARVESTING_RECENT_DAYS, ChronoUnit.DAYS);
     }
 
     public int updateHarvesterRun(HarvesterRun harvesterRun) {
@@ -105,38 +142,152 @@ public class HarvesterRunService {
                 harvesterRun.getId());
     }
 
-    public Stream<HarvesterRun> getRecentRuns(Long days) {
-        return getAllRuns().stream()
-                .filter(harvesterRun -> isMoreRecentThan(harvesterRun, days));
-    }
-
-    public List<HarvesterRun> getAllRuns() {
-        String sqlQuery = "SELECT "
-                          + "ID, "
-                          + "CORRELATION_ID, "
-                          + "REPOSITORY_ID, "
-                          + "REPOSITORY_URL, "
-                          + "REVISION, "
-                          + "STARTED, "
-                          + "STARTED_BY, "
-                          + "FINISHED, "
-                          + "STATUS, "
-                          + "REASON "
-                          + "FROM HARVESTER_RUN "
-                          + "ORDER BY STARTED DESC";
-        return jdbcTemplate.query(sqlQuery, (rs, rowNum) ->
-                HarvesterRun.builder()
-                        .id(rs.getString("ID"))
-                        .correlationId(rs.getString("CORRELATION_ID"))
-                        .repositoryId(rs.getString("REPOSITORY_ID"))
-                        .repositoryUrl(rs.getString("REPOSITORY_URL"))
-                        .revision(rs.getString("REVISION"))
-                        .startedAt(getInstant(rs, "STARTED"))
-                        .startedBy(rs.getString("STARTED_BY"))
-                        .endedAt(getInstant(rs, "FINISHED"))
-                        .status(getStatusSafely(rs))
-                        .reason(rs.getString("REASON"))
+    /**
+     * Saves the time spent in each step of a finished run. The report is not essential to the run, so failures are
+     * only logged.
+     */
+    public void saveRunReport(String runId, List<HarvesterRunReport.StepReport> steps) {
+        String query = "INSERT INTO HARVESTER_RUN_STEP (" + STEP_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+        try {
+            jdbcTemplate.batchUpdate(query, steps.stream()
+                    .map(step -> new Object[] {
+                        runId,
+                        step.getStep().toString(),
+                        Objects.isNull(step.getAssetType()) ? ALL_ASSET_TYPES : step.getAssetType().name(),
+                        step.getCount(),
+                        step.getFailures(),
+                        step.getDurationMillis(),
+                        step.getItems()})
+                    .collect(Collectors.toList()));
+        } catch (DataAccessException e) {
+            log.warn("Could not save the report of run {}", runId, e);
+        }
+    }
+
+    /**
+     * Returns where the time of a run went, as it is so far for the runs still running on this instance.
+     */
+    public Optional<HarvesterRunReport> getRunReport(String runId) {
+        Optional<HarvesterRunReport> running = harvestRunRegistry.findByRunId(runId)
+                .map(runningHarvest -> HarvesterRunReport.builder()
+                        .run(asRunningInstance(runningHarvest).getHarvesterRun())
+                        .steps(runningHarvest.getStepReports())
                         .build());
+        if (running.isPresent()) {
+            return running;
+        }
+        return jdbcTemplate.query(SELECT_RUNS + "WHERE ID = ?", this::toHarvesterRun, runId).stream()
+                .findFirst()
+                .map(run -> HarvesterRunReport.builder()
+                        .run(run)
+                        .steps(getStepReports(runId))
+                        .build());
+    }
+
+    private List<HarvesterRunReport.StepReport> getStepReports(String runId) {
+        String query = "SELECT STEP, ASSET_TYPE, STEP_COUNT, FAILURES, DURATION_MS, ITEMS "
+                       + "FROM HARVESTER_RUN_STEP "
+                       + "WHERE RUN_ID = ?";
+        // sorted as the steps are done, rather than by name
+        return jdbcTemplate.query(query, HarvesterRunService::toStepReport, runId).stream()
+                .sorted(StepTimes.BY_STEP_AND_TYPE)
+                .collect(Collectors.toList());
+    }
+
+    private static HarvesterRunReport.StepReport toStepReport(ResultSet rs, int rowNum) throws SQLException {
+        String assetType = rs.getString("ASSET_TYPE");
+        return HarvesterRunReport.StepReport.builder()
+                .step(HarvestStep.valueOf(rs.getString("STEP")))
+                .assetType(ALL_ASSET_TYPES.equals(assetType) ? null : SemanticAssetType.valueOf(assetType))
+                .count(rs.getLong("STEP_COUNT"))
+                .failures(rs.getLong("FAILURES"))
+                .durationMillis(rs.getLong("DURATION_MS"))
+                .items(rs.getLong("ITEMS"))
+                .build();
+    }
+
+    /**
+     * Returns a page of runs, most recent first, filtered by repository and status when given.
+     */
+    public List<HarvesterRun> getRuns(HarvesterRunQuery runQuery) {
+        StringBuilder sqlQuery = new StringBuilder(SELECT_RUNS).append("WHERE 1 = 1 ");
+        List<Object> args = new ArrayList<>();
+        if (Objects.nonNull(runQuery.getRepositoryId())) {
+            sqlQuery.append("AND REPOSITORY_ID = ? ");
+            args.add(runQuery.getRepositoryId());
+        }
+        if (Objects.nonNull(runQuery.getStatus())) {
+            sqlQuery.append("AND STATUS = ? ");
+            args.add(runQuery.getStatus().toString());
+        }
+        if (Objects.nonNull(runQuery.getStartedBefore())) {
+            Timestamp startedBefore = Timestamp.from(runQuery.getStartedBefore());
+            if (Objects.nonNull(runQuery.getBeforeId())) {
+                sqlQuery.append("AND (STARTED < ? OR (STARTED = ? AND ID < ?)) ");
+                args.addAll(List.of(startedBefore, startedBefore, runQuery.getBeforeId()));
+            } else {
+                sqlQuery.append("AND STARTED < ? ");
+                args.add(startedBefore);
+            }
+        }
+        sqlQuery.append("ORDER BY STARTED DESC, ID DESC LIMIT ?");
+        args.add(runQuery.getLimit());
+        return jdbcTemplate.query(sqlQuery.toString(), this::toHarvesterRun, args.toArray());
+    }
+
+    /**
+     * Moves at most {@code batchSize} runs started before the given instant, along with their reports, to the archive
+     * tables, or deletes them if they are not to be archived. Runs still running and the last successful run of each repository are kept, as
+     * they are needed to decide whether and how to harvest.
+     *
+     * @return the number of runs moved or deleted
+     */
+    @Transactional
+    public int archiveRunsStartedBefore(Instant threshold, int batchSize, boolean archive) {
+        String selectQuery = "SELECT ID "
+                             + "FROM HARVESTER_RUN r "
+                             + "WHERE r.STARTED < ? AND r.STATUS <> ? "
+                             + "AND NOT (r.STATUS = ? AND NOT EXISTS ("
+                             + "SELECT 1 FROM HARVESTER_RUN n "
+                             + "WHERE n.REPOSITORY_ID = r.REPOSITORY_ID AND n.STATUS = ? AND n.STARTED > r.STARTED)) "
+                             + "ORDER BY r.STARTED "
+                             + "LIMIT ?";
+        List<String> ids = jdbcTemplate.queryForList(selectQuery, String.class,
+                Timestamp.from(threshold),
+                HarvesterRun.Status.RUNNING.toString(),
+                HarvesterRun.Status.SUCCESS.toString(),
+                HarvesterRun.Status.SUCCESS.toString(),
+                batchSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        if (archive) {
+            // another instance may be archiving the same runs
+            jdbcTemplate.update("INSERT IGNORE INTO HARVESTER_RUN_ARCHIVE (" + RUN_COLUMNS + ") "
+                                + "SELECT " + RUN_COLUMNS + " FROM HARVESTER_RUN WHERE ID IN (" + placeholders + ")",
+                    ids.toArray());
+            jdbcTemplate.update("INSERT IGNORE INTO HARVESTER_RUN_STEP_ARCHIVE (" + STEP_COLUMNS + ") "
+                                + "SELECT " + STEP_COLUMNS + " FROM HARVESTER_RUN_STEP WHERE RUN_ID IN (" + placeholders + ")",
+                    ids.toArray());
+        }
+        // the reports of the runs go with them
+        return jdbcTemplate.update("DELETE FROM HARVESTER_RUN WHERE ID IN (" + placeholders + ")", ids.toArray());
+    }
+
+    private HarvesterRun toHarvesterRun(ResultSet rs, int rowNum) throws SQLException {
+        return HarvesterRun.builder()
+                .id(rs.getString("ID"))
+                .correlationId(rs.getString("CORRELATION_ID"))
+                .repositoryId(rs.getString("REPOSITORY_ID"))
+                .repositoryUrl(rs.getString("REPOSITORY_URL"))
+                .revision(rs.getString("REVISION"))
+                .startedAt(getInstant(rs, "STARTED"))
+                .startedBy(rs.getString("STARTED_BY"))
+                .endedAt(getInstant(rs, "FINISHED"))
+                .status(getStatusSafely(rs))
+                .reason(rs.getString("REASON"))
+                .build();
     }
 
     private HarvesterRun.Status getStatusSafely(ResultSet rs) {
@@ -156,62 +307,44 @@ public class HarvesterRunService {
     }
 
     public void deletePendingRuns() {
-        getAllRuns()
-                .stream()
-                .filter(harvesterRun -> harvesterRun.getStatus() == HarvesterRun.Status.RUNNING)
+        jdbcTemplate.query(SELECT_RUNS + "WHERE STATUS = ?", this::toHarvesterRun, HarvesterRun.Status.RUNNING.toString())
                 .forEach(this::deleteIfNecessary);
     }
 
     private void deleteIfNecessary(HarvesterRun harvesterRun) {
-        if (getAllRunningHarvestThreadNames()
-                .stream()
-                .noneMatch(threadName -> matchRunning(harvesterRun, threadName))) {
+        if (!harvestRunRegistry.isRunning(harvesterRun.getId())) {
             delete(harvesterRun);
         }
     }
 
-    private boolean matchRunning(HarvesterRun harvesterRun, String threadName) {
-        return contains(threadName, harvesterRun.getRepositoryId())
-               && contains(threadName, harvesterRun.getRevision())
-               && contains(threadName, harvesterRun.getId())
-               && endsWithIgnoreCase(threadName, "RUNNING");
-    }
-
     private void delete(HarvesterRun harvesterRun) {
         String query = "DELETE FROM HARVESTER_RUN WHERE ID = ?";
         jdbcTemplate.update(query, harvesterRun.getId());
     }
 
     public List<RunningInstance> getAllRunningInstances() {
-        List<HarvesterRun> allRuns = getAllRuns();
-        return getAllRunningHarvestThreadNames()
-                .stream()
-                .map(threadName -> asRunningInstance(allRuns, threadName))
-                .filter(Objects::nonNull)
+        return harvestRunRegistry.getRunningHarvests().stream()
+                .map(HarvesterRunService::asRunningInstance)
                 .collect(Collectors.toList());
     }
 
-    private RunningInstance asRunningInstance(List<HarvesterRun> allRuns, String threadName) {
-        HarvesterRun harvesterRun = findHarvesterRun(allRuns, threadName);
-        if (harvesterRun != null) {
-            return RunningInstance.builder()
-                    .threadName(threadName)
-                    .harvesterRun(findHarvesterRun(allRuns, threadName))
-                    .build();
-        }
-        return null;
-    }
-
-    private HarvesterRun findHarvesterRun(List<HarvesterRun> allRuns, String threadName) {
-        try {
-            String[] split = threadName.split("\\|");
-            String runId = split[1];
-            return allRuns.stream()
-                    .filter(harvesterRun -> harvesterRun.getId().equals(runId))
-                    .findFirst()
-                    .orElse(null);
-        } catch (Exception e) {
-            return null;
-        }
+    private static RunningInstance asRunningInstance(RunningHarvest runningHarvest) {
+        return RunningInstance.builder()
+                .threadName(runningHarvest.getThreadName())
+                .harvesterRun(HarvesterRun.builder()
+                        .id(runningHarvest.getRunId())
+                        .correlationId(runningHarvest.getCorrelationId())
+                        .repositoryId(runningHarvest.getRepository().getId())
+                        .repositoryUrl(runningHarvest.getRepository().getUrl())
+                        .revision(runningHarvest.getRevision())
+                        .startedAt(runningHarvest.getStartedAt())
+                        .startedBy(runningHarvest.getStartedBy())
+                        .status(HarvesterRun.Status.RUNNING)
+                        .build())
+                .pathsDone(runningHarvest.getPathsDone())
+                .pathsTotal(runningHarvest.getPathsTotal())
+                .csvIndexingSkipped(runningHarvest.getCsvIndexingSkipped())
+                .cancelled(runningHarvest.isCancelled())
+                .build();
     }
 }
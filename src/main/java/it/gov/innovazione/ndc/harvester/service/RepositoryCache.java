@@ -0,0 +1,58 @@
+package it.gov.innovazione.ndc.harvester.service;
+
+import it.gov.innovazione.ndc.model.harvester.Repository;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Snapshot of the active repositories, by id and by normalised url, loaded with a single query.
+ */
+@Getter
+class RepositoryCache {
+    private final List<Repository> repositories;
+    private final boolean tableEmpty;
+    private final long generation;
+    private final Instant loadedAt;
+    @Getter(AccessLevel.NONE)
+    private final Map<String, Repository> byId;
+    @Getter(AccessLevel.NONE)
+    private final Map<String, Repository> byUrl;
+
+    RepositoryCache(List<Repository> allRepositories, long generation, Instant loadedAt) {
+        this.repositories = allRepositories.stream()
+                .filter(Repository::getActive)
+                .collect(Collectors.toUnmodifiableList());
+        this.tableEmpty = allRepositories.isEmpty();
+        this.generation = generation;
+        this.loadedAt = loadedAt;
+        this.byId = repositories.stream()
+                .collect(Collectors.toUnmodifiableMap(Repository::getId, Function.identity()));
+        this.byUrl = repositories.stream()
+                .collect(Collectors.toUnmodifiableMap(repo -> normaliseUrl(repo.getUrl()), Function.identity(), (first, second) -> first));
+    }
+
+    Optional<Repository> findById(String id) {
+        return Optional.ofNullable(byId.get(id));
+    }
+
+    /**
+     * Tells whether the url of an active repository is a prefix of the given one, or vice versa, ignoring case.
+     */
+    boolean hasOverlappingUrl(String url) {
+        String normalisedUrl = normaliseUrl(url);
+        return byUrl.containsKey(normalisedUrl)
+               || byUrl.keySet().stream().anyMatch(repoUrl -> repoUrl.startsWith(normalisedUrl) || normalisedUrl.startsWith(repoUrl));
+    }
+
+    static String normaliseUrl(String url) {
+        return url.toLowerCase(Locale.ROOT);
+    }
+}
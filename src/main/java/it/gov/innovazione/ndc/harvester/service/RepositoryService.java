@@ -10,13 +10,22 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import java.security.Principal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static java.util.Collections.emptyList;
-import static org.springframework.util.StringUtils.startsWithIgnoreCase;
 
 @Service
 @Slf4j
@@ -43,29 +52,17 @@ public class RepositoryService {
     @Value("#{'${harvester.repositories}'}")
     private final String repositories;
 
+    @Value("${harvester.repository-cache.ttl:PT5M}")
+    private final Duration cacheTtl;
+
+    // bumped on every change, so that a cache loaded concurrently with a change is never used
+    private final AtomicLong cacheGeneration = new AtomicLong();
+    private final AtomicReference<RepositoryCache> cache = new AtomicReference<>();
+
     public List<Repository> getAllRepos() {
-        List<Repository> allRepos = jdbcTemplate.query(
-                QUERY_GET_ALL,
-                (rs, rowNum) ->
-                        Repository.builder()
-                                .id(rs.getString("ID"))
-                                .url(rs.getString("URL"))
-                                .name(rs.getString("NAME"))
-                                .description(rs.getString("DESCRIPTION"))
-                                .owner(rs.getString("OWNER"))
-                                .active(rs.getBoolean("ACTIVE"))
-                                .createdAt(rs.getTimestamp("CREATED").toInstant())
-                                .createdBy(rs.getString("CREATED_BY"))
-                                .updatedAt(rs.getTimestamp("UPDATED").toInstant())
-                                .updatedBy(rs.getString("UPDATED_BY"))
-                                .maxFileSizeBytes(rs.getLong("MAX_FILE_SIZE_BYTES"))
-                                .build());
-
-        if (!allRepos.isEmpty()) {
-            allRepos.forEach(repo -> log.info("Repository: " + repo.toString()));
-            return allRepos.stream()
-                    .filter(Repository::getActive)
-                    .collect(Collectors.toList());
+        RepositoryCache repositoryCache = getOrLoadCache();
+        if (!repositoryCache.isTableEmpty()) {
+            return repositoryCache.getRepositories();
         }
 
         log.warn("No repositories found in the database. Using the default repositories from configuration");
@@ -79,10 +76,50 @@ public class RepositoryService {
                 .collect(Collectors.toList());
 
         saveDefaultRepositories(defaultRepositories);
+        invalidateCache();
 
         return defaultRepositories;
     }
 
+    private RepositoryCache getOrLoadCache() {
+        return getValidCache().orElseGet(() -> {
+            long generation = cacheGeneration.get();
+            List<Repository> allRepos = jdbcTemplate.query(QUERY_GET_ALL, RepositoryService::toRepository);
+            log.info("Loaded {} repositories", allRepos.size());
+            allRepos.forEach(repo -> log.debug("Repository: {}", repo));
+            RepositoryCache loaded = new RepositoryCache(allRepos, generation, Instant.now());
+            cache.set(loaded);
+            return loaded;
+        });
+    }
+
+    private Optional<RepositoryCache> getValidCache() {
+        return Optional.ofNullable(cache.get())
+                .filter(cached -> cached.getGeneration() == cacheGeneration.get())
+                .filter(cached -> cached.getLoadedAt().plus(cacheTtl).isAfter(Instant.now()));
+    }
+
+    private void invalidateCache() {
+        cacheGeneration.incrementAndGet();
+        cache.set(null);
+    }
+
+    private static Repository toRepository(ResultSet rs, int rowNum) throws SQLException {
+        return Repository.builder()
+                .id(rs.getString("ID"))
+                .url(rs.getString("URL"))
+                .name(rs.getString("NAME"))
+                .description(rs.getString("DESCRIPTION"))
+                .owner(rs.getString("OWNER"))
+                .active(rs.getBoolean("ACTIVE"))
+                .createdAt(rs.getTimestamp("CREATED").toInstant())
+                .createdBy(rs.getString("CREATED_BY"))
+                .updatedAt(rs.getTimestamp("UPDATED").toInstant())
+                .updatedBy(rs.getString("UPDATED_BY"))
+                .maxFileSizeBytes(rs.getLong("MAX_FILE_SIZE_BYTES"))
+                .build();
+    }
+
     private void saveDefaultRepositories(List<Repository> defaultRepositories) {
         defaultRepositories.forEach(this::save);
     }
@@ -115,22 +152,46 @@ public class RepositoryService {
     }
 
     public Optional<Repository> findRepoById(String id) {
-        return getAllRepos().stream()
-                .filter(repo -> repo.getId().equals(id))
-                .filter(Repository::getActive)
+        Optional<RepositoryCache> repositoryCache = getValidCache();
+        if (repositoryCache.isPresent()) {
+            return repositoryCache.get().findById(id);
+        }
+        return jdbcTemplate.query(QUERY_GET_ALL + " WHERE ID = ? AND ACTIVE = TRUE", RepositoryService::toRepository, id)
+                .stream()
                 .findFirst();
     }
 
+    /**
+     * Tells whether an active repository has a url which is a prefix of the given one, or vice versa.
+     */
+    private boolean hasOverlappingUrl(String url) {
+        Optional<RepositoryCache> repositoryCache = getValidCache();
+        if (repositoryCache.isPresent()) {
+            return repositoryCache.get().hasOverlappingUrl(url);
+        }
+        // both conditions can use the index on URL: the urls starting with the given one, or equal to one of its prefixes
+        List<String> prefixes = IntStream.rangeClosed(1, url.length())
+                .mapToObj(length -> url.substring(0, length))
+                .collect(Collectors.toList());
+        String query = "SELECT COUNT(*) FROM REPOSITORY "
+                       + "WHERE ACTIVE = TRUE "
+                       + "AND (URL LIKE ? ESCAPE '!' OR URL IN (" + String.join(", ", Collections.nCopies(prefixes.size(), "?")) + "))";
+        List<Object> args = new ArrayList<>();
+        args.add(escapeLike(url) + "%");
+        args.addAll(prefixes);
+        Integer count = jdbcTemplate.queryForObject(query, Integer.class, args.toArray());
+        return Objects.nonNull(count) && count > 0;
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!")
+                .replace("%", "!%")
+                .replace("_", "!_");
+    }
+
     @SneakyThrows
     public void createRepo(String url, String name, String description, Long maxFileSizeBytes, Principal principal) {
-        boolean isDuplicate = getAllRepos().stream()
-                .anyMatch(repo ->
-                        startsWithIgnoreCase(
-                                repo.getUrl(),
-                                url)
-                        || startsWithIgnoreCase(
-                                url,
-                                repo.getUrl()));
+        boolean isDuplicate = hasOverlappingUrl(url);
 
         if (isDuplicate) {
             throw new IllegalArgumentException("Duplicate repository " + url);
@@ -161,6 +222,7 @@ public class RepositoryService {
                 java.sql.Timestamp.from(java.time.Instant.now()),
                 principal.getName(),
                 maxFileSizeBytes);
+        invalidateCache();
     }
 
     public int updateRepo(String id, RepositoryController.CreateRepository loadedRepo, Principal principal) {
@@ -172,7 +234,7 @@ public class RepositoryService {
                        + "UPDATED_BY = ?, "
                        + "MAX_FILE_SIZE_BYTES = ? "
                        + "WHERE ID = ?";
-        return jdbcTemplate.update(query,
+        int updated = jdbcTemplate.update(query,
                 loadedRepo.getUrl(),
                 loadedRepo.getName(),
                 loadedRepo.getDescription(),
@@ -180,6 +242,8 @@ public class RepositoryService {
                 principal.getName(),
                 loadedRepo.getMaxFileSizeBytes(),
                 id);
+        invalidateCache();
+        return updated;
     }
 
     public int delete(String id, Principal principal) {
@@ -188,10 +252,12 @@ public class RepositoryService {
                        + "UPDATED = ?, "
                        + "UPDATED_BY = ? "
                        + "WHERE ID = ?";
-        return jdbcTemplate.update(query,
+        int deleted = jdbcTemplate.update(query,
                 false,
                 java.sql.Timestamp.from(java.time.Instant.now()),
                 principal.getName(),
                 id);
+        invalidateCache();
+        return deleted;
     }
 }
@@ -0,0 +1,295 @@
+package it.gov.innovazione.ndc.harvester.service;
+
+import it.gov.innovazione.ndc.harvester.SemanticAssetType;
+import it.gov.innovazione.ndc.harvester.exception.HarvestCancelledException;
+import it.gov.innovazione.ndc.model.harvester.HarvestStep;
+import it.gov.innovazione.ndc.model.harvester.HarvesterRunReport;
+import it.gov.innovazione.ndc.model.harvester.Repository;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.String.format;
+
+/**
+ * A harvest run in progress, with its progress counters and the handle to cancel it.
+ * Cancellation is cooperative: the run checks {@link #checkNotCancelled()} at safe points, while the threads working
+ * on it are interrupted so that they do not stay blocked on a slow backend.
+ */
+@Getter
+@RequiredArgsConstructor
+public class RunningHarvest {
+    private static final String CANCELLED_ON_REQUEST = "cancelled on request";
+
+    private final String runId;
+    private final String correlationId;
+    private final Repository repository;
+    private final String revision;
+    private final String startedBy;
+    @Getter(AccessLevel.NONE)
+    private final Thread thread;
+    @Getter(AccessLevel.NONE)
+    private final HarvestTimeoutProperties timeouts;
+    private final Instant startedAt = Instant.now();
+    @Getter(AccessLevel.NONE)
+    private final AtomicInteger pathsTotal = new AtomicInteger();
+    @Getter(AccessLevel.NONE)
+    private final AtomicInteger pathsDone = new AtomicInteger();
+    @Getter(AccessLevel.NONE)
+    private final AtomicInteger csvIndexingSkipped = new AtomicInteger();
+    @Getter(AccessLevel.NONE)
+    private final AtomicReference<String> cancelReason = new AtomicReference<>();
+    @Getter(AccessLevel.NONE)
+    private final Map<Phase, LongAdder> phaseNanos = newPhaseNanos();
+    @Getter(AccessLevel.NONE)
+    private final StepTimes stepTimes = new StepTimes();
+    @Getter(AccessLevel.NONE)
+    private final Set<PhaseDeadline> deadlines = ConcurrentHashMap.newKeySet();
+    @Getter(AccessLevel.NONE)
+    private final Queue<Runnable> successActions = new ConcurrentLinkedQueue<>();
+    @Getter(AccessLevel.NONE)
+    private boolean finished;
+    @Getter(AccessLevel.NONE)
+    private boolean committing;
+
+    public enum Phase {
+        CLONE, SCAN, PARSE, INDEX, STORE
+    }
+
+    /**
+     * A piece of work executed within a phase of the run.
+     */
+    @FunctionalInterface
+    public interface PhaseCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    public String getThreadName() {
+        return thread.getName();
+    }
+
+    /**
+     * Adds paths found for processing; the total grows as each semantic asset type is scanned.
+     */
+    public void addPaths(int count) {
+        pathsTotal.addAndGet(count);
+    }
+
+    public void pathDone() {
+        pathsDone.incrementAndGet();
+    }
+
+    public int getPathsTotal() {
+        return pathsTotal.get();
+    }
+
+    public int getPathsDone() {
+        return pathsDone.get();
+    }
+
+    /**
+     * Counts a controlled vocabulary whose CSV was left indexed as it was, being unchanged.
+     */
+    public void csvIndexingSkipped() {
+        csvIndexingSkipped.incrementAndGet();
+    }
+
+    public int getCsvIndexingSkipped() {
+        return csvIndexingSkipped.get();
+    }
+
+    /**
+     * Defers an action until the whole run has succeeded; actions of failed or cancelled runs are discarded.
+     */
+    public void afterSuccess(Runnable action) {
+        successActions.add(action);
+    }
+
+    /**
+     * Called by the thread running the harvest once it succeeded, to execute the deferred actions.
+     */
+    public void succeeded() {
+        Runnable action;
+        while ((action = successActions.poll()) != null) {
+            action.run();
+        }
+    }
+
+    /**
+     * Asks the run to stop at its next safe point.
+     *
+     * @return whether the run was cancelled by this call, that is it was neither cancelled already nor past its last
+     *         safe point
+     */
+    public boolean cancel() {
+        return cancel(CANCELLED_ON_REQUEST);
+    }
+
+    private synchronized boolean cancel(String reason) {
+        if (committing || !cancelReason.compareAndSet(null, reason)) {
+            return false;
+        }
+        interruptThreads();
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return Objects.nonNull(cancelReason.get());
+    }
+
+    public Optional<String> getCancelReason() {
+        return Optional.ofNullable(cancelReason.get());
+    }
+
+    /**
+     * Describes why the run was stopped, if it was cancelled.
+     */
+    public Optional<HarvestCancelledException> getCancellation() {
+        return getCancelReason()
+                .map(reason -> new HarvestCancelledException(format("Harvest run %s of %s %s", runId, repository.getUrl(), reason)));
+    }
+
+    /**
+     * Safe point of the run: throws if the run was cancelled, so that it stops before doing any further work.
+     */
+    public void checkNotCancelled() {
+        Optional<HarvestCancelledException> cancellation = getCancellation();
+        if (cancellation.isPresent()) {
+            throw cancellation.get();
+        }
+    }
+
+    /**
+     * Last safe point of the run: throws if the run was cancelled, otherwise from then on the run cannot be cancelled
+     * any more, neither on request nor by a timeout, and its threads are not interrupted, so that the data it is
+     * replacing is never left half written.
+     */
+    public synchronized void commit() {
+        checkNotCancelled();
+        committing = true;
+    }
+
+    /**
+     * Runs a piece of work of the given phase in the calling thread; if it takes longer than the timeout of the phase
+     * the run is cancelled by {@link #checkDeadlines(Instant)}.
+     */
+    public <T, E extends Exception> T inPhase(Phase phase, PhaseCall<T, E> call) throws E {
+        checkNotCancelled();
+        PhaseDeadline deadline = new PhaseDeadline(phase, timeouts.getTimeout(phase), Thread.currentThread());
+        deadlines.add(deadline);
+        long start = System.nanoTime();
+        try {
+            return call.call();
+        } finally {
+            phaseNanos.get(phase).add(System.nanoTime() - start);
+            deadlines.remove(deadline);
+        }
+    }
+
+    /**
+     * Time spent so far in each phase; phases running on several threads at once count the time of each of them.
+     */
+    public Map<Phase, Duration> getPhaseTimes() {
+        Map<Phase, Duration> phaseTimes = new EnumMap<>(Phase.class);
+        phaseNanos.forEach((phase, nanos) -> phaseTimes.put(phase, Duration.ofNanos(nanos.sum())));
+        return Collections.unmodifiableMap(phaseTimes);
+    }
+
+    /**
+     * Adds the time of a piece of work done in a step of the run, for its report.
+     *
+     * @param assetType the type of the assets the work was done for, none if done for the whole repository
+     */
+    public void stepDone(HarvestStep step, SemanticAssetType assetType, long nanos, boolean failed) {
+        stepTimes.add(step, assetType, nanos, failed);
+    }
+
+    /**
+     * Adds triples loaded or rows indexed in a step of the run.
+     */
+    public void stepItems(HarvestStep step, SemanticAssetType assetType, long items) {
+        stepTimes.addItems(step, assetType, items);
+    }
+
+    /**
+     * Time spent so far in each step, by asset type.
+     */
+    public List<HarvesterRunReport.StepReport> getStepReports() {
+        return stepTimes.getReports();
+    }
+
+    /**
+     * Cancels the run if any of its phases in progress is running late.
+     *
+     * @return whether the run was cancelled by this check
+     */
+    public boolean checkDeadlines(Instant now) {
+        return deadlines.stream()
+                .filter(deadline -> deadline.isExpired(now))
+                .findFirst()
+                .map(deadline -> cancel(format("timed out in %s phase after %s", deadline.phase.name().toLowerCase(Locale.ROOT), deadline.timeout)))
+                .orElse(false);
+    }
+
+    /**
+     * Called by the thread running the harvest once done: from then on it is not interrupted on behalf of this run
+     * any more, and an interruption left over by a cancellation is cleared before the thread is reused.
+     */
+    public synchronized void finish() {
+        finished = true;
+        if (Thread.currentThread() == thread) {
+            Thread.interrupted();
+        }
+    }
+
+    private static Map<Phase, LongAdder> newPhaseNanos() {
+        Map<Phase, LongAdder> phaseNanos = new EnumMap<>(Phase.class);
+        Arrays.stream(Phase.values()).forEach(phase -> phaseNanos.put(phase, new LongAdder()));
+        return phaseNanos;
+    }
+
+    private synchronized void interruptThreads() {
+        if (finished) {
+            return;
+        }
+        thread.interrupt();
+        deadlines.forEach(deadline -> deadline.thread.interrupt());
+    }
+
+    private static final class PhaseDeadline {
+        private final Phase phase;
+        private final Duration timeout;
+        private final Thread thread;
+        private final Instant expiresAt;
+
+        private PhaseDeadline(Phase phase, Duration timeout, Thread thread) {
+            this.phase = phase;
+            this.timeout = timeout;
+            this.thread = thread;
+            // a missing or zero timeout leaves the phase unbounded
+            this.expiresAt = Objects.isNull(timeout) || timeout.isZero() || timeout.isNegative() ? null : Instant.now().plus(timeout);
+        }
+
+        private boolean isExpired(Instant now) {
+            return Objects.nonNull(expiresAt) && now.isAfter(expiresAt);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package it.gov.innovazione.ndc.harvester.service;
+
+import it.gov.innovazione.ndc.harvester.SemanticAssetType;
+import it.gov.innovazione.ndc.model.harvester.HarvestStep;
+import it.gov.innovazione.ndc.model.harvester.HarvesterRunReport;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Time spent in each step of a run, by type of semantic asset, updated by all the threads working on the run.
+ */
+class StepTimes {
+    static final Comparator<HarvesterRunReport.StepReport> BY_STEP_AND_TYPE = Comparator
+            .comparing(HarvesterRunReport.StepReport::getStep)
+            .thenComparing(HarvesterRunReport.StepReport::getAssetType, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final ConcurrentMap<Key, Totals> totals = new ConcurrentHashMap<>();
+
+    void add(HarvestStep step, SemanticAssetType assetType, long nanos, boolean failed) {
+        Totals stepTotals = get(step, assetType);
+        stepTotals.count.increment();
+        stepTotals.nanos.add(nanos);
+        if (failed) {
+            stepTotals.failures.increment();
+        }
+    }
+
+    void addItems(HarvestStep step, SemanticAssetType assetType, long items) {
+        get(step, assetType).items.add(items);
+    }
+
+    List<HarvesterRunReport.StepReport> getReports() {
+        return totals.entrySet().stream()
+                .map(entry -> HarvesterRunReport.StepReport.builder()
+                        .step(entry.getKey().step)
+                        .assetType(entry.getKey().assetType)
+                        .count(entry.getValue().count.sum())
+                        .failures(entry.getValue().failures.sum())
+                        .durationMillis(TimeUnit.NANOSECONDS.toMillis(entry.getValue().nanos.sum()))
+                        .items(entry.getValue().items.sum())
+                        .build())
+                .sorted(BY_STEP_AND_TYPE)
+                .collect(Collectors.toList());
+    }
+
+    private Totals get(HarvestStep step, SemanticAssetType assetType) {
+        return totals.computeIfAbsent(new Key(step, assetType), key -> new Totals());
+    }
+
+    private static final class Key {
+        private final HarvestStep step;
+        private final SemanticAssetType assetType;
+
+        private Key(HarvestStep step, SemanticAssetType assetType) {
+            this.step = step;
+            this.assetType = assetType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return step == key.step && assetType == key.assetType;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(step, assetType);
+        }
+    }
+
+    private static final class Totals {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder items = new LongAdder();
+    }
+}
@@ -0,0 +1,35 @@
+package it.gov.innovazione.ndc.harvester.util;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A directory as found by a single scan of the file system, with its files and subdirectories.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@RequiredArgsConstructor(staticName = "of")
+public class DirectoryNode {
+    private final Path path;
+    private final List<DirectoryNode> directories;
+    private final List<Path> files;
+
+    public boolean isLeaf() {
+        return directories.isEmpty();
+    }
+
+    /**
+     * Names of the files and subdirectories of the directory.
+     */
+    public Stream<String> getEntryNames() {
+        return Stream.concat(directories.stream().map(DirectoryNode::getPath), files.stream())
+                .map(entry -> entry.getFileName().toString());
+    }
+}
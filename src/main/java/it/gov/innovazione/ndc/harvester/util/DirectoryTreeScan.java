@@ -0,0 +1,71 @@
+package it.gov.innovazione.ndc.harvester.util;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Scans a directory tree in a fork-join pool: the entries of each directory are visited once, together with their
+ * attributes, and its subdirectories are scanned in parallel.
+ */
+@Slf4j
+@RequiredArgsConstructor
+class DirectoryTreeScan extends RecursiveTask<DirectoryNode> {
+    private final Path directory;
+    private final Predicate<String> isSkippedDirectory;
+
+    @Override
+    protected DirectoryNode compute() {
+        List<Path> files = new ArrayList<>();
+        List<Path> subDirectories = new ArrayList<>();
+        try {
+            // symbolic links are not followed, so that they cannot make the scan loop
+            Files.walkFileTree(directory, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path entry, BasicFileAttributes attributes) {
+                    if (!attributes.isDirectory()) {
+                        files.add(entry);
+                    } else if (!isSkippedDirectory.test(entry.getFileName().toString().toLowerCase(Locale.ROOT))) {
+                        subDirectories.add(entry);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path entry, IOException e) {
+                    log.warn("Cannot read {}; skipping", entry, e);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        List<DirectoryTreeScan> subScans = subDirectories.stream()
+                .sorted()
+                .map(subDirectory -> new DirectoryTreeScan(subDirectory, isSkippedDirectory))
+                .collect(Collectors.toList());
+        return DirectoryNode.of(directory,
+                invokeAll(subScans).stream()
+                        .map(DirectoryTreeScan::join)
+                        .collect(Collectors.toUnmodifiableList()),
+                files.stream()
+                        .sorted()
+                        .collect(Collectors.toUnmodifiableList()));
+    }
+}
@@ -9,7 +9,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Locale;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static java.util.Comparator.reverseOrder;
 
@@ -21,7 +23,17 @@ public class FileUtils {
     }
 
     public List<Path> listContents(Path parent) throws IOException {
-        return Files.list(parent).collect(Collectors.toList());
+        try (Stream<Path> contents = Files.list(parent)) {
+            return contents.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Scans the directory tree under the given one in a single pass, leaving out the directories whose lower case name
+     * is matched by the given predicate, together with their contents.
+     */
+    public DirectoryNode scanDirectoryTree(Path root, Predicate<String> isSkippedDirectory) {
+        return new DirectoryTreeScan(root, isSkippedDirectory).invoke();
     }
 
     public boolean folderExists(Path maybeDir) {
@@ -0,0 +1,242 @@
+package it.gov.innovazione.ndc.harvester.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.transport.RefSpec;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps a bare mirror of each harvested repository on disk, so that a run only fetches the objects pushed since
+ * the previous one instead of cloning the whole history again.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class GitMirrorCache {
+    private static final int MAX_READABLE_NAME_LENGTH = 100;
+    private static final int HASH_LENGTH = 16;
+    private static final List<RefSpec> REF_SPECS = List.of(
+            new RefSpec("+refs/heads/*:refs/heads/*"),
+            new RefSpec("+refs/tags/*:refs/tags/*"));
+
+    private final GitMirrorProperties properties;
+    private final FileUtils fileUtils;
+    private final ConcurrentMap<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Integer> leases = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public boolean isAssetsOnly() {
+        return properties.isAssetsOnly();
+    }
+
+    /**
+     * Brings the mirror of the repository up to date (cloning it if missing) and hands its folder to the action.
+     * The mirror cannot be updated or evicted by other runs while the action is executing.
+     */
+    public void useMirror(String repoUrl, Consumer<File> action) {
+        String mirrorName = getMirrorName(repoUrl);
+        File mirrorDir = Path.of(properties.getDirectory(), mirrorName).toFile();
+        ReentrantLock lock = getLock(mirrorName);
+        lock.lock();
+        try {
+            update(repoUrl, mirrorDir);
+            evictLeastRecentlyUsed(mirrorDir);
+            action.accept(mirrorDir);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Keeps a mirror from being evicted until the lease is released, for the folders linked to it, which are read
+     * after {@link #useMirror} returned. Folders not in the mirror directory are ignored.
+     */
+    public void lease(File gitDir) {
+        if (isMirror(gitDir)) {
+            leases.merge(gitDir.getName(), 1, Integer::sum);
+        }
+    }
+
+    public void release(File gitDir) {
+        if (isMirror(gitDir)) {
+            leases.computeIfPresent(gitDir.getName(), (name, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    private boolean isMirror(File gitDir) {
+        return Path.of(properties.getDirectory()).toAbsolutePath().normalize()
+                .equals(gitDir.toPath().toAbsolutePath().normalize().getParent());
+    }
+
+    private void update(String repoUrl, File mirrorDir) {
+        try (Git git = Git.open(mirrorDir)) {
+            log.info("Fetching repo {} into mirror {}", repoUrl, mirrorDir);
+            git.fetch()
+                    .setRemote(repoUrl)
+                    .setRefSpecs(REF_SPECS)
+                    .setRemoveDeletedRefs(true)
+                    .call();
+            touch(mirrorDir);
+            return;
+        } catch (RepositoryNotFoundException e) {
+            log.info("No usable mirror of repo {} found in {}", repoUrl, mirrorDir);
+            removeQuietly(mirrorDir);
+        } catch (IOException | GitAPIException e) {
+            throw new GitRepoCloneException(String.format("Cannot fetch repo '%s' into mirror '%s'", repoUrl, mirrorDir), e);
+        }
+
+        createMirror(repoUrl, mirrorDir);
+    }
+
+    private void createMirror(String repoUrl, File mirrorDir) {
+        log.info("Cloning repo {} into mirror {}", repoUrl, mirrorDir);
+        try {
+            Git.cloneRepository()
+                    .setURI(repoUrl)
+                    .setDirectory(mirrorDir)
+                    .setBare(true)
+                    .call()
+                    .close();
+            touch(mirrorDir);
+        } catch (GitAPIException e) {
+            removeQuietly(mirrorDir);
+            throw new GitRepoCloneException(String.format("Cannot clone repo '%s' into mirror '%s'", repoUrl, mirrorDir), e);
+        }
+    }
+
+    private void evictLeastRecentlyUsed(File mirrorInUse) {
+        long quota = properties.getMaxSize().toBytes();
+        File[] mirrorDirs = Objects.requireNonNullElse(new File(properties.getDirectory()).listFiles(File::isDirectory), new File[0]);
+        List<Mirror> mirrors = Arrays.stream(mirrorDirs)
+                .map(dir -> new Mirror(dir, dir.lastModified(), sizeOf(dir.toPath())))
+                .sorted(Comparator.comparingLong(Mirror::getLastUsed))
+                .collect(Collectors.toList());
+
+        long totalSize = mirrors.stream().mapToLong(Mirror::getSize).sum();
+        for (Mirror mirror : mirrors) {
+            if (totalSize <= quota) {
+                return;
+            }
+            if (mirror.getDir().equals(mirrorInUse)) {
+                continue;
+            }
+            ReentrantLock lock = getLock(mirror.getDir().getName());
+            if (!lock.tryLock()) {
+                log.debug("Mirror {} is in use; not evicting it", mirror.getDir());
+                continue;
+            }
+            try {
+                // the first lease of a mirror is taken holding its lock, hence not while the mirror is evicted
+                if (leases.containsKey(mirror.getDir().getName())) {
+                    log.debug("Mirror {} is linked to folders still in use; not evicting it", mirror.getDir());
+                    continue;
+                }
+                log.info("Evicting mirror {} ({} bytes) to stay within the {} quota", mirror.getDir(), mirror.getSize(), properties.getMaxSize());
+                removeQuietly(mirror.getDir());
+                totalSize -= mirror.getSize();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private ReentrantLock getLock(String mirrorName) {
+        return locks.computeIfAbsent(mirrorName, name -> new ReentrantLock());
+    }
+
+    private void touch(File mirrorDir) {
+        if (!mirrorDir.setLastModified(System.currentTimeMillis())) {
+            log.warn("Cannot update last use of mirror {}", mirrorDir);
+        }
+    }
+
+    private void removeQuietly(File dir) {
+        if (!dir.exists()) {
+            return;
+        }
+        try {
+            fileUtils.removeDirectory(dir.toPath());
+        } catch (IOException e) {
+            log.warn("Cannot remove mirror {}", dir, e);
+        }
+    }
+
+    private static long sizeOf(Path dir) {
+        AtomicLong size = new AtomicLong();
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    size.addAndGet(attributes.size());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    // files such as the lock files of git come and go while the mirror is in use
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            return size.get();
+        } catch (IOException e) {
+            log.warn("Cannot compute size of mirror {}", dir, e);
+            return 0;
+        }
+    }
+
+    /**
+     * Name of the mirror of a repository: a readable form of its url, followed by a hash of the url telling apart
+     * urls that read the same once their special characters are replaced, such as {@code foo_bar/x} and
+     * {@code foo/bar_x}.
+     */
+    static String getMirrorName(String repoUrl) {
+        String normalizedUrl = repoUrl.replaceAll("^[a-zA-Z]+://", "").replaceAll("/+$", "");
+        String readableName = StringUtils.left(normalizedUrl.replaceAll("[^a-zA-Z0-9._-]", "_"), MAX_READABLE_NAME_LENGTH);
+        return readableName + "-" + hash(normalizedUrl) + ".git";
+    }
+
+    @SneakyThrows
+    private static String hash(String url) {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+        return String.format("%064x", new BigInteger(1, digest)).substring(0, HASH_LENGTH);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class Mirror {
+        private final File dir;
+        private final long lastUsed;
+        private final long size;
+    }
+}
@@ -0,0 +1,39 @@
+package it.gov.innovazione.ndc.harvester.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@Configuration
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ConfigurationProperties("harvester.git.mirror")
+public class GitMirrorProperties {
+    /**
+     * Whether repositories are cloned from a persistent local bare mirror, updated with a fetch at every run,
+     * instead of being cloned from the remote from scratch.
+     */
+    private boolean enabled;
+
+    /**
+     * Whether, instead of checking out a working copy from the mirror, only the files needed by the harvest are
+     * written out, straight from the mirror object store.
+     */
+    private boolean assetsOnly;
+
+    /**
+     * Folder holding one bare mirror per repository.
+     */
+    private String directory;
+
+    /**
+     * Disk quota for all the mirrors; the least recently used ones are evicted when it is exceeded.
+     */
+    private DataSize maxSize;
+}
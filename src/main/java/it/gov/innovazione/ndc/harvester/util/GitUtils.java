@@ -1,25 +1,119 @@
 package it.gov.innovazione.ndc.harvester.util;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Predicate;
 
+@Slf4j
 @Component
 @RequiredArgsConstructor
 public class GitUtils {
+    private static final String GITDIR_PREFIX = "gitdir: ";
+
+    private final GitMirrorCache gitMirrorCache;
 
     public void cloneRepo(String repoUrl, File destination, String revision) {
+        cloneRepo(repoUrl, destination, revision, path -> true);
+    }
+
+    /**
+     * Clones the repository at the given revision. When only assets are taken from the mirror, no working copy is
+     * checked out: the files accepted by the filter are written straight from the mirror object store, and the
+     * destination is linked to the mirror with a {@code .git} file. The mirror is then kept until the destination is
+     * released with {@link #releaseClone(File)}.
+     *
+     * @param pathFilter accepts the paths, relative to the repository root, of the files needed by the harvest
+     */
+    public void cloneRepo(String repoUrl, File destination, String revision, Predicate<String> pathFilter) {
+        if (gitMirrorCache.isEnabled() && !isLocalRepo(repoUrl)) {
+            gitMirrorCache.useMirror(repoUrl, mirror -> {
+                if (gitMirrorCache.isAssetsOnly()) {
+                    exportMirror(mirror, revision, destination, pathFilter);
+                    gitMirrorCache.lease(mirror);
+                } else {
+                    cloneRepoDirectly(mirror.toURI().toString(), destination, revision);
+                }
+            });
+            return;
+        }
+        cloneRepoDirectly(repoUrl, destination, revision);
+    }
+
+    /**
+     * Releases the mirror a folder exported from it is linked to, once the folder is no longer used.
+     */
+    public void releaseClone(File cloneDir) {
+        Path dotGit = cloneDir.toPath().resolve(Constants.DOT_GIT);
+        if (!Files.isRegularFile(dotGit)) {
+            return;
+        }
         try {
-            Git call = Git.cloneRepository()
-                    .setURI(repoUrl)
-                    .setDirectory(destination)
-                    .call();
+            String gitDir = StringUtils.removeStart(Files.readString(dotGit).trim(), GITDIR_PREFIX);
+            gitMirrorCache.release(new File(gitDir));
+        } catch (IOException e) {
+            log.warn("Cannot read the repository {} is linked to", cloneDir, e);
+        }
+    }
+
+    private void exportMirror(File mirror, String revision, File destination, Predicate<String> pathFilter) {
+        try (Repository repository = new FileRepositoryBuilder().setGitDir(mirror).setMustExist(true).build()) {
+            exportTree(repository, revision, destination, pathFilter);
+        } catch (IOException e) {
+            throw new GitRepoCloneException(String.format("Cannot export revision '%s' of mirror '%s'", revision, mirror), e);
+        }
+    }
+
+    private void exportTree(Repository repository, String revision, File destination, Predicate<String> pathFilter) throws IOException {
+        String rev = StringUtils.isNotBlank(revision) ? revision : Constants.HEAD;
+        ObjectId treeId = repository.resolve(rev + "^{tree}");
+        if (treeId == null) {
+            throw new IOException(String.format("Unknown revision '%s'", rev));
+        }
+
+        try (TreeWalk treeWalk = new TreeWalk(repository)) {
+            treeWalk.addTree(treeId);
+            treeWalk.setRecursive(true);
+            while (treeWalk.next()) {
+                FileMode mode = treeWalk.getFileMode(0);
+                boolean isFile = FileMode.REGULAR_FILE.equals(mode) || FileMode.EXECUTABLE_FILE.equals(mode);
+                if (!isFile || !pathFilter.test(treeWalk.getPathString())) {
+                    continue;
+                }
+                Path target = destination.toPath().resolve(treeWalk.getPathString());
+                Files.createDirectories(target.getParent());
+                try (OutputStream out = Files.newOutputStream(target)) {
+                    repository.open(treeWalk.getObjectId(0), Constants.OBJ_BLOB).copyTo(out);
+                }
+            }
+        }
+
+        Files.writeString(destination.toPath().resolve(Constants.DOT_GIT),
+                GITDIR_PREFIX + repository.getDirectory().getAbsolutePath() + "\n");
+    }
+
+    private void cloneRepoDirectly(String repoUrl, File destination, String revision) {
+        try (Git call = Git.cloneRepository()
+                .setURI(repoUrl)
+                .setDirectory(destination)
+                .call()) {
 
             if (StringUtils.isNotBlank(revision)) {
                 call.checkout().setName(revision).call();
@@ -29,6 +123,10 @@ public class GitUtils {
         }
     }
 
+    private boolean isLocalRepo(String repoUrl) {
+        return StringUtils.startsWith(repoUrl, "file:");
+    }
+
     private boolean isHead(Ref ref) {
         return StringUtils.endsWith(ref.getName(), "HEAD");
     }
@@ -5,7 +5,7 @@ import java.util.Objects;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.jena.arq.querybuilder.SelectBuilder;
-import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.ResultSet;
 import org.apache.jena.sparql.engine.http.QueryExceptionHTTP;
 import org.springframework.boot.actuate.autoconfigure.health.ConditionalOnEnabledHealthIndicator;
 import org.springframework.boot.actuate.health.Health;
@@ -39,10 +39,9 @@ public class VirtuosoHealthIndicator implements HealthIndicator {
                 "<http://www.w3.org/2000/01/rdf-schema#type>",
                 "<http://www.disney.com/characters/Character>");
 
-        try (QueryExecution execution = repository.select(queryBuilder)) {
-            if (Objects.nonNull(execution) && execution.execSelect().hasNext()) {
-                log.warn("What?! We found Fethry Duck");
-            }
+        ResultSet results = repository.probe(queryBuilder);
+        if (Objects.nonNull(results) && results.hasNext()) {
+            log.warn("What?! We found Fethry Duck");
         }
     }
 }
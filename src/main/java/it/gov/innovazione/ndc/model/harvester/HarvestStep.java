@@ -0,0 +1,17 @@
+package it.gov.innovazione.ndc.model.harvester;
+
+import java.util.Locale;
+
+/**
+ * Steps of a harvest run whose time is measured, for the metrics and the report of the run. Unlike the phases the
+ * timeouts apply to, they tell which backend the time goes to: git for the clone, Elasticsearch for the indexing of
+ * metadata and CSVs, Virtuoso for the load of the RDF content. The parse of files streamed to Virtuoso, too large to
+ * be held in memory, includes their upload.
+ */
+public enum HarvestStep {
+    CLONE, SCAN, PARSE, EXTRACT, ES_INDEX, CSV_INDEX, VIRTUOSO_LOAD;
+
+    public String getTag() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,37 @@
+package it.gov.innovazione.ndc.model.harvester;
+
+import it.gov.innovazione.ndc.harvester.SemanticAssetType;
+import lombok.Builder;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Where the time of a harvest run went, step by step and by type of semantic asset.
+ */
+@Data
+@Builder
+@RequiredArgsConstructor
+public class HarvesterRunReport {
+    private final HarvesterRun run;
+    private final List<StepReport> steps;
+
+    @Data
+    @Builder
+    @RequiredArgsConstructor
+    public static class StepReport {
+        private final HarvestStep step;
+        /**
+         * Type of the assets the step was executed for, none for the steps done once for the whole repository.
+         */
+        private final SemanticAssetType assetType;
+        private final long count;
+        private final long failures;
+        private final long durationMillis;
+        /**
+         * Triples loaded to Virtuoso or CSV rows indexed, for the steps that handle them.
+         */
+        private final long items;
+    }
+}
@@ -0,0 +1,48 @@
+package it.gov.innovazione.ndc.repository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the bulk requests sent to Elasticsearch at the same time by the whole application, whatever the run, the
+ * vocabulary or the index they write to. Each caller may limit its own requests further, but only this limit holds
+ * when many of them index at once.
+ */
+@Component
+public class ElasticsearchBulkLimiter {
+    private final int maxConcurrency;
+    private final Semaphore slots;
+
+    public ElasticsearchBulkLimiter(@Value("${elasticsearch.bulk.max-concurrency:4}") int maxConcurrency, MeterRegistry meterRegistry) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.slots = new Semaphore(this.maxConcurrency, true);
+        Gauge.builder("elasticsearch.bulk.slots.active", slots, s -> this.maxConcurrency - s.availablePermits())
+                .description("Elasticsearch bulk requests in flight")
+                .register(meterRegistry);
+        Gauge.builder("elasticsearch.bulk.slots.pending", slots, Semaphore::getQueueLength)
+                .description("Elasticsearch bulk requests waiting for a slot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Sends the bulk request once one of the slots is free, holding it until the request completes.
+     */
+    public <T> T send(Supplier<T> bulkRequest) {
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to send a bulk request to Elasticsearch", e);
+        }
+        try {
+            return bulkRequest.get();
+        } finally {
+            slots.release();
+        }
+    }
+}
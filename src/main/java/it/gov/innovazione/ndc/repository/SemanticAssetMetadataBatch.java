@@ -0,0 +1,81 @@
+package it.gov.innovazione.ndc.repository;
+
+import it.gov.innovazione.ndc.harvester.model.index.SemanticAssetMetadata;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Collects the metadata indexed during a harvest run and, once the batch is flushed, sends them with bulk requests of
+ * at most {@code chunkSize} documents, none of which refreshes the index; the index is refreshed once, at the end.
+ * Nothing is sent before the flush, so that a run which does not complete leaves the index untouched. A bulk request
+ * which fails as a whole is reported against each of its documents, and the remaining chunks are still sent.
+ * Documents may be added concurrently by the path processing workers. Each document is stamped with the id of the
+ * run, which tells the documents indexed by the run from the ones left by the previous runs.
+ */
+@Slf4j
+public class SemanticAssetMetadataBatch {
+    private final SemanticAssetMetadataRepository repository;
+    private final int chunkSize;
+    @Getter
+    private final String harvestRunId;
+    private final Map<String, String> failedDocuments = new ConcurrentHashMap<>();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final List<SemanticAssetMetadata> pending = new ArrayList<>();
+
+    public SemanticAssetMetadataBatch(SemanticAssetMetadataRepository repository, int chunkSize, String harvestRunId) {
+        this.repository = repository;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.harvestRunId = harvestRunId;
+    }
+
+    public synchronized void add(SemanticAssetMetadata metadata) {
+        metadata.setHarvestRunId(harvestRunId);
+        pending.add(metadata);
+    }
+
+    /**
+     * Sends the documents collected so far and refreshes the index.
+     *
+     * @return the error of each document of the batch that could not be indexed, by iri
+     */
+    public Map<String, String> flush() {
+        List<SemanticAssetMetadata> documents;
+        synchronized (this) {
+            documents = List.copyOf(pending);
+            pending.clear();
+        }
+        if (!documents.isEmpty()) {
+            // an index created before the run id was added would otherwise map it dynamically, as text
+            repository.putMapping();
+        }
+        for (int from = 0; from < documents.size(); from += chunkSize) {
+            send(documents.subList(from, Math.min(from + chunkSize, documents.size())));
+        }
+        if (requestCount.get() > 0) {
+            repository.refresh();
+        }
+        log.info("Indexed metadata with {} bulk request(s), {} document(s) failed", requestCount.get(), failedDocuments.size());
+        return Map.copyOf(failedDocuments);
+    }
+
+    private void send(List<SemanticAssetMetadata> chunk) {
+        Map<String, String> failures;
+        try {
+            failures = repository.saveAll(chunk);
+        } catch (RuntimeException e) {
+            log.error("Bulk request of {} document(s) failed", chunk.size(), e);
+            failures = chunk.stream()
+                    .collect(Collectors.toMap(SemanticAssetMetadata::getIri, m -> String.valueOf(e.getMessage()), (a, b) -> a));
+        }
+        requestCount.incrementAndGet();
+        failures.forEach((iri, error) -> log.error("Cannot index metadata of {}: {}", iri, error));
+        failedDocuments.putAll(failures);
+    }
+}
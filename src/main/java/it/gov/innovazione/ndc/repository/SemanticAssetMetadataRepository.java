@@ -9,6 +9,7 @@ import it.gov.innovazione.ndc.harvester.SemanticAssetType;
 import it.gov.innovazione.ndc.harvester.model.index.SemanticAssetMetadata;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -23,10 +24,15 @@ import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.index.query.TermsQueryBuilder;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.BulkFailureException;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.RefreshPolicy;
 import org.springframework.data.elasticsearch.core.SearchHit;
 import org.springframework.data.elasticsearch.core.SearchHits;
 import org.springframework.data.elasticsearch.core.SearchPage;
+import org.springframework.data.elasticsearch.core.query.BulkOptions;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQuery;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
 import org.springframework.stereotype.Repository;
@@ -36,7 +42,12 @@ import org.springframework.util.ObjectUtils;
 @RequiredArgsConstructor
 @Slf4j
 public class SemanticAssetMetadataRepository {
+    private static final BulkOptions WITHOUT_REFRESH = BulkOptions.builder()
+            .withRefreshPolicy(RefreshPolicy.NONE)
+            .build();
+
     private final ElasticsearchOperations esOps;
+    private final ElasticsearchBulkLimiter bulkLimiter;
 
     public SearchPage<SemanticAssetMetadata> search(String queryPattern, Set<String> types,
                                                     Set<String> themes, Pageable pageable) {
@@ -61,10 +72,53 @@ public class SemanticAssetMetadataRepository {
                 SemanticAssetMetadata.class).getDeleted();
     }
 
+    /**
+     * Deletes the documents of the repository which were not indexed by the given harvest run.
+     */
+    public long deleteStaleByRepoUrl(String repoUrl, String harvestRunId) {
+        QueryBuilder queryBuilder = boolQuery()
+                .must(termQuery("repoUrl", repoUrl))
+                .mustNot(termQuery("harvestRunId", harvestRunId));
+        return esOps.delete(new NativeSearchQuery(queryBuilder), SemanticAssetMetadata.class).getDeleted();
+    }
+
     public void save(SemanticAssetMetadata metadata) {
         esOps.save(metadata);
     }
 
+    /**
+     * Indexes the documents with a single bulk request, without refreshing the index. The request counts against the
+     * limit shared with the other bulk requests sent to Elasticsearch.
+     *
+     * @return the error of each document that could not be indexed, by iri
+     */
+    public Map<String, String> saveAll(List<SemanticAssetMetadata> metadata) {
+        List<IndexQuery> queries = metadata.stream()
+                .map(m -> new IndexQueryBuilder()
+                        .withId(m.getIri())
+                        .withObject(m)
+                        .build())
+                .collect(Collectors.toList());
+        try {
+            bulkLimiter.send(() -> esOps.bulkIndex(queries, WITHOUT_REFRESH, SemanticAssetMetadata.class));
+            return Map.of();
+        } catch (BulkFailureException e) {
+            return e.getFailedDocuments();
+        }
+    }
+
+    public void refresh() {
+        esOps.indexOps(SemanticAssetMetadata.class).refresh();
+    }
+
+    /**
+     * Puts the mapping of the documents on the index, which is created with it only when missing, so that the fields
+     * added since then are mapped as declared.
+     */
+    public void putMapping() {
+        esOps.indexOps(SemanticAssetMetadata.class).putMapping();
+    }
+
     private void addFilters(Set<String> types, Set<String> themes, BoolQueryBuilder finalQuery) {
         if (!types.isEmpty()) {
             finalQuery.filter(new TermsQueryBuilder("type", types));
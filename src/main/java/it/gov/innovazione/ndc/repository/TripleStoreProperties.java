@@ -6,6 +6,10 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
 
 @Data
 @ConfigurationProperties(prefix = "virtuoso")
@@ -30,4 +34,107 @@ public class TripleStoreProperties {
 
     private String username;
     private String password;
+
+    /**
+     * Graph group the staging graphs are added to while they are loaded, so that they stay out of the default graph
+     * union until they are swapped in. Virtuoso leaves the private graphs group out of the union for the users without
+     * an explicit permission on its graphs, once graph level security is set up: the group is created with
+     * {@code DB.DBA.RDF_GRAPH_GROUP_CREATE('http://www.openlinksw.com/schemas/virtrdf#PrivateGraphs', 1)} and the
+     * default permissions of {@code nobody} are granted with {@code DB.DBA.RDF_DEFAULT_USER_PERMS_SET('nobody', 1)}.
+     * When blank, or when the group cannot be updated, staging graphs are visible in the union while they load.
+     */
+    @Builder.Default
+    private String stagingGraphGroup = "http://www.openlinksw.com/schemas/virtrdf#PrivateGraphs";
+
+    /**
+     * Settings of the HTTP client shared by all the connections to Virtuoso.
+     */
+    @Builder.Default
+    private Client client = new Client();
+
+    /**
+     * Settings for uploading models to the graph store.
+     */
+    @Builder.Default
+    private Upload upload = new Upload();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Client {
+        /**
+         * Timeout for establishing a TCP connection to Virtuoso.
+         */
+        @Builder.Default
+        private Duration connectTimeout = Duration.ofSeconds(10);
+
+        /**
+         * How long to wait for one of the {@link #maxConcurrency} connection slots before giving up on a request.
+         */
+        @Builder.Default
+        private Duration acquireTimeout = Duration.ofMinutes(1);
+
+        /**
+         * How long a health probe waits for the connection slot reserved to probes, which is not one of the
+         * {@link #maxConcurrency} slots, before giving up.
+         */
+        @Builder.Default
+        private Duration probeAcquireTimeout = Duration.ofSeconds(5);
+
+        /**
+         * Preferred HTTP version; HTTP/2 falls back to HTTP/1.1 when the server does not support it.
+         */
+        @Builder.Default
+        private HttpClient.Version httpVersion = HttpClient.Version.HTTP_2;
+
+        /**
+         * Maximum number of requests sent to Virtuoso at the same time.
+         */
+        @Builder.Default
+        private int maxConcurrency = 16;
+
+        /**
+         * Number of threads of the HTTP client executor; when not positive, the default unbounded executor is used.
+         */
+        @Builder.Default
+        private int executorThreads = 4;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Upload {
+        /**
+         * Models with more triples than this are uploaded with one request per chunk of this many triples. Only a set of
+         * triples linked by the same blank nodes, which has to be sent at once, may make a chunk larger than this.
+         */
+        @Builder.Default
+        private int chunkSize = 50_000;
+
+        /**
+         * Maximum number of chunks of a model uploaded at the same time.
+         */
+        @Builder.Default
+        private int concurrency = 2;
+
+        /**
+         * Attempts made to upload each chunk before giving up.
+         */
+        @Builder.Default
+        private int maxAttempts = 3;
+
+        /**
+         * Wait before retrying a failed upload, doubled at each further attempt.
+         */
+        @Builder.Default
+        private Duration backoff = Duration.ofSeconds(1);
+
+        /**
+         * Files larger than this are streamed to the graph store while being parsed, instead of being loaded in memory.
+         */
+        @Builder.Default
+        private DataSize streamingThreshold = DataSize.ofMegabytes(16);
+    }
 }
@@ -3,34 +3,287 @@ package it.gov.innovazione.ndc.repository;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.jena.arq.querybuilder.SelectBuilder;
 import org.apache.jena.atlas.web.HttpException;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.query.Query;
 import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.ResultSet;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdfconnection.RDFConnection;
-import org.apache.jena.update.UpdateExecution;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Repository;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
 import static java.lang.String.format;
 
 @Slf4j
 @Repository
 public class TripleStoreRepository {
     private static final String DROP_SILENT_GRAPH_WITH_LOG_ENABLE_3 = "DEFINE sql:log-enable 3%nDROP SILENT GRAPH <%s>%n";
+    private static final String MOVE_SILENT_GRAPH = "MOVE SILENT GRAPH <%s> TO GRAPH <%s>%n";
+    private static final String ADD_AND_DROP_SILENT_GRAPH = "ADD SILENT GRAPH <%s> TO GRAPH <%s> ;%nDROP SILENT GRAPH <%1$s>%n";
+    private static final String ADD_TO_GRAPH_GROUP = "SELECT (sql:RDF_GRAPH_GROUP_INS(\"%s\", \"%s\")) {}%n";
+    private static final String REMOVE_FROM_GRAPH_GROUP = "SELECT (sql:RDF_GRAPH_GROUP_DEL(\"%s\", \"%s\")) {}%n";
+
+    private static final String UPLOAD_THREAD_PREFIX = "virtuoso-upload-";
 
     private final VirtuosoClient virtuosoClient;
+    private final TripleStoreProperties properties;
 
-    public TripleStoreRepository(VirtuosoClient virtuosoClient) {
+    public TripleStoreRepository(VirtuosoClient virtuosoClient, TripleStoreProperties properties) {
         this.virtuosoClient = virtuosoClient;
+        this.properties = properties;
     }
 
     public void save(String graphName, Model model) {
         log.info("Saving model to Virtuoso");
-        try (RDFConnection connection = virtuosoClient.getConnection()) {
-            saveWithConnection(graphName, model, connection);
+        TripleStoreProperties.Upload upload = getUploadProperties();
+        if (model.size() <= upload.getChunkSize()) {
+            saveWithRetries(graphName, model, upload);
+        } else {
+            saveInChunks(graphName, model);
         }
         log.info("Model saved to Virtuoso");
     }
 
+    private void saveInChunks(String graphName, Model model) {
+        ExtendedIterator<Triple> triples = model.getGraph().find();
+        try (ChunkedUpload upload = openUpload(graphName)) {
+            while (triples.hasNext()) {
+                upload.add(triples.next());
+            }
+            upload.finish();
+        } finally {
+            triples.close();
+        }
+    }
+
+    /**
+     * Opens an upload to a named graph, to which triples can be added one at a time, e.g. while a file is being parsed.
+     */
+    public ChunkedUpload openUpload(String graphName) {
+        return new ChunkedUpload(graphName, getUploadProperties());
+    }
+
+    /**
+     * Tells whether content of the given size should be streamed to the graph store rather than loaded in memory.
+     */
+    public boolean shouldStreamUpload(long contentLength) {
+        return contentLength > getUploadProperties().getStreamingThreshold().toBytes();
+    }
+
+    /**
+     * Uploads triples with one request per chunk, a bounded number of them at a time, so that only the chunks in
+     * flight are held in memory. The graph store assigns new blank nodes at each request, hence the triples involving
+     * blank nodes are kept aside until the end, then sent grouped by the connected components of their blank nodes:
+     * components are packed into chunks of at most the chunk size, the only larger chunks being made of a single
+     * component bigger than that, which cannot be split.
+     */
+    public class ChunkedUpload implements AutoCloseable {
+        private final String graphName;
+        private final TripleStoreProperties.Upload upload;
+        private final ExecutorService executor;
+        private final Semaphore inFlight;
+        private final List<Future<?>> uploads = new ArrayList<>();
+        private final BlankNodeTriples blankNodeTriples = new BlankNodeTriples();
+        private Graph chunk = GraphFactory.createDefaultGraph();
+        private long tripleCount;
+
+        private ChunkedUpload(String graphName, TripleStoreProperties.Upload upload) {
+            int concurrency = Math.max(1, upload.getConcurrency());
+            this.graphName = graphName;
+            this.upload = upload;
+            this.executor = Executors.newFixedThreadPool(concurrency, new CustomizableThreadFactory(UPLOAD_THREAD_PREFIX));
+            this.inFlight = new Semaphore(concurrency);
+        }
+
+        public void add(Triple triple) {
+            tripleCount++;
+            if (blankNodeTriples.add(triple)) {
+                return;
+            }
+            chunk.add(triple);
+            if (chunk.size() >= upload.getChunkSize()) {
+                submit(chunk);
+                chunk = GraphFactory.createDefaultGraph();
+            }
+        }
+
+        /**
+         * Sends the triples not sent yet and waits until all the chunks are uploaded.
+         */
+        public void finish() {
+            submit(chunk);
+            Graph blankNodeChunk = GraphFactory.createDefaultGraph();
+            for (List<Triple> component : blankNodeTriples.getComponents()) {
+                if (!blankNodeChunk.isEmpty() && blankNodeChunk.size() + component.size() > upload.getChunkSize()) {
+                    submit(blankNodeChunk);
+                    blankNodeChunk = GraphFactory.createDefaultGraph();
+                }
+                component.forEach(blankNodeChunk::add);
+            }
+            submit(blankNodeChunk);
+            try {
+                for (Future<?> chunkUpload : uploads) {
+                    waitFor(chunkUpload, graphName);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TripleStoreRepositoryException(format("Interrupted while saving model to '%s'", graphName), e);
+            }
+            log.info("Saved {} triple(s) to {} with {} request(s)", tripleCount, graphName, uploads.size());
+        }
+
+        public long getTripleCount() {
+            return tripleCount;
+        }
+
+        @Override
+        public void close() {
+            executor.shutdownNow();
+        }
+
+        private void submit(Graph triples) {
+            if (triples.isEmpty()) {
+                return;
+            }
+            try {
+                inFlight.acquire();
+                uploads.add(executor.submit(() -> {
+                    try {
+                        saveWithRetries(graphName, ModelFactory.createModelForGraph(triples), upload);
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+                failFastOnCompletedUploads(uploads, graphName);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TripleStoreRepositoryException(format("Interrupted while saving model to '%s'", graphName), e);
+            }
+        }
+    }
+
+    /**
+     * Triples involving blank nodes, grouped by the connected components of their blank nodes, i.e. the blank nodes
+     * linked to each other by triples, whose triples have to be sent in the same request.
+     */
+    private static final class BlankNodeTriples {
+        private final Map<Node, Node> parents = new HashMap<>();
+        private final List<Triple> triples = new ArrayList<>();
+
+        /**
+         * Keeps the triple if it involves a blank node.
+         *
+         * @return whether the triple was kept
+         */
+        private boolean add(Triple triple) {
+            if (!triple.getSubject().isBlank() && !triple.getObject().isBlank()) {
+                return false;
+            }
+            triples.add(triple);
+            if (triple.getSubject().isBlank() && triple.getObject().isBlank()) {
+                Node subjectRoot = findRoot(triple.getSubject());
+                Node objectRoot = findRoot(triple.getObject());
+                if (!subjectRoot.equals(objectRoot)) {
+                    parents.put(subjectRoot, objectRoot);
+                }
+            }
+            return true;
+        }
+
+        private Collection<List<Triple>> getComponents() {
+            Map<Node, List<Triple>> components = new LinkedHashMap<>();
+            for (Triple triple : triples) {
+                Node blankNode = triple.getSubject().isBlank() ? triple.getSubject() : triple.getObject();
+                components.computeIfAbsent(findRoot(blankNode), root -> new ArrayList<>()).add(triple);
+            }
+            return components.values();
+        }
+
+        private Node findRoot(Node node) {
+            Node root = node;
+            for (Node parent = parents.get(root); parent != null; parent = parents.get(root)) {
+                root = parent;
+            }
+            // the nodes on the way are linked straight to the root, so that the next lookups are short
+            Node current = node;
+            while (!current.equals(root)) {
+                current = parents.put(current, root);
+            }
+            return root;
+        }
+    }
+
+    private static void failFastOnCompletedUploads(List<Future<?>> uploads, String graphName) throws InterruptedException {
+        for (Future<?> chunkUpload : uploads) {
+            if (chunkUpload.isDone()) {
+                waitFor(chunkUpload, graphName);
+            }
+        }
+    }
+
+    private static void waitFor(Future<?> chunkUpload, String graphName) throws InterruptedException {
+        try {
+            chunkUpload.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TripleStoreRepositoryException) {
+                throw (TripleStoreRepositoryException) e.getCause();
+            }
+            throw new TripleStoreRepositoryException(format("Could not save model to '%s'", graphName), e.getCause());
+        }
+    }
+
+    private void saveWithRetries(String graphName, Model model, TripleStoreProperties.Upload upload) {
+        int maxAttempts = Math.max(1, upload.getMaxAttempts());
+        for (int attempt = 1; ; attempt++) {
+            try (RDFConnection connection = virtuosoClient.getConnection()) {
+                saveWithConnection(graphName, model, connection);
+                return;
+            } catch (TripleStoreRepositoryException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                Duration backoff = upload.getBackoff().multipliedBy(1L << (attempt - 1));
+                log.warn("Attempt {} of {} to save {} triple(s) to {} failed, retrying in {}", attempt, maxAttempts, model.size(), graphName, backoff);
+                sleep(backoff, graphName);
+            }
+        }
+    }
+
+    private static void sleep(Duration backoff, String graphName) {
+        try {
+            Thread.sleep(backoff.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TripleStoreRepositoryException(format("Interrupted while saving model to '%s'", graphName), e);
+        }
+    }
+
+    private TripleStoreProperties.Upload getUploadProperties() {
+        return Optional.ofNullable(properties)
+                .map(TripleStoreProperties::getUpload)
+                .orElseGet(TripleStoreProperties.Upload::new);
+    }
+
     private void saveWithConnection(String graphName, Model model, RDFConnection connection) {
         try {
             connection.load(graphName, model);
@@ -46,11 +299,7 @@ public class TripleStoreRepository {
 
     public void clearExistingNamedGraph(String repoUrl) {
         try {
-            String sparqlEndpoint = virtuosoClient.getSparqlEndpoint();
-            UpdateExecution
-                    .service(sparqlEndpoint)
-                    .updateString(getUpdateCommand(repoUrl))
-                    .execute();
+            virtuosoClient.update(getUpdateCommand(repoUrl));
         } catch (Exception e) {
             log.error(format("Could not clear existing named graph! - %s", repoUrl), e);
             if (e instanceof HttpException) {
@@ -61,14 +310,90 @@ public class TripleStoreRepository {
         }
     }
 
+    /**
+     * Replaces the content of a named graph with the one of a staging graph, which is dropped. The move is sent as a
+     * single update, without disabling the transaction log, so that readers see either the old or the new content.
+     */
+    public void replaceNamedGraph(String stagingGraphName, String graphName) {
+        try {
+            virtuosoClient.update(format(MOVE_SILENT_GRAPH, stagingGraphName, graphName));
+        } catch (Exception e) {
+            log.error(format("Could not replace named graph! - %s with %s", graphName, stagingGraphName), e);
+            if (e instanceof HttpException) {
+                HttpException httpException = (HttpException) e;
+                log.error("HttpException: {}", httpException.getResponse());
+            }
+            throw new TripleStoreRepositoryException(format("Could not replace graph '%s' with '%s'", graphName, stagingGraphName), e);
+        }
+    }
+
+    /**
+     * Adds the content of a named graph to another one and drops it, with a single update.
+     */
+    public void mergeNamedGraph(String sourceGraphName, String graphName) {
+        try {
+            virtuosoClient.update(format(ADD_AND_DROP_SILENT_GRAPH, sourceGraphName, graphName));
+        } catch (Exception e) {
+            log.error(format("Could not merge named graph! - %s into %s", sourceGraphName, graphName), e);
+            if (e instanceof HttpException) {
+                HttpException httpException = (HttpException) e;
+                log.error("HttpException: {}", httpException.getResponse());
+            }
+            throw new TripleStoreRepositoryException(format("Could not merge graph '%s' into '%s'", sourceGraphName, graphName), e);
+        }
+    }
+
+    /**
+     * Keeps a staging graph out of the default graph union while it is loaded, by adding it to the configured graph
+     * group. Failing to do so only leaves it visible, hence it is logged and not thrown.
+     */
+    public void hideStagingGraph(String stagingGraphName) {
+        updateStagingGraphGroup(ADD_TO_GRAPH_GROUP, stagingGraphName);
+    }
+
+    /**
+     * Removes a staging graph, once swapped in or dropped, from the graph group it was hidden in.
+     */
+    public void releaseStagingGraph(String stagingGraphName) {
+        updateStagingGraphGroup(REMOVE_FROM_GRAPH_GROUP, stagingGraphName);
+    }
+
+    private void updateStagingGraphGroup(String command, String stagingGraphName) {
+        String group = properties.getStagingGraphGroup();
+        if (group == null || group.isBlank()) {
+            return;
+        }
+        try {
+            virtuosoClient.update(format(command, group, stagingGraphName));
+        } catch (Exception e) {
+            log.warn(format("Could not update graph group %s with staging graph %s", group, stagingGraphName), e);
+        }
+    }
+
     private static String getUpdateCommand(String repoUrl) {
         return format(DROP_SILENT_GRAPH_WITH_LOG_ENABLE_3, repoUrl);
     }
 
-    public QueryExecution select(SelectBuilder selectBuilder) {
-        try (RDFConnection connection = virtuosoClient.getConnection()) {
-            Query query = selectBuilder.build();
-            return connection.query(query);
+    /**
+     * Runs the select to completion while holding the connection, so that the whole request counts against the
+     * client's concurrency limit, and returns its results detached from it.
+     */
+    public ResultSet select(SelectBuilder selectBuilder) {
+        return runSelect(selectBuilder, virtuosoClient::getConnection);
+    }
+
+    /**
+     * Runs a select on behalf of a health probe, through the connection slot reserved to probes.
+     */
+    public ResultSet probe(SelectBuilder selectBuilder) {
+        return runSelect(selectBuilder, virtuosoClient::getProbeConnection);
+    }
+
+    private ResultSet runSelect(SelectBuilder selectBuilder, Supplier<RDFConnection> connectionSupplier) {
+        Query query = selectBuilder.build();
+        try (RDFConnection connection = connectionSupplier.get();
+             QueryExecution execution = connection.query(query)) {
+            return execution.execSelect().materialise();
         } catch (Exception e) {
             log.error(format("Could not execute select! - %s", selectBuilder), e);
             if (e instanceof HttpException) {
@@ -1,41 +1,205 @@
 package it.gov.innovazione.ndc.repository;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.apache.jena.http.auth.AuthEnv;
 import org.apache.jena.rdfconnection.RDFConnection;
 import org.apache.jena.rdfconnection.RDFConnectionRemote;
+import org.apache.jena.rdfconnection.RDFConnectionWrapper;
+import org.apache.jena.update.UpdateExecution;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.time.Duration;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Gives access to Virtuoso through a single HTTP client and a single remote connection, shared by all the callers.
+ * At most {@code maxConcurrency} requests are in flight at the same time: a connection obtained from
+ * {@link #getConnection()} holds one of the slots until it is closed. Health probes have a slot of their own, see
+ * {@link #getProbeConnection()}.
+ */
 @Component
 public class VirtuosoClient {
+    private static final String HTTP_THREAD_PREFIX = "virtuoso-http-";
+
     private final TripleStoreProperties properties;
+    private final TripleStoreProperties.Client clientProperties;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService executor;
     private final HttpClient httpClient;
+    private final Semaphore slots;
+    private final Semaphore probeSlot = new Semaphore(1);
+    private final Timer acquireTimer;
+    private final Timer connectionTimer;
+    private final Timer updateTimer;
+    private RDFConnection connection;
 
-    public VirtuosoClient(TripleStoreProperties properties) {
+    public VirtuosoClient(TripleStoreProperties properties, MeterRegistry meterRegistry) {
         this.properties = properties;
+        this.clientProperties = Optional.ofNullable(properties.getClient()).orElseGet(TripleStoreProperties.Client::new);
+        this.meterRegistry = meterRegistry;
+        this.executor = createExecutor();
         this.httpClient = createHttpClient();
+        this.slots = new Semaphore(Math.max(1, clientProperties.getMaxConcurrency()), true);
+        this.acquireTimer = Timer.builder("virtuoso.client.acquire")
+                .description("Time spent waiting for a free Virtuoso connection slot")
+                .register(meterRegistry);
+        this.connectionTimer = Timer.builder("virtuoso.client.requests")
+                .description("Time a Virtuoso connection slot is in use")
+                .tag("kind", "connection")
+                .register(meterRegistry);
+        this.updateTimer = Timer.builder("virtuoso.client.requests")
+                .description("Time a Virtuoso connection slot is in use")
+                .tag("kind", "update")
+                .register(meterRegistry);
+        Gauge.builder("virtuoso.client.slots.active", slots, s -> clientProperties.getMaxConcurrency() - s.availablePermits())
+                .description("Virtuoso connection slots in use")
+                .register(meterRegistry);
+        Gauge.builder("virtuoso.client.slots.pending", slots, Semaphore::getQueueLength)
+                .description("Callers waiting for a Virtuoso connection slot")
+                .register(meterRegistry);
+        Gauge.builder("virtuoso.client.slots.max", clientProperties, TripleStoreProperties.Client::getMaxConcurrency)
+                .description("Virtuoso connection slots available in total")
+                .register(meterRegistry);
     }
 
+    /**
+     * Returns a connection to Virtuoso holding one of the request slots, which is given back when it is closed.
+     */
     public RDFConnection getConnection() {
-        RDFConnection rdfConnection = RDFConnectionRemote.create()
-            .queryEndpoint(properties.getSparql())
-            .updateEndpoint(properties.getSparql())
-            .gspEndpoint(properties.getSparqlGraphStore())
-            .httpClient(this.httpClient)
-            .build();
-        return Objects.requireNonNull(rdfConnection);
+        acquireSlot();
+        try {
+            return new LeasedConnection(getSharedConnection(), slots);
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a connection to Virtuoso holding the slot reserved to health probes, so that a probe is not queued
+     * behind the requests of the harvests when they take all the other slots. Only one probe runs at a time, and it
+     * gives up after {@code probeAcquireTimeout}.
+     */
+    public RDFConnection getProbeConnection() {
+        acquire(probeSlot, clientProperties.getProbeAcquireTimeout());
+        try {
+            return new LeasedConnection(getSharedConnection(), probeSlot);
+        } catch (RuntimeException e) {
+            probeSlot.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends a SPARQL update as is, without parsing it, so that it may contain Virtuoso specific pragmas.
+     */
+    public void update(String updateString) {
+        acquireSlot();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            UpdateExecution.service(properties.getSparql())
+                    .httpClient(httpClient)
+                    .updateString(updateString)
+                    .execute();
+        } finally {
+            sample.stop(updateTimer);
+            slots.release();
+        }
     }
 
     public String getSparqlEndpoint() {
         return properties.getSparql();
     }
 
+    @PreDestroy
+    public void shutdown() {
+        if (Objects.nonNull(executor)) {
+            executor.shutdown();
+        }
+    }
+
+    private void acquireSlot() {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            acquire(slots, clientProperties.getAcquireTimeout());
+        } finally {
+            sample.stop(acquireTimer);
+        }
+    }
+
+    private static void acquire(Semaphore semaphore, Duration timeout) {
+        try {
+            if (!semaphore.tryAcquire(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new TripleStoreRepositoryException(String.format("No Virtuoso connection available within %s", timeout));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TripleStoreRepositoryException("Interrupted while waiting for a Virtuoso connection", e);
+        }
+    }
+
+    private synchronized RDFConnection getSharedConnection() {
+        // the remote connection holds no state but its endpoints, so one is enough for all the callers
+        if (Objects.isNull(connection)) {
+            connection = Objects.requireNonNull(RDFConnectionRemote.create()
+                    .queryEndpoint(properties.getSparql())
+                    .updateEndpoint(properties.getSparql())
+                    .gspEndpoint(properties.getSparqlGraphStore())
+                    .httpClient(this.httpClient)
+                    .build());
+        }
+        return connection;
+    }
+
+    private ExecutorService createExecutor() {
+        if (clientProperties.getExecutorThreads() <= 0) {
+            return null;
+        }
+        return Executors.newFixedThreadPool(clientProperties.getExecutorThreads(), new CustomizableThreadFactory(HTTP_THREAD_PREFIX));
+    }
+
     private HttpClient createHttpClient() {
         AuthEnv.get().registerUsernamePassword(URI.create(properties.getSparql()), properties.getUsername(), properties.getPassword());
         AuthEnv.get().registerUsernamePassword(URI.create(properties.getSparqlGraphStore()), properties.getUsername(), properties.getPassword());
-        return HttpClient.newBuilder().build();
+
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(clientProperties.getHttpVersion())
+                .connectTimeout(clientProperties.getConnectTimeout());
+        if (Objects.nonNull(executor)) {
+            builder.executor(executor);
+        }
+        return builder.build();
+    }
+
+    private final class LeasedConnection extends RDFConnectionWrapper {
+        private final Timer.Sample sample = Timer.start(meterRegistry);
+        private final AtomicBoolean released = new AtomicBoolean();
+        private final Semaphore slot;
+
+        private LeasedConnection(RDFConnection connection, Semaphore slot) {
+            super(connection);
+            this.slot = slot;
+        }
+
+        @Override
+        public void close() {
+            // the shared connection stays open, only the slot is given back
+            if (released.compareAndSet(false, true)) {
+                sample.stop(connectionTimer);
+                slot.release();
+            }
+        }
     }
 }
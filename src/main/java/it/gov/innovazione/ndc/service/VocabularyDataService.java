@@ -1,10 +1,15 @@
 package it.gov.innovazione.ndc.service;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import it.gov.innovazione.ndc.harvester.csv.CsvParser;
+import it.gov.innovazione.ndc.harvester.service.ActualConfigService;
+import it.gov.innovazione.ndc.harvester.service.ConfigService;
 import it.gov.innovazione.ndc.controller.exception.VocabularyDataNotFoundException;
 import it.gov.innovazione.ndc.controller.exception.VocabularyItemNotFoundException;
 import it.gov.innovazione.ndc.gen.dto.VocabularyData;
 import it.gov.innovazione.ndc.model.Builders;
+import it.gov.innovazione.ndc.repository.ElasticsearchBulkLimiter;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,27 +17,55 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.core.SearchHit;
 import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.index.AliasAction;
+import org.springframework.data.elasticsearch.core.index.AliasActionParameters;
+import org.springframework.data.elasticsearch.core.index.AliasActions;
 import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
 import org.springframework.data.elasticsearch.core.query.IndexQuery;
 import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
 import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 
+import static it.gov.innovazione.ndc.harvester.service.ActualConfigService.ConfigKey.CSV_BULK_INDEXING_CHUNK_SIZE;
+import static it.gov.innovazione.ndc.harvester.service.ActualConfigService.ConfigKey.CSV_BULK_INDEXING_MAX_IN_FLIGHT;
+
 @Service
 @Slf4j
 public class VocabularyDataService {
 
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final long DEFAULT_CHUNK_SIZE = 1000L;
+    private static final long DEFAULT_MAX_IN_FLIGHT = 2L;
+
     private final ElasticsearchOperations elasticsearchOperations;
+    private final ConfigService configService;
+    private final ElasticsearchBulkLimiter bulkLimiter;
 
     @Autowired
     public VocabularyDataService(
-            ElasticsearchOperations elasticsearchOperations) {
+            ElasticsearchOperations elasticsearchOperations,
+            ConfigService configService,
+            ElasticsearchBulkLimiter bulkLimiter) {
         this.elasticsearchOperations = elasticsearchOperations;
+        this.configService = configService;
+        this.bulkLimiter = bulkLimiter;
     }
 
     public VocabularyData getData(VocabularyIdentifier vocabularyIdentifier, Pageable pageable) {
@@ -44,7 +77,7 @@ public class VocabularyDataService {
 
         List<Map<String, String>> data = results.getSearchHits().stream()
                 .map(SearchHit::getContent)
-                .map(m -> new HashMap<String, String>(m))
+                .map(VocabularyDataService::asRecord)
                 .collect(Collectors.toList());
 
         return Builders.vocabularyData()
@@ -62,29 +95,197 @@ public class VocabularyDataService {
         }
     }
 
-    public void indexData(VocabularyIdentifier vocabularyIdentifier,
-                          CsvParser.CsvData data) {
-        String indexName = vocabularyIdentifier.getIndexName();
+    /**
+     * Indexes the data in a new generation of the vocabulary index, named after the vocabulary with a timestamp
+     * suffix. Readers keep being served the previous generation until the new one is switched to, or deleted.
+     *
+     * @see #switchToGeneration(VocabularyIndexGeneration)
+     * @see #deleteGeneration(VocabularyIndexGeneration)
+     */
+    public VocabularyIndexGeneration indexData(VocabularyIdentifier vocabularyIdentifier,
+                                               CsvParser.CsvData data) {
+        String indexName = newGenerationIndexName(vocabularyIdentifier.getIndexName());
         ensureCleanIndex(indexName);
+        try {
+            long recordCount = bulkIndexInChunks(data, IndexCoordinates.of(indexName));
+            return new VocabularyIndexGeneration(vocabularyIdentifier, indexName, recordCount);
+        } catch (RuntimeException e) {
+            log.error("Could not index {} into {}", vocabularyIdentifier, indexName, e);
+            elasticsearchOperations.indexOps(IndexCoordinates.of(indexName)).delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Atomically moves the alias named after the vocabulary to the given generation, then deletes the previous ones.
+     */
+    public void switchToGeneration(VocabularyIndexGeneration generation) {
+        switchAlias(generation.getVocabularyIdentifier().getIndexName(), generation.getIndexName());
+    }
+
+    /**
+     * Deletes a generation which was not switched to.
+     */
+    public void deleteGeneration(VocabularyIndexGeneration generation) {
+        log.info("Deleting generation {} of {}", generation.getIndexName(), generation.getVocabularyIdentifier());
+        elasticsearchOperations.indexOps(IndexCoordinates.of(generation.getIndexName())).delete();
+    }
+
+    /**
+     * Sends the records, as they are read, in bulk requests of bounded size; up to a bounded number of them are
+     * executed concurrently, while the next chunk is being read, so that no more than those chunks are held in memory.
+     * The requests also count against the limit shared with the other bulk requests sent to Elasticsearch.
+     */
+    private long bulkIndexInChunks(CsvParser.CsvData data, IndexCoordinates index) {
+        int chunkSize = getPositiveConfig(CSV_BULK_INDEXING_CHUNK_SIZE, DEFAULT_CHUNK_SIZE);
+        int maxInFlight = getPositiveConfig(CSV_BULK_INDEXING_MAX_IN_FLIGHT, DEFAULT_MAX_IN_FLIGHT);
         String idName = data.getIdName();
+        Iterator<Map<String, String>> records = data.getRecords().iterator();
 
-        List<IndexQuery> indexQueries = data.getRecords().stream()
-                .map(r -> buildIndexQuery(idName, r))
-                .collect(Collectors.toList());
+        ExecutorService executor = Executors.newFixedThreadPool(maxInFlight, new CustomizableThreadFactory("csv-bulk-indexer-"));
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        List<Future<?>> bulkRequests = new ArrayList<>();
+        long recordCount = 0;
+        int requestCount = 0;
+        try {
+            while (records.hasNext()) {
+                List<IndexQuery> chunk = new ArrayList<>((int) Math.min(chunkSize, DEFAULT_CHUNK_SIZE));
+                while (records.hasNext() && chunk.size() < chunkSize) {
+                    chunk.add(buildIndexQuery(idName, records.next()));
+                }
+                recordCount += chunk.size();
+                requestCount++;
+                inFlight.acquire();
+                bulkRequests.add(executor.submit(() -> {
+                    try {
+                        bulkLimiter.send(() -> elasticsearchOperations.bulkIndex(chunk, index));
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+                failFastOnCompletedRequests(bulkRequests);
+            }
+            for (Future<?> bulkRequest : bulkRequests) {
+                waitFor(bulkRequest);
+            }
+            log.info("Indexed {} record(s) into {} with {} bulk request(s)", recordCount, index.getIndexName(), requestCount);
+            return recordCount;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while indexing " + index.getIndexName(), e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-        elasticsearchOperations.bulkIndex(indexQueries, IndexCoordinates.of(indexName));
+    private int getPositiveConfig(ActualConfigService.ConfigKey key, long defaultValue) {
+        Long value = configService.getParsedOrGetDefault(key, () -> defaultValue);
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1L, Objects.requireNonNullElse(value, defaultValue)));
+    }
+
+    private static void failFastOnCompletedRequests(List<Future<?>> bulkRequests) throws InterruptedException {
+        Iterator<Future<?>> requests = bulkRequests.iterator();
+        while (requests.hasNext()) {
+            Future<?> bulkRequest = requests.next();
+            if (bulkRequest.isDone()) {
+                waitFor(bulkRequest);
+                requests.remove();
+            }
+        }
+    }
+
+    private static void waitFor(Future<?> bulkRequest) throws InterruptedException {
+        try {
+            bulkRequest.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Bulk indexing failed", e.getCause());
+        }
+    }
+
+    private String newGenerationIndexName(String aliasName) {
+        return aliasName + "." + System.currentTimeMillis();
+    }
+
+    private void switchAlias(String aliasName, String indexName) {
+        Set<String> previousGenerations = getIndicesForAlias(aliasName);
+        AliasActions aliasActions = new AliasActions(new AliasAction.Add(AliasActionParameters.builder()
+                .withIndices(indexName)
+                .withAliases(aliasName)
+                .build()));
+        previousGenerations.forEach(previous -> aliasActions.add(new AliasAction.Remove(AliasActionParameters.builder()
+                .withIndices(previous)
+                .withAliases(aliasName)
+                .build())));
+        if (previousGenerations.isEmpty() && exists(aliasName)) {
+            // a plain index created before aliases were used holds the name the alias needs
+            aliasActions.add(new AliasAction.RemoveIndex(AliasActionParameters.builder()
+                    .withIndices(aliasName)
+                    .build()));
+        }
+
+        log.info("Pointing alias {} to {}", aliasName, indexName);
+        elasticsearchOperations.indexOps(IndexCoordinates.of(indexName)).alias(aliasActions);
+
+        previousGenerations.forEach(previous -> {
+            log.info("Deleting previous generation {} of {}", previous, aliasName);
+            elasticsearchOperations.indexOps(IndexCoordinates.of(previous)).delete();
+        });
     }
 
     private IndexQuery buildIndexQuery(String idName, Map<String, String> record) {
         String id = record.get(idName);
         return new IndexQueryBuilder()
                 .withId(id)
-                .withObject(record)
+                .withSource(toJson(record))
                 .build();
     }
 
+    /**
+     * Writes the record as the document source, straight from its entries, rather than having it converted to an
+     * intermediate document map first.
+     */
+    private static String toJson(Map<String, String> record) {
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(json)) {
+            generator.writeStartObject();
+            for (Map.Entry<String, String> entry : record.entrySet()) {
+                generator.writeStringField(entry.getKey(), entry.getValue());
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot serialise record " + record, e);
+        }
+        return json.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, String> asRecord(Map<?, ?> document) {
+        // records are indexed with string values only, no need to copy them
+        return (Map<String, String>) document;
+    }
+
     public void dropIndex(VocabularyIdentifier vocabularyIdentifier) {
-        elasticsearchOperations.indexOps(IndexCoordinates.of(vocabularyIdentifier.getIndexName())).delete();
+        String aliasName = vocabularyIdentifier.getIndexName();
+        Set<String> generations = getIndicesForAlias(aliasName);
+        if (generations.isEmpty()) {
+            elasticsearchOperations.indexOps(IndexCoordinates.of(aliasName)).delete();
+            return;
+        }
+        generations.forEach(generation -> elasticsearchOperations.indexOps(IndexCoordinates.of(generation)).delete());
+    }
+
+    /**
+     * Tells whether the data of the vocabulary are indexed, in any generation of its index.
+     */
+    public boolean isIndexed(VocabularyIdentifier vocabularyIdentifier) {
+        return exists(vocabularyIdentifier.getIndexName());
+    }
+
+    private Set<String> getIndicesForAlias(String aliasName) {
+        return elasticsearchOperations.indexOps(IndexCoordinates.of(aliasName)).getAliases(aliasName).keySet();
     }
 
     @SneakyThrows
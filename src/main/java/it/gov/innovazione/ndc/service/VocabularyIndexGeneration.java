@@ -0,0 +1,14 @@
+package it.gov.innovazione.ndc.service;
+
+import lombok.Value;
+
+/**
+ * A generation of the index of a vocabulary, loaded with its data but not yet served under the alias named after the
+ * vocabulary.
+ */
+@Value
+public class VocabularyIndexGeneration {
+    VocabularyIdentifier vocabularyIdentifier;
+    String indexName;
+    long recordCount;
+}
@@ -0,0 +1,12 @@
+CREATE TABLE IF NOT EXISTS HARVESTER_RUN_STEP_ARCHIVE
+(
+    RUN_ID      VARCHAR(256) NOT NULL,
+    STEP        VARCHAR(32)  NOT NULL,
+    ASSET_TYPE  VARCHAR(32)  NOT NULL,
+    STEP_COUNT  BIGINT       NOT NULL,
+    FAILURES    BIGINT       NOT NULL,
+    DURATION_MS BIGINT       NOT NULL,
+    ITEMS       BIGINT       NOT NULL,
+    ARCHIVED    TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (RUN_ID, STEP, ASSET_TYPE)
+) ENGINE = InnoDB;
@@ -0,0 +1,24 @@
+CREATE INDEX HARVESTER_RUN_REPOSITORY_STATUS_STARTED_idx
+    ON HARVESTER_RUN (REPOSITORY_ID, STATUS, STARTED);
+
+CREATE INDEX HARVESTER_RUN_STATUS_STARTED_idx
+    ON HARVESTER_RUN (STATUS, STARTED);
+
+CREATE INDEX HARVESTER_RUN_STARTED_ID_idx
+    ON HARVESTER_RUN (STARTED, ID);
+
+CREATE TABLE IF NOT EXISTS HARVESTER_RUN_ARCHIVE
+(
+    ID VARCHAR(256) PRIMARY KEY,
+    CORRELATION_ID VARCHAR(128) NOT NULL,
+    REPOSITORY_ID  VARCHAR(40)  NOT NULL,
+    REPOSITORY_URL VARCHAR(255) NOT NULL,
+    REVISION       VARCHAR(64),
+    STARTED        TIMESTAMP    NOT NULL,
+    STARTED_BY VARCHAR(64) NOT NULL,
+    FINISHED TIMESTAMP NULL,
+    STATUS         VARCHAR(64)  NOT NULL,
+    REASON         TEXT,
+    ARCHIVED       TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX HARVESTER_RUN_ARCHIVE_REPOSITORY_STARTED_idx (REPOSITORY_ID, STARTED)
+) ENGINE = InnoDB;
@@ -0,0 +1,2 @@
+CREATE INDEX REPOSITORY_URL_idx
+    ON REPOSITORY (URL);
@@ -0,0 +1,2 @@
+ALTER TABLE CONFIGURATION
+    ADD COLUMN VERSION BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,10 @@
+CREATE TABLE IF NOT EXISTS SEMANTIC_ASSET_FINGERPRINT
+(
+    REPOSITORY_URL VARCHAR(255) NOT NULL,
+    ASSET_PATH     VARCHAR(500) NOT NULL,
+    TTL_HASH       CHAR(64)     NOT NULL,
+    CSV_HASH       CHAR(64),
+    INPUTS_HASH    CHAR(64)     NOT NULL,
+    UPDATED        TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (REPOSITORY_URL, ASSET_PATH)
+) ENGINE = InnoDB;
@@ -0,0 +1,13 @@
+CREATE TABLE IF NOT EXISTS HARVESTER_RUN_STEP
+(
+    RUN_ID      VARCHAR(256) NOT NULL,
+    STEP        VARCHAR(32)  NOT NULL,
+    ASSET_TYPE  VARCHAR(32)  NOT NULL,
+    STEP_COUNT  BIGINT       NOT NULL,
+    FAILURES    BIGINT       NOT NULL,
+    DURATION_MS BIGINT       NOT NULL,
+    ITEMS       BIGINT       NOT NULL,
+    PRIMARY KEY (RUN_ID, STEP, ASSET_TYPE),
+    CONSTRAINT HARVESTER_RUN_STEP_RUN_ID_fk
+        FOREIGN KEY (RUN_ID) REFERENCES HARVESTER_RUN (ID) ON DELETE CASCADE
+) ENGINE = InnoDB;
@@ -1,14 +1,24 @@
 package it.gov.innovazione.ndc.controller;
 
+import it.gov.innovazione.ndc.controller.exception.HarvesterRunNotFoundException;
 import it.gov.innovazione.ndc.harvester.HarvesterJob;
 import it.gov.innovazione.ndc.harvester.HarvesterService;
+import it.gov.innovazione.ndc.harvester.service.HarvesterRunService;
+import it.gov.innovazione.ndc.model.harvester.HarvesterRun;
+import it.gov.innovazione.ndc.model.harvester.HarvesterRunReport;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class HarvestJobControllerTest {
@@ -17,6 +27,8 @@ class HarvestJobControllerTest {
     HarvesterJob harvesterJob;
     @Mock
     HarvesterService harvesterService;
+    @Mock
+    HarvesterRunService harvesterRunService;
     @InjectMocks
     HarvestJobController harvestJobController;
 
@@ -27,10 +39,35 @@ class HarvestJobControllerTest {
         verify(harvesterJob).harvest(repoUrls, null, false);
     }
 
+    @Test
+    void shouldCancelRun() {
+        harvestJobController.cancelRun("someRunId");
+        verify(harvesterJob).cancel("someRunId");
+    }
+
     @Test
     void shouldSynchronouslyClearRepo() {
         String repoUrl = "http://github.com/repo.git";
         harvestJobController.clearRepo(repoUrl);
         verify(harvesterService).clear(repoUrl);
     }
+
+    @Test
+    void shouldReturnReportOfRun() {
+        HarvesterRunReport report = HarvesterRunReport.builder()
+                .run(HarvesterRun.builder().id("someRunId").build())
+                .steps(List.of())
+                .build();
+        when(harvesterRunService.getRunReport("someRunId")).thenReturn(Optional.of(report));
+
+        assertThat(harvestJobController.getRunReport("someRunId")).isSameAs(report);
+    }
+
+    @Test
+    void shouldFailWhenRunToReportIsUnknown() {
+        when(harvesterRunService.getRunReport("someRunId")).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> harvestJobController.getRunReport("someRunId"))
+                .isInstanceOf(HarvesterRunNotFoundException.class);
+    }
 }
@@ -0,0 +1,198 @@
+package it.gov.innovazione.ndc.eventhandler;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NdcEventListenerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private NdcEventListener listener;
+
+    @AfterEach
+    void tearDown() {
+        if (listener != null) {
+            listener.shutdown();
+        }
+    }
+
+    @Test
+    void shouldHandleEventsOfSameCorrelationIdInOrder() throws InterruptedException {
+        RecordingHandler handler = new RecordingHandler(NdcEventHandler.OverflowPolicy.BLOCK, new CountDownLatch(0));
+        listener = new NdcEventListener(List.of(handler), properties(100, 4), meterRegistry);
+
+        IntStream.range(0, 50).forEach(i -> listener.handleNdcEvent(event("run-a", "a-" + i)));
+        IntStream.range(0, 50).forEach(i -> listener.handleNdcEvent(event("run-b", "b-" + i)));
+
+        assertThat(handler.awaitHandled(100)).isTrue();
+        assertThat(handler.typesOf("a-")).isEqualTo(IntStream.range(0, 50).mapToObj(i -> "a-" + i).collect(Collectors.toList()));
+        assertThat(handler.typesOf("b-")).isEqualTo(IntStream.range(0, 50).mapToObj(i -> "b-" + i).collect(Collectors.toList()));
+        assertThat(meterRegistry.get("events.dispatch.lag").tag("handler", "RecordingHandler").timer().count()).isEqualTo(100);
+    }
+
+    @Test
+    void shouldNotMakePublisherWaitForSlowHandler() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingHandler handler = new RecordingHandler(NdcEventHandler.OverflowPolicy.BLOCK, release);
+        listener = new NdcEventListener(List.of(handler), properties(100, 1), meterRegistry);
+
+        listener.handleNdcEvent(event("run-a", "first"));
+        listener.handleNdcEvent(event("run-a", "second"));
+        listener.handleNdcEvent(event("run-a", "third"));
+
+        assertThat(handler.handled).isEmpty();
+        release.countDown();
+        assertThat(handler.awaitHandled(3)).isTrue();
+        // the events queued while the handler was busy are passed to it together
+        assertThat(handler.batchSizes).hasSizeLessThan(3);
+    }
+
+    @Test
+    void shouldHandleRestOfBatchWhenItsFirstEventFails() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingHandler handler = new RecordingHandler(NdcEventHandler.OverflowPolicy.BLOCK, release);
+        handler.failing = "failing";
+        listener = new NdcEventListener(List.of(handler), properties(100, 1), meterRegistry);
+
+        // the lane waits on the first event, so that the following ones are passed to the handler together
+        listener.handleNdcEvent(event("run-a", "first"));
+        assertThat(handler.batchStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        listener.handleNdcEvent(event("run-a", "failing"));
+        listener.handleNdcEvent(event("run-a", "second"));
+        listener.handleNdcEvent(event("run-a", "third"));
+        release.countDown();
+
+        assertThat(handler.awaitHandled(3)).isTrue();
+        assertThat(handler.typesOf("")).containsExactly("first", "second", "third");
+    }
+
+    @Test
+    void shouldDropEventsWhenQueueIsFullAndHandlerAllowsIt() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingHandler handler = new RecordingHandler(NdcEventHandler.OverflowPolicy.DROP, release);
+        listener = new NdcEventListener(List.of(handler), properties(1, 1), meterRegistry);
+
+        IntStream.range(0, 10).forEach(i -> listener.handleNdcEvent(event("run-a", "e-" + i)));
+        release.countDown();
+
+        assertThat(meterRegistry.get("events.dispatch.dropped").tag("handler", "RecordingHandler").counter().count()).isPositive();
+        listener.shutdown();
+        assertThat(handler.handled.size()).isLessThan(10);
+    }
+
+    @Test
+    void shouldHandleEventsOfInlineHandlerOnPublishingThreadInPublicationOrder() {
+        RecordingHandler handler = new RecordingHandler(NdcEventHandler.OverflowPolicy.INLINE, new CountDownLatch(0));
+        listener = new NdcEventListener(List.of(handler), properties(1, 4), meterRegistry);
+
+        IntStream.range(0, 10).forEach(i -> listener.handleNdcEvent(event("run-" + i, "e-" + i)));
+
+        assertThat(handler.typesOf("e-")).isEqualTo(IntStream.range(0, 10).mapToObj(i -> "e-" + i).collect(Collectors.toList()));
+        assertThat(meterRegistry.get("events.dispatch.dropped").tag("handler", "RecordingHandler").counter().count()).isZero();
+        assertThat(meterRegistry.get("events.dispatch.queue.depth").tag("handler", "RecordingHandler").gauge().value()).isZero();
+    }
+
+    @Test
+    void shouldSkipHandlersNotInterestedInEvent() throws InterruptedException {
+        RecordingHandler handler = new RecordingHandler(NdcEventHandler.OverflowPolicy.BLOCK, new CountDownLatch(0));
+        handler.accepted = "wanted";
+        listener = new NdcEventListener(List.of(handler), properties(100, 1), meterRegistry);
+
+        listener.handleNdcEvent(event("run-a", "unwanted"));
+        listener.handleNdcEvent(event("run-a", "wanted"));
+
+        assertThat(handler.awaitHandled(1)).isTrue();
+        listener.shutdown();
+        assertThat(handler.typesOf("")).containsExactly("wanted");
+    }
+
+    private static NdcEventDispatchProperties properties(int queueCapacity, int lanes) {
+        return NdcEventDispatchProperties.builder()
+                .queueCapacity(queueCapacity)
+                .lanes(lanes)
+                .blockTimeout(Duration.ofSeconds(5))
+                .shutdownTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    private static NdcEventWrapper<String> event(String correlationId, String type) {
+        return NdcEventWrapper.<String>builder()
+                .source("test")
+                .type(type)
+                .correlationId(correlationId)
+                .timestamp(Instant.now())
+                .payload(type)
+                .build();
+    }
+
+    private static class RecordingHandler implements NdcEventHandler {
+        private final NdcEventHandler.OverflowPolicy overflowPolicy;
+        private final CountDownLatch release;
+        private final List<NdcEventWrapper<?>> handled = new CopyOnWriteArrayList<>();
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        private final CountDownLatch batchStarted = new CountDownLatch(1);
+        private String accepted;
+        private String failing;
+
+        RecordingHandler(NdcEventHandler.OverflowPolicy overflowPolicy, CountDownLatch release) {
+            this.overflowPolicy = overflowPolicy;
+            this.release = release;
+        }
+
+        @Override
+        public boolean canHandle(NdcEventWrapper<?> event) {
+            return accepted == null || accepted.equals(event.getType());
+        }
+
+        @Override
+        public void handle(NdcEventWrapper<?> event) {
+            if (event.getType().equals(failing)) {
+                throw new IllegalStateException("failed handling " + failing);
+            }
+            handled.add(event);
+        }
+
+        @Override
+        public void handleAll(List<NdcEventWrapper<?>> events) {
+            batchStarted.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            batchSizes.add(events.size());
+            NdcEventHandler.super.handleAll(events);
+        }
+
+        @Override
+        public OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        boolean awaitHandled(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (handled.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            return handled.size() >= count;
+        }
+
+        List<String> typesOf(String prefix) {
+            return handled.stream()
+                    .map(NdcEventWrapper::getType)
+                    .filter(type -> type.startsWith(prefix))
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -11,11 +11,17 @@ import it.gov.innovazione.ndc.harvester.util.FileUtils;
 import it.gov.innovazione.ndc.harvester.util.GitUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import static it.gov.innovazione.ndc.harvester.AgencyRepositoryService.TEMP_DIR_PREFIX;
 import static it.gov.innovazione.ndc.harvester.SemanticAssetType.CONTROLLED_VOCABULARY;
@@ -23,19 +29,25 @@ import static it.gov.innovazione.ndc.harvester.SemanticAssetType.ONTOLOGY;
 import static it.gov.innovazione.ndc.harvester.SemanticAssetType.SCHEMA;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class AgencyRepositoryServiceTest {
+    @TempDir
+    Path root;
     FileUtils fileUtils;
     GitUtils gitUtils;
     AgencyRepositoryService agencyRepoService;
 
     @BeforeEach
     public void setup() {
-        fileUtils = mock(FileUtils.class);
-        when(fileUtils.getLowerCaseFileName(any())).thenCallRealMethod();
+        fileUtils = spy(new FileUtils());
         gitUtils = mock(GitUtils.class);
         OntologyFolderScanner ontologyScanner = new OntologyFolderScanner(fileUtils, OntologyFolderScannerProperties.forWords("aligns"));
         ControlledVocabularyFolderScanner cvScanner = new ControlledVocabularyFolderScanner(fileUtils, ControlledVocabularyFolderScannerProperties.forWords());
@@ -46,13 +58,36 @@ public class AgencyRepositoryServiceTest {
 
     @Test
     void shouldCloneTheRepoInTempDir() throws IOException {
-        when(fileUtils.createTempDirectory(TEMP_DIR_PREFIX)).thenReturn(Path.of("temp"));
+        doReturn(Path.of("temp")).when(fileUtils).createTempDirectory(TEMP_DIR_PREFIX);
 
         Path clonedTempDir = agencyRepoService.cloneRepo("someURI");
 
         assertThat(clonedTempDir).isEqualTo(Path.of("temp"));
         verify(fileUtils).createTempDirectory(TEMP_DIR_PREFIX);
-        verify(gitUtils).cloneRepo("someURI", new File("temp"), null);
+        verify(gitUtils).cloneRepo(eq("someURI"), eq(new File("temp")), isNull(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldOnlyCloneAssetFilesOutsideSkippedDirectories() throws IOException {
+        doReturn(Path.of("temp")).when(fileUtils).createTempDirectory(TEMP_DIR_PREFIX);
+
+        agencyRepoService.cloneRepo("someURI");
+
+        ArgumentCaptor<Predicate<String>> filterCaptor = ArgumentCaptor.forClass(Predicate.class);
+        verify(gitUtils).cloneRepo(eq("someURI"), eq(new File("temp")), isNull(), filterCaptor.capture());
+        Predicate<String> filter = filterCaptor.getValue();
+        assertThat(filter).accepts(
+                "assets/ontologies/onto/latest/onto.ttl",
+                "assets/controlled-vocabularies/cv/cv.CSV",
+                "VocabolariControllati/cv/cv.ttl",
+                "assets/schemas/schema/index.ttl");
+        assertThat(filter).rejects(
+                "README.md",
+                "other/onto.ttl",
+                "assets/ontologies/onto/latest/onto.owl",
+                "assets/ontologies/onto/scriptR2RML/mapping.ttl",
+                "assets/ontologies-old/onto.ttl");
     }
 
     /**
@@ -68,31 +103,14 @@ public class AgencyRepositoryServiceTest {
      */
     @Test
     void shouldFindAllControlledVocabularies() throws IOException {
-        CvPath expected1 = CvPath.of("test1.ttl", "test1.csv");
-        CvPath expected2 = CvPath.of("test2.ttl", "test2.csv");
-        Path cvFolder = Path.of("/temp/ndc-1", CONTROLLED_VOCABULARY.getFolderName());
-
-        when(fileUtils.folderExists(cvFolder)).thenReturn(true);
-
-        when(fileUtils.isDirectory(cvFolder)).thenReturn(true);
-        when(fileUtils.isDirectory(Path.of("group1"))).thenReturn(true);
-        when(fileUtils.isDirectory(Path.of("cv1"))).thenReturn(true);
-        when(fileUtils.isDirectory(Path.of("cv2"))).thenReturn(true);
-
-        when(fileUtils.listContents(cvFolder))
-                .thenReturn(List.of(Path.of("group1"), Path.of("cv2")));
+        Path cvFolder = root.resolve(CONTROLLED_VOCABULARY.getLegacyFolderName());
+        CvPath expected1 = CvPath.of(path(cvFolder, "group1/cv1/test1.ttl"), path(cvFolder, "group1/cv1/test1.csv"));
+        CvPath expected2 = CvPath.of(path(cvFolder, "cv2/test2.ttl"), path(cvFolder, "cv2/test2.csv"));
 
-        when(fileUtils.listContents(Path.of("group1")))
-                .thenReturn(List.of(Path.of("cv1")));
-
-        when(fileUtils.listContents(Path.of("cv2")))
-                .thenReturn(List.of(Path.of("test2.csv"), Path.of("test2.ttl")));
-
-        when(fileUtils.listContents(Path.of("cv1")))
-                .thenReturn(List.of(Path.of("test1.csv"), Path.of("test1.ttl")));
+        files(cvFolder, "group1/cv1/test1.csv", "group1/cv1/test1.ttl", "cv2/test2.csv", "cv2/test2.ttl");
 
         List<CvPath> cvPaths =
-                agencyRepoService.getControlledVocabularyPaths(Path.of("/temp/ndc-1"));
+                agencyRepoService.getControlledVocabularyPaths(root);
 
         assertThat(cvPaths).hasSize(2);
         assertThat(cvPaths).containsAll(List.of(expected1, expected2));
@@ -100,347 +118,185 @@ public class AgencyRepositoryServiceTest {
 
     @Test
     void shouldReturnEmptyListWhenControlledVocabularyFolderIsNotPresent() {
-        Path cvFolder = Path.of("/temp/ndc-1", CONTROLLED_VOCABULARY.getFolderName());
-        when(fileUtils.folderExists(cvFolder)).thenReturn(false);
-
-        assertThat(agencyRepoService.getControlledVocabularyPaths(cvFolder)).isEmpty();
+        assertThat(agencyRepoService.getControlledVocabularyPaths(root)).isEmpty();
     }
 
     @Test
     void shouldFindAllOntologies() throws IOException {
-        Path ontoFolder = Path.of("/temp/ndc-1", ONTOLOGY.getFolderName());
-        String ontology1 = "group1/ot1/test1.ttl";
-        String ontology2 = "ot2/test2.ttl";
-
-        Path group1 =
-                dir("group1",
-                        dir("group1/ot1",
-                                file(ontology1)
-                        )
-                );
-        Path ot2 =
-                dir("ot2",
-                        file(ontology2)
-                );
-
-        when(fileUtils.folderExists(ontoFolder)).thenReturn(true);
-        when(fileUtils.isDirectory(ontoFolder)).thenReturn(true);
-        when(fileUtils.listContents(ontoFolder)).thenReturn(List.of(group1, ot2));
+        Path ontoFolder = root.resolve(ONTOLOGY.getFolderName());
+        files(ontoFolder, "group1/ot1/test1.ttl", "ot2/test2.ttl");
 
         List<SemanticAssetPath> ontologyPaths =
-                agencyRepoService.getOntologyPaths(Path.of("/temp/ndc-1"));
+                agencyRepoService.getOntologyPaths(root);
 
         assertThat(ontologyPaths).hasSize(2);
-        assertThat(ontologyPaths).containsAll(List.of(SemanticAssetPath.of(ontology1), SemanticAssetPath.of(ontology2)));
+        assertThat(ontologyPaths).containsAll(assetPaths(ontoFolder, "group1/ot1/test1.ttl", "ot2/test2.ttl"));
     }
 
     @Test
     void shouldContinueScanningAfterEncounteringMalformedFolder() throws IOException {
-        Path ontoFolder = Path.of("/temp/ndc-1", CONTROLLED_VOCABULARY.getFolderName());
-        String cvTtl1 = "correct-vocab/test2.ttl";
-        String cvCsv1 = "correct-vocab/test2.csv";
-
-        Path group1 =
-                dir("chaotic-vocab",
-                        file("chaotic-vocab/test1.ttl"),
-                        file("chaotic-vocab/test1.csv"),
-                        file("chaotic-vocab/test2.ttl"),
-                        file("chaotic-vocab/test2.csv")
-                );
-        Path ot2 =
-                dir("correct-vocab",
-                        file(cvTtl1),
-                        file(cvCsv1)
-                );
-
-        when(fileUtils.folderExists(ontoFolder)).thenReturn(true);
-        when(fileUtils.isDirectory(ontoFolder)).thenReturn(true);
-        when(fileUtils.listContents(ontoFolder)).thenReturn(List.of(group1, ot2));
+        Path cvFolder = root.resolve(CONTROLLED_VOCABULARY.getFolderName());
+        files(cvFolder,
+                "chaotic-vocab/test1.ttl",
+                "chaotic-vocab/test1.csv",
+                "chaotic-vocab/test2.ttl",
+                "chaotic-vocab/test2.csv",
+                "correct-vocab/test2.ttl",
+                "correct-vocab/test2.csv");
 
         List<CvPath> cvPaths =
-                agencyRepoService.getControlledVocabularyPaths(Path.of("/temp/ndc-1"));
+                agencyRepoService.getControlledVocabularyPaths(root);
 
         assertThat(cvPaths).hasSize(1);
-        assertThat(cvPaths).contains(CvPath.of(cvTtl1, cvCsv1));
+        assertThat(cvPaths).contains(CvPath.of(path(cvFolder, "correct-vocab/test2.ttl"), path(cvFolder, "correct-vocab/test2.csv")));
     }
 
     @Test
     void shouldFindAllSchemas() throws IOException {
-        Path schemaFolder = Path.of("/temp/ndc-1", SCHEMA.getFolderName());
-        String schema1 = "group1/sc1/index.ttl";
-        String schema2 = "sc2/index.ttl";
-
-        Path group1 =
-                dir("group1",
-                        dir("group1/sc1",
-                                file(schema1)
-                        )
-                );
-        Path sc2 =
-                dir("sc2",
-                        file(schema2)
-                );
-
-        when(fileUtils.folderExists(schemaFolder)).thenReturn(true);
-        when(fileUtils.isDirectory(schemaFolder)).thenReturn(true);
-        when(fileUtils.listContents(schemaFolder)).thenReturn(List.of(group1, sc2));
+        Path schemaFolder = root.resolve(SCHEMA.getFolderName());
+        files(schemaFolder, "group1/sc1/index.ttl", "sc2/index.ttl");
 
         List<SemanticAssetPath> schemaPaths =
-                agencyRepoService.getSchemaPaths(Path.of("/temp/ndc-1"));
+                agencyRepoService.getSchemaPaths(root);
 
         assertThat(schemaPaths).hasSize(2);
-        assertThat(schemaPaths).containsAll(
-                List.of(SemanticAssetPath.of(schema1), SemanticAssetPath.of(schema2)));
+        assertThat(schemaPaths).containsAll(assetPaths(schemaFolder, "group1/sc1/index.ttl", "sc2/index.ttl"));
     }
 
     @Test
     void shouldIgnoreFilesInNonLeafFolders() throws IOException {
-        String root = "/temp/ndc-1";
-        Path ontoFolder = Path.of(root, ONTOLOGY.getFolderName());
-        String ontology1 = "group1/ot1/test1.ttl";
-        String ontology2 = "ot2/test2.ttl";
-
-        Path group1 =
-                dir("group1",
-                        dir("group1/ot1",
-                                file(ontology1)
-                        )
-                );
-        Path readme = file("README.md");
-        Path ot2 =
-                dir("ot2",
-                        file(ontology2)
-                );
-
-        when(fileUtils.isDirectory(ontoFolder)).thenReturn(true);
-        when(fileUtils.folderExists(ontoFolder)).thenReturn(true);
-        when(fileUtils.listContents(ontoFolder)).thenReturn(List.of(group1, readme, ot2));
+        Path ontoFolder = root.resolve(ONTOLOGY.getFolderName());
+        files(ontoFolder, "group1/ot1/test1.ttl", "README.md", "ot2/test2.ttl");
 
         List<SemanticAssetPath> ontologyPaths =
-                agencyRepoService.getOntologyPaths(Path.of(root));
+                agencyRepoService.getOntologyPaths(root);
 
         assertThat(ontologyPaths).hasSize(2);
-        assertThat(ontologyPaths).containsAll(List.of(SemanticAssetPath.of(ontology1), SemanticAssetPath.of(ontology2)));
+        assertThat(ontologyPaths).containsAll(assetPaths(ontoFolder, "group1/ot1/test1.ttl", "ot2/test2.ttl"));
     }
 
     @Test
     void shouldIgnoreLeafFolderInSkipList() throws IOException {
-        String root = "/temp/ndc-1";
-        Path ontoFolder = Path.of(root, ONTOLOGY.getFolderName());
-        String ontology1 = "ont1/test1.ttl";
-
-        Path ont1 =
-                dir("ont1",
-                        file(ontology1),
-                        dir("scriptR2RML",
-                                file("test1_a.rml.ttl"),
-                                file("test1_b.rml.ttl")
-                        )
-                );
-
-        when(fileUtils.isDirectory(ontoFolder)).thenReturn(true);
-        when(fileUtils.folderExists(ontoFolder)).thenReturn(true);
-        when(fileUtils.listContents(ontoFolder)).thenReturn(List.of(ont1));
+        Path ontoFolder = root.resolve(ONTOLOGY.getFolderName());
+        files(ontoFolder, "ont1/test1.ttl", "ont1/scriptR2RML/test1_a.rml.ttl", "ont1/scriptR2RML/test1_b.rml.ttl");
 
         List<SemanticAssetPath> ontologyPaths =
-                agencyRepoService.getOntologyPaths(Path.of(root));
+                agencyRepoService.getOntologyPaths(root);
 
-        assertThat(ontologyPaths).containsExactly(SemanticAssetPath.of(ontology1));
+        assertThat(ontologyPaths).containsExactlyElementsOf(assetPaths(ontoFolder, "ont1/test1.ttl"));
     }
 
     @Test
     void shouldReturnEmptyListWhenOntologyFolderIsNotPresent() {
-        Path ontologyFolder = Path.of("/temp/ndc-1", ONTOLOGY.getFolderName());
-        when(fileUtils.folderExists(ontologyFolder)).thenReturn(false);
-
-        assertThat(agencyRepoService.getOntologyPaths(ontologyFolder)).isEmpty();
+        assertThat(agencyRepoService.getOntologyPaths(root)).isEmpty();
     }
 
     @Test
     void shouldReturnEmptyListWhenSchemaFolderIsNotPresent() {
-        Path ontologyFolder = Path.of("/temp/ndc-1", SCHEMA.getFolderName());
-        when(fileUtils.folderExists(ontologyFolder)).thenReturn(false);
-
-        assertThat(agencyRepoService.getSchemaPaths(ontologyFolder)).isEmpty();
+        assertThat(agencyRepoService.getSchemaPaths(root)).isEmpty();
     }
 
     @Test
     void shouldConsiderLatestVersionPerAsset() throws IOException {
-        String accoOntology = "ACCO/v2/acco2.ttl";
-        String cpvOntology = "CPV/latest/cpv2.ttl";
-        String root = "/temp/ndc-1";
-        SemanticAssetPath expected1 = SemanticAssetPath.of(accoOntology);
-        SemanticAssetPath expected2 = SemanticAssetPath.of(cpvOntology);
-        Path ontoFolder = Path.of(root, ONTOLOGY.getFolderName());
-
-        when(fileUtils.folderExists(ontoFolder)).thenReturn(true);
-        when(fileUtils.isDirectory(ontoFolder)).thenReturn(true);
-
-        Path acco =
-                dir("ACCO",
-                        dir("ACCO/v1",
-                                file("ACCO/v1/acco1.ttl")
-                        ),
-                        dir("ACCO/v2",
-                                file(accoOntology)
-                        )
-                );
-
-        Path cpv =
-                dir("CPV",
-                        dir("CPV/0.1",
-                                file("CPV/0.1/cpv1.ttl")
-                        ),
-                        dir("CPV/latest",
-                                file(cpvOntology)
-                        )
-                );
-
-        when(fileUtils.listContents(ontoFolder)).thenReturn(List.of(acco, cpv));
-
-        List<SemanticAssetPath> paths = agencyRepoService.getOntologyPaths(Path.of(root));
+        Path ontoFolder = root.resolve(ONTOLOGY.getFolderName());
+        files(ontoFolder, "ACCO/v1/acco1.ttl", "ACCO/v2/acco2.ttl", "CPV/0.1/cpv1.ttl", "CPV/latest/cpv2.ttl");
+
+        List<SemanticAssetPath> paths = agencyRepoService.getOntologyPaths(root);
 
         assertThat(paths).hasSize(2);
-        assertThat(paths).containsAll(List.of(expected1, expected2));
+        assertThat(paths).containsAll(assetPaths(ontoFolder, "ACCO/v2/acco2.ttl", "CPV/latest/cpv2.ttl"));
     }
 
     @Test
     void shouldConsiderLatestVersionPerWholeRepo() throws IOException {
-        SemanticAssetPath expected1 = SemanticAssetPath.of("2.0/ACCO/acco2.ttl");
-        SemanticAssetPath expected2 = SemanticAssetPath.of("2.0/CPV/cpv2.ttl");
-        String root = "/temp/ndc-1";
-        Path ontoFolder = Path.of(root, ONTOLOGY.getFolderName());
-
-        when(fileUtils.folderExists(ontoFolder)).thenReturn(true);
-        when(fileUtils.isDirectory(ontoFolder)).thenReturn(true);
-
-        Path v1 =
-                dir("v1",
-                        dir("v1/ACCO",
-                                file("v1/ACCO/acco1.ttl")
-                        ),
-                        dir("v1/CPV",
-                                file("v1/CPV/cpv1.ttl")
-                        )
-                );
-
-        Path v2 =
-                dir("2.0",
-                        dir("2.0/ACCO",
-                                file("2.0/ACCO/acco2.ttl")
-                        ),
-                        dir("2.0/CPV",
-                                file("2.0/CPV/cpv2.ttl")
-                        )
-                );
-
-        when(fileUtils.listContents(ontoFolder)).thenReturn(List.of(v1, v2));
-
-        List<SemanticAssetPath> paths = agencyRepoService.getOntologyPaths(Path.of(root));
+        Path ontoFolder = root.resolve(ONTOLOGY.getFolderName());
+        files(ontoFolder, "v1/ACCO/acco1.ttl", "v1/CPV/cpv1.ttl", "2.0/ACCO/acco2.ttl", "2.0/CPV/cpv2.ttl");
+
+        List<SemanticAssetPath> paths = agencyRepoService.getOntologyPaths(root);
 
         assertThat(paths).hasSize(2);
-        assertThat(paths).containsAll(List.of(expected1, expected2));
+        assertThat(paths).containsAll(assetPaths(ontoFolder, "2.0/ACCO/acco2.ttl", "2.0/CPV/cpv2.ttl"));
     }
 
     @Test
     void shouldConsiderLatestVersionAndProcessNonVersionedFolders() throws IOException {
-        SemanticAssetPath expected1 = SemanticAssetPath.of("2.0/ACCO/acco2.ttl");
-        SemanticAssetPath expected2 = SemanticAssetPath.of("2.0/CPV/cpv2.ttl");
-        SemanticAssetPath expected3 = SemanticAssetPath.of("non-versioned/FIT/fit.ttl");
-        String root = "/temp/ndc-1";
-        Path ontoFolder = Path.of(root, ONTOLOGY.getFolderName());
-
-        when(fileUtils.folderExists(ontoFolder)).thenReturn(true);
-        when(fileUtils.isDirectory(ontoFolder)).thenReturn(true);
-
-        Path v1 =
-                dir("v1",
-                        dir("v1/ACCO",
-                                file("v1/ACCO/acco1.ttl")
-                        ),
-                        dir("v1/CPV",
-                                file("v1/CPV/cpv1.ttl")
-                        )
-                );
-
-        Path v2 =
-                dir("2.0",
-                        dir("2.0/ACCO",
-                                file("2.0/ACCO/acco2.ttl")
-                        ),
-                        dir("2.0/CPV",
-                                file("2.0/CPV/cpv2.ttl")
-                        )
-                );
-
-        Path nonVersioned = dir("non-versioned",
-                dir("non-versioned/FIT",
-                        file("non-versioned/FIT/fit.ttl")
-                )
-        );
-
-        when(fileUtils.listContents(ontoFolder)).thenReturn(List.of(v1, v2, nonVersioned));
-
-        List<SemanticAssetPath> paths = agencyRepoService.getOntologyPaths(Path.of(root));
+        Path ontoFolder = root.resolve(ONTOLOGY.getFolderName());
+        files(ontoFolder,
+                "v1/ACCO/acco1.ttl",
+                "v1/CPV/cpv1.ttl",
+                "2.0/ACCO/acco2.ttl",
+                "2.0/CPV/cpv2.ttl",
+                "non-versioned/FIT/fit.ttl");
+
+        List<SemanticAssetPath> paths = agencyRepoService.getOntologyPaths(root);
 
         assertThat(paths).hasSize(3);
-        assertThat(paths).containsAll(List.of(expected1, expected2, expected3));
+        assertThat(paths).containsAll(assetPaths(ontoFolder, "2.0/ACCO/acco2.ttl", "2.0/CPV/cpv2.ttl", "non-versioned/FIT/fit.ttl"));
     }
 
     @Test
     void shouldConsiderLatestWithinLatest() throws IOException {
-        String root = "/temp/ndc-1";
-        Path ontoFolder = Path.of(root, ONTOLOGY.getFolderName());
-
-        when(fileUtils.folderExists(ontoFolder)).thenReturn(true);
-        when(fileUtils.isDirectory(ontoFolder)).thenReturn(true);
-
-        Path acco =
-                dir("ACCO",
-                        dir("ACCO/v1",
-                                file("ACCO/v1/acco1.ttl")
-                        ),
-                        dir("ACCO/v2",
-                                dir("ACCO/v2/v2.1",
-                                        file("ACCO/v2/v2.1/acco.ttl")
-                                ),
-                                dir("ACCO/v2/v2.2",
-                                        file("ACCO/v2/v2.2/acco.ttl")
-                                ),
-                                dir("ACCO/v2/v2.3",
-                                        file("ACCO/v2/v2.3/acco.ttl")
-                                )
-                        )
-                );
-
-        when(fileUtils.listContents(ontoFolder)).thenReturn(List.of(acco));
-
-        List<SemanticAssetPath> paths = agencyRepoService.getOntologyPaths(Path.of(root));
+        Path ontoFolder = root.resolve(ONTOLOGY.getFolderName());
+        files(ontoFolder,
+                "ACCO/v1/acco1.ttl",
+                "ACCO/v2/v2.1/acco.ttl",
+                "ACCO/v2/v2.2/acco.ttl",
+                "ACCO/v2/v2.3/acco.ttl");
+
+        List<SemanticAssetPath> paths = agencyRepoService.getOntologyPaths(root);
 
         assertThat(paths).hasSize(1);
-        assertThat(paths).containsAll(List.of(SemanticAssetPath.of("ACCO/v2/v2.3/acco.ttl")));
+        assertThat(paths).containsAll(assetPaths(ontoFolder, "ACCO/v2/v2.3/acco.ttl"));
+    }
+
+    @Test
+    void shouldScanClonedRepoOnceForAllAssetTypesUntilRemoved() throws IOException {
+        Path ontoFolder = root.resolve(ONTOLOGY.getFolderName());
+        Path schemaFolder = root.resolve(SCHEMA.getFolderName());
+        files(ontoFolder, "ot1/test1.ttl");
+        files(schemaFolder, "sc1/index.ttl");
+
+        assertThat(agencyRepoService.getOntologyPaths(root)).containsExactlyElementsOf(assetPaths(ontoFolder, "ot1/test1.ttl"));
+        files(ontoFolder, "ot2/test2.ttl");
+        assertThat(agencyRepoService.getSchemaPaths(root)).containsExactlyElementsOf(assetPaths(schemaFolder, "sc1/index.ttl"));
+        assertThat(agencyRepoService.getOntologyPaths(root)).hasSize(1);
+
+        verify(fileUtils).scanDirectoryTree(eq(ontoFolder), any());
+        verify(fileUtils).scanDirectoryTree(eq(schemaFolder), any());
+
+        doNothing().when(fileUtils).removeDirectory(root);
+        agencyRepoService.removeClonedRepo(root);
+
+        assertThat(agencyRepoService.getOntologyPaths(root)).hasSize(2);
     }
 
     @Test
     void shouldCleanUpRepoFolder() throws IOException {
         Path clonedRepoPath = mock(Path.class);
+        when(clonedRepoPath.toFile()).thenReturn(new File("temp"));
+        doNothing().when(fileUtils).removeDirectory(clonedRepoPath);
 
         agencyRepoService.removeClonedRepo(clonedRepoPath);
 
+        verify(gitUtils).releaseClone(new File("temp"));
         verify(fileUtils).removeDirectory(clonedRepoPath);
     }
 
-    private Path dir(String folderName, Path... children) throws IOException {
-        Path cpvLatest = Path.of(folderName);
-        when(fileUtils.isDirectory(cpvLatest)).thenReturn(true);
-        when(fileUtils.listContents(cpvLatest)).thenReturn(List.of(children));
-        return cpvLatest;
+    private static void files(Path folder, String... relativePaths) throws IOException {
+        for (String relativePath : relativePaths) {
+            Path file = folder.resolve(relativePath);
+            Files.createDirectories(file.getParent());
+            Files.createFile(file);
+        }
     }
 
-    private Path file(String fileName) {
-        Path p = Path.of(fileName);
-        when(fileUtils.isDirectory(p)).thenReturn(false);
-        return p;
+    private static String path(Path folder, String relativePath) {
+        return folder.resolve(relativePath).toString();
     }
 
+    private static List<SemanticAssetPath> assetPaths(Path folder, String... relativePaths) {
+        return Arrays.stream(relativePaths)
+                .map(relativePath -> SemanticAssetPath.of(path(folder, relativePath)))
+                .collect(Collectors.toList());
+    }
 }
@@ -1,8 +1,16 @@
 package it.gov.innovazione.ndc.harvester;
 
+import it.gov.innovazione.ndc.config.HarvestExecutionContext;
+import it.gov.innovazione.ndc.config.HarvestExecutionContextUtils;
+import it.gov.innovazione.ndc.harvester.exception.HarvestCancelledException;
+import it.gov.innovazione.ndc.harvester.model.index.SemanticAssetMetadata;
+import it.gov.innovazione.ndc.harvester.service.ConfigService;
+import it.gov.innovazione.ndc.harvester.service.HarvestTimeoutProperties;
+import it.gov.innovazione.ndc.harvester.service.RunningHarvest;
 import it.gov.innovazione.ndc.model.harvester.Repository;
 import it.gov.innovazione.ndc.repository.SemanticAssetMetadataRepository;
 import it.gov.innovazione.ndc.repository.TripleStoreRepository;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,15 +21,25 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 
 import static it.gov.innovazione.ndc.harvester.service.RepositoryUtils.asRepo;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -36,16 +54,26 @@ class HarvesterServiceTest {
     private SemanticAssetMetadataRepository metadataRepository;
     @Mock
     private SemanticAssetHarvester harvester;
+    @Mock
+    private ConfigService configService;
+    @Mock
+    private SemanticAssetHarvester.Replacement replacement;
 
     private HarvesterService harvesterService;
 
+    @AfterEach
+    void tearDown() {
+        HarvestExecutionContextUtils.setContext(null);
+    }
+
     @BeforeEach
     void setUp() {
         harvesterService = new HarvesterService(
                 agencyRepoService,
                 List.of(harvester),
                 tripleStoreRepository,
-                metadataRepository);
+                metadataRepository,
+                configService);
     }
 
     @Test
@@ -95,6 +123,168 @@ class HarvesterServiceTest {
         order.verify(harvester).harvest(repo, clonedRepoPath);
     }
 
+    @Test
+    void shouldLoadIntoStagingGraphAndSwapItInWhenRunningWithContext() throws IOException {
+        String repoUrl = "someRepoUri";
+        Repository repo = asRepo(repoUrl);
+        String stagingGraph = "someRepoUri#rev-someRevision";
+        HarvestExecutionContextUtils.setContext(HarvestExecutionContext.builder().repository(repo).build());
+        when(agencyRepoService.cloneRepo(repoUrl, "someRevision")).thenReturn(clonedRepoPath);
+        when(harvester.prepareReplacement(repoUrl)).thenReturn(replacement);
+        doAnswer(invocation -> {
+            assertEquals(stagingGraph, HarvestExecutionContextUtils.getContext().getGraphName());
+            return null;
+        }).when(harvester).harvest(repo, clonedRepoPath);
+
+        harvesterService.harvest(repo, "someRevision");
+
+        InOrder order = inOrder(harvester, tripleStoreRepository, metadataRepository, replacement);
+        order.verify(harvester).prepareReplacement(repoUrl);
+        order.verify(tripleStoreRepository).clearExistingNamedGraph(stagingGraph);
+        order.verify(tripleStoreRepository).hideStagingGraph(stagingGraph);
+        order.verify(harvester).harvest(repo, clonedRepoPath);
+        order.verify(metadataRepository).deleteStaleByRepoUrl(eq(repoUrl), any());
+        order.verify(tripleStoreRepository).replaceNamedGraph(stagingGraph, repoUrl);
+        order.verify(tripleStoreRepository).releaseStagingGraph(stagingGraph);
+        order.verify(replacement).complete();
+        verify(metadataRepository, never()).deleteByRepoUrl(any());
+        verify(harvester, never()).cleanUpBeforeHarvesting(any());
+        verify(tripleStoreRepository, never()).clearExistingNamedGraph(repoUrl);
+        assertNull(HarvestExecutionContextUtils.getContext().getGraphName());
+    }
+
+    @Test
+    void shouldIndexMetadataCollectedDuringHarvestBeforeSwappingStagingGraph() throws IOException {
+        String repoUrl = "someRepoUri";
+        Repository repo = asRepo(repoUrl);
+        SemanticAssetMetadata metadata = SemanticAssetMetadata.builder().iri("http://example.org/asset").build();
+        HarvestExecutionContextUtils.setContext(HarvestExecutionContext.builder().repository(repo).build());
+        when(agencyRepoService.cloneRepo(repoUrl, null)).thenReturn(clonedRepoPath);
+        when(harvester.prepareReplacement(repoUrl)).thenReturn(replacement);
+        when(metadataRepository.saveAll(List.of(metadata))).thenReturn(Map.of());
+        doAnswer(invocation -> {
+            HarvestExecutionContextUtils.getContext().getMetadataBatch().add(metadata);
+            return null;
+        }).when(harvester).harvest(repo, clonedRepoPath);
+
+        harvesterService.harvest(repo);
+
+        InOrder order = inOrder(harvester, metadataRepository, tripleStoreRepository, replacement);
+        order.verify(harvester).harvest(repo, clonedRepoPath);
+        order.verify(metadataRepository).saveAll(List.of(metadata));
+        order.verify(metadataRepository).refresh();
+        order.verify(tripleStoreRepository).replaceNamedGraph("someRepoUri#rev-HEAD", repoUrl);
+        order.verify(replacement).complete();
+        verify(metadataRepository, never()).save(any());
+    }
+
+    @Test
+    void shouldDeleteMetadataLeftByPreviousRunsOnlyOnceNewOnesAreIndexed() throws IOException {
+        String repoUrl = "someRepoUri";
+        Repository repo = asRepo(repoUrl);
+        SemanticAssetMetadata metadata = SemanticAssetMetadata.builder().iri("http://example.org/asset").build();
+        HarvestExecutionContextUtils.setContext(HarvestExecutionContext.builder().repository(repo).runId("someRunId").build());
+        when(agencyRepoService.cloneRepo(repoUrl, null)).thenReturn(clonedRepoPath);
+        when(harvester.prepareReplacement(repoUrl)).thenReturn(replacement);
+        when(metadataRepository.saveAll(List.of(metadata))).thenReturn(Map.of());
+        doAnswer(invocation -> {
+            HarvestExecutionContextUtils.getContext().getMetadataBatch().add(metadata);
+            return null;
+        }).when(harvester).harvest(repo, clonedRepoPath);
+
+        harvesterService.harvest(repo);
+
+        InOrder order = inOrder(metadataRepository);
+        order.verify(metadataRepository).saveAll(List.of(metadata));
+        order.verify(metadataRepository).refresh();
+        order.verify(metadataRepository).deleteStaleByRepoUrl(repoUrl, "someRunId");
+        assertEquals("someRunId", metadata.getHarvestRunId());
+        verify(metadataRepository, never()).deleteByRepoUrl(any());
+    }
+
+    @Test
+    void shouldDropStagingGraphAndKeepLiveGraphWhenHarvestFails() throws IOException {
+        String repoUrl = "someRepoUri";
+        Repository repo = asRepo(repoUrl);
+        String stagingGraph = "someRepoUri#rev-HEAD";
+        HarvestExecutionContextUtils.setContext(HarvestExecutionContext.builder().repository(repo).build());
+        when(agencyRepoService.cloneRepo(repoUrl, null)).thenReturn(clonedRepoPath);
+        when(harvester.prepareReplacement(repoUrl)).thenReturn(replacement);
+        doThrow(new RuntimeException("network disaster")).when(harvester).harvest(repo, clonedRepoPath);
+
+        assertThatThrownBy(() -> harvesterService.harvest(repo))
+                .hasMessage("network disaster");
+
+        verify(replacement).discard();
+        verify(replacement, never()).complete();
+        verify(tripleStoreRepository, times(2)).clearExistingNamedGraph(stagingGraph);
+        verify(tripleStoreRepository, never()).clearExistingNamedGraph(repoUrl);
+        verify(tripleStoreRepository, never()).replaceNamedGraph(any(), any());
+        verify(tripleStoreRepository).releaseStagingGraph(stagingGraph);
+        verify(metadataRepository, never()).deleteByRepoUrl(any());
+        verify(metadataRepository, never()).deleteStaleByRepoUrl(any(), any());
+    }
+
+    @Test
+    void shouldLeavePreviousDataInPlaceWhenRunIsCancelled() throws IOException {
+        String repoUrl = "someRepoUri";
+        Repository repo = asRepo(repoUrl);
+        String stagingGraph = "someRepoUri#rev-HEAD";
+        RunningHarvest runningHarvest = new RunningHarvest("someRunId", "someCorrelationId", repo, null, "someUserId", new Thread("someThread"), new HarvestTimeoutProperties());
+        HarvestExecutionContextUtils.setContext(HarvestExecutionContext.builder().repository(repo).runningHarvest(runningHarvest).build());
+        when(agencyRepoService.cloneRepo(repoUrl, null)).thenReturn(clonedRepoPath);
+        when(harvester.prepareReplacement(repoUrl)).thenReturn(replacement);
+        doAnswer(invocation -> {
+            HarvestExecutionContextUtils.getContext().getMetadataBatch().add(SemanticAssetMetadata.builder().iri("http://example.org/asset").build());
+            runningHarvest.cancel();
+            return null;
+        }).when(harvester).harvest(repo, clonedRepoPath);
+
+        assertThatThrownBy(() -> harvesterService.harvest(repo))
+                .isInstanceOf(HarvestCancelledException.class);
+
+        verify(tripleStoreRepository, times(2)).clearExistingNamedGraph(stagingGraph);
+        verify(tripleStoreRepository, never()).replaceNamedGraph(any(), any());
+        verifyNoInteractions(metadataRepository);
+        verify(replacement).discard();
+        verify(replacement, never()).complete();
+        verify(agencyRepoService).removeClonedRepo(clonedRepoPath);
+    }
+
+    @Test
+    void shouldCompleteReplacementWhenRunIsCancelledWhileStoring() throws IOException {
+        String repoUrl = "someRepoUri";
+        Repository repo = asRepo(repoUrl);
+        String stagingGraph = "someRepoUri#rev-HEAD";
+        SemanticAssetMetadata metadata = SemanticAssetMetadata.builder().iri("http://example.org/asset").build();
+        RunningHarvest runningHarvest = new RunningHarvest("someRunId", "someCorrelationId", repo, null, "someUserId", Thread.currentThread(), new HarvestTimeoutProperties());
+        HarvestExecutionContextUtils.setContext(HarvestExecutionContext.builder().repository(repo).runningHarvest(runningHarvest).build());
+        when(agencyRepoService.cloneRepo(repoUrl, null)).thenReturn(clonedRepoPath);
+        when(harvester.prepareReplacement(repoUrl)).thenReturn(replacement);
+        doAnswer(invocation -> {
+            HarvestExecutionContextUtils.getContext().getMetadataBatch().add(metadata);
+            return null;
+        }).when(harvester).harvest(repo, clonedRepoPath);
+        when(metadataRepository.saveAll(List.of(metadata))).thenReturn(Map.of());
+        doAnswer(invocation -> {
+            runningHarvest.cancel();
+            runningHarvest.checkDeadlines(Instant.now().plus(Duration.ofDays(1)));
+            return null;
+        }).when(tripleStoreRepository).replaceNamedGraph(stagingGraph, repoUrl);
+
+        harvesterService.harvest(repo);
+
+        InOrder order = inOrder(metadataRepository, tripleStoreRepository, replacement);
+        order.verify(metadataRepository).saveAll(List.of(metadata));
+        order.verify(metadataRepository).deleteStaleByRepoUrl(eq(repoUrl), any());
+        order.verify(tripleStoreRepository).replaceNamedGraph(stagingGraph, repoUrl);
+        order.verify(replacement).complete();
+        // the staging graph is dropped only before loading it, not after the swap
+        verify(tripleStoreRepository).clearExistingNamedGraph(stagingGraph);
+        assertFalse(runningHarvest.isCancelled());
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
     @Test
     void shouldCleanUpTemporaryFolderWithRepoAfterProcessing() throws IOException {
         String repoUrl = "someRepoUri";
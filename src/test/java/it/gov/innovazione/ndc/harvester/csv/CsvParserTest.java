@@ -2,8 +2,11 @@ package it.gov.innovazione.ndc.harvester.csv;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -20,7 +23,7 @@ public class CsvParserTest {
 
         assertThat(csvData.getIdName()).isEqualTo("code_level_1");
 
-        List<Map<String, String>> maps = csvData.getRecords();
+        List<Map<String, String>> maps = csvData.stream().collect(Collectors.toList());
         assertThat(maps.size()).isEqualTo(2);
         Map<String, String> firstRecord = maps.get(0);
         assertThat(firstRecord.get("code_level_1")).isEqualTo("3.0");
@@ -39,10 +42,23 @@ public class CsvParserTest {
         CsvParser.CsvData csvData = csvParser.loadCsvDataFromFile(testCsvFile);
 
         assertThat(csvData.getIdName()).isEqualTo("code_level_1");
-        List<Map<String, String>> maps = csvData.getRecords();
+        List<Map<String, String>> maps = csvData.stream().collect(Collectors.toList());
         assertThat(maps).isEmpty();
     }
 
+    @Test
+    void shouldReadRecordsLazilyAndCloseFile() throws IOException {
+        String testCsvFile = "src/test/resources/testdata/cv.csv";
+        CsvParser csvParser = new CsvParser(nameExtractors);
+
+        CsvParser.CsvData csvData = csvParser.loadCsvDataFromFile(testCsvFile);
+        Iterator<Map<String, String>> records = csvData.getRecords().iterator();
+
+        assertThat(records.next().get("code_level_1")).isEqualTo("3.0");
+        csvData.close();
+        assertThat(records.hasNext()).isFalse();
+    }
+
     @Test
     void shouldComplainForEmptyCsv() {
         String testCsvFile = "src/test/resources/csvs/empty.csv";
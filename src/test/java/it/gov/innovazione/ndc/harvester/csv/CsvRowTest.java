@@ -0,0 +1,60 @@
+package it.gov.innovazione.ndc.harvester.csv;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+class CsvRowTest {
+    private final CsvRow.Header header = CsvRow.Header.of(headerOf("id", "label", "description"));
+
+    @Test
+    void shouldReadValuesByColumnName() {
+        CsvRow row = header.row("1", "one", "the first");
+
+        assertThat(row.get("id")).isEqualTo("1");
+        assertThat(row.get("label")).isEqualTo("one");
+        assertThat(row.get("description")).isEqualTo("the first");
+        assertThat(row.get("missing")).isNull();
+        assertThat(row.containsKey("label")).isTrue();
+        assertThat(row.containsKey("missing")).isFalse();
+    }
+
+    @Test
+    void shouldIterateEntriesInHeaderOrder() {
+        CsvRow row = header.row("1", "one", "the first");
+
+        assertThat(row.entrySet()).containsExactly(
+                entry("id", "1"),
+                entry("label", "one"),
+                entry("description", "the first"));
+    }
+
+    @Test
+    void shouldSkipColumnsMissingFromShortRows() {
+        CsvRow row = header.row("1", "one");
+
+        assertThat(row).hasSize(2);
+        assertThat(row.get("description")).isNull();
+        assertThat(row.entrySet()).containsExactly(entry("id", "1"), entry("label", "one"));
+    }
+
+    @Test
+    void shouldBeEqualToMapWithSameEntries() {
+        CsvRow row = header.row("1", "one", "the first");
+
+        assertThat(row).isEqualTo(Map.of("id", "1", "label", "one", "description", "the first"));
+        assertThat(row.hashCode()).isEqualTo(Map.of("id", "1", "label", "one", "description", "the first").hashCode());
+    }
+
+    private static Map<String, Integer> headerOf(String... names) {
+        Map<String, Integer> columns = new LinkedHashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            columns.put(names[i], i);
+        }
+        return columns;
+    }
+}
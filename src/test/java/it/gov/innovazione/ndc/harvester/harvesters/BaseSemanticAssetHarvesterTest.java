@@ -4,9 +4,12 @@ import it.gov.innovazione.ndc.config.HarvestExecutionContext;
 import it.gov.innovazione.ndc.config.HarvestExecutionContextUtils;
 import it.gov.innovazione.ndc.eventhandler.NdcEventPublisher;
 import it.gov.innovazione.ndc.harvester.SemanticAssetType;
+import it.gov.innovazione.ndc.harvester.exception.HarvestCancelledException;
 import it.gov.innovazione.ndc.harvester.exception.InvalidAssetException;
 import it.gov.innovazione.ndc.harvester.model.SemanticAssetPath;
 import it.gov.innovazione.ndc.harvester.service.ConfigService;
+import it.gov.innovazione.ndc.harvester.service.HarvestTimeoutProperties;
+import it.gov.innovazione.ndc.harvester.service.RunningHarvest;
 import it.gov.innovazione.ndc.model.harvester.Repository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -17,16 +20,25 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.io.File;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
 
+import static it.gov.innovazione.ndc.harvester.service.ActualConfigService.ConfigKey.PATH_PROCESSING_PARALLELISM;
 import static it.gov.innovazione.ndc.harvester.service.RepositoryUtils.asRepo;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -55,6 +67,86 @@ class BaseSemanticAssetHarvesterTest {
         verify(processor).accept(repoUrl, path2);
     }
 
+    @Test
+    void shouldProcessPathsInParallelAndMoveOnIfProcessingOneFails() {
+        String repoUrl = "someRepoUri";
+        Path basePath = Path.of("ontologyRoot");
+        SemanticAssetPath path1 = SemanticAssetPath.of("test1.ttl");
+        SemanticAssetPath path2 = SemanticAssetPath.of("test2.ttl");
+        SemanticAssetPath path3 = SemanticAssetPath.of("test3.ttl");
+        Set<String> workerThreads = ConcurrentHashMap.newKeySet();
+
+        when(configService.getParsedOrGetDefault(eq(PATH_PROCESSING_PARALLELISM), any()))
+                .thenReturn(2L);
+        doAnswer(invocation -> workerThreads.add(Thread.currentThread().getName()))
+                .when(processor).accept(anyString(), any());
+        doThrow(new InvalidAssetException("Something went wrong")).when(processor)
+                .accept(repoUrl, path1);
+
+        TestHarvester harvester = new TestHarvester(List.of(path1, path2, path3));
+
+        harvester.harvest(asRepo(repoUrl), basePath);
+
+        verify(processor).accept(repoUrl, path1);
+        verify(processor).accept(repoUrl, path2);
+        verify(processor).accept(repoUrl, path3);
+        assertThat(workerThreads).isNotEmpty()
+                .noneMatch(name -> name.equals(Thread.currentThread().getName()));
+    }
+
+    @Test
+    void shouldCountPathsDoneOfRunningHarvest() {
+        String repoUrl = "someRepoUri";
+        Repository repository = asRepo(repoUrl);
+        RunningHarvest runningHarvest = new RunningHarvest("someRunId", "someCorrelationId", repository, "someRevision", "someUserId", new Thread("someThread"), new HarvestTimeoutProperties());
+        List<SemanticAssetPath> paths = List.of(SemanticAssetPath.of("test1.ttl"), SemanticAssetPath.of("test2.ttl"), SemanticAssetPath.of("test3.ttl"));
+        when(configService.getParsedOrGetDefault(any(), any())).thenReturn(2L);
+        doThrow(new InvalidAssetException("Something went wrong")).when(processor).accept(repoUrl, paths.get(0));
+
+        HarvestExecutionContextUtils.setContext(HarvestExecutionContext.builder()
+                .repository(repository)
+                .runningHarvest(runningHarvest)
+                .build());
+        try {
+            new TestHarvester(paths).harvest(repository, Path.of("ontologyRoot"));
+        } finally {
+            HarvestExecutionContextUtils.setContext(null);
+        }
+
+        assertThat(runningHarvest.getPathsTotal()).isEqualTo(3);
+        assertThat(runningHarvest.getPathsDone()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldSkipRemainingPathsWhenRunIsCancelled() {
+        String repoUrl = "someRepoUri";
+        Repository repository = asRepo(repoUrl);
+        RunningHarvest runningHarvest = new RunningHarvest("someRunId", "someCorrelationId", repository, "someRevision", "someUserId", Thread.currentThread(), new HarvestTimeoutProperties());
+        List<SemanticAssetPath> paths = List.of(SemanticAssetPath.of("test1.ttl"), SemanticAssetPath.of("test2.ttl"), SemanticAssetPath.of("test3.ttl"));
+        doAnswer(invocation -> {
+            runningHarvest.cancel();
+            return null;
+        }).when(processor).accept(repoUrl, paths.get(0));
+
+        HarvestExecutionContextUtils.setContext(HarvestExecutionContext.builder()
+                .repository(repository)
+                .runningHarvest(runningHarvest)
+                .build());
+        try {
+            assertThatThrownBy(() -> new TestHarvester(paths).harvest(repository, Path.of("ontologyRoot")))
+                    .isInstanceOf(HarvestCancelledException.class)
+                    .hasMessageContaining("cancelled on request");
+        } finally {
+            runningHarvest.finish();
+            HarvestExecutionContextUtils.setContext(null);
+        }
+
+        verify(processor).accept(repoUrl, paths.get(0));
+        verifyNoMoreInteractions(processor);
+        assertThat(runningHarvest.getPathsDone()).isEqualTo(1);
+        assertThat(Thread.currentThread().isInterrupted()).isFalse();
+    }
+
     @Mock
     private BiConsumer<String, SemanticAssetPath> processor;
 
@@ -75,7 +167,7 @@ class BaseSemanticAssetHarvesterTest {
 
         doNothing().when(processor).accept(repoUrl, path);
 
-        try (MockedStatic<HarvestExecutionContextUtils> contextUtils = mockStatic(HarvestExecutionContextUtils.class)) {
+        try (MockedStatic<HarvestExecutionContextUtils> contextUtils = mockStatic(HarvestExecutionContextUtils.class, CALLS_REAL_METHODS)) {
             contextUtils.when(HarvestExecutionContextUtils::getContext)
                     .thenReturn(
                             HarvestExecutionContext.builder()
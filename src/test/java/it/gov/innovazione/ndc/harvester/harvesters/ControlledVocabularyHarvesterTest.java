@@ -1,10 +1,14 @@
 package it.gov.innovazione.ndc.harvester.harvesters;
 
 import it.gov.innovazione.ndc.harvester.AgencyRepositoryService;
+import it.gov.innovazione.ndc.harvester.SemanticAssetHarvester;
 import it.gov.innovazione.ndc.harvester.model.CvPath;
+import it.gov.innovazione.ndc.harvester.model.index.SemanticAssetMetadata;
 import it.gov.innovazione.ndc.harvester.pathprocessors.ControlledVocabularyPathProcessor;
+import it.gov.innovazione.ndc.harvester.service.ConfigService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -15,6 +19,9 @@ import java.util.List;
 
 import static it.gov.innovazione.ndc.harvester.service.RepositoryUtils.asRepo;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -24,6 +31,8 @@ class ControlledVocabularyHarvesterTest {
     AgencyRepositoryService agencyRepositoryService;
     @Mock
     ControlledVocabularyPathProcessor pathProcessor;
+    @Mock
+    ConfigService configService;
     @InjectMocks
     ControlledVocabularyHarvester harvester;
 
@@ -51,6 +60,33 @@ class ControlledVocabularyHarvesterTest {
         verify(pathProcessor).dropCsvIndicesForRepo(repoUrl);
     }
 
+    @Test
+    void shouldSwitchToNewIndicesAndDropRemovedOnesOnceReplacementCompletes() {
+        String repoUrl = "my-repo.git";
+        List<SemanticAssetMetadata> previousVocabularies = List.of(SemanticAssetMetadata.builder().build());
+        when(pathProcessor.findVocabulariesForRepo(repoUrl)).thenReturn(previousVocabularies);
+
+        SemanticAssetHarvester.Replacement replacement = harvester.prepareReplacement(repoUrl);
+        replacement.complete();
+
+        InOrder order = inOrder(pathProcessor);
+        order.verify(pathProcessor).startReplacement(repoUrl);
+        order.verify(pathProcessor).completeReplacement(repoUrl);
+        order.verify(pathProcessor).dropCsvIndicesOfRemovedVocabularies(repoUrl, previousVocabularies);
+        verify(pathProcessor, never()).discardReplacement(repoUrl);
+    }
+
+    @Test
+    void shouldDiscardNewIndicesWhenReplacementFails() {
+        String repoUrl = "my-repo.git";
+
+        harvester.prepareReplacement(repoUrl).discard();
+
+        verify(pathProcessor).discardReplacement(repoUrl);
+        verify(pathProcessor, never()).completeReplacement(repoUrl);
+        verify(pathProcessor, never()).dropCsvIndicesOfRemovedVocabularies(any(), any());
+    }
+
     @Test
     void shouldReturnAllFiles() {
         final CvPath path = CvPath.of("onto1.ttl", "onto1.csv");
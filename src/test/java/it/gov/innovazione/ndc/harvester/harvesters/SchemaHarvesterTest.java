@@ -3,6 +3,7 @@ package it.gov.innovazione.ndc.harvester.harvesters;
 import it.gov.innovazione.ndc.harvester.AgencyRepositoryService;
 import it.gov.innovazione.ndc.harvester.model.SemanticAssetPath;
 import it.gov.innovazione.ndc.harvester.pathprocessors.SchemaPathProcessor;
+import it.gov.innovazione.ndc.harvester.service.ConfigService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -22,6 +23,8 @@ class SchemaHarvesterTest {
     AgencyRepositoryService agencyRepositoryService;
     @Mock
     SchemaPathProcessor pathProcessor;
+    @Mock
+    ConfigService configService;
     @InjectMocks
     SchemaHarvester harvester;
 
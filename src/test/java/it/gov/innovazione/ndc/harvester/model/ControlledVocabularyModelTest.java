@@ -276,6 +276,23 @@ class ControlledVocabularyModelTest {
         assertThat(semanticAssetMetadata.getAgencyId()).isEqualTo("agid");
     }
 
+    @Test
+    void shouldReadMetadataChangedAfterTheFirstExtraction() {
+        ControlledVocabularyModel model = new ControlledVocabularyModel(jenaModel, TTL_FILE,
+                REPO_URL);
+        assertThat(model.extractMetadata().getTitle()).isEqualTo("title");
+        assertThat(model.getKeyConcept()).isEqualTo("test-concept");
+
+        Resource cv = jenaModel.getResource(CV_IRI);
+        cv.removeAll(title).removeAll(NDC.keyConcept)
+                .addProperty(title, "new title")
+                .addProperty(NDC.keyConcept, "new-concept");
+
+        SemanticAssetMetadata metadata = model.extractMetadata();
+        assertThat(metadata.getTitle()).isEqualTo("new title");
+        assertThat(metadata.getKeyConcept()).isEqualTo("new-concept");
+    }
+
     @Test
     void shouldProvideEndpointUrlAsPartOfMetaDataAfterEnrichingModel() {
         ControlledVocabularyModel model = new ControlledVocabularyModel(jenaModel, TTL_FILE,
@@ -1,11 +1,27 @@
 package it.gov.innovazione.ndc.harvester.model;
 
 import it.gov.innovazione.ndc.harvester.model.exception.InvalidModelException;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.sparql.vocabulary.FOAF;
+import org.apache.jena.vocabulary.DCTerms;
+import org.apache.jena.vocabulary.DCAT;
+import org.apache.jena.vocabulary.VCARD4;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -70,4 +86,89 @@ class SemanticAssetModelFactoryTest {
             () -> factory.createSchema("src/main/resources/application.properties", REPO_URL))
             .isInstanceOf(InvalidModelException.class);
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldStreamAllTriplesAndKeepOnlyMetadata() {
+        String ttlFile = "src/test/resources/testdata/onto.ttl";
+        List<Triple> streamed = new ArrayList<>();
+
+        OntologyModel model = factory.streamOntology(ttlFile, REPO_URL, streamed::add);
+
+        Model loaded = RDFDataMgr.loadModel(ttlFile, Lang.TURTLE);
+        assertThat(streamed).hasSize((int) loaded.size());
+        assertThat(model.getRdfModel()).isInstanceOf(StreamedRdfModel.class);
+        assertThat(model.getRdfModel().size()).isLessThan(loaded.size());
+        assertThat(model.extractMetadata()).usingRecursiveComparison().ignoringCollectionOrder()
+            .isEqualTo(factory.createOntology(ttlFile, REPO_URL).extractMetadata());
+    }
+
+    @Test
+    void shouldStreamControlledVocabularyWithSameMetadataAsLoadedOne() {
+        String ttlFile = "src/test/resources/testdata/cv.ttl";
+
+        ControlledVocabularyModel model = factory.streamControlledVocabulary(ttlFile, REPO_URL, triple -> { });
+
+        ControlledVocabularyModel loaded = factory.createControlledVocabulary(ttlFile, REPO_URL);
+        assertThat(model.extractMetadata()).usingRecursiveComparison().ignoringCollectionOrder()
+            .isEqualTo(loaded.extractMetadata());
+        assertThat(model.getKeyConcept()).isEqualTo(loaded.getKeyConcept());
+        assertThat(model.getAgencyId()).isEqualTo(loaded.getAgencyId());
+    }
+
+    @Test
+    void shouldStreamSchemaWithSameMetadataAsLoadedOne() {
+        String ttlFile = "src/test/resources/testdata/schema.ttl";
+
+        SchemaModel model = factory.streamSchema(ttlFile, REPO_URL, triple -> { });
+
+        assertThat(model.extractMetadata()).usingRecursiveComparison().ignoringCollectionOrder()
+            .isEqualTo(factory.createSchema(ttlFile, REPO_URL).extractMetadata());
+    }
+
+    @Test
+    void shouldKeepOnlyMetadataOfMainResourceAndOfResourcesItRefersTo(@TempDir Path tempDir) throws IOException {
+        Path ttlFile = tempDir.resolve("onto.ttl");
+        Files.writeString(ttlFile, String.join("\n",
+            "@prefix rdfs: <http://www.w3.org/2000/01/rdf-schema#> .",
+            "@prefix dct: <http://purl.org/dc/terms/> .",
+            "@prefix foaf: <http://xmlns.com/foaf/0.1/> .",
+            "@prefix vcard: <http://www.w3.org/2006/vcard/ns#> .",
+            "@prefix dcat: <http://www.w3.org/ns/dcat#> .",
+            "<http://example.org/before> rdfs:label \"before\" .",
+            "<http://example.org/publisher> foaf:name \"publisher\" .",
+            "<http://example.org/onto> a <http://www.w3.org/2002/07/owl#Ontology> ;",
+            "    dct:title \"title\" ;",
+            "    dct:publisher <http://example.org/publisher> ;",
+            "    dcat:contactPoint [ vcard:hasEmail <mailto:info@example.org> ] ;",
+            "    dct:rightsHolder <http://example.org/holder> .",
+            "<http://example.org/after> rdfs:label \"after\" ; dct:title \"after\" .",
+            "<http://example.org/holder> foaf:name \"holder\" ."));
+
+        OntologyModel model = factory.streamOntology(ttlFile.toString(), REPO_URL, triple -> { });
+
+        Model metadata = model.getRdfModel();
+        Resource contactPoint = metadata.getResource("http://example.org/onto").getPropertyResourceValue(DCAT.contactPoint);
+        assertThat(metadata.contains(metadata.getResource("http://example.org/publisher"), FOAF.name, "publisher")).isTrue();
+        assertThat(metadata.contains(metadata.getResource("http://example.org/holder"), FOAF.name, "holder")).isTrue();
+        assertThat(metadata.contains(contactPoint, VCARD4.hasEmail)).isTrue();
+        assertThat(metadata.contains(metadata.getResource("http://example.org/before"), null)).isFalse();
+        assertThat(metadata.contains(metadata.getResource("http://example.org/after"), null)).isFalse();
+    }
+
+    @Test
+    void shouldKeepTriplesAddedToStreamedModelApart() {
+        StreamedRdfModel model = StreamedRdfModel.of(GraphFactory.createDefaultGraph());
+        Resource resource = model.createResource("http://example.org/dataset");
+
+        model.add(resource, DCTerms.title, "title");
+
+        assertThat(model.getAdditions().size()).isEqualTo(1);
+        assertThat(model.contains(resource, DCTerms.title)).isTrue();
+    }
+
+    @Test
+    void shouldFailToStreamInvalidModel() {
+        assertThatThrownBy(() -> factory.streamSchema("src/main/resources/application.properties", REPO_URL, triple -> { }))
+            .isInstanceOf(InvalidModelException.class);
+    }
+}
@@ -1,5 +1,12 @@
 package it.gov.innovazione.ndc.harvester.pathprocessors;
 
+import it.gov.innovazione.ndc.config.HarvestExecutionContext;
+import it.gov.innovazione.ndc.config.HarvestExecutionContextUtils;
+import it.gov.innovazione.ndc.harvester.service.AssetFingerprint;
+import it.gov.innovazione.ndc.harvester.service.AssetFingerprintService;
+import it.gov.innovazione.ndc.harvester.service.HarvestTimeoutProperties;
+import it.gov.innovazione.ndc.harvester.service.RunningHarvest;
+import it.gov.innovazione.ndc.harvester.exception.SinglePathProcessingException;
 import it.gov.innovazione.ndc.repository.TripleStoreRepository;
 import it.gov.innovazione.ndc.harvester.csv.CsvParser;
 import it.gov.innovazione.ndc.harvester.csv.CsvParser.CsvData;
@@ -10,17 +17,27 @@ import it.gov.innovazione.ndc.harvester.model.SemanticAssetModelFactory;
 import it.gov.innovazione.ndc.repository.SemanticAssetMetadataRepository;
 import it.gov.innovazione.ndc.service.VocabularyDataService;
 import it.gov.innovazione.ndc.service.VocabularyIdentifier;
+import it.gov.innovazione.ndc.service.VocabularyIndexGeneration;
 import org.apache.jena.rdf.model.Model;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -43,7 +60,11 @@ class ControlledVocabularyPathProcessorTest {
     @Mock
     SemanticAssetMetadataRepository metadataRepository;
     @Mock
+    AssetFingerprintService fingerprintService;
+    @Mock
     Model jenaModel;
+    @TempDir
+    Path repoRoot;
 
     String baseUrl = "http://ndc";
 
@@ -52,7 +73,12 @@ class ControlledVocabularyPathProcessorTest {
     @BeforeEach
     void setup() {
         pathProcessor = new ControlledVocabularyPathProcessor(tripleStoreRepository, semanticAssetModelFactory,
-                csvParser, vocabularyDataService, metadataRepository, baseUrl);
+                csvParser, vocabularyDataService, metadataRepository, fingerprintService, baseUrl);
+    }
+
+    @AfterEach
+    void clearContext() {
+        HarvestExecutionContextUtils.setContext(null);
     }
 
     @Test
@@ -69,11 +95,15 @@ class ControlledVocabularyPathProcessorTest {
         when(csvParser.loadCsvDataFromFile(csvFile)).thenReturn(csvData);
         SemanticAssetMetadata metadata = SemanticAssetMetadata.builder().build();
         when(cvModel.extractMetadata()).thenReturn(metadata);
+        VocabularyIndexGeneration generation = new VocabularyIndexGeneration(new VocabularyIdentifier("agencyId", "keyConcept"), "agencyid.keyconcept.1", 1);
+        when(vocabularyDataService.indexData(any(), any())).thenReturn(generation);
 
         pathProcessor.process("some-repo", path);
 
         verify(semanticAssetModelFactory).createControlledVocabulary(ttlFile, "some-repo");
         verify(csvParser).loadCsvDataFromFile(csvFile);
+        // without a replacement in progress the new generation is switched to straight away
+        verify(vocabularyDataService).switchToGeneration(generation);
         verify(tripleStoreRepository).save("some-repo", jenaModel);
         verify(vocabularyDataService).indexData(new VocabularyIdentifier("agencyId", "keyConcept"),
                 new CsvData(List.of(Map.of("key", "val")), "key"));
@@ -104,6 +134,105 @@ class ControlledVocabularyPathProcessorTest {
         verifyNoInteractions(vocabularyDataService);
     }
 
+    @Test
+    void shouldKeepCsvIndexedWhenUnchangedSinceThePreviousHarvest() throws IOException {
+        CvPath path = givenHarvestedVocabulary();
+        AssetFingerprint fingerprint = AssetFingerprint.of(path.getTtlPath(), path.getCsvPath().get(), baseUrl + "|agencyid.keyconcept");
+        when(fingerprintService.find(REPO_URL, "cities/cities.ttl")).thenReturn(Optional.of(fingerprint));
+        when(vocabularyDataService.isIndexed(new VocabularyIdentifier("agencyId", "keyConcept"))).thenReturn(true);
+
+        pathProcessor.process(REPO_URL, path);
+
+        verify(tripleStoreRepository).save(REPO_URL, jenaModel);
+        verify(fingerprintService, never()).save(anyString(), anyString(), any());
+        verifyNoInteractions(csvParser);
+        verify(vocabularyDataService, never()).indexData(any(), any());
+    }
+
+    @Test
+    void shouldIndexCsvAndRecordItsFingerprintWhenChanged() throws IOException {
+        CvPath path = givenHarvestedVocabulary();
+        AssetFingerprint previous = AssetFingerprint.builder().ttlHash("ttl").csvHash("csv").inputsHash("inputs").build();
+        when(fingerprintService.find(REPO_URL, "cities/cities.ttl")).thenReturn(Optional.of(previous));
+        CsvData csvData = new CsvData(List.of(Map.of("key", "val")), "key");
+        when(csvParser.loadCsvDataFromFile(path.getCsvPath().get())).thenReturn(csvData);
+        when(vocabularyDataService.indexData(any(), any())).thenReturn(generation());
+
+        pathProcessor.process(REPO_URL, path);
+
+        verify(fingerprintService).save(REPO_URL, "cities/cities.ttl",
+                AssetFingerprint.of(path.getTtlPath(), path.getCsvPath().get(), baseUrl + "|agencyid.keyconcept"));
+        verify(vocabularyDataService).indexData(new VocabularyIdentifier("agencyId", "keyConcept"), csvData);
+        verify(vocabularyDataService, never()).isIndexed(any());
+    }
+
+    @Test
+    void shouldNotRecordFingerprintWhenIndexingFails() throws IOException {
+        CvPath path = givenHarvestedVocabulary();
+        when(fingerprintService.find(REPO_URL, "cities/cities.ttl")).thenReturn(Optional.empty());
+        CsvData csvData = new CsvData(List.of(Map.of("key", "val")), "key");
+        when(csvParser.loadCsvDataFromFile(path.getCsvPath().get())).thenReturn(csvData);
+        doThrow(new IllegalStateException("Elasticsearch unavailable")).when(vocabularyDataService).indexData(any(), any());
+
+        assertThatThrownBy(() -> pathProcessor.process(REPO_URL, path))
+                .isInstanceOf(SinglePathProcessingException.class);
+
+        verify(fingerprintService, never()).save(anyString(), anyString(), any());
+    }
+
+    @Test
+    void shouldRecordFingerprintOnlyOnceTheRunSucceeded() throws IOException {
+        CvPath path = givenHarvestedVocabulary();
+        RunningHarvest run = new RunningHarvest("run-1", "correlation", null, "abc", "user", Thread.currentThread(),
+                HarvestTimeoutProperties.builder().build());
+        HarvestExecutionContextUtils.setContext(HarvestExecutionContextUtils.getContext().withRunningHarvest(run));
+        when(fingerprintService.find(REPO_URL, "cities/cities.ttl")).thenReturn(Optional.empty());
+        when(csvParser.loadCsvDataFromFile(path.getCsvPath().get())).thenReturn(new CsvData(List.of(Map.of("key", "val")), "key"));
+        when(vocabularyDataService.indexData(any(), any())).thenReturn(generation());
+
+        pathProcessor.process(REPO_URL, path);
+
+        verify(fingerprintService, never()).save(anyString(), anyString(), any());
+        run.succeeded();
+        verify(fingerprintService).save(REPO_URL, "cities/cities.ttl",
+                AssetFingerprint.of(path.getTtlPath(), path.getCsvPath().get(), baseUrl + "|agencyid.keyconcept"));
+    }
+
+    @Test
+    void shouldSwitchToNewGenerationOnlyOnceReplacementCompletes() throws IOException {
+        CvPath path = givenHarvestedVocabulary();
+        when(fingerprintService.find(REPO_URL, "cities/cities.ttl")).thenReturn(Optional.empty());
+        when(csvParser.loadCsvDataFromFile(path.getCsvPath().get())).thenReturn(new CsvData(List.of(Map.of("key", "val")), "key"));
+        VocabularyIndexGeneration generation = generation();
+        when(vocabularyDataService.indexData(any(), any())).thenReturn(generation);
+        pathProcessor.startReplacement(REPO_URL);
+
+        pathProcessor.process(REPO_URL, path);
+
+        verify(vocabularyDataService, never()).switchToGeneration(any());
+        pathProcessor.completeReplacement(REPO_URL);
+        verify(vocabularyDataService).switchToGeneration(generation);
+        verify(vocabularyDataService, never()).deleteGeneration(any());
+    }
+
+    @Test
+    void shouldDeleteNewGenerationWhenReplacementIsDiscarded() throws IOException {
+        CvPath path = givenHarvestedVocabulary();
+        when(fingerprintService.find(REPO_URL, "cities/cities.ttl")).thenReturn(Optional.empty());
+        when(csvParser.loadCsvDataFromFile(path.getCsvPath().get())).thenReturn(new CsvData(List.of(Map.of("key", "val")), "key"));
+        VocabularyIndexGeneration generation = generation();
+        when(vocabularyDataService.indexData(any(), any())).thenReturn(generation);
+        pathProcessor.startReplacement(REPO_URL);
+
+        pathProcessor.process(REPO_URL, path);
+        pathProcessor.discardReplacement(REPO_URL);
+
+        verify(vocabularyDataService).deleteGeneration(generation);
+        verify(vocabularyDataService, never()).switchToGeneration(any());
+        pathProcessor.completeReplacement(REPO_URL);
+        verify(vocabularyDataService, never()).switchToGeneration(any());
+    }
+
     @Test
     void shouldAddNdcEndpointUrlToModelBeforePersisting() {
         pathProcessor.enrichModelBeforePersisting(cvModel, CvPath.of("cities.ttl", "cities.csv"));
@@ -146,6 +275,39 @@ class ControlledVocabularyPathProcessorTest {
         verify(vocabularyDataService).dropIndex(new VocabularyIdentifier(agencyId, concept2));
     }
 
+    @Test
+    void shouldOnlyDropIndicesOfVocabulariesNoLongerInRepo() {
+        String agencyId = "istat";
+        String concept1 = "accomodation-ratings";
+        String concept2 = "education-levels";
+        List<SemanticAssetMetadata> previousVocabs = buildVocabsMetadataWithAgencyAndConcepts(agencyId, List.of(concept1, concept2));
+        when(metadataRepository.findVocabulariesForRepoUrl(REPO_URL))
+                .thenReturn(buildVocabsMetadataWithAgencyAndConcepts(agencyId, List.of(concept2)));
+
+        pathProcessor.dropCsvIndicesOfRemovedVocabularies(REPO_URL, previousVocabs);
+
+        verify(vocabularyDataService).dropIndex(new VocabularyIdentifier(agencyId, concept1));
+        verify(vocabularyDataService, never()).dropIndex(new VocabularyIdentifier(agencyId, concept2));
+    }
+
+    private static VocabularyIndexGeneration generation() {
+        return new VocabularyIndexGeneration(new VocabularyIdentifier("agencyId", "keyConcept"), "agencyid.keyconcept.1", 1);
+    }
+
+    private CvPath givenHarvestedVocabulary() throws IOException {
+        Path folder = Files.createDirectories(repoRoot.resolve("cities"));
+        Path ttlFile = Files.writeString(folder.resolve("cities.ttl"), "<http://city> a <http://concept-scheme> .");
+        Path csvFile = Files.writeString(folder.resolve("cities.csv"), "key\nval");
+        HarvestExecutionContextUtils.setContext(HarvestExecutionContext.builder().rootPath(repoRoot.toString()).build());
+
+        when(semanticAssetModelFactory.createControlledVocabulary(ttlFile.toString(), REPO_URL)).thenReturn(cvModel);
+        when(cvModel.getRdfModel()).thenReturn(jenaModel);
+        when(cvModel.getKeyConcept()).thenReturn("keyConcept");
+        when(cvModel.getAgencyId()).thenReturn("agencyId");
+        when(cvModel.extractMetadata()).thenReturn(SemanticAssetMetadata.builder().build());
+        return CvPath.of(ttlFile.toString(), csvFile.toString());
+    }
+
     private List<SemanticAssetMetadata> buildVocabsMetadataWithAgencyAndConcepts(String agencyId, List<String> keyConcepts) {
         SemanticAssetMetadata template = SemanticAssetMetadata.builder().repoUrl(REPO_URL).agencyId(agencyId).build();
         return keyConcepts.stream().map(c -> template.toBuilder().keyConcept(c).build()).collect(Collectors.toList());
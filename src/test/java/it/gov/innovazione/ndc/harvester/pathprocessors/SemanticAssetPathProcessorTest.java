@@ -1,24 +1,46 @@
 package it.gov.innovazione.ndc.harvester.pathprocessors;
 
+import it.gov.innovazione.ndc.config.HarvestExecutionContext;
+import it.gov.innovazione.ndc.config.HarvestExecutionContextUtils;
+import it.gov.innovazione.ndc.harvester.SemanticAssetType;
 import it.gov.innovazione.ndc.harvester.exception.SinglePathProcessingException;
 import it.gov.innovazione.ndc.harvester.model.OntologyModel;
 import it.gov.innovazione.ndc.harvester.model.SemanticAssetPath;
+import it.gov.innovazione.ndc.harvester.model.StreamedRdfModel;
 import it.gov.innovazione.ndc.harvester.model.exception.InvalidModelException;
 import it.gov.innovazione.ndc.harvester.model.index.SemanticAssetMetadata;
+import it.gov.innovazione.ndc.repository.SemanticAssetMetadataBatch;
 import it.gov.innovazione.ndc.repository.SemanticAssetMetadataRepository;
 import it.gov.innovazione.ndc.repository.TripleStoreRepository;
 import it.gov.innovazione.ndc.repository.TripleStoreRepositoryException;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.vocabulary.DCTerms;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.function.Consumer;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -35,17 +57,33 @@ class SemanticAssetPathProcessorTest {
             super(tripleStoreRepository, metadataRepository);
         }
 
+        @Override
+        protected SemanticAssetType getType() {
+            return SemanticAssetType.ONTOLOGY;
+        }
+
         @Override
         protected OntologyModel loadModel(String ttlFile, String repoUrl) {
             return modelDecorator;
         }
 
+        @Override
+        protected OntologyModel streamModel(String ttlFile, String repoUrl, Consumer<Triple> sink) {
+            STREAMED_TRIPLES.forEach(sink);
+            return modelDecorator;
+        }
+
         @Override
         protected void enrichModelBeforePersisting(OntologyModel model, SemanticAssetPath path) {
             modelEnricher.accept(model);
         }
     }
 
+    private static final List<Triple> STREAMED_TRIPLES = List.of(Triple.create(
+        NodeFactory.createURI("https://w3id.org/italia/onto/CPV"),
+        NodeFactory.createURI("http://www.w3.org/2000/01/rdf-schema#label"),
+        NodeFactory.createLiteral("CPV")));
+
     @Mock
     private OntologyModel modelDecorator;
     @Mock
@@ -56,6 +94,17 @@ class SemanticAssetPathProcessorTest {
     private Model model;
     @Mock
     private Consumer<OntologyModel> modelEnricher;
+    @Mock
+    private SemanticAssetMetadataBatch metadataBatch;
+    @Mock
+    private TripleStoreRepository.ChunkedUpload upload;
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void tearDown() {
+        HarvestExecutionContextUtils.setContext(null);
+    }
 
     @Test
     void processingGoesThroughTwoCommonSteps() {
@@ -78,6 +127,25 @@ class SemanticAssetPathProcessorTest {
         inOrder.verify(tripleStoreRepository).save(repoUrl, model);
     }
 
+    @Test
+    void shouldCollectMetadataInBatchOfRunningHarvest() {
+        final String repoUrl = "https://github.com/italia/daf-ontologie-vocabolari-controllati";
+        TestSemanticAssetPathProcessor processor =
+            new TestSemanticAssetPathProcessor(tripleStoreRepository, metadataRepository);
+        SemanticAssetMetadata metadata = SemanticAssetMetadata.builder().build();
+        HarvestExecutionContextUtils.setContext(HarvestExecutionContext.builder()
+            .metadataBatch(metadataBatch)
+            .build());
+        when(modelDecorator.getRdfModel()).thenReturn(model);
+        when(modelDecorator.extractMetadata()).thenReturn(metadata);
+
+        processor.process(repoUrl, SemanticAssetPath.of("somefile.ttl"));
+
+        verify(metadataBatch).add(metadata);
+        verify(metadataRepository, never()).save(any());
+        verify(tripleStoreRepository).save(repoUrl, model);
+    }
+
     @Test
     void ifModelCannotBeStoredShouldStopProcessingAndPropagate() {
         final String repoUrl = "https://github.com/italia/daf-ontologie-vocabolari-controllati";
@@ -155,4 +223,61 @@ class SemanticAssetPathProcessorTest {
         verifyNoInteractions(tripleStoreRepository);
         verifyNoInteractions(metadataRepository);
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldStreamLargeFileToAssetGraphAndMergeItOnceProcessed() throws IOException {
+        final String repoUrl = "https://github.com/italia/daf-ontologie-vocabolari-controllati";
+        TestSemanticAssetPathProcessor processor =
+            new TestSemanticAssetPathProcessor(tripleStoreRepository, metadataRepository);
+        SemanticAssetPath path = SemanticAssetPath.of(largeTtlFile());
+        SemanticAssetMetadata metadata = SemanticAssetMetadata.builder().build();
+        StreamedRdfModel streamedModel = StreamedRdfModel.of(GraphFactory.createDefaultGraph());
+        when(tripleStoreRepository.shouldStreamUpload(anyLong())).thenReturn(true);
+        when(tripleStoreRepository.openUpload(startsWith(repoUrl + "#asset-"))).thenReturn(upload);
+        when(modelDecorator.getRdfModel()).thenReturn(streamedModel);
+        when(modelDecorator.extractMetadata()).thenReturn(metadata);
+        doAnswer(invocation -> streamedModel.add(streamedModel.createResource("https://w3id.org/italia/onto/CPV"), DCTerms.title, "CPV"))
+            .when(modelEnricher).accept(modelDecorator);
+
+        processor.process(repoUrl, path);
+
+        InOrder inOrder = Mockito.inOrder(upload, metadataRepository, tripleStoreRepository);
+        inOrder.verify(upload).add(STREAMED_TRIPLES.get(0));
+        inOrder.verify(upload).finish();
+        inOrder.verify(metadataRepository).save(metadata);
+        inOrder.verify(tripleStoreRepository).save(startsWith(repoUrl + "#asset-"), eq(streamedModel.getAdditions()));
+        inOrder.verify(tripleStoreRepository).mergeNamedGraph(startsWith(repoUrl + "#asset-"), eq(repoUrl));
+        verify(upload).close();
+        verify(tripleStoreRepository, never()).clearExistingNamedGraph(anyString());
+        assertThat(streamedModel.getAdditions().size()).isEqualTo(1);
+        assertThat(HarvestExecutionContextUtils.getContext()).isNull();
+    }
+
+    @Test
+    void shouldDropAssetGraphWhenStreamedFileCannotBeProcessed() throws IOException {
+        final String repoUrl = "https://github.com/italia/daf-ontologie-vocabolari-controllati";
+        TestSemanticAssetPathProcessor processor =
+            new TestSemanticAssetPathProcessor(tripleStoreRepository, metadataRepository);
+        SemanticAssetPath path = SemanticAssetPath.of(largeTtlFile());
+        HarvestExecutionContext context = HarvestExecutionContext.builder().graphName("http://staging").build();
+        HarvestExecutionContextUtils.setContext(context);
+        InvalidModelException invalidModelException = new InvalidModelException("Missing title");
+        when(tripleStoreRepository.shouldStreamUpload(anyLong())).thenReturn(true);
+        when(tripleStoreRepository.openUpload(startsWith("http://staging#asset-"))).thenReturn(upload);
+        when(modelDecorator.extractMetadata()).thenThrow(invalidModelException);
+
+        assertThatThrownBy(() -> processor.process(repoUrl, path))
+            .isInstanceOf(SinglePathProcessingException.class)
+            .hasCause(invalidModelException);
+
+        verify(tripleStoreRepository).clearExistingNamedGraph(startsWith("http://staging#asset-"));
+        verify(tripleStoreRepository, never()).mergeNamedGraph(anyString(), anyString());
+        assertThat(HarvestExecutionContextUtils.getContext()).isSameAs(context);
+    }
+
+    private String largeTtlFile() throws IOException {
+        Path ttlFile = tempDir.resolve("large.ttl");
+        Files.writeString(ttlFile, "# large enough to be streamed");
+        return ttlFile.toString();
+    }
+}
@@ -0,0 +1,159 @@
+package it.gov.innovazione.ndc.harvester.scheduler;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.gov.innovazione.ndc.model.harvester.Repository;
+import it.gov.innovazione.ndc.repository.HarvestJobException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HarvestSchedulerTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Runnable> started = new ArrayList<>();
+    private final List<String> executed = new ArrayList<>();
+
+    @Test
+    void shouldLimitRunsPerHostAndLetOtherHostsOvertake() {
+        HarvestScheduler scheduler = scheduler(HarvestSchedulerProperties.builder()
+                .maxConcurrentRuns(2)
+                .maxRunsPerHost(1)
+                .build());
+
+        scheduler.submit(List.of(
+                task("gh-1", "https://github.com/agency/one", HarvestTask.Priority.BULK),
+                task("gh-2", "https://github.com/agency/two", HarvestTask.Priority.BULK),
+                task("gl-1", "https://gitlab.com/agency/one", HarvestTask.Priority.BULK)));
+
+        runStarted();
+        assertThat(executed).containsExactly("gh-1", "gl-1");
+        runStarted();
+        assertThat(executed).containsExactly("gh-1", "gl-1", "gh-2");
+        assertThat(scheduler.getQueueDepth()).isZero();
+        assertThat(scheduler.getActiveRuns()).isZero();
+    }
+
+    @Test
+    void shouldStartManualRunsBeforeBulkOnes() {
+        HarvestScheduler scheduler = scheduler(HarvestSchedulerProperties.builder()
+                .maxConcurrentRuns(1)
+                .build());
+
+        scheduler.submit(List.of(
+                task("bulk-1", "https://github.com/agency/one", HarvestTask.Priority.BULK),
+                task("bulk-2", "https://github.com/agency/two", HarvestTask.Priority.BULK)));
+        scheduler.submit(List.of(task("manual", "https://github.com/agency/three", HarvestTask.Priority.MANUAL)));
+
+        runStarted();
+        runStarted();
+        runStarted();
+        assertThat(executed).containsExactly("bulk-1", "manual", "bulk-2");
+        assertThat(meterRegistry.get("harvester.scheduler.queue.wait").tag("priority", "manual").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("harvester.scheduler.queue.wait").tag("priority", "bulk").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldExposeQueueDepthAndActiveRuns() {
+        HarvestScheduler scheduler = scheduler(HarvestSchedulerProperties.builder()
+                .maxConcurrentRuns(1)
+                .build());
+
+        scheduler.submit(List.of(
+                task("one", "https://github.com/agency/one", HarvestTask.Priority.BULK),
+                task("two", "https://github.com/agency/two", HarvestTask.Priority.BULK)));
+
+        assertThat(started).hasSize(1);
+        assertThat(scheduler.getActiveRuns()).isEqualTo(1);
+        assertThat(meterRegistry.get("harvester.scheduler.queue.depth").tag("priority", "bulk").gauge().value()).isEqualTo(1);
+        assertThat(meterRegistry.get("harvester.scheduler.runs.active").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRejectWholeSubmissionWhenQueueIsFull() {
+        HarvestScheduler scheduler = scheduler(HarvestSchedulerProperties.builder()
+                .queueCapacity(2)
+                .maxConcurrentRuns(1)
+                .build());
+        scheduler.submit(List.of(task("one", "https://github.com/agency/one", HarvestTask.Priority.BULK)));
+
+        assertThatThrownBy(() -> scheduler.submit(List.of(
+                task("two", "https://github.com/agency/two", HarvestTask.Priority.BULK),
+                task("three", "https://github.com/agency/three", HarvestTask.Priority.BULK),
+                task("four", "https://github.com/agency/four", HarvestTask.Priority.BULK))))
+                .isInstanceOf(HarvestJobException.class);
+
+        assertThat(scheduler.getQueueDepth()).isZero();
+        assertThat(meterRegistry.get("harvester.scheduler.rejected").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldGiveSlotBackWhenRunFails() {
+        HarvestScheduler scheduler = scheduler(HarvestSchedulerProperties.builder()
+                .maxConcurrentRuns(1)
+                .build());
+        Repository repository = Repository.builder().url("https://github.com/agency/one").build();
+
+        scheduler.submit(List.of(
+                HarvestTask.builder()
+                        .runId("failing")
+                        .repository(repository)
+                        .priority(HarvestTask.Priority.BULK)
+                        .action(() -> {
+                            throw new IllegalStateException("Oops!");
+                        })
+                        .build(),
+                task("next", "https://github.com/agency/two", HarvestTask.Priority.BULK)));
+
+        runStarted();
+        runStarted();
+        assertThat(executed).containsExactly("next");
+        assertThat(scheduler.getActiveRuns()).isZero();
+    }
+
+    @Test
+    void shouldNeverStartCancelledQueuedRun() {
+        HarvestScheduler scheduler = scheduler(HarvestSchedulerProperties.builder()
+                .maxConcurrentRuns(1)
+                .build());
+
+        scheduler.submit(List.of(
+                task("first", "https://github.com/agency/one", HarvestTask.Priority.BULK),
+                task("second", "https://github.com/agency/two", HarvestTask.Priority.BULK)));
+
+        assertThat(scheduler.cancel("second")).isTrue();
+        assertThat(scheduler.cancel("first")).isFalse();
+        runStarted();
+        runStarted();
+        assertThat(executed).containsExactly("first");
+        assertThat(scheduler.getQueueDepth()).isZero();
+    }
+
+    @Test
+    void shouldGroupRepositoriesByHost() {
+        assertThat(HarvestScheduler.hostOf(Repository.builder().url("https://GitHub.com/agency/one").build())).isEqualTo("github.com");
+        assertThat(HarvestScheduler.hostOf(Repository.builder().url("not a url").build())).isEqualTo("unknown");
+        assertThat(HarvestScheduler.hostOf(Repository.builder().build())).isEqualTo("unknown");
+    }
+
+    private HarvestScheduler scheduler(HarvestSchedulerProperties properties) {
+        return new HarvestScheduler(properties, started::add, meterRegistry);
+    }
+
+    private HarvestTask task(String runId, String url, HarvestTask.Priority priority) {
+        return HarvestTask.builder()
+                .runId(runId)
+                .repository(Repository.builder().url(url).build())
+                .priority(priority)
+                .action(() -> executed.add(runId))
+                .build();
+    }
+
+    private void runStarted() {
+        List<Runnable> runs = new ArrayList<>(started);
+        started.clear();
+        runs.forEach(Runnable::run);
+    }
+}
@@ -0,0 +1,83 @@
+package it.gov.innovazione.ndc.harvester.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.gov.innovazione.ndc.eventhandler.NdcEventPublisher;
+import it.gov.innovazione.ndc.harvester.service.ActualConfigService.ConfigKey;
+import it.gov.innovazione.ndc.harvester.service.ActualConfigService.VersionedConfiguration;
+import it.gov.innovazione.ndc.harvester.service.ConfigService.NdcConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ActualConfigServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private NdcEventPublisher ndcEventPublisher;
+
+    private ActualConfigService actualConfigService;
+
+    @BeforeEach
+    void setUp() {
+        actualConfigService = new ActualConfigService(jdbcTemplate, new ObjectMapper().findAndRegisterModules(), ndcEventPublisher);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldRetryWriteOnNewerVersionWhenChangedConcurrently() {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq("ndc")))
+                .thenReturn(List.of(versioned(3)), List.of(versioned(4)));
+        when(jdbcTemplate.update(startsWith("UPDATE CONFIGURATION"), anyString(), eq("ndc"), eq(3L))).thenReturn(0);
+        when(jdbcTemplate.update(startsWith("UPDATE CONFIGURATION"), anyString(), eq("ndc"), eq(4L))).thenReturn(1);
+
+        actualConfigService.writeConfigKey(ConfigKey.MAX_FILE_SIZE_BYTES, "admin", 100L);
+
+        verify(jdbcTemplate, times(2)).query(anyString(), any(RowMapper.class), eq("ndc"));
+        verify(ndcEventPublisher).publishEvent(eq("config"), eq("config.write-config-key"), eq(null), eq("admin"), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldCreateConfigurationOnFirstWrite() {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq("ndc"))).thenReturn(List.of());
+        when(jdbcTemplate.update(startsWith("UPDATE CONFIGURATION"), anyString(), eq("ndc"), eq(0L))).thenReturn(0);
+        when(jdbcTemplate.update(startsWith("INSERT IGNORE INTO CONFIGURATION"), eq("ndc"), anyString(), eq(1L))).thenReturn(1);
+
+        actualConfigService.removeConfigKey(ConfigKey.MAX_FILE_SIZE_BYTES, "admin");
+
+        verify(ndcEventPublisher).publishEvent(eq("config"), eq("config.remove-config-key"), eq(null), eq("admin"), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldGiveUpAfterTooManyConcurrentChanges() {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq("ndc"))).thenReturn(List.of(versioned(3)));
+        when(jdbcTemplate.update(startsWith("UPDATE CONFIGURATION"), anyString(), eq("ndc"), eq(3L))).thenReturn(0);
+
+        actualConfigService.setNdConfig(Map.of(ConfigKey.MAX_FILE_SIZE_BYTES, 100L), "admin");
+
+        verify(jdbcTemplate, times(5)).update(startsWith("UPDATE CONFIGURATION"), anyString(), eq("ndc"), eq(3L));
+        verify(ndcEventPublisher).publishEvent(eq("config"), eq("config.write-config.error"), eq(null), eq("admin"), any());
+    }
+
+    private static VersionedConfiguration versioned(long version) {
+        return VersionedConfiguration.of(version, NdcConfiguration.of(Map.of()));
+    }
+}
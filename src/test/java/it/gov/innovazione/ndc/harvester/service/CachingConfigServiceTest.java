@@ -0,0 +1,176 @@
+package it.gov.innovazione.ndc.harvester.service;
+
+import it.gov.innovazione.ndc.harvester.service.ActualConfigService.ConfigKey;
+import it.gov.innovazione.ndc.harvester.service.ActualConfigService.VersionedConfiguration;
+import it.gov.innovazione.ndc.harvester.service.ConfigService.ConfigEntry;
+import it.gov.innovazione.ndc.harvester.service.ConfigService.NdcConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CachingConfigServiceTest {
+
+    @Mock
+    private ActualConfigService actualConfigService;
+
+    private CachingConfigService cachingConfigService;
+
+    @BeforeEach
+    void setUp() {
+        cachingConfigService = new CachingConfigService(actualConfigService, Duration.ofMinutes(5), Duration.ofSeconds(10));
+    }
+
+    @Test
+    void shouldLoadOnceAndServeFromSnapshot() {
+        when(actualConfigService.readConfiguration()).thenReturn(versioned(1, 100L));
+
+        assertThat(maxFileSize()).isEqualTo(100L);
+        assertThat(maxFileSize()).isEqualTo(100L);
+
+        verify(actualConfigService, times(1)).readConfiguration();
+    }
+
+    @Test
+    void shouldReloadOnlyWhenStoredVersionChanged() {
+        when(actualConfigService.readConfiguration()).thenReturn(versioned(1, 100L), versioned(2, 200L));
+        assertThat(maxFileSize()).isEqualTo(100L);
+
+        when(actualConfigService.readVersion()).thenReturn(1L);
+        cachingConfigService.refreshIfChanged();
+        assertThat(maxFileSize()).isEqualTo(100L);
+
+        when(actualConfigService.readVersion()).thenReturn(2L);
+        cachingConfigService.refreshIfChanged();
+        assertThat(maxFileSize()).isEqualTo(200L);
+
+        verify(actualConfigService, times(2)).readConfiguration();
+    }
+
+    @Test
+    void shouldNotPollBeforeFirstRead() {
+        cachingConfigService.refreshIfChanged();
+
+        verify(actualConfigService, times(0)).readVersion();
+    }
+
+    @Test
+    void shouldReloadAfterWriting() {
+        when(actualConfigService.readConfiguration()).thenReturn(versioned(1, 100L), versioned(2, 200L));
+        assertThat(maxFileSize()).isEqualTo(100L);
+
+        cachingConfigService.writeConfigKey(ConfigKey.MAX_FILE_SIZE_BYTES, "admin", 200L);
+
+        verify(actualConfigService).writeConfigKey(ConfigKey.MAX_FILE_SIZE_BYTES, "admin", 200L);
+        assertThat(maxFileSize()).isEqualTo(200L);
+    }
+
+    @Test
+    void shouldKeepNewerSnapshotWhenOlderVersionIsLoaded() {
+        when(actualConfigService.readConfiguration()).thenReturn(versioned(2, 200L), versioned(1, 100L));
+        assertThat(maxFileSize()).isEqualTo(200L);
+
+        cachingConfigService.removeConfigKey(ConfigKey.MAX_FILE_SIZE_BYTES, "admin");
+
+        assertThat(maxFileSize()).isEqualTo(200L);
+    }
+
+    @Test
+    void shouldKeepServingSnapshotWhenExpiredAndDatabaseIsDown() {
+        cachingConfigService = new CachingConfigService(actualConfigService, Duration.ZERO, Duration.ofSeconds(10));
+        when(actualConfigService.readConfiguration())
+                .thenReturn(versioned(1, 100L))
+                .thenThrow(new IllegalStateException("database down"));
+        when(actualConfigService.readVersion()).thenReturn(1L);
+
+        assertThat(maxFileSize()).isEqualTo(100L);
+        cachingConfigService.refreshIfChanged();
+        assertThat(maxFileSize()).isEqualTo(100L);
+    }
+
+    @Test
+    void shouldNotLoadFromReaderWhenSnapshotExpired() {
+        cachingConfigService = new CachingConfigService(actualConfigService, Duration.ZERO, Duration.ofSeconds(10));
+        when(actualConfigService.readConfiguration()).thenReturn(versioned(1, 100L));
+
+        assertThat(maxFileSize()).isEqualTo(100L);
+        assertThat(maxFileSize()).isEqualTo(100L);
+
+        verify(actualConfigService, times(1)).readConfiguration();
+    }
+
+    @Test
+    void shouldRefreshSnapshotWhichWouldExpireBeforeNextPoll() {
+        cachingConfigService = new CachingConfigService(actualConfigService, Duration.ofSeconds(5), Duration.ofSeconds(10));
+        when(actualConfigService.readConfiguration()).thenReturn(versioned(1, 100L), versioned(1, 200L));
+        when(actualConfigService.readVersion()).thenReturn(1L);
+        assertThat(maxFileSize()).isEqualTo(100L);
+
+        cachingConfigService.refreshIfChanged();
+
+        assertThat(maxFileSize()).isEqualTo(200L);
+        verify(actualConfigService, times(2)).readConfiguration();
+    }
+
+    @Test
+    void shouldLoadFirstSnapshotOnceForConcurrentReaders() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(actualConfigService.readConfiguration()).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await();
+            return versioned(1, 100L);
+        });
+        Map<String, Long> read = new ConcurrentHashMap<>();
+        List<Thread> readers = List.of(reader("first", read), reader("second", read), reader("third", read));
+        readers.get(0).start();
+        loading.await();
+        readers.get(1).start();
+        readers.get(2).start();
+        // the other readers wait for the load in flight rather than starting their own
+        awaitWaiting(readers.get(1));
+        awaitWaiting(readers.get(2));
+        release.countDown();
+        for (Thread reader : readers) {
+            reader.join(10_000);
+        }
+
+        assertThat(read).containsOnly(entry("first", 100L), entry("second", 100L), entry("third", 100L));
+        verify(actualConfigService, times(1)).readConfiguration();
+    }
+
+    private Thread reader(String name, Map<String, Long> read) {
+        return new Thread(() -> read.put(name, maxFileSize()), name);
+    }
+
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (thread.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private Long maxFileSize() {
+        return cachingConfigService.getParsedOrGetDefault(ConfigKey.MAX_FILE_SIZE_BYTES, () -> 0L);
+    }
+
+    private static VersionedConfiguration versioned(long version, long maxFileSize) {
+        return VersionedConfiguration.of(version, NdcConfiguration.of(Map.of(
+                ConfigKey.MAX_FILE_SIZE_BYTES, ConfigEntry.builder().writtenBy("admin").value(maxFileSize).build())));
+    }
+}
@@ -0,0 +1,161 @@
+package it.gov.innovazione.ndc.harvester.service;
+
+import it.gov.innovazione.ndc.harvester.exception.HarvestCancelledException;
+import it.gov.innovazione.ndc.model.harvester.Repository;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HarvestRunRegistryTest {
+    private final HarvestRunRegistry registry = new HarvestRunRegistry(HarvestTimeoutProperties.builder()
+            .parse(Duration.ofMillis(1))
+            .build());
+    private final Repository repository = Repository.builder().id("repo-1").url("https://github.com/agency/repo").build();
+
+    @Test
+    void shouldRegisterOnlyOneRunPerRepositoryRevision() {
+        Optional<RunningHarvest> first = registry.register("run-1", "correlation", repository, "abc", "user");
+        Optional<RunningHarvest> sameRevision = registry.register("run-2", "correlation", repository, "abc", "user");
+        Optional<RunningHarvest> otherRevision = registry.register("run-3", "correlation", repository, "def", "user");
+
+        assertThat(first).isPresent();
+        assertThat(sameRevision).isEmpty();
+        assertThat(otherRevision).isPresent();
+        assertThat(registry.isRunning("run-1")).isTrue();
+        assertThat(registry.isRunning("run-2")).isFalse();
+        assertThat(registry.getRunningHarvests()).extracting(RunningHarvest::getRunId)
+                .containsExactlyInAnyOrder("run-1", "run-3");
+        assertThat(first.get().getThreadName()).isEqualTo(Thread.currentThread().getName());
+    }
+
+    @Test
+    void shouldTellWhetherAnotherRunHarvestsTheSameOrANestedRepository() {
+        registry.register("run-1", "correlation", repository, "abc", "user");
+
+        assertThat(registry.isRepositoryBeingHarvested("run-1", repository)).isFalse();
+        assertThat(registry.isRepositoryBeingHarvested("run-2", repository)).isTrue();
+        assertThat(registry.isRepositoryBeingHarvested("run-2", Repository.builder().id("repo-2").url("https://github.com/agency/repo/nested").build())).isTrue();
+        assertThat(registry.isRepositoryBeingHarvested("run-2", Repository.builder().id("repo-3").url("https://github.com/agency").build())).isTrue();
+        assertThat(registry.isRepositoryBeingHarvested("run-2", Repository.builder().id("repo-4").url("https://github.com/other/repo").build())).isFalse();
+    }
+
+    @Test
+    void shouldFreeRevisionWhenRunIsUnregistered() {
+        RunningHarvest run = registry.register("run-1", "correlation", repository, "abc", "user").orElseThrow();
+
+        registry.unregister(run);
+
+        assertThat(registry.hasRunningHarvests()).isFalse();
+        assertThat(registry.findByRunId("run-1")).isEmpty();
+        assertThat(registry.register("run-2", "correlation", repository, "abc", "user")).isPresent();
+    }
+
+    @Test
+    void shouldKeepCancellationAndProgressOnHandle() {
+        RunningHarvest run = registry.register("run-1", "correlation", repository, "abc", "user").orElseThrow();
+
+        run.addPaths(3);
+        run.pathDone();
+
+        assertThat(registry.findByRunId("run-1")).hasValueSatisfying(found -> {
+            assertThat(found.getPathsTotal()).isEqualTo(3);
+            assertThat(found.getPathsDone()).isEqualTo(1);
+        });
+        assertThat(run.cancel()).isTrue();
+        assertThat(run.cancel()).isFalse();
+        assertThat(run.isCancelled()).isTrue();
+        run.finish();
+    }
+
+    @Test
+    void shouldAddUpTimeSpentInEachPhase() throws InterruptedException {
+        RunningHarvest run = registry.register("run-1", "correlation", repository, "abc", "user").orElseThrow();
+
+        run.inPhase(RunningHarvest.Phase.SCAN, () -> {
+            Thread.sleep(5);
+            return null;
+        });
+        run.inPhase(RunningHarvest.Phase.SCAN, () -> {
+            Thread.sleep(5);
+            return null;
+        });
+
+        assertThat(run.getPhaseTimes().get(RunningHarvest.Phase.SCAN)).isGreaterThanOrEqualTo(Duration.ofMillis(10));
+        assertThat(run.getPhaseTimes().get(RunningHarvest.Phase.STORE)).isZero();
+        run.finish();
+    }
+
+    @Test
+    void shouldCancelRunByIdAndInterruptItsThread() {
+        RunningHarvest run = registry.register("run-1", "correlation", repository, "abc", "user").orElseThrow();
+
+        assertThat(registry.cancel("run-1")).isTrue();
+        assertThat(registry.cancel("unknown")).isFalse();
+        assertThat(Thread.currentThread().isInterrupted()).isTrue();
+        assertThatThrownBy(run::checkNotCancelled)
+                .isInstanceOf(HarvestCancelledException.class)
+                .hasMessage("Harvest run run-1 of https://github.com/agency/repo cancelled on request");
+
+        run.finish();
+        assertThat(Thread.currentThread().isInterrupted()).isFalse();
+    }
+
+    @Test
+    void shouldCancelRunWhosePhaseTimedOut() throws InterruptedException {
+        RunningHarvest run = registry.register("run-1", "correlation", repository, "abc", "user").orElseThrow();
+        CountDownLatch inPhase = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        Thread worker = new Thread(() -> run.inPhase(RunningHarvest.Phase.PARSE, () -> {
+            inPhase.countDown();
+            try {
+                Thread.sleep(Duration.ofMinutes(1).toMillis());
+            } catch (InterruptedException e) {
+                cancelled.countDown();
+            }
+            return null;
+        }));
+        worker.start();
+        assertThat(inPhase.await(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(run.checkDeadlines(Instant.now().plusSeconds(1))).isTrue();
+        // the registering thread is interrupted as well
+        run.finish();
+
+        assertThat(cancelled.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(run.getCancelReason()).hasValue("timed out in parse phase after PT0.001S");
+        worker.join();
+    }
+
+    @Test
+    void shouldIgnoreCancellationAndTimeoutsOncePastLastSafePoint() {
+        RunningHarvest run = registry.register("run-1", "correlation", repository, "abc", "user").orElseThrow();
+        run.commit();
+
+        run.inPhase(RunningHarvest.Phase.PARSE, () -> {
+            assertThat(run.checkDeadlines(Instant.now().plusSeconds(1))).isFalse();
+            return null;
+        });
+        assertThat(registry.cancel("run-1")).isTrue();
+
+        assertThat(run.isCancelled()).isFalse();
+        assertThat(Thread.currentThread().isInterrupted()).isFalse();
+        run.checkNotCancelled();
+        run.finish();
+    }
+
+    @Test
+    void shouldStopAtLastSafePointWhenAlreadyCancelled() {
+        RunningHarvest run = registry.register("run-1", "correlation", repository, "abc", "user").orElseThrow();
+        run.cancel();
+
+        assertThatThrownBy(run::commit).isInstanceOf(HarvestCancelledException.class);
+        run.finish();
+    }
+}
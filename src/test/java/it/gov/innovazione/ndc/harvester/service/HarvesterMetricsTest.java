@@ -0,0 +1,79 @@
+package it.gov.innovazione.ndc.harvester.service;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.gov.innovazione.ndc.config.HarvestExecutionContext;
+import it.gov.innovazione.ndc.config.HarvestExecutionContextUtils;
+import it.gov.innovazione.ndc.harvester.SemanticAssetType;
+import it.gov.innovazione.ndc.model.harvester.HarvestStep;
+import it.gov.innovazione.ndc.model.harvester.HarvesterRunReport;
+import it.gov.innovazione.ndc.model.harvester.Repository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class HarvesterMetricsTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Repository repository = Repository.builder().id("repo-1").url("https://github.com/agency/repo").build();
+    private final RunningHarvest run = new RunningHarvest("run-1", "correlation", repository, "abc", "user",
+            Thread.currentThread(), HarvestTimeoutProperties.builder().build());
+
+    @BeforeEach
+    void setContext() {
+        HarvestExecutionContextUtils.setContext(HarvestExecutionContext.builder()
+                .repository(repository)
+                .runningHarvest(run)
+                .metrics(new HarvesterMetrics(meterRegistry))
+                .build());
+    }
+
+    @AfterEach
+    void clearContext() {
+        HarvestExecutionContextUtils.setContext(null);
+    }
+
+    @Test
+    void shouldRecordStepsInReportOfRunAndInTimers() throws IOException {
+        HarvestExecutionContextUtils.inStep(HarvestStep.CLONE, null, () -> "cloned");
+        HarvestExecutionContextUtils.inStep(HarvestStep.PARSE, SemanticAssetType.ONTOLOGY, () -> "parsed");
+        assertThatThrownBy(() -> HarvestExecutionContextUtils.inStep(HarvestStep.PARSE, SemanticAssetType.ONTOLOGY, () -> {
+            throw new IOException("broken file");
+        })).isInstanceOf(IOException.class);
+
+        assertThat(run.getStepReports())
+                .extracting(HarvesterRunReport.StepReport::getStep, HarvesterRunReport.StepReport::getAssetType,
+                        HarvesterRunReport.StepReport::getCount, HarvesterRunReport.StepReport::getFailures)
+                .containsExactly(
+                        tuple(HarvestStep.CLONE, null, 1L, 0L),
+                        tuple(HarvestStep.PARSE, SemanticAssetType.ONTOLOGY, 2L, 1L));
+        Timer clone = meterRegistry.get("harvester.step")
+                .tags("step", "clone", "type", HarvesterMetrics.ALL_TYPES, "repository", repository.getUrl(), "outcome", "success")
+                .timer();
+        Timer failedParse = meterRegistry.get("harvester.step")
+                .tags("step", "parse", "type", "ontology", "outcome", "failure")
+                .timer();
+        assertThat(clone.count()).isEqualTo(1);
+        assertThat(failedParse.count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldCountTriplesAndCsvRows() {
+        HarvestExecutionContextUtils.triplesLoaded(SemanticAssetType.SCHEMA, () -> 120);
+        HarvestExecutionContextUtils.triplesLoaded(SemanticAssetType.SCHEMA, () -> 80);
+        HarvestExecutionContextUtils.csvRowsIndexed(1000);
+
+        assertThat(run.getStepReports())
+                .extracting(HarvesterRunReport.StepReport::getStep, HarvesterRunReport.StepReport::getItems)
+                .containsExactly(
+                        tuple(HarvestStep.CSV_INDEX, 1000L),
+                        tuple(HarvestStep.VIRTUOSO_LOAD, 200L));
+        assertThat(meterRegistry.get("harvester.asset.triples").tag("type", "schema").summary().totalAmount()).isEqualTo(200);
+        assertThat(meterRegistry.get("harvester.csv.rows").summary().count()).isEqualTo(1);
+    }
+}
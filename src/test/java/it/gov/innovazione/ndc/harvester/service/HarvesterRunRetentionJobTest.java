@@ -0,0 +1,48 @@
+package it.gov.innovazione.ndc.harvester.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class HarvesterRunRetentionJobTest {
+    @Mock
+    private HarvesterRunService harvesterRunService;
+
+    @Test
+    void shouldRemoveRunsInBatchesUntilNoneIsLeft() {
+        HarvesterRunRetentionJob job = new HarvesterRunRetentionJob(harvesterRunService, HarvesterRunRetentionProperties.builder()
+                .batchSize(2)
+                .archive(false)
+                .build());
+        when(harvesterRunService.archiveRunsStartedBefore(any(Instant.class), eq(2), eq(false)))
+                .thenReturn(2)
+                .thenReturn(2)
+                .thenReturn(1);
+
+        job.applyRetention();
+
+        verify(harvesterRunService, times(3)).archiveRunsStartedBefore(any(Instant.class), eq(2), eq(false));
+    }
+
+    @Test
+    void shouldDoNothingWhenDisabled() {
+        HarvesterRunRetentionJob job = new HarvesterRunRetentionJob(harvesterRunService, HarvesterRunRetentionProperties.builder()
+                .enabled(false)
+                .build());
+
+        job.applyRetention();
+
+        verifyNoInteractions(harvesterRunService);
+    }
+}
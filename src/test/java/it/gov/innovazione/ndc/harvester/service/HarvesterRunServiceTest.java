@@ -0,0 +1,170 @@
+package it.gov.innovazione.ndc.harvester.service;
+
+import it.gov.innovazione.ndc.harvester.SemanticAssetType;
+import it.gov.innovazione.ndc.model.harvester.HarvestStep;
+import it.gov.innovazione.ndc.model.harvester.HarvesterRun;
+import it.gov.innovazione.ndc.model.harvester.HarvesterRunReport;
+import it.gov.innovazione.ndc.model.harvester.Repository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class HarvesterRunServiceTest {
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private HarvestRunRegistry harvestRunRegistry;
+    @InjectMocks
+    private HarvesterRunService harvesterRunService;
+
+    @Test
+    void shouldCheckRunsInProgressWithSingleQuery() {
+        Repository repository = Repository.builder().id("repo-1").url("https://github.com/agency/repo").build();
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), any(), any(), any(), any(), any(), any(), any())).thenReturn(1);
+
+        assertThat(harvesterRunService.isHarvestingInProgress("run-1", repository)).isTrue();
+
+        ArgumentCaptor<String> query = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).queryForObject(query.capture(), eq(Integer.class), eq("RUNNING"), any(Timestamp.class), eq("run-1"),
+                eq("repo-1"), eq(repository.getUrl()), eq(repository.getUrl()), eq(repository.getUrl()));
+        assertThat(query.getValue()).contains("WHERE STATUS = ? AND STARTED > ? AND ID <> ?");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldCompareRevisionOfLastSuccessfulRunIgnoringCase() {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq("repo-1"), eq("SUCCESS"), any(Timestamp.class)))
+                .thenReturn(List.of(Optional.of("ABC123")))
+                .thenReturn(List.of(Optional.empty()))
+                .thenReturn(List.of());
+
+        assertThat(harvesterRunService.isHarvestingAlreadyExecuted("repo-1", "abc123")).isTrue();
+        assertThat(harvesterRunService.isHarvestingAlreadyExecuted("repo-1", "abc123")).isFalse();
+        assertThat(harvesterRunService.isHarvestingAlreadyExecuted("repo-1", "abc123")).isFalse();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldReadPageAfterKeysetOfLastRun() {
+        Instant startedBefore = Instant.parse("2024-01-01T10:00:00Z");
+
+        harvesterRunService.getRuns(HarvesterRunQuery.builder()
+                .repositoryId("repo-1")
+                .status(HarvesterRun.Status.FAILURE)
+                .startedBefore(startedBefore)
+                .beforeId("run-9")
+                .limit(5000)
+                .build());
+
+        ArgumentCaptor<String> query = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).query(query.capture(), any(RowMapper.class), eq("repo-1"), eq("FAILURE"),
+                eq(Timestamp.from(startedBefore)), eq(Timestamp.from(startedBefore)), eq("run-9"), eq(HarvesterRunQuery.MAX_LIMIT));
+        assertThat(query.getValue())
+                .endsWith("WHERE 1 = 1 AND REPOSITORY_ID = ? AND STATUS = ? AND (STARTED < ? OR (STARTED = ? AND ID < ?)) "
+                          + "ORDER BY STARTED DESC, ID DESC LIMIT ?");
+    }
+
+    @Test
+    void shouldArchiveOldRunsBeforeDeletingThem() {
+        Instant threshold = Instant.parse("2024-01-01T00:00:00Z");
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq(Timestamp.from(threshold)), eq("RUNNING"), eq("SUCCESS"), eq("SUCCESS"), eq(2)))
+                .thenReturn(List.of("run-1", "run-2"));
+        when(jdbcTemplate.update(anyString(), eq("run-1"), eq("run-2"))).thenReturn(2);
+
+        assertThat(harvesterRunService.archiveRunsStartedBefore(threshold, 2, true)).isEqualTo(2);
+
+        ArgumentCaptor<String> statements = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate, times(3)).update(statements.capture(), eq("run-1"), eq("run-2"));
+        assertThat(statements.getAllValues().get(0)).startsWith("INSERT IGNORE INTO HARVESTER_RUN_ARCHIVE ");
+        assertThat(statements.getAllValues().get(1)).startsWith("INSERT IGNORE INTO HARVESTER_RUN_STEP_ARCHIVE ")
+                .endsWith("FROM HARVESTER_RUN_STEP WHERE RUN_ID IN (?, ?)");
+        assertThat(statements.getAllValues().get(2)).isEqualTo("DELETE FROM HARVESTER_RUN WHERE ID IN (?, ?)");
+    }
+
+    @Test
+    void shouldDoNothingWhenNoRunIsOldEnough() {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), any(), any(), any(), any(), any())).thenReturn(List.of());
+
+        assertThat(harvesterRunService.archiveRunsStartedBefore(Instant.now(), 10, false)).isZero();
+
+        verify(jdbcTemplate, never()).update(anyString(), (Object[]) any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldSaveStepsDoneForWholeRepositoryUnderAllAssetTypes() {
+        harvesterRunService.saveRunReport("run-1", List.of(
+                HarvesterRunReport.StepReport.builder().step(HarvestStep.CLONE).count(1).durationMillis(1200).build(),
+                HarvesterRunReport.StepReport.builder().step(HarvestStep.VIRTUOSO_LOAD).assetType(SemanticAssetType.ONTOLOGY)
+                        .count(3).failures(1).durationMillis(800).items(4500).build()));
+
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), rows.capture());
+        assertThat(rows.getValue()).containsExactly(
+                new Object[] {"run-1", "CLONE", "ALL", 1L, 0L, 1200L, 0L},
+                new Object[] {"run-1", "VIRTUOSO_LOAD", "ONTOLOGY", 3L, 1L, 800L, 4500L});
+    }
+
+    @Test
+    void shouldNotFailWhenReportCannotBeSaved() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenThrow(new DataAccessResourceFailureException("down"));
+
+        harvesterRunService.saveRunReport("run-1", List.of(
+                HarvesterRunReport.StepReport.builder().step(HarvestStep.CLONE).count(1).build()));
+    }
+
+    @Test
+    void shouldReportRunStillRunningFromMemory() {
+        Repository repository = Repository.builder().id("repo-1").url("https://github.com/agency/repo").build();
+        RunningHarvest running = new RunningHarvest("run-1", "correlation-1", repository, "abc123", "user",
+                Thread.currentThread(), HarvestTimeoutProperties.builder().build());
+        running.stepDone(HarvestStep.PARSE, SemanticAssetType.SCHEMA, TimeUnit.MILLISECONDS.toNanos(300), false);
+        running.stepDone(HarvestStep.CLONE, null, TimeUnit.MILLISECONDS.toNanos(2000), false);
+        when(harvestRunRegistry.findByRunId("run-1")).thenReturn(Optional.of(running));
+
+        Optional<HarvesterRunReport> report = harvesterRunService.getRunReport("run-1");
+
+        assertThat(report).isPresent();
+        assertThat(report.get().getRun().getStatus()).isEqualTo(HarvesterRun.Status.RUNNING);
+        assertThat(report.get().getSteps())
+                .extracting(HarvesterRunReport.StepReport::getStep, HarvesterRunReport.StepReport::getDurationMillis)
+                .containsExactly(
+                        tuple(HarvestStep.CLONE, 2000L),
+                        tuple(HarvestStep.PARSE, 300L));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldReportNoRunWhenUnknown() {
+        when(harvestRunRegistry.findByRunId("run-1")).thenReturn(Optional.empty());
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq("run-1"))).thenReturn(List.of());
+
+        assertThat(harvesterRunService.getRunReport("run-1")).isEmpty();
+    }
+}
@@ -0,0 +1,109 @@
+package it.gov.innovazione.ndc.harvester.service;
+
+import it.gov.innovazione.ndc.controller.RepositoryController;
+import it.gov.innovazione.ndc.model.harvester.Repository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RepositoryServiceTest {
+    private static final String QUERY_GET_ALL_PREFIX = "SELECT ID, URL";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private Principal principal;
+
+    private RepositoryService repositoryService;
+
+    private final Repository active = Repository.builder().id("repo-1").url("https://github.com/agency/repo").active(true).build();
+    private final Repository inactive = Repository.builder().id("repo-2").url("https://github.com/agency/old").active(false).build();
+
+    @BeforeEach
+    void setUp() {
+        repositoryService = new RepositoryService(jdbcTemplate, "", Duration.ofMinutes(5));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldLoadRepositoriesOnceAndServeLookupsFromCache() {
+        when(jdbcTemplate.query(argThat((String query) -> query.startsWith(QUERY_GET_ALL_PREFIX)), any(RowMapper.class)))
+                .thenReturn(List.of(active, inactive));
+
+        assertThat(repositoryService.getAllRepos()).containsExactly(active);
+        assertThat(repositoryService.getAllRepos()).containsExactly(active);
+        assertThat(repositoryService.findRepoById("repo-1")).contains(active);
+        assertThat(repositoryService.findRepoById("repo-2")).isEmpty();
+
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowMapper.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldLookUpByIdWithQueryWhenCacheIsCold() {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq("repo-1"))).thenReturn(List.of(active));
+
+        assertThat(repositoryService.findRepoById("repo-1")).contains(active);
+
+        ArgumentCaptor<String> query = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).query(query.capture(), any(RowMapper.class), eq("repo-1"));
+        assertThat(query.getValue()).endsWith("FROM REPOSITORY WHERE ID = ? AND ACTIVE = TRUE");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldRejectOverlappingUrlAndReloadCacheAfterChanges() {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class))).thenReturn(List.of(active));
+        when(principal.getName()).thenReturn("admin");
+        repositoryService.getAllRepos();
+
+        assertThatThrownBy(() -> repositoryService.createRepo("https://GitHub.com/agency/repo/sub", "name", "description", null, principal))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> repositoryService.createRepo("https://github.com/agency", "name", "description", null, principal))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        repositoryService.updateRepo("repo-1", new RepositoryController.CreateRepository(), principal);
+        repositoryService.getAllRepos();
+
+        verify(jdbcTemplate, times(2)).query(anyString(), any(RowMapper.class));
+        verify(jdbcTemplate, never()).queryForObject(anyString(), eq(Integer.class), (Object[]) any());
+    }
+
+    @Test
+    void shouldCheckUrlPrefixesWithQueryWhenCacheIsCold() {
+        List<Object> args = new ArrayList<>();
+        when(principal.getName()).thenReturn("admin");
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), (Object[]) any())).thenAnswer(invocation -> {
+            args.addAll(Arrays.asList(invocation.getArguments()).subList(2, invocation.getArguments().length));
+            return 0;
+        });
+
+        repositoryService.createRepo("https://a_b", "name", "description", null, principal);
+
+        verify(jdbcTemplate).queryForObject(argThat((String query) -> query.contains("URL LIKE ? ESCAPE '!' OR URL IN (")), eq(Integer.class), (Object[]) any());
+        assertThat(args).startsWith("https://a!_b%", "h", "ht").endsWith("https://a_b").hasSize(12);
+    }
+}
@@ -0,0 +1,147 @@
+package it.gov.innovazione.ndc.harvester.util;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GitMirrorCacheTest {
+    @TempDir
+    Path tempDir;
+
+    Path mirrorsDir;
+    GitMirrorProperties properties;
+    GitMirrorCache cache;
+
+    @BeforeEach
+    void setup() {
+        mirrorsDir = tempDir.resolve("mirrors");
+        properties = GitMirrorProperties.builder()
+                .enabled(true)
+                .directory(mirrorsDir.toString())
+                .maxSize(DataSize.ofGigabytes(1))
+                .build();
+        cache = new GitMirrorCache(properties, new FileUtils());
+    }
+
+    @Test
+    void shouldCreateMirrorAndThenFetchNewCommits() throws Exception {
+        Path source = tempDir.resolve("source");
+        Git sourceGit = Git.init().setDirectory(source.toFile()).call();
+        RevCommit first = commit(sourceGit, "a.ttl", "first");
+
+        File mirror = useMirror(source.toString());
+
+        assertThat(mirror.toPath().getParent()).isEqualTo(mirrorsDir);
+        assertThat(resolveHead(mirror)).isEqualTo(first.getName());
+
+        RevCommit second = commit(sourceGit, "a.ttl", "second");
+        File updatedMirror = useMirror(source.toString());
+
+        assertThat(updatedMirror).isEqualTo(mirror);
+        assertThat(resolveHead(updatedMirror)).isEqualTo(second.getName());
+    }
+
+    @Test
+    void shouldRecreateMirrorIfNotUsable() throws Exception {
+        Path source = tempDir.resolve("source");
+        Git sourceGit = Git.init().setDirectory(source.toFile()).call();
+        RevCommit commit = commit(sourceGit, "a.ttl", "first");
+        Path brokenMirror = mirrorsDir.resolve(GitMirrorCache.getMirrorName(source.toString()));
+        Files.createDirectories(brokenMirror);
+        Files.writeString(brokenMirror.resolve("garbage"), "not a repo");
+
+        File mirror = useMirror(source.toString());
+
+        assertThat(resolveHead(mirror)).isEqualTo(commit.getName());
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedMirrorsBeyondQuota() throws Exception {
+        Path source1 = tempDir.resolve("source1");
+        commit(Git.init().setDirectory(source1.toFile()).call(), "a.ttl", "first");
+        Path source2 = tempDir.resolve("source2");
+        commit(Git.init().setDirectory(source2.toFile()).call(), "b.ttl", "second");
+        properties.setMaxSize(DataSize.ofBytes(1));
+
+        File mirror1 = useMirror(source1.toString());
+        assertThat(mirror1.setLastModified(System.currentTimeMillis() - 60_000)).isTrue();
+        File mirror2 = useMirror(source2.toString());
+
+        assertThat(mirror1).doesNotExist();
+        assertThat(mirror2).exists();
+    }
+
+    @Test
+    void shouldNotEvictMirrorsLeasedUntilReleased() throws Exception {
+        Path source1 = tempDir.resolve("source1");
+        commit(Git.init().setDirectory(source1.toFile()).call(), "a.ttl", "first");
+        Path source2 = tempDir.resolve("source2");
+        commit(Git.init().setDirectory(source2.toFile()).call(), "b.ttl", "second");
+        properties.setMaxSize(DataSize.ofBytes(1));
+
+        File mirror1 = useMirror(source1.toString());
+        cache.lease(mirror1);
+        assertThat(mirror1.setLastModified(System.currentTimeMillis() - 60_000)).isTrue();
+        useMirror(source2.toString());
+
+        assertThat(mirror1).exists();
+
+        cache.release(mirror1);
+        assertThat(mirror1.setLastModified(System.currentTimeMillis() - 60_000)).isTrue();
+        useMirror(source2.toString());
+
+        assertThat(mirror1).doesNotExist();
+    }
+
+    @Test
+    void shouldFailIfRepoCannotBeCloned() {
+        String missingRepo = tempDir.resolve("missing").toString();
+
+        assertThatThrownBy(() -> useMirror(missingRepo))
+                .isInstanceOf(GitRepoCloneException.class);
+        assertThat(mirrorsDir.resolve(GitMirrorCache.getMirrorName(missingRepo))).doesNotExist();
+    }
+
+    @Test
+    void shouldBuildMirrorNameFromUrl() {
+        assertThat(GitMirrorCache.getMirrorName("https://github.com/italia/daf-ontologie-vocabolari-controllati"))
+                .matches("github\\.com_italia_daf-ontologie-vocabolari-controllati-[0-9a-f]{16}\\.git")
+                .isEqualTo(GitMirrorCache.getMirrorName("https://github.com/italia/daf-ontologie-vocabolari-controllati/"));
+    }
+
+    @Test
+    void shouldTellApartUrlsReadingTheSame() {
+        assertThat(GitMirrorCache.getMirrorName("https://github.com/foo_bar/x"))
+                .isNotEqualTo(GitMirrorCache.getMirrorName("https://github.com/foo/bar_x"));
+    }
+
+    private File useMirror(String repoUrl) {
+        AtomicReference<File> mirror = new AtomicReference<>();
+        cache.useMirror(repoUrl, mirror::set);
+        return mirror.get();
+    }
+
+    private static RevCommit commit(Git git, String fileName, String content) throws Exception {
+        Files.writeString(git.getRepository().getWorkTree().toPath().resolve(fileName), content);
+        git.add().addFilepattern(fileName).call();
+        return git.commit().setMessage(content).setSign(false).call();
+    }
+
+    private static String resolveHead(File mirror) throws Exception {
+        try (Git git = Git.open(mirror)) {
+            return git.getRepository().resolve(Constants.HEAD).getName();
+        }
+    }
+}
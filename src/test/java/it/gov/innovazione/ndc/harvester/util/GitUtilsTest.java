@@ -0,0 +1,102 @@
+package it.gov.innovazione.ndc.harvester.util;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GitUtilsTest {
+    @TempDir
+    Path tempDir;
+
+    Path source;
+    Git sourceGit;
+    GitMirrorProperties properties;
+    GitUtils gitUtils;
+
+    @BeforeEach
+    void setup() throws Exception {
+        source = tempDir.resolve("source");
+        sourceGit = Git.init().setDirectory(source.toFile()).call();
+        properties = GitMirrorProperties.builder()
+                .enabled(true)
+                .assetsOnly(true)
+                .directory(tempDir.resolve("mirrors").toString())
+                .maxSize(DataSize.ofGigabytes(1))
+                .build();
+        gitUtils = new GitUtils(new GitMirrorCache(properties, new FileUtils()));
+    }
+
+    @Test
+    void shouldOnlyWriteAcceptedFilesWhenCloningAssetsOnly() throws Exception {
+        commit("assets/onto/onto.ttl", "onto", "README.md", "readme");
+        Path destination = tempDir.resolve("clone");
+
+        gitUtils.cloneRepo(source.toString(), destination.toFile(), null, path -> path.endsWith(".ttl"));
+
+        assertThat(destination.resolve("assets/onto/onto.ttl")).hasContent("onto");
+        assertThat(destination.resolve("README.md")).doesNotExist();
+    }
+
+    @Test
+    void shouldCheckOutWorkingCopyFromMirror() throws Exception {
+        RevCommit first = commit("assets/onto/onto.ttl", "first", "README.md", "readme");
+        commit("assets/onto/onto.ttl", "second", "README.md", "readme");
+        properties.setAssetsOnly(false);
+        Path destination = tempDir.resolve("clone");
+
+        gitUtils.cloneRepo(source.toString(), destination.toFile(), first.getName(), path -> path.endsWith(".ttl"));
+
+        assertThat(destination.resolve("assets/onto/onto.ttl")).hasContent("first");
+        assertThat(destination.resolve("README.md")).hasContent("readme");
+    }
+
+    @Test
+    void shouldKeepMirrorUntilFoldersLinkedToItAreReleased() throws Exception {
+        commit("assets/onto/onto.ttl", "onto", "assets/cv/cv.ttl", "cv");
+        Path other = tempDir.resolve("other");
+        try (Git otherGit = Git.init().setDirectory(other.toFile()).call()) {
+            Files.writeString(other.resolve("other.ttl"), "other");
+            otherGit.add().addFilepattern(".").call();
+            otherGit.commit().setMessage("other").setSign(false).call();
+        }
+        Path destination = tempDir.resolve("clone");
+        Path previous = tempDir.resolve("previous");
+        gitUtils.cloneRepo(source.toString(), destination.toFile(), null, path -> true);
+        gitUtils.cloneRepo(source.toString(), previous.toFile(), null, path -> true);
+        File mirror = tempDir.resolve("mirrors").resolve(GitMirrorCache.getMirrorName(source.toString())).toFile();
+        properties.setMaxSize(DataSize.ofBytes(1));
+
+        gitUtils.releaseClone(destination.toFile());
+        assertThat(mirror.setLastModified(System.currentTimeMillis() - 60_000)).isTrue();
+        gitUtils.cloneRepo(other.toString(), tempDir.resolve("other-clone").toFile(), null, path -> true);
+
+        assertThat(mirror).exists();
+
+        gitUtils.releaseClone(previous.toFile());
+        gitUtils.cloneRepo(other.toString(), tempDir.resolve("other-clone-2").toFile(), null, path -> true);
+
+        assertThat(mirror).doesNotExist();
+    }
+
+    private RevCommit commit(String file1, String content1, String file2, String content2) throws Exception {
+        write(file1, content1);
+        write(file2, content2);
+        sourceGit.add().addFilepattern(".").call();
+        return sourceGit.commit().setMessage(content1).setSign(false).call();
+    }
+
+    private void write(String file, String content) throws Exception {
+        Path path = source.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, content);
+    }
+}
@@ -6,7 +6,6 @@ import static org.mockito.Mockito.when;
 
 import it.gov.innovazione.ndc.repository.TripleStoreRepository;
 import org.apache.jena.arq.querybuilder.SelectBuilder;
-import org.apache.jena.query.QueryExecution;
 import org.apache.jena.query.ResultSet;
 import org.apache.jena.sparql.engine.http.QueryExceptionHTTP;
 import org.junit.jupiter.api.BeforeEach;
@@ -19,20 +18,19 @@ class VirtuosoHealthIndicatorTest {
 
     private VirtuosoHealthIndicator virtuosoHealthIndicator;
     private TripleStoreRepository repository;
-    private QueryExecution queryExecution;
+    private ResultSet resultSet;
 
     @BeforeEach
     public void beforeEach() {
         repository = mock(TripleStoreRepository.class);
-        queryExecution = mock(QueryExecution.class);
+        resultSet = mock(ResultSet.class);
         virtuosoHealthIndicator = new VirtuosoHealthIndicator(repository);
     }
 
     @Test
     void shouldReportHealthy() {
         ArgumentCaptor<SelectBuilder> queryCaptor = ArgumentCaptor.forClass(SelectBuilder.class);
-        when(repository.select(queryCaptor.capture())).thenReturn(queryExecution);
-        when(queryExecution.execSelect()).thenReturn(mock(ResultSet.class));
+        when(repository.probe(queryCaptor.capture())).thenReturn(resultSet);
 
         Health health = virtuosoHealthIndicator.health();
 
@@ -43,7 +41,7 @@ class VirtuosoHealthIndicatorTest {
     @Test
     void shouldReportDownDueToQueryException() {
         ArgumentCaptor<SelectBuilder> queryCaptor = ArgumentCaptor.forClass(SelectBuilder.class);
-        when(repository.select(queryCaptor.capture())).thenThrow(
+        when(repository.probe(queryCaptor.capture())).thenThrow(
             new QueryExceptionHTTP(1, "test", new RuntimeException("random")));
 
         Health health = virtuosoHealthIndicator.health();
@@ -56,7 +54,7 @@ class VirtuosoHealthIndicatorTest {
     @Test
     void shouldReportDownDueToGenericException() {
         ArgumentCaptor<SelectBuilder> queryCaptor = ArgumentCaptor.forClass(SelectBuilder.class);
-        when(repository.select(queryCaptor.capture())).thenThrow(new RuntimeException("random"));
+        when(repository.probe(queryCaptor.capture())).thenThrow(new RuntimeException("random"));
 
         Health health = virtuosoHealthIndicator.health();
 
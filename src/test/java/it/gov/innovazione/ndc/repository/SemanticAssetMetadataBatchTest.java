@@ -0,0 +1,110 @@
+package it.gov.innovazione.ndc.repository;
+
+import it.gov.innovazione.ndc.harvester.model.index.SemanticAssetMetadata;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SemanticAssetMetadataBatchTest {
+    @Mock
+    private SemanticAssetMetadataRepository repository;
+
+    @Test
+    void shouldSendDocumentsInChunksOnlyOnFlush() {
+        SemanticAssetMetadataBatch batch = new SemanticAssetMetadataBatch(repository, 2, "someRunId");
+        SemanticAssetMetadata first = metadata("http://example.org/1");
+        SemanticAssetMetadata second = metadata("http://example.org/2");
+        SemanticAssetMetadata third = metadata("http://example.org/3");
+
+        batch.add(first);
+        batch.add(second);
+        batch.add(third);
+        verifyNoInteractions(repository);
+        Map<String, String> failedDocuments = batch.flush();
+
+        InOrder order = inOrder(repository);
+        order.verify(repository).saveAll(List.of(first, second));
+        order.verify(repository).saveAll(List.of(third));
+        order.verify(repository).refresh();
+        assertThat(failedDocuments).isEmpty();
+    }
+
+    @Test
+    void shouldStampDocumentsWithRunAndPutMappingBeforeSendingThem() {
+        SemanticAssetMetadataBatch batch = new SemanticAssetMetadataBatch(repository, 10, "someRunId");
+        SemanticAssetMetadata metadata = metadata("http://example.org/1");
+
+        batch.add(metadata);
+        batch.flush();
+
+        assertThat(metadata.getHarvestRunId()).isEqualTo("someRunId");
+        InOrder order = inOrder(repository);
+        order.verify(repository).putMapping();
+        order.verify(repository).saveAll(List.of(metadata));
+    }
+
+    @Test
+    void shouldReportFailuresOfEachDocument() {
+        SemanticAssetMetadataBatch batch = new SemanticAssetMetadataBatch(repository, 1, "someRunId");
+        when(repository.saveAll(any()))
+                .thenReturn(Map.of("http://example.org/1", "mapper_parsing_exception"))
+                .thenReturn(Map.of())
+                .thenReturn(Map.of("http://example.org/3", "version_conflict"));
+
+        batch.add(metadata("http://example.org/1"));
+        batch.add(metadata("http://example.org/2"));
+        batch.add(metadata("http://example.org/3"));
+        Map<String, String> failedDocuments = batch.flush();
+
+        assertThat(failedDocuments).containsExactlyInAnyOrderEntriesOf(Map.of(
+                "http://example.org/1", "mapper_parsing_exception",
+                "http://example.org/3", "version_conflict"));
+        verify(repository).refresh();
+    }
+
+    @Test
+    void shouldReportFailedRequestAgainstEachDocumentOfItsChunkAndSendTheRest() {
+        SemanticAssetMetadataBatch batch = new SemanticAssetMetadataBatch(repository, 2, "someRunId");
+        SemanticAssetMetadata third = metadata("http://example.org/3");
+        when(repository.saveAll(any()))
+                .thenThrow(new IllegalStateException("connection refused"))
+                .thenReturn(Map.of());
+
+        batch.add(metadata("http://example.org/1"));
+        batch.add(metadata("http://example.org/2"));
+        batch.add(third);
+        Map<String, String> failedDocuments = batch.flush();
+
+        assertThat(failedDocuments).containsExactlyInAnyOrderEntriesOf(Map.of(
+                "http://example.org/1", "connection refused",
+                "http://example.org/2", "connection refused"));
+        verify(repository).saveAll(List.of(third));
+        verify(repository).refresh();
+    }
+
+    @Test
+    void shouldNotTouchIndexWhenNothingWasAdded() {
+        SemanticAssetMetadataBatch batch = new SemanticAssetMetadataBatch(repository, 10, "someRunId");
+
+        assertThat(batch.flush()).isEmpty();
+
+        verifyNoInteractions(repository);
+    }
+
+    private static SemanticAssetMetadata metadata(String iri) {
+        return SemanticAssetMetadata.builder().iri(iri).build();
+    }
+}
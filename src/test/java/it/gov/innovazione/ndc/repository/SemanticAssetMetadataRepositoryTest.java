@@ -2,12 +2,20 @@ package it.gov.innovazione.ndc.repository;
 
 import static java.util.Objects.requireNonNull;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.elasticsearch.index.query.QueryBuilders.termQuery;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import it.gov.innovazione.ndc.harvester.model.index.SemanticAssetMetadata;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import org.elasticsearch.index.query.BoolQueryBuilder;
@@ -19,12 +27,18 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.BulkFailureException;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.RefreshPolicy;
 import org.springframework.data.elasticsearch.core.SearchHits;
 import org.springframework.data.elasticsearch.core.SearchPage;
+import org.springframework.data.elasticsearch.core.query.BulkOptions;
 import org.springframework.data.elasticsearch.core.query.ByQueryResponse;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
 import org.springframework.data.elasticsearch.core.query.NativeSearchQuery;
 
 @ExtendWith(MockitoExtension.class)
@@ -36,6 +50,8 @@ class SemanticAssetMetadataRepositoryTest {
     private SearchHits<SemanticAssetMetadata> searchHits;
     @Mock
     private SearchPage<SemanticAssetMetadata> searchPage;
+    @Spy
+    private ElasticsearchBulkLimiter bulkLimiter = new ElasticsearchBulkLimiter(1, new SimpleMeterRegistry());
 
     @InjectMocks
     private SemanticAssetMetadataRepository repository;
@@ -82,6 +98,20 @@ class SemanticAssetMetadataRepositoryTest {
         assertThat(query.value()).isEqualTo("someRepoUrl");
     }
 
+    @Test
+    void shouldDeleteDocumentsOfRepoNotIndexedByRun() {
+        ArgumentCaptor<NativeSearchQuery> captor = ArgumentCaptor.forClass(NativeSearchQuery.class);
+        when(esOps.delete(captor.capture(), any(Class.class))).thenReturn(ByQueryResponse.builder().withDeleted(2L).build());
+
+        long deleteCount = repository.deleteStaleByRepoUrl("someRepoUrl", "someRunId");
+
+        assertThat(deleteCount).isEqualTo(2);
+        BoolQueryBuilder query = (BoolQueryBuilder) captor.getValue().getQuery();
+        assert query != null;
+        assertThat(query.must()).containsExactly(termQuery("repoUrl", "someRepoUrl"));
+        assertThat(query.mustNot()).containsExactly(termQuery("harvestRunId", "someRunId"));
+    }
+
     @Test
     void shouldSave() {
         SemanticAssetMetadata metadata = SemanticAssetMetadata.builder()
@@ -93,6 +123,54 @@ class SemanticAssetMetadataRepositoryTest {
         verify(esOps).save(metadata);
     }
 
+    @Test
+    void shouldSaveAllWithSingleBulkRequestWithoutRefresh() {
+        SemanticAssetMetadata first = SemanticAssetMetadata.builder().iri("http://www.example.org/asset/1").build();
+        SemanticAssetMetadata second = SemanticAssetMetadata.builder().iri("http://www.example.org/asset/2").build();
+        ArgumentCaptor<List<IndexQuery>> queriesCaptor = queriesCaptor();
+        ArgumentCaptor<BulkOptions> optionsCaptor = ArgumentCaptor.forClass(BulkOptions.class);
+
+        Map<String, String> failedDocuments = repository.saveAll(List.of(first, second));
+
+        verify(esOps).bulkIndex(queriesCaptor.capture(), optionsCaptor.capture(), eq(SemanticAssetMetadata.class));
+        assertThat(queriesCaptor.getValue()).extracting(IndexQuery::getId)
+            .containsExactly("http://www.example.org/asset/1", "http://www.example.org/asset/2");
+        assertThat(queriesCaptor.getValue()).extracting(IndexQuery::getObject).containsExactly(first, second);
+        assertThat(optionsCaptor.getValue().getRefreshPolicy()).isEqualTo(RefreshPolicy.NONE);
+        assertThat(failedDocuments).isEmpty();
+    }
+
+    @Test
+    void shouldReturnFailedDocumentsOfBulkRequest() {
+        SemanticAssetMetadata metadata = SemanticAssetMetadata.builder().iri("http://www.example.org/asset/1").build();
+        when(esOps.bulkIndex(anyList(), any(BulkOptions.class), eq(SemanticAssetMetadata.class)))
+            .thenThrow(new BulkFailureException("failed", Map.of("http://www.example.org/asset/1", "mapper_parsing_exception")));
+
+        Map<String, String> failedDocuments = repository.saveAll(List.of(metadata));
+
+        assertThat(failedDocuments).containsExactly(entry("http://www.example.org/asset/1", "mapper_parsing_exception"));
+    }
+
+    @Test
+    void shouldRefreshIndex() {
+        IndexOperations indexOperations = mock(IndexOperations.class);
+        when(esOps.indexOps(SemanticAssetMetadata.class)).thenReturn(indexOperations);
+
+        repository.refresh();
+
+        verify(indexOperations).refresh();
+    }
+
+    @Test
+    void shouldPutMappingOnIndex() {
+        IndexOperations indexOperations = mock(IndexOperations.class);
+        when(esOps.indexOps(SemanticAssetMetadata.class)).thenReturn(indexOperations);
+
+        repository.putMapping();
+
+        verify(indexOperations).putMapping();
+    }
+
     @Test
     void shouldSearchUsingQueryStringAndFiltersAndPagination() {
         ArgumentCaptor<NativeSearchQuery> captor = ArgumentCaptor.forClass(NativeSearchQuery.class);
@@ -138,4 +216,9 @@ class SemanticAssetMetadataRepositoryTest {
 
         assertThat(query.filter().size()).isEqualTo(0);
     }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<IndexQuery>> queriesCaptor() {
+        return ArgumentCaptor.forClass(List.class);
+    }
 }
\ No newline at end of file
@@ -2,26 +2,42 @@ package it.gov.innovazione.ndc.repository;
 
 import org.apache.jena.arq.querybuilder.SelectBuilder;
 import org.apache.jena.atlas.web.HttpException;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.ResultSetRewindable;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdfconnection.RDFConnection;
-import org.apache.jena.sparql.exec.http.UpdateExecutionHTTPBuilder;
-import org.apache.jena.update.UpdateExecution;
 import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
-import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import static org.apache.jena.rdf.model.ResourceFactory.createResource;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -34,9 +50,9 @@ class TripleStoreRepositoryTest {
     @Mock
     RDFConnection connection;
     @Mock
-    UpdateExecutionHTTPBuilder updateExecutionHttpBuilder;
-    @Mock
     VirtuosoClient virtuosoClient;
+    @Mock
+    TripleStoreProperties properties;
 
     @InjectMocks
     TripleStoreRepository tripleStoreRepository;
@@ -55,6 +71,7 @@ class TripleStoreRepositoryTest {
     @Test
     void shouldThrowWhenLoadingFails() {
         Model model = createSimpleModel();
+        when(properties.getUpload()).thenReturn(upload(10, 3));
         doThrow(new HttpException("Something bad happened")).when(connection).load(REPO_URL, model);
         when(virtuosoClient.getConnection()).thenReturn(connection);
 
@@ -62,49 +79,233 @@ class TripleStoreRepositoryTest {
             .isInstanceOf(TripleStoreRepositoryException.class)
             .hasMessage(String.format("Could not save model to '%s'", REPO_URL));
 
-        verify(virtuosoClient).getConnection();
-        verify(connection).load(REPO_URL, model);
+        verify(virtuosoClient, times(3)).getConnection();
+        verify(connection, times(3)).load(REPO_URL, model);
     }
 
     @Test
-    void shouldDeleteGraphSilently() {
-        when(virtuosoClient.getSparqlEndpoint()).thenReturn("http://www.sparql.org");
+    void shouldRetryFailedUpload() {
+        Model model = createSimpleModel();
+        when(properties.getUpload()).thenReturn(upload(10, 3));
+        doThrow(new HttpException("Something bad happened")).doNothing().when(connection).load(REPO_URL, model);
+        when(virtuosoClient.getConnection()).thenReturn(connection);
+
+        tripleStoreRepository.save(REPO_URL, model);
+
+        verify(connection, times(2)).load(REPO_URL, model);
+        verify(connection, times(2)).close();
+    }
 
-        try (MockedStatic<UpdateExecution> mock = mockUpdateExecutionFull()) {
-            tripleStoreRepository.clearExistingNamedGraph(REPO_URL);
-            mock.verify(() -> UpdateExecution.service(eq("http://www.sparql.org")));
+    @Test
+    void shouldUploadLargeModelInChunksKeepingBlankNodeTriplesTogether() {
+        Model model = ModelFactory.createDefaultModel();
+        for (int i = 0; i < 5; i++) {
+            model.add(createResource("http://example.org/" + i), RDF.type, createResource("https://schema.org/Person"));
         }
+        Resource blankNode = model.createResource();
+        model.add(createResource("http://example.org/0"), RDFS.seeAlso, blankNode);
+        model.add(blankNode, RDFS.label, "anonymous");
+        when(properties.getUpload()).thenReturn(upload(2, 1));
+        when(virtuosoClient.getConnection()).thenReturn(connection);
+        List<Model> chunks = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> chunks.add(invocation.getArgument(1)))
+            .when(connection).load(eq(REPO_URL), any(Model.class));
+
+        tripleStoreRepository.save(REPO_URL, model);
 
+        assertThat(chunks).extracting(Model::size).containsExactlyInAnyOrder(2L, 2L, 1L, 2L);
+        assertThat(chunks).filteredOn(chunk -> chunk.contains(blankNode, RDFS.label))
+            .singleElement()
+            .satisfies(chunk -> assertThat(chunk.contains(null, RDFS.seeAlso, blankNode)).isTrue());
+        Model uploaded = ModelFactory.createDefaultModel();
+        chunks.forEach(uploaded::add);
+        assertThat(uploaded.isIsomorphicWith(model)).isTrue();
+    }
+
+    @Test
+    void shouldUploadBlankNodeTriplesInBoundedChunksKeepingComponentsTogether() {
+        Model model = ModelFactory.createDefaultModel();
+        for (int i = 0; i < 3; i++) {
+            model.add(createResource("http://example.org/" + i), RDFS.seeAlso, model.createResource().addProperty(RDFS.label, "anonymous " + i));
+        }
+        Resource outer = model.createResource();
+        Resource inner = model.createResource();
+        model.add(createResource("http://example.org/nested"), RDFS.seeAlso, outer);
+        model.add(outer, RDFS.seeAlso, inner);
+        model.add(inner, RDFS.label, "nested");
+        when(properties.getUpload()).thenReturn(upload(4, 1));
+        when(virtuosoClient.getConnection()).thenReturn(connection);
+        List<Model> chunks = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> chunks.add(invocation.getArgument(1)))
+            .when(connection).load(eq(REPO_URL), any(Model.class));
+
+        tripleStoreRepository.save(REPO_URL, model);
+
+        assertThat(chunks).extracting(Model::size).allSatisfy(size -> assertThat(size).isLessThanOrEqualTo(4L));
+        assertThat(chunks).filteredOn(chunk -> chunk.contains(inner, RDFS.label))
+            .singleElement()
+            .satisfies(chunk -> assertThat(chunk.contains(outer, RDFS.seeAlso, inner)).isTrue())
+            .satisfies(chunk -> assertThat(chunk.contains(null, RDFS.seeAlso, outer)).isTrue());
+        Model uploaded = ModelFactory.createDefaultModel();
+        chunks.forEach(uploaded::add);
+        assertThat(uploaded.isIsomorphicWith(model)).isTrue();
+    }
+
+    @Test
+    void shouldThrowWhenAChunkCannotBeUploaded() {
+        Model model = ModelFactory.createDefaultModel();
+        for (int i = 0; i < 4; i++) {
+            model.add(createResource("http://example.org/" + i), RDF.type, createResource("https://schema.org/Person"));
+        }
+        when(properties.getUpload()).thenReturn(upload(1, 1));
+        when(virtuosoClient.getConnection()).thenReturn(connection);
+        doThrow(new HttpException("Something bad happened")).when(connection).load(eq(REPO_URL), any(Model.class));
+
+        assertThatThrownBy(() -> tripleStoreRepository.save(REPO_URL, model))
+            .isInstanceOf(TripleStoreRepositoryException.class)
+            .hasMessage(String.format("Could not save model to '%s'", REPO_URL));
+    }
+
+    @Test
+    void shouldDeleteGraphSilently() {
+        tripleStoreRepository.clearExistingNamedGraph(REPO_URL);
+
+        verify(virtuosoClient).update(String.format("DEFINE sql:log-enable 3%nDROP SILENT GRAPH <%s>%n", REPO_URL));
         verify(virtuosoClient, times(0)).getConnection();
         verifyNoInteractions(connection);
     }
 
     @Test
     void shouldThrowWhenDeletionFails() {
-        when(virtuosoClient.getSparqlEndpoint()).thenReturn("http://www.sparql.org");
+        doThrow(new HttpException("Something bad happened")).when(virtuosoClient).update(any(String.class));
 
-        try (MockedStatic<UpdateExecution> mock = mockUpdateExecution()) {
-            mock.when(() -> UpdateExecution.service(any(String.class)))
-                    .thenThrow(new HttpException("Something bad happened"));
+        assertThatThrownBy(() -> tripleStoreRepository.clearExistingNamedGraph(REPO_URL))
+            .isInstanceOf(TripleStoreRepositoryException.class);
 
-            assertThatThrownBy(() -> tripleStoreRepository.clearExistingNamedGraph(REPO_URL))
-                .isInstanceOf(TripleStoreRepositoryException.class);
+        verify(virtuosoClient, times(0)).getConnection();
+        verifyNoInteractions(connection);
+    }
 
-            mock.verify(() -> UpdateExecution.service(any(String.class)));
-        }
+    @Test
+    void shouldMoveStagingGraphOntoNamedGraph() {
+        tripleStoreRepository.replaceNamedGraph(REPO_URL + "#rev-abc", REPO_URL);
 
-        verify(virtuosoClient, times(0)).getConnection();
+        verify(virtuosoClient).update(
+                String.format("MOVE SILENT GRAPH <%s#rev-abc> TO GRAPH <%s>%n", REPO_URL, REPO_URL));
+        verifyNoInteractions(connection);
+    }
+
+    @Test
+    void shouldHideStagingGraphInConfiguredGraphGroupUntilReleased() {
+        when(properties.getStagingGraphGroup()).thenReturn("http://example.org/private");
+
+        tripleStoreRepository.hideStagingGraph(REPO_URL + "#rev-abc");
+        tripleStoreRepository.releaseStagingGraph(REPO_URL + "#rev-abc");
+
+        InOrder order = inOrder(virtuosoClient);
+        order.verify(virtuosoClient).update(String.format("SELECT (sql:RDF_GRAPH_GROUP_INS(\"http://example.org/private\", \"%s#rev-abc\")) {}%n", REPO_URL));
+        order.verify(virtuosoClient).update(String.format("SELECT (sql:RDF_GRAPH_GROUP_DEL(\"http://example.org/private\", \"%s#rev-abc\")) {}%n", REPO_URL));
+    }
+
+    @Test
+    void shouldLeaveStagingGraphVisibleWhenGraphGroupCannotBeUpdated() {
+        when(properties.getStagingGraphGroup()).thenReturn("http://example.org/private");
+        doThrow(new HttpException("Something bad happened")).when(virtuosoClient).update(any(String.class));
+
+        tripleStoreRepository.hideStagingGraph(REPO_URL + "#rev-abc");
+
+        verify(virtuosoClient).update(any(String.class));
+    }
+
+    @Test
+    void shouldNotHideStagingGraphWithoutGraphGroup() {
+        when(properties.getStagingGraphGroup()).thenReturn("");
+
+        tripleStoreRepository.hideStagingGraph(REPO_URL + "#rev-abc");
+
+        verifyNoInteractions(virtuosoClient);
+    }
+
+    @Test
+    void shouldMergeGraphIntoNamedGraphAndDropIt() {
+        tripleStoreRepository.mergeNamedGraph(REPO_URL + "#asset-abc", REPO_URL);
+
+        verify(virtuosoClient).update(String.format("ADD SILENT GRAPH <%s#asset-abc> TO GRAPH <%s> ;%nDROP SILENT GRAPH <%s#asset-abc>%n",
+                REPO_URL, REPO_URL, REPO_URL));
         verifyNoInteractions(connection);
     }
 
     @Test
-    void shouldExecuteSelect() {
+    void shouldUploadStreamedTriplesOnceChunksAreFull() {
+        when(properties.getUpload()).thenReturn(upload(2, 1));
         when(virtuosoClient.getConnection()).thenReturn(connection);
+        List<Model> chunks = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> chunks.add(invocation.getArgument(1)))
+            .when(connection).load(eq(REPO_URL), any(Model.class));
 
-        tripleStoreRepository.select(new SelectBuilder());
+        try (TripleStoreRepository.ChunkedUpload upload = tripleStoreRepository.openUpload(REPO_URL)) {
+            for (int i = 0; i < 3; i++) {
+                upload.add(Triple.create(NodeFactory.createURI("http://example.org/" + i), RDF.type.asNode(),
+                    NodeFactory.createURI("https://schema.org/Person")));
+            }
+            upload.add(Triple.create(NodeFactory.createBlankNode(), RDFS.label.asNode(), NodeFactory.createLiteral("anonymous")));
+            upload.finish();
+        }
 
-        verify(virtuosoClient).getConnection();
-        verify(connection).query(new SelectBuilder().build());
+        assertThat(chunks).extracting(Model::size).containsExactlyInAnyOrder(2L, 1L, 1L);
+    }
+
+    @Test
+    void shouldStreamOnlyContentLargerThanThreshold() {
+        when(properties.getUpload()).thenReturn(TripleStoreProperties.Upload.builder()
+            .streamingThreshold(DataSize.ofKilobytes(1))
+            .build());
+
+        assertThat(tripleStoreRepository.shouldStreamUpload(1024)).isFalse();
+        assertThat(tripleStoreRepository.shouldStreamUpload(1025)).isTrue();
+    }
+
+    @Test
+    void shouldThrowWhenReplacingGraphFails() {
+        doThrow(new HttpException("Something bad happened")).when(virtuosoClient).update(any(String.class));
+
+        assertThatThrownBy(() -> tripleStoreRepository.replaceNamedGraph(REPO_URL + "#rev-abc", REPO_URL))
+                .isInstanceOf(TripleStoreRepositoryException.class);
+    }
+
+    @Test
+    void shouldExecuteSelectToCompletionBeforeReleasingTheConnection() {
+        QueryExecution execution = mock(QueryExecution.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        ResultSetRewindable results = mock(ResultSetRewindable.class);
+        when(virtuosoClient.getConnection()).thenReturn(connection);
+        when(connection.query(any(Query.class))).thenReturn(execution);
+        when(execution.execSelect()).thenReturn(resultSet);
+        when(resultSet.materialise()).thenReturn(results);
+
+        assertThat(tripleStoreRepository.select(new SelectBuilder())).isSameAs(results);
+
+        InOrder order = inOrder(connection, execution, resultSet);
+        order.verify(connection).query(new SelectBuilder().build());
+        order.verify(resultSet).materialise();
+        order.verify(execution).close();
+        order.verify(connection).close();
+    }
+
+    @Test
+    void shouldRunProbeThroughConnectionReservedToProbes() {
+        QueryExecution execution = mock(QueryExecution.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        ResultSetRewindable results = mock(ResultSetRewindable.class);
+        when(virtuosoClient.getProbeConnection()).thenReturn(connection);
+        when(connection.query(any(Query.class))).thenReturn(execution);
+        when(execution.execSelect()).thenReturn(resultSet);
+        when(resultSet.materialise()).thenReturn(results);
+
+        assertThat(tripleStoreRepository.probe(new SelectBuilder())).isSameAs(results);
+
+        verify(virtuosoClient, never()).getConnection();
+        verify(connection).close();
     }
 
     @Test
@@ -121,22 +322,12 @@ class TripleStoreRepositoryTest {
         verify(connection).query(selectBuilder.build());
     }
 
-    private MockedStatic<UpdateExecution> mockUpdateExecutionFull() {
-        MockedStatic<UpdateExecution> mockedStatic =
-                Mockito.mockStatic(UpdateExecution.class);
-        mockedStatic.when(() -> UpdateExecution.service(any(String.class)))
-            .thenReturn(updateExecutionHttpBuilder);
-        when(updateExecutionHttpBuilder.updateString(any(String.class)))
-            .thenReturn(updateExecutionHttpBuilder);
-        return mockedStatic;
-    }
-
-    private MockedStatic<UpdateExecution> mockUpdateExecution() {
-        MockedStatic<UpdateExecution> mockedStatic =
-                Mockito.mockStatic(UpdateExecution.class);
-        mockedStatic.when(() -> UpdateExecution.service(any(String.class)))
-                .thenReturn(updateExecutionHttpBuilder);
-        return mockedStatic;
+    private static TripleStoreProperties.Upload upload(int chunkSize, int maxAttempts) {
+        return TripleStoreProperties.Upload.builder()
+            .chunkSize(chunkSize)
+            .maxAttempts(maxAttempts)
+            .backoff(Duration.ofMillis(1))
+            .build();
     }
 
     private Model createSimpleModel() {
@@ -1,8 +1,13 @@
 package it.gov.innovazione.ndc.repository;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdfconnection.RDFConnection;
 import org.apache.jena.rdfconnection.RDFConnectionRemote;
 import org.apache.jena.rdfconnection.RDFConnectionRemoteBuilder;
+import org.apache.jena.sparql.exec.http.UpdateExecutionHTTPBuilder;
+import org.apache.jena.update.UpdateExecution;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -11,7 +16,10 @@ import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -26,7 +34,12 @@ class VirtuosoClientTest {
     private RDFConnection connection;
     @Mock
     private RDFConnectionRemoteBuilder remoteBuilder;
+    @Mock
+    private UpdateExecutionHTTPBuilder updateExecutionHttpBuilder;
+    @Mock
+    private Model model;
 
+    private SimpleMeterRegistry meterRegistry;
     private VirtuosoClient virtuosoClient;
 
 
@@ -36,8 +49,19 @@ class VirtuosoClientTest {
         when(properties.getPassword()).thenReturn("password");
         when(properties.getSparql()).thenReturn("http://localhost:8890/sparql");
         when(properties.getSparqlGraphStore()).thenReturn("http://localhost:8890/sparql-graph-store");
+        when(properties.getClient()).thenReturn(TripleStoreProperties.Client.builder()
+            .maxConcurrency(1)
+            .acquireTimeout(Duration.ofMillis(50))
+            .probeAcquireTimeout(Duration.ofMillis(50))
+            .build());
 
-        virtuosoClient = new VirtuosoClient(properties);
+        meterRegistry = new SimpleMeterRegistry();
+        virtuosoClient = new VirtuosoClient(properties, meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        virtuosoClient.shutdown();
     }
 
     @Test
@@ -47,18 +71,16 @@ class VirtuosoClientTest {
     }
 
     @Test
-    void shouldGetConnection() {
-        when(remoteBuilder.queryEndpoint("http://localhost:8890/sparql")).thenReturn(remoteBuilder);
-        when(remoteBuilder.updateEndpoint("http://localhost:8890/sparql")).thenReturn(
-            remoteBuilder);
-        when(remoteBuilder.gspEndpoint("http://localhost:8890/sparql-graph-store"))
-            .thenReturn(remoteBuilder);
-        when(remoteBuilder.httpClient(any())).thenReturn(remoteBuilder);
-        when(remoteBuilder.build()).thenReturn(connection);
+    void shouldBuildConnectionOnceAndShareIt() {
+        mockRemoteBuilder();
 
         try (MockedStatic<RDFConnectionRemote> mockedStatic = getMockedStatic()) {
-            RDFConnection connection = virtuosoClient.getConnection();
-            assertThat(connection).isEqualTo(this.connection);
+            try (RDFConnection first = virtuosoClient.getConnection()) {
+                first.load("http://graph", model);
+            }
+            try (RDFConnection second = virtuosoClient.getConnection()) {
+                second.load("http://graph", model);
+            }
 
             mockedStatic.verify(RDFConnectionRemote::create, times(1));
         }
@@ -68,6 +90,74 @@ class VirtuosoClientTest {
         verify(remoteBuilder).gspEndpoint("http://localhost:8890/sparql-graph-store");
         verify(remoteBuilder).httpClient(any());
         verify(remoteBuilder).build();
+        verify(connection, times(2)).load("http://graph", model);
+        verify(connection, times(0)).close();
+        assertThat(meterRegistry.get("virtuoso.client.requests").tag("kind", "connection").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldLimitConnectionsInUseAndGiveSlotBackOnClose() {
+        mockRemoteBuilder();
+
+        try (MockedStatic<RDFConnectionRemote> ignored = getMockedStatic()) {
+            RDFConnection first = virtuosoClient.getConnection();
+            assertThat(meterRegistry.get("virtuoso.client.slots.active").gauge().value()).isEqualTo(1);
+
+            assertThatThrownBy(() -> virtuosoClient.getConnection())
+                .isInstanceOf(TripleStoreRepositoryException.class);
+
+            first.close();
+            first.close();
+            assertThat(meterRegistry.get("virtuoso.client.slots.active").gauge().value()).isZero();
+
+            virtuosoClient.getConnection().close();
+        }
+    }
+
+    @Test
+    void shouldGiveProbeConnectionWhenAllSlotsAreInUse() {
+        mockRemoteBuilder();
+
+        try (MockedStatic<RDFConnectionRemote> ignored = getMockedStatic()) {
+            RDFConnection harvest = virtuosoClient.getConnection();
+            assertThatThrownBy(() -> virtuosoClient.getConnection())
+                .isInstanceOf(TripleStoreRepositoryException.class);
+
+            RDFConnection probe = virtuosoClient.getProbeConnection();
+            assertThatThrownBy(() -> virtuosoClient.getProbeConnection())
+                .isInstanceOf(TripleStoreRepositoryException.class);
+            assertThat(meterRegistry.get("virtuoso.client.slots.active").gauge().value()).isEqualTo(1);
+
+            probe.close();
+            virtuosoClient.getProbeConnection().close();
+            harvest.close();
+        }
+    }
+
+    @Test
+    void shouldSendUpdateStringThroughSharedHttpClient() {
+        try (MockedStatic<UpdateExecution> mockedStatic = Mockito.mockStatic(UpdateExecution.class)) {
+            mockedStatic.when(() -> UpdateExecution.service("http://localhost:8890/sparql"))
+                .thenReturn(updateExecutionHttpBuilder);
+            when(updateExecutionHttpBuilder.httpClient(any())).thenReturn(updateExecutionHttpBuilder);
+            when(updateExecutionHttpBuilder.updateString("DEFINE sql:log-enable 3")).thenReturn(updateExecutionHttpBuilder);
+
+            virtuosoClient.update("DEFINE sql:log-enable 3");
+        }
+
+        verify(updateExecutionHttpBuilder).execute();
+        assertThat(meterRegistry.get("virtuoso.client.requests").tag("kind", "update").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("virtuoso.client.slots.active").gauge().value()).isZero();
+    }
+
+    private void mockRemoteBuilder() {
+        when(remoteBuilder.queryEndpoint("http://localhost:8890/sparql")).thenReturn(remoteBuilder);
+        when(remoteBuilder.updateEndpoint("http://localhost:8890/sparql")).thenReturn(
+            remoteBuilder);
+        when(remoteBuilder.gspEndpoint("http://localhost:8890/sparql-graph-store"))
+            .thenReturn(remoteBuilder);
+        when(remoteBuilder.httpClient(any())).thenReturn(remoteBuilder);
+        when(remoteBuilder.build()).thenReturn(connection);
     }
 
     private MockedStatic<RDFConnectionRemote> getMockedStatic() {
@@ -5,22 +5,40 @@ import it.gov.innovazione.ndc.controller.exception.VocabularyDataNotFoundExcepti
 import it.gov.innovazione.ndc.controller.exception.VocabularyItemNotFoundException;
 import it.gov.innovazione.ndc.gen.dto.VocabularyData;
 import it.gov.innovazione.ndc.harvester.csv.CsvParser;
+import it.gov.innovazione.ndc.harvester.csv.CsvRow;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.gov.innovazione.ndc.harvester.service.ConfigService;
+import it.gov.innovazione.ndc.repository.ElasticsearchBulkLimiter;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.core.IndexOperations;
 import org.springframework.data.elasticsearch.core.SearchHit;
 import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.index.AliasAction;
+import org.springframework.data.elasticsearch.core.index.AliasActions;
 import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
 import org.springframework.data.elasticsearch.core.query.Query;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+import static it.gov.innovazione.ndc.harvester.service.ActualConfigService.ConfigKey.CSV_BULK_INDEXING_CHUNK_SIZE;
+import static it.gov.innovazione.ndc.harvester.service.ActualConfigService.ConfigKey.CSV_BULK_INDEXING_MAX_IN_FLIGHT;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
@@ -41,6 +59,12 @@ public class VocabularyDataServiceTest {
     @Mock
     IndexOperations indexOperations;
 
+    @Mock
+    ConfigService configService;
+
+    @Spy
+    ElasticsearchBulkLimiter bulkLimiter = new ElasticsearchBulkLimiter(1, new SimpleMeterRegistry());
+
     @InjectMocks
     VocabularyDataService vocabularyDataService;
 
@@ -105,34 +129,193 @@ public class VocabularyDataServiceTest {
     }
 
     @Test
-    void shouldIndexTheNewDataWhenIndexIsAlreadyPresent() {
+    void shouldIndexTheNewDataInNewGenerationAndSwitchAliasFromPreviousOne() {
         when(elasticsearchOperations.indexOps(any(IndexCoordinates.class)))
                 .thenReturn(indexOperations);
-        when(indexOperations.exists()).thenReturn(true);
+        when(indexOperations.getAliases("agid.testkeyconcept"))
+                .thenReturn(Map.of("agid.testkeyconcept.1", Set.of()));
 
-        vocabularyDataService.indexData(new VocabularyIdentifier("agid", "testKeyConcept"), CSV_DATA);
+        VocabularyIndexGeneration generation = vocabularyDataService.indexData(new VocabularyIdentifier("agid", "testKeyConcept"), CSV_DATA);
 
-        verify(elasticsearchOperations, times(3)).indexOps(
-                IndexCoordinates.of("agid.testkeyconcept"));
-        verify(indexOperations).exists();
-        verify(indexOperations).delete();
+        ArgumentCaptor<IndexCoordinates> bulkIndexCaptor = ArgumentCaptor.forClass(IndexCoordinates.class);
+        verify(elasticsearchOperations).bulkIndex(anyList(), bulkIndexCaptor.capture());
+        String newGeneration = bulkIndexCaptor.getValue().getIndexName();
+        assertThat(newGeneration).startsWith("agid.testkeyconcept.");
+        assertThat(generation.getIndexName()).isEqualTo(newGeneration);
         verify(indexOperations).create();
-        verify(elasticsearchOperations).bulkIndex(anyList(), eq(IndexCoordinates.of("agid.testkeyconcept")));
+        verify(indexOperations, never()).alias(any());
+
+        vocabularyDataService.switchToGeneration(generation);
+
+        ArgumentCaptor<AliasActions> aliasCaptor = ArgumentCaptor.forClass(AliasActions.class);
+        verify(indexOperations).alias(aliasCaptor.capture());
+        List<AliasAction> actions = aliasCaptor.getValue().getActions();
+        assertThat(actions).hasSize(2);
+        assertThat(actions.get(0)).isInstanceOf(AliasAction.Add.class);
+        assertThat(actions.get(0).getParameters().getIndices()).containsExactly(newGeneration);
+        assertThat(actions.get(0).getParameters().getAliases()).containsExactly("agid.testkeyconcept");
+        assertThat(actions.get(1)).isInstanceOf(AliasAction.Remove.class);
+        assertThat(actions.get(1).getParameters().getIndices()).containsExactly("agid.testkeyconcept.1");
+
+        verify(elasticsearchOperations).indexOps(IndexCoordinates.of("agid.testkeyconcept.1"));
+        verify(indexOperations).delete();
     }
 
     @Test
-    void shouldIndexTheNewDataWhenIndexIsNotPresent() {
-        IndexCoordinates indexCoordinates = IndexCoordinates.of("agid.testkeyconcept");
+    void shouldIndexRecordsInChunksOfConfiguredSize() {
         when(elasticsearchOperations.indexOps(any(IndexCoordinates.class)))
                 .thenReturn(indexOperations);
-        when(indexOperations.exists()).thenReturn(false);
+        when(configService.getParsedOrGetDefault(eq(CSV_BULK_INDEXING_CHUNK_SIZE), any())).thenReturn(2L);
+        when(configService.getParsedOrGetDefault(eq(CSV_BULK_INDEXING_MAX_IN_FLIGHT), any())).thenReturn(1L);
+        List<Integer> chunkSizes = new CopyOnWriteArrayList<>();
+        when(elasticsearchOperations.bulkIndex(anyList(), any(IndexCoordinates.class))).thenAnswer(invocation -> {
+            chunkSizes.add(invocation.<List<?>>getArgument(0).size());
+            return List.of();
+        });
+        List<Map<String, String>> records = IntStream.range(0, 5)
+                .mapToObj(i -> Map.of("key", String.valueOf(i)))
+                .collect(Collectors.toList());
 
-        vocabularyDataService.indexData(new VocabularyIdentifier("agid", "testKeyConcept"), CSV_DATA);
+        vocabularyDataService.indexData(new VocabularyIdentifier("agid", "testKeyConcept"), new CsvParser.CsvData(records, "key"));
 
-        verify(elasticsearchOperations, times(2)).indexOps(indexCoordinates);
-        verify(indexOperations).exists();
+        assertThat(chunkSizes).containsExactly(2, 2, 1);
+    }
+
+    @Test
+    void shouldSendOneBulkRequestAtATimeWhenSharedLimitIsReachedByConcurrentVocabularies() throws Exception {
+        when(elasticsearchOperations.indexOps(any(IndexCoordinates.class)))
+                .thenReturn(indexOperations);
+        when(configService.getParsedOrGetDefault(eq(CSV_BULK_INDEXING_CHUNK_SIZE), any())).thenReturn(1L);
+        when(configService.getParsedOrGetDefault(eq(CSV_BULK_INDEXING_MAX_IN_FLIGHT), any())).thenReturn(4L);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(elasticsearchOperations.bulkIndex(anyList(), any(IndexCoordinates.class))).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(5);
+            inFlight.decrementAndGet();
+            return List.of();
+        });
+        List<Map<String, String>> records = IntStream.range(0, 8)
+                .mapToObj(i -> Map.of("key", String.valueOf(i)))
+                .collect(Collectors.toList());
+
+        ExecutorService vocabularies = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> first = vocabularies.submit(() -> vocabularyDataService.indexData(new VocabularyIdentifier("agid", "first"), new CsvParser.CsvData(records, "key")));
+            Future<?> second = vocabularies.submit(() -> vocabularyDataService.indexData(new VocabularyIdentifier("agid", "second"), new CsvParser.CsvData(records, "key")));
+            first.get();
+            second.get();
+        } finally {
+            vocabularies.shutdownNow();
+        }
+
+        verify(elasticsearchOperations, times(16)).bulkIndex(anyList(), any(IndexCoordinates.class));
+        assertThat(maxInFlight).hasValue(1);
+    }
+
+    @Test
+    void shouldClampChunkSizesConfiguredBeyondIntRange() {
+        when(elasticsearchOperations.indexOps(any(IndexCoordinates.class)))
+                .thenReturn(indexOperations);
+        when(configService.getParsedOrGetDefault(eq(CSV_BULK_INDEXING_CHUNK_SIZE), any())).thenReturn(Integer.MAX_VALUE + 2L);
+        when(configService.getParsedOrGetDefault(eq(CSV_BULK_INDEXING_MAX_IN_FLIGHT), any())).thenReturn(1L);
+        List<Integer> chunkSizes = new CopyOnWriteArrayList<>();
+        when(elasticsearchOperations.bulkIndex(anyList(), any(IndexCoordinates.class))).thenAnswer(invocation -> {
+            chunkSizes.add(invocation.<List<?>>getArgument(0).size());
+            return List.of();
+        });
+        List<Map<String, String>> records = IntStream.range(0, 3)
+                .mapToObj(i -> Map.of("key", String.valueOf(i)))
+                .collect(Collectors.toList());
+
+        vocabularyDataService.indexData(new VocabularyIdentifier("agid", "testKeyConcept"), new CsvParser.CsvData(records, "key"));
+
+        assertThat(chunkSizes).containsExactly(3);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldIndexRecordsAsJsonSourceWithTheirIdentifier() {
+        when(elasticsearchOperations.indexOps(any(IndexCoordinates.class)))
+                .thenReturn(indexOperations);
+        CsvRow row = CsvRow.Header.of(Map.of("key", 0, "label", 1)).row("k1", "a \"quoted\" label");
+
+        vocabularyDataService.indexData(new VocabularyIdentifier("agid", "testKeyConcept"),
+                new CsvParser.CsvData(List.of(row), "key"));
+
+        ArgumentCaptor<List<IndexQuery>> queriesCaptor = ArgumentCaptor.forClass(List.class);
+        verify(elasticsearchOperations).bulkIndex(queriesCaptor.capture(), any(IndexCoordinates.class));
+        IndexQuery query = queriesCaptor.getValue().get(0);
+        assertThat(query.getId()).isEqualTo("k1");
+        assertThat(query.getObject()).isNull();
+        assertThat(query.getSource()).contains("\"key\":\"k1\"", "\"label\":\"a \\\"quoted\\\" label\"");
+    }
+
+    @Test
+    void shouldReplacePlainIndexCreatedBeforeAliasesWhenIndexingNewData() {
+        when(elasticsearchOperations.indexOps(any(IndexCoordinates.class)))
+                .thenReturn(indexOperations);
+        when(indexOperations.getAliases("agid.testkeyconcept")).thenReturn(Map.of());
+        when(indexOperations.exists()).thenReturn(false, true);
+
+        vocabularyDataService.switchToGeneration(vocabularyDataService.indexData(new VocabularyIdentifier("agid", "testKeyConcept"), CSV_DATA));
+
+        ArgumentCaptor<AliasActions> aliasCaptor = ArgumentCaptor.forClass(AliasActions.class);
+        verify(indexOperations).alias(aliasCaptor.capture());
+        List<AliasAction> actions = aliasCaptor.getValue().getActions();
+        assertThat(actions).hasSize(2);
+        assertThat(actions.get(0)).isInstanceOf(AliasAction.Add.class);
+        assertThat(actions.get(1)).isInstanceOf(AliasAction.RemoveIndex.class);
+        assertThat(actions.get(1).getParameters().getIndices()).containsExactly("agid.testkeyconcept");
         verify(indexOperations, never()).delete();
-        verify(indexOperations).create();
-        verify(elasticsearchOperations).bulkIndex(anyList(), eq(indexCoordinates));
+    }
+
+    @Test
+    void shouldDeleteNewGenerationAndKeepAliasWhenBulkIndexingFails() {
+        when(elasticsearchOperations.indexOps(any(IndexCoordinates.class)))
+                .thenReturn(indexOperations);
+        when(elasticsearchOperations.bulkIndex(anyList(), any(IndexCoordinates.class)))
+                .thenThrow(new RuntimeException("Bulk failed"));
+
+        assertThatThrownBy(() -> vocabularyDataService.indexData(new VocabularyIdentifier("agid", "testKeyConcept"), CSV_DATA))
+                .hasMessage("Bulk failed");
+
+        verify(indexOperations).delete();
+        verify(indexOperations, never()).alias(any());
+    }
+
+    @Test
+    void shouldDeleteGenerationNotSwitchedTo() {
+        when(elasticsearchOperations.indexOps(IndexCoordinates.of("agid.testkeyconcept.2"))).thenReturn(indexOperations);
+
+        vocabularyDataService.deleteGeneration(new VocabularyIndexGeneration(new VocabularyIdentifier("agid", "testKeyConcept"), "agid.testkeyconcept.2", 1));
+
+        verify(indexOperations).delete();
+        verify(indexOperations, never()).alias(any());
+    }
+
+    @Test
+    void shouldDropAllGenerationsOfAlias() {
+        when(elasticsearchOperations.indexOps(any(IndexCoordinates.class)))
+                .thenReturn(indexOperations);
+        when(indexOperations.getAliases("agid.testkeyconcept"))
+                .thenReturn(Map.of("agid.testkeyconcept.1", Set.of()));
+
+        vocabularyDataService.dropIndex(new VocabularyIdentifier("agid", "testKeyConcept"));
+
+        verify(elasticsearchOperations).indexOps(IndexCoordinates.of("agid.testkeyconcept.1"));
+        verify(indexOperations).delete();
+    }
+
+    @Test
+    void shouldDropPlainIndexCreatedBeforeAliases() {
+        when(elasticsearchOperations.indexOps(any(IndexCoordinates.class)))
+                .thenReturn(indexOperations);
+        when(indexOperations.getAliases("agid.testkeyconcept")).thenReturn(Map.of());
+
+        vocabularyDataService.dropIndex(new VocabularyIdentifier("agid", "testKeyConcept"));
+
+        verify(elasticsearchOperations, times(2)).indexOps(IndexCoordinates.of("agid.testkeyconcept"));
+        verify(indexOperations).delete();
     }
 }